@@ -0,0 +1,57 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nativelibs4java.jalico.AdaptedCollection;
+import com.nativelibs4java.jalico.Adapter;
+
+/**
+ * Iteration over an AdaptedCollection, compared to adapting the elements of the raw list by hand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdaptedCollectionBenchmark {
+	
+	@Param({ "1000" })
+	int size;
+	
+	List<Integer> list;
+	AdaptedCollection<Integer, Long> adapted;
+	final Adapter<Integer, Long> adapter = new Adapter<Integer, Long>() {
+		public Long adapt(Integer value) {
+			return value * 3L;
+		}
+	};
+	
+	@Setup
+	public void setUp() {
+		list = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			list.add(i);
+		adapted = new AdaptedCollection<Integer, Long>(list, adapter);
+	}
+	
+	@Benchmark
+	public long rawIteration() {
+		long sum = 0;
+		for (Integer value : list)
+			sum += adapter.adapt(value);
+		return sum;
+	}
+	
+	@Benchmark
+	public long adaptedIteration() {
+		long sum = 0;
+		for (Long value : adapted)
+			sum += value;
+		return sum;
+	}
+}
@@ -0,0 +1,56 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nativelibs4java.jalico.ListenableCollections;
+import com.nativelibs4java.jalico.ListenableList;
+import com.nativelibs4java.jalico.ListenableSet;
+
+/**
+ * Propagation of modifications between collections bound with ListenableCollections.bind, compared to modifying two raw collections by hand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BindBenchmark {
+	
+	List<Integer> rawList;
+	Set<Integer> rawSet;
+	ListenableList<Integer> list;
+	ListenableSet<Integer> set;
+	int next;
+	
+	@Setup
+	public void setUp() {
+		rawList = new ArrayList<Integer>();
+		rawSet = new HashSet<Integer>();
+		list = ListenableCollections.listenableList(new ArrayList<Integer>());
+		set = ListenableCollections.listenableSet(new HashSet<Integer>());
+		ListenableCollections.bind(list, set);
+	}
+	
+	@Benchmark
+	public boolean rawAddThenRemove() {
+		Integer element = next++ & 1023;
+		rawList.add(element);
+		rawSet.add(element);
+		rawList.remove(rawList.size() - 1);
+		return rawSet.remove(element);
+	}
+	
+	@Benchmark
+	public Integer boundAddThenRemove() {
+		Integer element = next++ & 1023;
+		list.add(element);
+		return list.remove(list.size() - 1);
+	}
+}
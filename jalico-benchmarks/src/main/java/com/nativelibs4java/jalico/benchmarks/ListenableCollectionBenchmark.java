@@ -0,0 +1,77 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nativelibs4java.jalico.CollectionEvent;
+import com.nativelibs4java.jalico.CollectionListener;
+import com.nativelibs4java.jalico.ListenableCollection;
+import com.nativelibs4java.jalico.ListenableCollections;
+
+/**
+ * Cost of the modifications of DefaultListenableCollection with 0, 1 and 8 listeners, compared to the raw java.util.ArrayList it wraps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenableCollectionBenchmark {
+	
+	/// "raw" benchmarks the unwrapped ArrayList
+	@Param({ "raw", "0", "1", "8" })
+	String listeners;
+	
+	@Param({ "100" })
+	int size;
+	
+	Collection<Integer> collection;
+	List<Integer> elements;
+	final Integer element = 1;
+	
+	@Setup
+	public void setUp(final Blackhole blackhole) {
+		elements = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			elements.add(i);
+		
+		ArrayList<Integer> list = new ArrayList<Integer>(size);
+		if (listeners.equals("raw")) {
+			collection = list;
+			return;
+		}
+		ListenableCollection<Integer> listenable = ListenableCollections.listenableCollection(list);
+		for (int i = Integer.parseInt(listeners); i-- != 0;) {
+			listenable.addCollectionListener(new CollectionListener<Integer>() {
+				public void collectionChanged(CollectionEvent<Integer> e) {
+					blackhole.consume(e.getElements());
+				}
+			});
+		}
+		collection = listenable;
+	}
+	
+	@Benchmark
+	public boolean addThenRemove() {
+		collection.add(element);
+		return collection.remove(element);
+	}
+	
+	@Benchmark
+	public void addAllThenClear() {
+		collection.addAll(elements);
+		collection.clear();
+	}
+	
+	@Benchmark
+	public boolean addAllThenRemoveAll() {
+		collection.addAll(elements);
+		return collection.removeAll(elements);
+	}
+}
@@ -0,0 +1,74 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nativelibs4java.jalico.CollectionEvent;
+import com.nativelibs4java.jalico.CollectionListener;
+import com.nativelibs4java.jalico.ListenableCollection;
+import com.nativelibs4java.jalico.ListenableCollections;
+import com.nativelibs4java.jalico.ListenableMap;
+
+/**
+ * Cost of DefaultListenableMap.put and remove depending on which of its views are materialized and listened to, compared to the raw java.util.HashMap it wraps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenableMapBenchmark {
+	
+	public enum Views { RAW, NONE, KEY_SET, ENTRY_SET, VALUES, ALL }
+	
+	@Param
+	Views views;
+	
+	Map<Integer, Integer> map;
+	int key;
+	
+	@Setup
+	public void setUp(Blackhole blackhole) {
+		HashMap<Integer, Integer> raw = new HashMap<Integer, Integer>();
+		for (int i = 0; i < 100; i++)
+			raw.put(-i - 1, i);
+		if (views == Views.RAW) {
+			map = raw;
+			return;
+		}
+		ListenableMap<Integer, Integer> listenable = ListenableCollections.listenableMap(raw);
+		if (views == Views.KEY_SET || views == Views.ALL)
+			listen(listenable.keySet(), blackhole);
+		if (views == Views.ENTRY_SET || views == Views.ALL)
+			listen(listenable.entrySet(), blackhole);
+		if (views == Views.VALUES || views == Views.ALL)
+			listen(listenable.values(), blackhole);
+		map = listenable;
+	}
+	
+	static <T> void listen(ListenableCollection<T> view, final Blackhole blackhole) {
+		view.addCollectionListener(new CollectionListener<T>() {
+			public void collectionChanged(CollectionEvent<T> e) {
+				blackhole.consume(e.getElements());
+			}
+		});
+	}
+	
+	@Benchmark
+	public Integer putThenRemove() {
+		Integer k = key++ & 1023;
+		map.put(k, k);
+		return map.remove(k);
+	}
+	
+	@Benchmark
+	public Integer replace() {
+		Integer k = -(key++ & 63) - 1;
+		return map.put(k, k);
+	}
+}
@@ -0,0 +1,66 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.nativelibs4java.jalico.ListenableCollections;
+import com.nativelibs4java.jalico.ListenableList;
+
+/**
+ * Throughput of the thread-safe list wrappers under contention, with 99% of reads (get(int) and size()) and 1% of writes (set(int, T)).<br>
+ * Compare the results with -t 1 and -t 8 (or more) : monitor wrappers serialize readers, read-write locks still write shared state on each read, and stamped locks only do so when optimistic reads fail.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class LockedWrapperContentionBenchmark {
+	
+	public enum WrapperKind { SYNCHRONIZED, READ_WRITE_LOCK, STAMPED_LOCK }
+	
+	static final int SIZE = 1024;
+	static final int WRITE_PERIOD = 100;
+	
+	@State(Scope.Benchmark)
+	public static class Shared {
+		@Param
+		WrapperKind wrapperKind;
+		
+		ListenableList<Integer> list;
+		
+		@Setup
+		public void setUp() {
+			ListenableList<Integer> wrapped = ListenableCollections.listenableList(new ArrayList<Integer>(SIZE));
+			for (int i = 0; i < SIZE; i++)
+				wrapped.add(i);
+			switch (wrapperKind) {
+			case SYNCHRONIZED:
+				list = ListenableCollections.synchronizedList(wrapped);
+				break;
+			case READ_WRITE_LOCK:
+				list = ListenableCollections.readWriteLockedList(wrapped);
+				break;
+			default:
+				list = ListenableCollections.stampedLockedList(wrapped);
+				break;
+			}
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Cursor {
+		int operation;
+	}
+	
+	@Benchmark
+	public Integer readMostly(Shared shared, Cursor cursor) {
+		int i = cursor.operation++ & (SIZE - 1);
+		if (cursor.operation % WRITE_PERIOD == 0)
+			return shared.list.set(i, i);
+		return shared.list.size() == SIZE ? shared.list.get(i) : null;
+	}
+}
@@ -0,0 +1,64 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nativelibs4java.jalico.Adapter;
+import com.nativelibs4java.jalico.ListenableCollections;
+
+/**
+ * ListenableCollections.map at several thread counts (0 maps in the calling thread), compared to a plain loop ("loop").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelMapBenchmark {
+	
+	@Param({ "loop", "0", "1", "2", "4", "8" })
+	String threads;
+	
+	@Param({ "10000" })
+	int size;
+	
+	/// Amount of work per element, in Blackhole.consumeCPU tokens
+	@Param({ "100" })
+	int work;
+	
+	List<Integer> input;
+	Adapter<Integer, Integer> mapper;
+	
+	@Setup
+	public void setUp() {
+		input = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++)
+			input.add(i);
+		mapper = new Adapter<Integer, Integer>() {
+			public Integer adapt(Integer value) {
+				Blackhole.consumeCPU(work);
+				return value + 1;
+			}
+		};
+	}
+	
+	@Benchmark
+	public List<Integer> map() {
+		if (threads.equals("loop")) {
+			List<Integer> out = new ArrayList<Integer>(input.size());
+			for (Integer value : input)
+				out.add(mapper.adapt(value));
+			return out;
+		}
+		List<Integer> values = ListenableCollections.map(input, mapper, Integer.parseInt(threads)).getValues();
+		// MapResult.getThreads() returns a package-private type, so wait for the values instead of joining the threads
+		while (values.size() < size)
+			Thread.yield();
+		return values;
+	}
+}
@@ -0,0 +1,67 @@
+package com.nativelibs4java.jalico.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nativelibs4java.jalico.CollectionEvent;
+import com.nativelibs4java.jalico.CollectionListener;
+import com.nativelibs4java.jalico.ListenableCollection;
+import com.nativelibs4java.jalico.ListenableCollections;
+import com.nativelibs4java.jalico.ListenableList;
+import com.nativelibs4java.jalico.SingleElementListener;
+
+/**
+ * Cost of single-element modifications depending on the kind of listener registered.<br>
+ * Run with -prof gc : with a SingleElementListener, gc.alloc.rate.norm should be zero.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SingleElementEventBenchmark {
+	
+	public enum ListenerKind { NONE, COLLECTION_LISTENER, SINGLE_ELEMENT_LISTENER }
+	
+	@Param
+	ListenerKind listenerKind;
+	
+	ListenableList<Integer> list;
+	final Integer element = 1;
+	
+	@Setup
+	public void setUp(final Blackhole blackhole) {
+		list = ListenableCollections.listenableList(new ArrayList<Integer>(16));
+		switch (listenerKind) {
+		case COLLECTION_LISTENER:
+			list.addCollectionListener(new CollectionListener<Integer>() {
+				public void collectionChanged(CollectionEvent<Integer> e) {
+					blackhole.consume(e.getElements());
+				}
+			});
+			break;
+		case SINGLE_ELEMENT_LISTENER:
+			list.addCollectionListener(new SingleElementListener<Integer>() {
+				public void collectionChanged(CollectionEvent<Integer> e) {
+					blackhole.consume(e.getElements());
+				}
+				public void elementChanged(ListenableCollection<Integer> source, CollectionEvent.EventType type, Integer element, int index) {
+					blackhole.consume(element);
+				}
+			});
+			break;
+		default:
+			break;
+		}
+	}
+	
+	@Benchmark
+	public Integer addThenRemove() {
+		list.add(element);
+		return list.remove(list.size() - 1);
+	}
+}
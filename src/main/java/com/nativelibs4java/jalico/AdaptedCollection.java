@@ -22,8 +22,10 @@ package com.nativelibs4java.jalico;
 import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ListenableCollection&lt;V&gt; that wraps a Collection&lt;U&gt;, using adapters from U to V (and optionally backwards, for support of the add(V) method).<br>
@@ -39,6 +41,10 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 	protected final Adapter<U,V> forwardAdapter;
 	protected final Adapter<V,U> backwardAdapter;
 	protected ListenableSupport<V> collectionSupport;
+	/// Cache of adapted values (also used as forward adapter), or null
+	protected final MemoizingAdapter<U, V> adapterCache;
+	/// Index of the wrapped elements by adapted value, or null
+	private ReverseIndex reverseIndex;
 	protected boolean currentlyCausingChange = false;
 	
 	public AdaptedCollection(Collection<U> collection, Adapter<U, V> forwardAdapter) {
@@ -53,6 +59,26 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 		this.collection = collection;
 		this.forwardAdapter = forwardAdapter;
 		this.backwardAdapter = backwardAdapter;
+		this.adapterCache = null;
+	}
+	
+	/**
+	 * Create an adapted collection that caches the adapted values of the elements of the wrapped collection in a MemoizingAdapter, so that iterating again or looking elements up does not adapt them again.<br>
+	 * If the wrapped collection is listenable, the cached values of its removed and updated elements are invalidated as it notifies them (updates of list elements with indices only invalidate the new element : the replaced one is eventually evicted).
+	 * @param cacheSize maximum number of cached values, beyond which the least recently used ones are evicted
+	 * @param identityKeys if true, elements are compared by identity rather than by equality in the cache
+	 */
+	public AdaptedCollection(Collection<U> collection, Adapter<U, V> forwardAdapter, Adapter<V, U> backwardAdapter, int cacheSize, boolean identityKeys) {
+		super();
+		if (forwardAdapter == null)
+			throw new NullPointerException("AdaptedCollection needs a non-null forward adapter");
+		
+		this.collection = collection;
+		this.adapterCache = new MemoizingAdapter<U, V>(forwardAdapter, cacheSize, identityKeys);
+		this.forwardAdapter = adapterCache;
+		this.backwardAdapter = backwardAdapter;
+		// Listen to the wrapped collection right away, to invalidate the cache
+		getListenableSupport();
 	}
 	
 	public Adapter<U, V> getForwardAdapter() {
@@ -63,6 +89,122 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 		return backwardAdapter;
 	}
 	
+	/**
+	 * @return cache of the adapted values, or null if this collection does not cache them
+	 */
+	public MemoizingAdapter<U, V> getAdapterCache() {
+		return adapterCache;
+	}
+	
+	/**
+	 * Enable or disable the reverse index of this collection, a hash index of the wrapped elements by adapted value that is kept up to date from the events of the wrapped collection.<br>
+	 * When there is no backward adapter, the index makes contains(Object) and remove(Object) O(1) expected (without any call to the forward adapter), instead of adapting the wrapped elements one by one. Removals from wrapped lists notify the index of the removed element that the event of the list carries, without looking it up again.<br>
+	 * The index keeps the adapted value of each wrapped element, so that removed and updated elements are unindexed without adapting them again : elements which adapted value changes must be notified with an UPDATED event (or removed and re-added) to be indexed by their new value.
+	 * @throws IllegalStateException if the wrapped collection is not a ListenableCollection
+	 */
+	public void setIndexed(boolean indexed) {
+		if (!indexed) {
+			reverseIndex = null;
+			return;
+		}
+		if (!(collection instanceof ListenableCollection<?>))
+			throw new IllegalStateException("Cannot index an AdaptedCollection which wrapped collection is not listenable");
+		
+		if (reverseIndex == null) {
+			getListenableSupport();
+			reverseIndex = new ReverseIndex((ListenableCollection<U>)collection);
+		}
+	}
+	
+	public boolean isIndexed() {
+		return reverseIndex != null;
+	}
+	
+	/**
+	 * Hash index of the wrapped elements by adapted value.
+	 */
+	private final class ReverseIndex {
+		private final Map<V, List<U>> elements = new HashMap<V, List<U>>();
+		/// Adapted value each wrapped element is indexed by
+		private final Map<U, V> values = new HashMap<U, V>();
+		/// Copy of the wrapped list, to know which elements are replaced by UPDATED events
+		private final ListMirror<U> mirror;
+		/// Index of the last element removed from the wrapped list, as notified by its event
+		int removedIndex = -1;
+		
+		ReverseIndex(ListenableCollection<U> collection) {
+			this.mirror = ListMirror.of(collection);
+			for (U element : collection)
+				add(element);
+		}
+		
+		List<U> get(Object value) {
+			return elements.get(value);
+		}
+		
+		private void add(U element) {
+			V value = forwardAdapter.adapt(element);
+			values.put(element, value);
+			List<U> list = elements.get(value);
+			if (list == null)
+				elements.put(value, list = new ArrayList<U>(1));
+			list.add(element);
+		}
+		
+		private void remove(U element) {
+			if (!values.containsKey(element))
+				return;
+			
+			V value = values.get(element);
+			List<U> list = elements.get(value);
+			if (list == null || !list.remove(element))
+				return;
+			
+			if (list.isEmpty())
+				elements.remove(value);
+			if (!list.contains(element))
+				values.remove(element);
+		}
+		
+		void elementChanged(CollectionEvent.EventType type, U element, int index) {
+			if (type == CollectionEvent.EventType.UPDATED) {
+				remove(mirror != null && index >= 0 ? mirror.set(index, element) : element);
+				add(element);
+				return;
+			}
+			if (mirror != null)
+				mirror.elementChanged(type, element, index);
+			if (type == CollectionEvent.EventType.ADDED) {
+				add(element);
+			} else {
+				removedIndex = index;
+				remove(element);
+			}
+		}
+		
+		void changed(CollectionEvent.EventType type, Collection<U> changed, int firstIndex) {
+			if (type == CollectionEvent.EventType.REMOVED)
+				removedIndex = changed.size() == 1 ? firstIndex : -1;
+			int index = firstIndex;
+			for (U element : changed) {
+				switch (type) {
+				case ADDED:
+					add(element);
+					break;
+				case REMOVED:
+					remove(element);
+					break;
+				case UPDATED:
+					remove(mirror != null && firstIndex >= 0 ? mirror.set(index++, element) : element);
+					add(element);
+					break;
+				}
+			}
+			if (mirror != null)
+				mirror.changed(type, changed, firstIndex);
+		}
+	}
+	
 	@Override
 	public Iterator<V> iterator() {
 		return new IteratorAdapter(collection.iterator());
@@ -103,7 +245,7 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 			currentlyCausingChange = true;
 			if (collection.add(backwardAdapter.adapt(value))) {
 				if (collectionSupport != null && collectionSupport.hasListeners())
-					collectionSupport.fireAdded(this, Collections.singleton(value));
+					collectionSupport.fireElementAdded(this, value);
 				
 				return true;
 			}
@@ -116,7 +258,9 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 	@SuppressWarnings("unchecked")
 	@Override
 	public boolean remove(Object value) {
-		if (backwardAdapter == null) {
+		if (backwardAdapter == null && reverseIndex != null) {
+			return removeIndexed(value);
+		} else if (backwardAdapter == null) {
 			// Give index of removed element in collection event when it does not cost more 
 			// (simplifies subclassing as List, as for the remove method there is only the need to reimplement removeWithoutBackWardAdapter) 
 			int i = 0;
@@ -126,7 +270,7 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 						currentlyCausingChange = true;
 						it.remove();
 						if (collectionSupport != null && collectionSupport.hasListeners())
-							collectionSupport.fireRemoved(this, (Collection<V>)Collections.singleton(value), i, i);
+							collectionSupport.fireElementRemoved(this, (V)value, i);
 						
 						return true;
 					} finally {
@@ -141,13 +285,37 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 		}
 	}
 	
+	@SuppressWarnings("unchecked")
+	private boolean removeIndexed(Object value) {
+		List<U> elements = reverseIndex.get(value);
+		if (elements == null)
+			return false;
+		
+		U element = elements.get(0);
+		try {
+			currentlyCausingChange = true;
+			// Wrapped lists look the element up as they remove it, and their event tells its index
+			reverseIndex.removedIndex = -1;
+			if (!collection.remove(element))
+				return false;
+			
+			int index = collection instanceof List<?> ? reverseIndex.removedIndex : -1;
+			if (collectionSupport != null && collectionSupport.hasListeners())
+				collectionSupport.fireElementRemoved(this, (V)value, index);
+			
+			return true;
+		} finally {
+			currentlyCausingChange = false;
+		}
+	}
+	
 	@SuppressWarnings("unchecked")
 	protected boolean removeWithoutBackWardAdapter(Object value) {
 		try {
 			currentlyCausingChange = true;
 			if (collection.remove(backwardAdapter.adapt((V)value))) {
 				if (collectionSupport != null && collectionSupport.hasListeners())
-					collectionSupport.fireRemoved(this, (Collection<V>)Collections.singleton(value));
+					collectionSupport.fireElementRemoved(this, (V)value);
 				
 				return true;
 			}
@@ -162,6 +330,8 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 	public boolean contains(Object value) {
 		if (backwardAdapter != null) {
 			return collection.contains(backwardAdapter.adapt((V)value));
+		} else if (reverseIndex != null) {
+			return reverseIndex.get(value) != null;
 		} else {
 			for (U element : collection) {
 				if (forwardAdapter.adapt(element).equals(value)) {
@@ -190,7 +360,7 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 				iterator.remove();
 				
 				if (collectionSupport != null && collectionSupport.hasListeners())
-					collectionSupport.fireRemoved(AdaptedCollection.this, Collections.singleton(lastValue));
+					collectionSupport.fireElementRemoved(AdaptedCollection.this, lastValue);
 			} finally {
 				currentlyCausingChange = false;
 			}
@@ -199,32 +369,68 @@ public class AdaptedCollection<U, V> extends AbstractCollection<V> implements Li
 	}
 	
 	public void addCollectionListener(CollectionListener<V> l) {
+		getListenableSupport().addCollectionListener(l);
+	}
+	
+	synchronized ListenableSupport<V> getListenableSupport() {
 		if (collectionSupport == null) {
 			collectionSupport = new ListenableSupport<V>();
 			if (collection instanceof ListenableCollection<?>) {
-				((ListenableCollection<U>)collection).addCollectionListener(new CollectionListener<U>() {
+				((ListenableCollection<U>)collection).addCollectionListener(new SingleElementListener<U>() {
 					public void collectionChanged(CollectionEvent<U> e) {
-						// Do not propagate the event if we triggered it
-						if (currentlyCausingChange)
-							return;
+						// Updated elements may adapt differently now : forget them before adapting them for the event
+						if (adapterCache != null && e.getType() == CollectionEvent.EventType.UPDATED)
+							invalidate(e.getElements());
+						if (reverseIndex != null)
+							reverseIndex.changed(e.getType(), e.getElements(), e.getFirstIndex());
+						
+						try {
+							// Do not propagate the event if we triggered it
+							if (currentlyCausingChange)
+								return;
+							
+							// Only propagate if someone is listening (CollectionSupport already tries not to fire anything when there is no listener, but here we are trying to avoid to create the wrapped elements collection)
+							if (collectionSupport == null || !collectionSupport.hasListeners())
+								return;
+							
+							// Adapt the collection of changed / added / removed elements in the event
+							Collection<V> elements = new AdaptedCollection<U, V>(e.getElements(), AdaptedCollection.this.forwardAdapter, AdaptedCollection.this.backwardAdapter);
+							if (adapterCache != null)
+								// Adapt the elements now, while removed ones are still cached
+								elements = new ArrayList<V>(elements);
+							
+							collectionSupport.fireEvent(
+								AdaptedCollection.this, 
+								elements, 
+								e.getType(), 
+								e.getFirstIndex(), 
+								e.getLastIndex());
+						} finally {
+							if (adapterCache != null && e.getType() == CollectionEvent.EventType.REMOVED)
+								invalidate(e.getElements());
+						}
+					}
+					public void elementChanged(ListenableCollection<U> source, CollectionEvent.EventType type, U element, int index) {
+						if (adapterCache != null && type == CollectionEvent.EventType.UPDATED)
+							adapterCache.invalidate(element);
+						if (reverseIndex != null)
+							reverseIndex.elementChanged(type, element, index);
 						
-						// Only propagate if someone is listening (CollectionSupport already tries not to fire anything when there is no listener, but here we are trying to avoid to create the wrapped elements collection)
-						if (collectionSupport == null || !collectionSupport.hasListeners())
-							return;
+						if (!currentlyCausingChange && collectionSupport != null && collectionSupport.hasListeners())
+							collectionSupport.fireElementEvent(AdaptedCollection.this, forwardAdapter.adapt(element), type, index);
 						
-						// Adapt the collection of changed / added / removed elements in the event
-						collectionSupport.fireEvent(
-							AdaptedCollection.this, 
-							new AdaptedCollection<U, V>(e.getElements(), AdaptedCollection.this.forwardAdapter, AdaptedCollection.this.backwardAdapter), 
-							e.getType(), 
-							e.getFirstIndex(), 
-							e.getLastIndex());
+						if (adapterCache != null && type == CollectionEvent.EventType.REMOVED)
+							adapterCache.invalidate(element);
 					}
 				});
 			}
 		}
-				
-		collectionSupport.addCollectionListener(l);
+		return collectionSupport;
+	}
+	
+	private void invalidate(Collection<U> elements) {
+		for (U element : elements)
+			adapterCache.invalidate(element);
 	}
 	
 	public void removeCollectionListener(CollectionListener<V> l) {
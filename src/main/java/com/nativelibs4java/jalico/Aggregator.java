@@ -0,0 +1,50 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+/**
+ * Incremental aggregation of the elements of a group, as maintained by ListenableCollections.groupBy(ListenableCollection, Adapter, Aggregator).<br>
+ * Each group gets its own Accumulator, which is told about the elements that join and leave the group and must be able to give the aggregate at any time.<br>
+ * See Aggregators for the usual aggregations.
+ * @author Olivier Chafik
+ * @param <T> type of the aggregated elements
+ * @param <A> type of the aggregate
+ */
+public interface Aggregator<T, A> {
+	/**
+	 * Create the accumulator of a new, empty group.
+	 */
+	public Accumulator<T, A> newAccumulator();
+	
+	/**
+	 * Aggregation state of a group.
+	 */
+	public interface Accumulator<T, A> {
+		public void add(T element);
+		/**
+		 * Called with elements that were previously added (and not removed yet).
+		 */
+		public void remove(T element);
+		/**
+		 * Aggregate of the elements of the group : only called for non-empty groups.
+		 */
+		public A getValue();
+	}
+}
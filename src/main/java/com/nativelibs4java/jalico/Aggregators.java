@@ -0,0 +1,163 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.TreeMap;
+
+/**
+ * Usual aggregators for ListenableCollections.groupBy(ListenableCollection, Adapter, Aggregator).<br>
+ * Counts, sums and averages are updated in O(1) per element. Minimums and maximums keep the aggregated values of their group in a tree (with their number of occurrences), so that they are updated in O(log n) even when the current extremum leaves the group.
+ * @author Olivier Chafik
+ */
+public class Aggregators {
+	private Aggregators() {}
+	
+	/**
+	 * Number of elements of each group.
+	 */
+	public static <T> Aggregator<T, Integer> count() {
+		return new Aggregator<T, Integer>() { public Accumulator<T, Integer> newAccumulator() {
+			return new Accumulator<T, Integer>() {
+				int count;
+				public void add(T element) {
+					count++;
+				}
+				public void remove(T element) {
+					count--;
+				}
+				public Integer getValue() {
+					return count;
+				}
+			};
+		}};
+	}
+	
+	/**
+	 * Exact sum of integral values of the elements of each group.
+	 */
+	public static <T> Aggregator<T, Long> longSum(final Adapter<? super T, ? extends Number> value) {
+		return new Aggregator<T, Long>() { public Accumulator<T, Long> newAccumulator() {
+			return new Accumulator<T, Long>() {
+				long sum;
+				public void add(T element) {
+					sum += value.adapt(element).longValue();
+				}
+				public void remove(T element) {
+					sum -= value.adapt(element).longValue();
+				}
+				public Long getValue() {
+					return sum;
+				}
+			};
+		}};
+	}
+	
+	/**
+	 * Sum of values of the elements of each group (removals subtract values, so the sum is subject to floating-point rounding over time).
+	 */
+	public static <T> Aggregator<T, Double> sum(final Adapter<? super T, ? extends Number> value) {
+		return new Aggregator<T, Double>() { public Accumulator<T, Double> newAccumulator() {
+			return new Accumulator<T, Double>() {
+				double sum;
+				public void add(T element) {
+					sum += value.adapt(element).doubleValue();
+				}
+				public void remove(T element) {
+					sum -= value.adapt(element).doubleValue();
+				}
+				public Double getValue() {
+					return sum;
+				}
+			};
+		}};
+	}
+	
+	/**
+	 * Average of values of the elements of each group.
+	 */
+	public static <T> Aggregator<T, Double> average(final Adapter<? super T, ? extends Number> value) {
+		return new Aggregator<T, Double>() { public Accumulator<T, Double> newAccumulator() {
+			return new Accumulator<T, Double>() {
+				double sum;
+				int count;
+				public void add(T element) {
+					sum += value.adapt(element).doubleValue();
+					count++;
+				}
+				public void remove(T element) {
+					sum -= value.adapt(element).doubleValue();
+					count--;
+				}
+				public Double getValue() {
+					return sum / count;
+				}
+			};
+		}};
+	}
+	
+	/**
+	 * Smallest value of the elements of each group.
+	 */
+	public static <T, V extends Comparable<? super V>> Aggregator<T, V> min(Adapter<? super T, V> value) {
+		return new Extremum<T, V>(value, false);
+	}
+	
+	/**
+	 * Greatest value of the elements of each group.
+	 */
+	public static <T, V extends Comparable<? super V>> Aggregator<T, V> max(Adapter<? super T, V> value) {
+		return new Extremum<T, V>(value, true);
+	}
+	
+	private static final class Extremum<T, V> implements Aggregator<T, V> {
+		private final Adapter<? super T, V> value;
+		private final boolean max;
+		
+		Extremum(Adapter<? super T, V> value, boolean max) {
+			this.value = value;
+			this.max = max;
+		}
+		
+		public Accumulator<T, V> newAccumulator() {
+			return new Accumulator<T, V>() {
+				/// Number of occurrences of each value
+				final TreeMap<V, int[]> values = new TreeMap<V, int[]>();
+				
+				public void add(T element) {
+					V v = value.adapt(element);
+					int[] count = values.get(v);
+					if (count == null)
+						values.put(v, new int[] { 1 });
+					else
+						count[0]++;
+				}
+				public void remove(T element) {
+					V v = value.adapt(element);
+					int[] count = values.get(v);
+					if (count != null && --count[0] == 0)
+						values.remove(v);
+				}
+				public V getValue() {
+					return max ? values.lastKey() : values.firstKey();
+				}
+			};
+		}
+	}
+}
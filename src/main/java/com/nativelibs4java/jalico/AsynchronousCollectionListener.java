@@ -0,0 +1,269 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collection listener proxy that queues the events it receives in a bounded FIFO mailbox, which is drained by a task running on an Executor.<br>
+ * The thread that fires an event only pays for its enqueuing, while the wrapped listener receives the events in the same order, one at a time, from whichever thread the executor provides.<br>
+ * When the mailbox is full, the OverflowPolicy decides whether firing threads wait, events are dropped or pending events are conflated.<br>
+ * Note that listeners may receive the events long after the modifications took place : the source collection might have changed since.<br>
+ * Exceptions thrown by the wrapped listener are reported to the uncaught exception handler of the draining thread, and do not prevent the delivery of subsequent events.
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the collections that are listened to by this listener
+ */
+public class AsynchronousCollectionListener<T> implements CollectionListener<T> {
+	
+	/// What to do with events received while the mailbox is full
+	public enum OverflowPolicy {
+		/// Wait until the listener has caught up (unless called from the listener itself, in which case the mailbox temporarily grows)
+		BLOCK,
+		/// Drop the received event (see getDroppedEventCount())
+		DROP,
+		/// Coalesce the pending events with the received one, so that the mailbox contains at most three events (REMOVED, ADDED and UPDATED) per source collection. Indices of conflated events are lost.
+		CONFLATE
+	}
+	
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/// Maximum number of events delivered by a drain task before it yields its thread back to the executor
+	private static final int MAX_EVENTS_PER_DRAIN = 256;
+	
+	final CollectionListener<T> listener;
+	final Executor executor;
+	final int capacity;
+	final OverflowPolicy overflowPolicy;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final ArrayDeque<CollectionEvent<T>> mailbox = new ArrayDeque<CollectionEvent<T>>();
+	/// True while a drain task is scheduled or running (guarded by lock)
+	private boolean draining;
+	private volatile Thread drainingThread;
+	private final AtomicLong droppedEvents = new AtomicLong();
+	
+	/**
+	 * Wrap a listener with a mailbox of DEFAULT_CAPACITY events that blocks when full, drained by the default executor (see getDefaultExecutor()).
+	 */
+	public AsynchronousCollectionListener(CollectionListener<T> listener) {
+		this(listener, getDefaultExecutor(), DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+	}
+	
+	public AsynchronousCollectionListener(CollectionListener<T> listener, Executor executor, int capacity, OverflowPolicy overflowPolicy) {
+		if (listener == null || executor == null || overflowPolicy == null)
+			throw new NullPointerException();
+		if (capacity < 1)
+			throw new IllegalArgumentException("Mailbox capacity must be positive, got " + capacity);
+		
+		this.listener = listener;
+		this.executor = executor;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+	}
+	
+	public CollectionListener<T> getListener() {
+		return listener;
+	}
+	
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Get the number of events waiting to be delivered to the wrapped listener.
+	 */
+	public int getPendingEventCount() {
+		lock.lock();
+		try {
+			return mailbox.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the number of events that were dropped because the mailbox was full (with the DROP overflow policy) or because the firing thread was interrupted while waiting (with the BLOCK overflow policy).
+	 */
+	public long getDroppedEventCount() {
+		return droppedEvents.get();
+	}
+	
+	public void collectionChanged(CollectionEvent<T> e) {
+		lock.lock();
+		try {
+			if (mailbox.size() < capacity)
+				mailbox.add(e);
+			else if (!handleOverflow(e))
+				return;
+			
+			if (draining)
+				return;
+			
+			draining = true;
+		} finally {
+			lock.unlock();
+		}
+		schedule();
+	}
+	
+	/**
+	 * Called with a full mailbox, while holding the lock (which may be released and acquired again).
+	 * @return true if the event was enqueued one way or another
+	 */
+	private boolean handleOverflow(CollectionEvent<T> e) {
+		switch (overflowPolicy) {
+		case BLOCK:
+			if (drainingThread != Thread.currentThread()) {
+				try {
+					while (mailbox.size() >= capacity) {
+						if (!draining) {
+							// The last drain failed (the listener threw an Error or the executor rejected the drainer) : nothing else would free the mailbox.
+							// The drainer is scheduled without holding the lock, as the executor may run it right away or block
+							draining = true;
+							lock.unlock();
+							try {
+								schedule();
+							} finally {
+								lock.lock();
+							}
+							continue;
+						}
+						notFull.await();
+					}
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					droppedEvents.incrementAndGet();
+					return false;
+				}
+			}
+			mailbox.add(e);
+			return true;
+		case DROP:
+			droppedEvents.incrementAndGet();
+			return false;
+		case CONFLATE:
+			List<CollectionEvent<T>> pending = new ArrayList<CollectionEvent<T>>(mailbox.size() + 1);
+			pending.addAll(mailbox);
+			pending.add(e);
+			mailbox.clear();
+			mailbox.addAll(CollectionEventCoalescer.coalesce(pending, false));
+			return true;
+		default:
+			throw new UnsupportedOperationException("Unhandled overflow policy " + overflowPolicy);
+		}
+	}
+	
+	private void schedule() {
+		try {
+			executor.execute(drainer);
+		} catch (RuntimeException ex) {
+			lock.lock();
+			try {
+				draining = false;
+			} finally {
+				lock.unlock();
+			}
+			throw ex;
+		}
+	}
+	
+	private final Runnable drainer = new Runnable() { public void run() {
+		Thread thread = Thread.currentThread();
+		drainingThread = thread;
+		boolean completed = false;
+		try {
+			for (int i = 0; i < MAX_EVENTS_PER_DRAIN; i++) {
+				CollectionEvent<T> event;
+				lock.lock();
+				try {
+					event = mailbox.poll();
+					if (event == null) {
+						draining = false;
+						completed = true;
+						return;
+					}
+					notFull.signal();
+				} finally {
+					lock.unlock();
+				}
+				try {
+					listener.collectionChanged(event);
+				} catch (RuntimeException ex) {
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+				}
+			}
+			completed = true;
+		} finally {
+			drainingThread = null;
+			if (!completed) {
+				// The listener threw an Error : let the next event schedule a new drain (before waiting for room in the mailbox, if it is full)
+				lock.lock();
+				try {
+					draining = false;
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+		// Give other tasks of the executor a chance to run
+		schedule();
+	}};
+	
+	private static final class DefaultExecutorHolder {
+		static final Executor executor = createDefaultExecutor();
+	}
+	
+	/**
+	 * Get the executor used by default to drain mailboxes : a virtual thread per task executor when the JVM supports it, otherwise a shared cached thread pool of daemon threads.
+	 */
+	public static Executor getDefaultExecutor() {
+		return DefaultExecutorHolder.executor;
+	}
+	
+	private static Executor createDefaultExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (Executor)factory.invoke(null);
+		} catch (Exception ex) {
+			// Virtual threads are not available in this JVM
+		}
+		final AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newCachedThreadPool(new ThreadFactory() { public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "jalico-listener-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}});
+	}
+}
@@ -0,0 +1,57 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+/**
+ * Batch of modifications on a listenable collection, which events are held back and coalesced until the batch is closed.<br>
+ * Meant to be used in a try-with-resources statement :
+ * <pre>
+ * try (Batch batch = ListenableCollections.batch(list)) {
+ *     for (Update update : feed)
+ *         update.applyTo(list);
+ * }
+ * </pre>
+ * Closing the batch commits it : listeners are then notified with a minimal set of events (elements added then removed within the batch cancel out and contiguous index ranges are merged).<br>
+ * Batches on the same collection can be nested, in which case events are fired when the outermost batch is closed.
+ * @see ListenableCollections#batch(ListenableCollection)
+ * @see ListenableSupport#beginBatch()
+ * @author Olivier Chafik
+ */
+public class Batch implements AutoCloseable {
+	private final ListenableSupport<?> collectionSupport;
+	private boolean closed;
+	
+	Batch(ListenableSupport<?> collectionSupport) {
+		this.collectionSupport = collectionSupport;
+		collectionSupport.beginBatch();
+	}
+	
+	/**
+	 * Commit the batch, firing the coalesced events of all the modifications made since it was opened.<br>
+	 * Subsequent calls have no effect.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		
+		closed = true;
+		collectionSupport.endBatch();
+	}
+}
@@ -0,0 +1,52 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts elements to and from fixed-size binary records, so that they can be stored outside of the Java heap.<br>
+ * Implementations must only use absolute get / put methods of the buffers they are given.
+ * @author Olivier Chafik
+ * @param <T> Type of the encoded elements
+ * @see OffHeapListenableList
+ */
+public interface Codec<T> {
+	/**
+	 * @return size in bytes of the record of any element
+	 */
+	public int getRecordSize();
+	
+	/**
+	 * Write the record of an element.
+	 * @param value element to encode
+	 * @param buffer buffer to write the record to
+	 * @param offset offset of the record in the buffer
+	 */
+	public void encode(T value, ByteBuffer buffer, int offset);
+	
+	/**
+	 * Read an element from its record.
+	 * @param buffer buffer that contains the record
+	 * @param offset offset of the record in the buffer
+	 * @return decoded element
+	 */
+	public T decode(ByteBuffer buffer, int offset);
+}
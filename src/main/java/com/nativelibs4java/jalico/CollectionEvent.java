@@ -60,6 +60,12 @@ public class CollectionEvent<T> extends EventObject {
 	/// Index of the last affected element in the source, or -1 if not applicable
 	protected final int lastIndex;
 	
+	/// Value of the sequence number of events that were not stamped by an event journal
+	public static final long NO_SEQUENCE = -1;
+	
+	/// Sequence number of the event in its journal, or NO_SEQUENCE
+	protected final long sequence;
+	
 	@SuppressWarnings("unchecked")
 	/**
 	 * Get the source of the event
@@ -101,16 +107,29 @@ public class CollectionEvent<T> extends EventObject {
 		return lastIndex;
 	}
 	
+	/**
+	 * Get the sequence number of the event, which is one more than the sequence number of the previous event of the same ListenableSupport.
+	 * @return sequence number of the event, or NO_SEQUENCE if events of the source are not journaled (see ListenableSupport.setEventJournal)
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
 	public CollectionEvent(ListenableCollection<T> source, Collection<T> elements, EventType type) {
 		this(source, elements, type, -1, -1);
 	}
 	
 	public CollectionEvent(ListenableCollection<T> source, Collection<T> elements, EventType type, int firstIndex, int lastIndex) {
+		this(source, elements, type, firstIndex, lastIndex, NO_SEQUENCE);
+	}
+	
+	public CollectionEvent(ListenableCollection<T> source, Collection<T> elements, EventType type, int firstIndex, int lastIndex, long sequence) {
 		super(source);
 		this.elements = elements;
 		this.type = type;
 		this.firstIndex = firstIndex;
 		this.lastIndex = lastIndex;
+		this.sequence = sequence;
 	}
 	
 }
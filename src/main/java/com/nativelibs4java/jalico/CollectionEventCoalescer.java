@@ -0,0 +1,235 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduces a sequence of collection events to a smaller sequence with the same net effect.<br>
+ * Events are grouped by source (sources are kept in order of first appearance), then :
+ * <ul>
+ * <li>if all the events of a source carry consistent indices, consecutive events that touch contiguous ranges are merged, and removals or updates of elements added by the previous event are folded into that addition
+ * </li><li>otherwise the net effect on each element is computed, and at most one REMOVED, one ADDED and one UPDATED event (without indices) are produced for the source.
+ * </li></ul>
+ * @author Olivier Chafik
+ */
+final class CollectionEventCoalescer {
+	private CollectionEventCoalescer() {}
+	
+	public static <T> List<CollectionEvent<T>> coalesce(List<CollectionEvent<T>> events) {
+		return coalesce(events, true);
+	}
+	
+	/**
+	 * @param keepIndices if false, the net effect of the events is always computed per element, so that there are at most three resulting events per source (at the expense of indices)
+	 */
+	public static <T> List<CollectionEvent<T>> coalesce(List<CollectionEvent<T>> events, boolean keepIndices) {
+		if (events.size() <= 1)
+			return events;
+		
+		Map<ListenableCollection<T>, List<CollectionEvent<T>>> eventsBySource = new IdentityHashMap<ListenableCollection<T>, List<CollectionEvent<T>>>();
+		List<ListenableCollection<T>> sources = new ArrayList<ListenableCollection<T>>();
+		for (CollectionEvent<T> event : events) {
+			ListenableCollection<T> source = event.getSource();
+			List<CollectionEvent<T>> sourceEvents = eventsBySource.get(source);
+			if (sourceEvents == null) {
+				eventsBySource.put(source, sourceEvents = new ArrayList<CollectionEvent<T>>());
+				sources.add(source);
+			}
+			sourceEvents.add(event);
+		}
+		
+		List<CollectionEvent<T>> out = new ArrayList<CollectionEvent<T>>();
+		for (ListenableCollection<T> source : sources) {
+			List<CollectionEvent<T>> sourceEvents = eventsBySource.get(source);
+			if (keepIndices && hasConsistentIndices(sourceEvents))
+				coalesceRanges(source, sourceEvents, out);
+			else
+				coalesceElements(source, sourceEvents, out);
+		}
+		return out;
+	}
+	
+	static <T> boolean hasConsistentIndices(List<CollectionEvent<T>> events) {
+		for (CollectionEvent<T> event : events) {
+			int first = event.getFirstIndex();
+			if (first < 0 || event.getLastIndex() - first + 1 != event.getElements().size())
+				return false;
+		}
+		return true;
+	}
+	
+	/// Mutable version of an indexed event
+	private static final class Range<T> {
+		final CollectionEvent.EventType type;
+		final List<T> elements;
+		int first;
+		
+		Range(CollectionEvent<T> event) {
+			this.type = event.getType();
+			this.elements = new ArrayList<T>(event.getElements());
+			this.first = event.getFirstIndex();
+		}
+		int last() {
+			return first + elements.size() - 1;
+		}
+		boolean contains(int firstIndex, int lastIndex) {
+			return firstIndex >= first && lastIndex <= last();
+		}
+		/// Try to merge a subsequent event into this range
+		boolean absorb(CollectionEvent<T> event) {
+			CollectionEvent.EventType eventType = event.getType();
+			Collection<T> eventElements = event.getElements();
+			int eventFirst = event.getFirstIndex(), eventLast = event.getLastIndex();
+			if (eventType == type) {
+				switch (type) {
+				case ADDED:
+					// Insertion anywhere in (or right after) the block added so far keeps it contiguous
+					if (eventFirst >= first && eventFirst <= last() + 1) {
+						elements.addAll(eventFirst - first, eventElements);
+						return true;
+					}
+					return false;
+				case REMOVED:
+					// Subsequent elements removed at the same position (e.g. repeated remove(i))
+					if (eventFirst == first) {
+						elements.addAll(eventElements);
+						return true;
+					}
+					// Preceding elements removed (e.g. removal from the end)
+					if (eventLast + 1 == first) {
+						elements.addAll(0, eventElements);
+						first = eventFirst;
+						return true;
+					}
+					return false;
+				case UPDATED:
+					if (contains(eventFirst, eventLast)) {
+						setAll(eventFirst, eventElements);
+						return true;
+					}
+					if (eventFirst == last() + 1) {
+						elements.addAll(eventElements);
+						return true;
+					}
+					if (eventLast + 1 == first) {
+						elements.addAll(0, eventElements);
+						first = eventFirst;
+						return true;
+					}
+					return false;
+				}
+			} else if (type == CollectionEvent.EventType.ADDED && contains(eventFirst, eventLast)) {
+				switch (eventType) {
+				case REMOVED:
+					// Elements added then removed within the batch cancel out
+					elements.subList(eventFirst - first, eventLast - first + 1).clear();
+					return true;
+				case UPDATED:
+					// Elements added then updated are simply reported as added with their latest value
+					setAll(eventFirst, eventElements);
+					return true;
+				}
+			}
+			return false;
+		}
+		private void setAll(int firstIndex, Collection<T> values) {
+			int i = firstIndex - first;
+			for (T value : values)
+				elements.set(i++, value);
+		}
+	}
+	
+	private static <T> void coalesceRanges(ListenableCollection<T> source, List<CollectionEvent<T>> events, List<CollectionEvent<T>> out) {
+		List<Range<T>> ranges = new ArrayList<Range<T>>();
+		for (CollectionEvent<T> event : events) {
+			int n = ranges.size();
+			Range<T> last = n == 0 ? null : ranges.get(n - 1);
+			if (last != null && last.absorb(event)) {
+				if (last.elements.isEmpty())
+					ranges.remove(n - 1);
+			} else {
+				ranges.add(new Range<T>(event));
+			}
+		}
+		for (Range<T> range : ranges)
+			out.add(new CollectionEvent<T>(source, range.elements, range.type, range.first, range.last()));
+	}
+	
+	/// Net effect of a sequence of events on an element
+	private static final class Tally<T> {
+		T element;
+		int count;
+		final boolean existedBefore;
+		
+		Tally(T element, boolean existedBefore) {
+			this.element = element;
+			this.existedBefore = existedBefore;
+		}
+	}
+	
+	private static <T> void coalesceElements(ListenableCollection<T> source, List<CollectionEvent<T>> events, List<CollectionEvent<T>> out) {
+		Map<T, Tally<T>> tallies = new LinkedHashMap<T, Tally<T>>();
+		for (CollectionEvent<T> event : events) {
+			CollectionEvent.EventType type = event.getType();
+			for (T element : event.getElements()) {
+				Tally<T> tally = tallies.get(element);
+				if (tally == null)
+					tallies.put(element, tally = new Tally<T>(element, type != CollectionEvent.EventType.ADDED));
+				
+				switch (type) {
+				case ADDED:
+					tally.count++;
+					break;
+				case REMOVED:
+					tally.count--;
+					break;
+				case UPDATED:
+					break;
+				}
+				tally.element = element;
+			}
+		}
+		
+		List<T> removed = new ArrayList<T>(), added = new ArrayList<T>(), updated = new ArrayList<T>();
+		for (Tally<T> tally : tallies.values()) {
+			if (tally.count < 0) {
+				for (int i = tally.count; i < 0; i++)
+					removed.add(tally.element);
+			} else if (tally.count > 0) {
+				for (int i = 0; i < tally.count; i++)
+					added.add(tally.element);
+			} else if (tally.existedBefore) {
+				updated.add(tally.element);
+			}
+		}
+		if (!removed.isEmpty())
+			out.add(new CollectionEvent<T>(source, removed, CollectionEvent.EventType.REMOVED));
+		if (!added.isEmpty())
+			out.add(new CollectionEvent<T>(source, added, CollectionEvent.EventType.ADDED));
+		if (!updated.isEmpty())
+			out.add(new CollectionEvent<T>(source, updated, CollectionEvent.EventType.UPDATED));
+	}
+}
@@ -0,0 +1,203 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flow.Publisher of the events of a listenable collection, which honours the demand of each of its subscribers.<br>
+ * Each subscription registers a listener to the collection and buffers up to bufferSize events that were not requested yet.
+ * Once a subscriber lags behind by more than that, the Overflow strategy of the publisher applies : the subscription fails, drops the oldest events or conflates buffered events into their net effect.<br>
+ * Events are delivered to subscribers either by the thread that modifies the collection or by the one that requests them, never concurrently.
+ * Delivered events hold copies of the elements of the original events, as the latter are often views or reused buffers.
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the collection
+ */
+public class CollectionEventPublisher<T> implements Flow.Publisher<CollectionEvent<T>> {
+	
+	/**
+	 * What to do when a subscriber lags behind by more than the buffer size.
+	 */
+	public enum Overflow {
+		/// Cancel the subscription and signal an IllegalStateException to the subscriber
+		ERROR,
+		/// Drop the oldest buffered event : subscribers miss changes
+		DROP_OLDEST,
+		/// Replace the buffered events by their net effect (see ListenableCollections.batch(ListenableCollection)), at the expense of indices if needed to fit in the buffer
+		CONFLATE
+	}
+	
+	public static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+	
+	protected final ListenableCollection<T> source;
+	protected final int bufferSize;
+	protected final Overflow overflow;
+	
+	public CollectionEventPublisher(ListenableCollection<T> source) {
+		this(source, DEFAULT_BUFFER_SIZE, Overflow.CONFLATE);
+	}
+	
+	public CollectionEventPublisher(ListenableCollection<T> source, int bufferSize, Overflow overflow) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("Buffer size must be positive : " + bufferSize);
+		if (source == null || overflow == null)
+			throw new NullPointerException();
+		
+		this.source = source;
+		this.bufferSize = bufferSize;
+		this.overflow = overflow;
+	}
+	
+	public void subscribe(Flow.Subscriber<? super CollectionEvent<T>> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException();
+		
+		EventSubscription subscription = new EventSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscription.start();
+	}
+	
+	final class EventSubscription implements Flow.Subscription, CollectionListener<T> {
+		private final Flow.Subscriber<? super CollectionEvent<T>> subscriber;
+		/// Events not delivered yet (guarded by this)
+		private final ArrayDeque<CollectionEvent<T>> buffer = new ArrayDeque<CollectionEvent<T>>();
+		/// Error to signal once the buffer is drained (guarded by this)
+		private Throwable error;
+		private final AtomicLong requested = new AtomicLong();
+		/// Number of pending calls to drain(), which only the first one performs
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile boolean cancelled, listening;
+		
+		EventSubscription(Flow.Subscriber<? super CollectionEvent<T>> subscriber) {
+			this.subscriber = subscriber;
+		}
+		
+		synchronized void start() {
+			if (cancelled)
+				return;
+			
+			listening = true;
+			source.addCollectionListener(this);
+		}
+		
+		public void collectionChanged(CollectionEvent<T> e) {
+			if (cancelled)
+				return;
+			
+			CollectionEvent<T> copy = new CollectionEvent<T>(e.getSource(), new ArrayList<T>(e.getElements()), e.getType(), e.getFirstIndex(), e.getLastIndex(), e.getSequence());
+			synchronized (this) {
+				if (error != null)
+					return;
+				
+				if (buffer.size() >= bufferSize) {
+					switch (overflow) {
+					case ERROR:
+						buffer.clear();
+						error = new IllegalStateException("Subscriber lagged behind by more than " + bufferSize + " events of " + source);
+						break;
+					case DROP_OLDEST:
+						buffer.poll();
+						break;
+					default:
+						buffer.add(copy);
+						copy = null;
+						conflate();
+						break;
+					}
+				}
+				if (copy != null && error == null)
+					buffer.add(copy);
+			}
+			drain();
+		}
+		
+		/// Called while holding the lock
+		private void conflate() {
+			List<CollectionEvent<T>> events = CollectionEventCoalescer.coalesce(new ArrayList<CollectionEvent<T>>(buffer));
+			if (events.size() > bufferSize)
+				events = CollectionEventCoalescer.coalesce(events, false);
+			buffer.clear();
+			buffer.addAll(events);
+		}
+		
+		public void request(long n) {
+			if (n <= 0) {
+				synchronized (this) {
+					buffer.clear();
+					error = new IllegalArgumentException("Requested a non-positive number of events : " + n);
+				}
+			} else {
+				for (;;) {
+					long current = requested.get();
+					long updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+					if (requested.compareAndSet(current, updated))
+						break;
+				}
+			}
+			drain();
+		}
+		
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				buffer.clear();
+			}
+			if (listening)
+				source.removeCollectionListener(this);
+		}
+		
+		private void drain() {
+			if (wip.getAndIncrement() != 0)
+				return;
+			
+			int missed = 1;
+			for (;;) {
+				while (!cancelled) {
+					CollectionEvent<T> event;
+					Throwable error = null;
+					synchronized (this) {
+						event = requested.get() == 0 ? null : buffer.poll();
+						if (event == null && buffer.isEmpty())
+							error = this.error;
+					}
+					if (error != null) {
+						cancel();
+						subscriber.onError(error);
+						return;
+					}
+					if (event == null)
+						break;
+					
+					if (requested.get() != Long.MAX_VALUE)
+						requested.decrementAndGet();
+					subscriber.onNext(event);
+				}
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+					return;
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Flow.Subscriber that applies the collection events it receives (typically those of a CollectionEventPublisher of another collection) to a listenable collection.<br>
+ * Events are requested batchSize at a time, and each of them is applied as soon as it is received, so that the target never lags behind the events published so far.<br>
+ * Each event is applied inside a batch when the target collection supports batching (see ListenableCollections.batch(ListenableCollection)) : its listeners then receive the net effect of events that take several modifications to apply.<br>
+ * Events are applied as ListenableCollections.bind(ListenableCollection, ListenableCollection) would : list events with indices are applied at these indices, updates of sets re-add the elements, and updates of other collections replace them.
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the collection
+ */
+public class CollectionEventSubscriber<T> implements Flow.Subscriber<CollectionEvent<T>> {
+	protected final ListenableCollection<T> target;
+	protected final int batchSize;
+	private Flow.Subscription subscription;
+	/// Events received since demand was last requested
+	private int received;
+	private volatile Throwable error;
+	
+	public CollectionEventSubscriber(ListenableCollection<T> target, int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive : " + batchSize);
+		
+		this.target = target;
+		this.batchSize = batchSize;
+	}
+	
+	public synchronized void onSubscribe(Flow.Subscription subscription) {
+		if (this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		subscription.request(batchSize);
+	}
+	
+	public void onNext(CollectionEvent<T> event) {
+		Flow.Subscription next;
+		synchronized (this) {
+			applyBatched(event);
+			if (++received < batchSize)
+				return;
+			
+			// Outstanding demand is exhausted
+			received = 0;
+			next = subscription;
+		}
+		next.request(batchSize);
+	}
+	
+	public void onError(Throwable throwable) {
+		error = throwable;
+	}
+	
+	public void onComplete() {
+	}
+	
+	/**
+	 * @return error signalled by the publisher, if any
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	/// Called while holding the lock
+	private void applyBatched(CollectionEvent<T> event) {
+		Batch batch;
+		try {
+			batch = ListenableCollections.batch(target);
+		} catch (IllegalArgumentException ex) {
+			// The target does not support batching
+			apply(event);
+			return;
+		}
+		try {
+			apply(event);
+		} finally {
+			batch.close();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	protected void apply(CollectionEvent<T> event) {
+		List<T> list = target instanceof List<?> ? (List<T>)target : null;
+		int firstIndex = event.getFirstIndex();
+		boolean indexed = list != null && firstIndex >= 0;
+		switch (event.getType()) {
+		case ADDED:
+			if (indexed && firstIndex <= list.size())
+				list.addAll(firstIndex, event.getElements());
+			else
+				target.addAll(event.getElements());
+			break;
+		case REMOVED:
+			if (indexed && event.getLastIndex() < list.size()) {
+				for (int i = event.getLastIndex(); i >= firstIndex; i--)
+					list.remove(i);
+			} else {
+				for (T element : event.getElements())
+					target.remove(element);
+			}
+			break;
+		case UPDATED:
+			int i = firstIndex;
+			for (T element : event.getElements()) {
+				if (indexed && i < list.size()) {
+					list.set(i++, element);
+				} else if (target instanceof java.util.Set<?>) {
+					target.add(element);
+				} else {
+					target.remove(element);
+					target.add(element);
+				}
+			}
+			break;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Lock shared by the locked wrappers of ListenableCollections, which read methods take in shared mode and write methods in exclusive mode.<br>
+ * Locks return a stamp from each acquisition, which must be passed back to the matching release.
+ * Optimistic reads (stamp returned by tryOptimisticRead() and checked with validate(long)) are only supported by stamped locks : other locks always return zero, which means that the read lock must be taken instead.
+ * @author Olivier Chafik
+ */
+abstract class CollectionLock {
+	abstract long readLock();
+	abstract void unlockRead(long stamp);
+	abstract long writeLock();
+	abstract void unlockWrite(long stamp);
+	
+	/**
+	 * Tells whether the current thread holds the write lock, in which case events must not be delivered yet.
+	 */
+	abstract boolean isWriteLockedByCurrentThread();
+	
+	long tryOptimisticRead() {
+		return 0;
+	}
+	boolean validate(long stamp) {
+		return false;
+	}
+	
+	static CollectionLock readWrite() {
+		return new ReadWrite(new ReentrantReadWriteLock());
+	}
+	static CollectionLock stamped() {
+		return new Stamped(new StampedLock());
+	}
+	
+	static final class ReadWrite extends CollectionLock {
+		private final ReentrantReadWriteLock lock;
+		
+		ReadWrite(ReentrantReadWriteLock lock) {
+			this.lock = lock;
+		}
+		@Override
+		long readLock() {
+			lock.readLock().lock();
+			return 1;
+		}
+		@Override
+		void unlockRead(long stamp) {
+			lock.readLock().unlock();
+		}
+		@Override
+		long writeLock() {
+			lock.writeLock().lock();
+			return 1;
+		}
+		@Override
+		void unlockWrite(long stamp) {
+			lock.writeLock().unlock();
+		}
+		@Override
+		boolean isWriteLockedByCurrentThread() {
+			return lock.isWriteLockedByCurrentThread();
+		}
+	}
+	
+	/**
+	 * Stamped locks are not reentrant : a thread that holds the write lock must not try to acquire it again, nor to acquire the read lock.
+	 */
+	static final class Stamped extends CollectionLock {
+		private final StampedLock lock;
+		/// Thread that holds the write lock, as StampedLock does not track its owner
+		private volatile Thread writer;
+		
+		Stamped(StampedLock lock) {
+			this.lock = lock;
+		}
+		@Override
+		long readLock() {
+			return lock.readLock();
+		}
+		@Override
+		void unlockRead(long stamp) {
+			lock.unlockRead(stamp);
+		}
+		@Override
+		long writeLock() {
+			long stamp = lock.writeLock();
+			writer = Thread.currentThread();
+			return stamp;
+		}
+		@Override
+		void unlockWrite(long stamp) {
+			writer = null;
+			lock.unlockWrite(stamp);
+		}
+		@Override
+		boolean isWriteLockedByCurrentThread() {
+			return writer == Thread.currentThread();
+		}
+		@Override
+		long tryOptimisticRead() {
+			return lock.tryOptimisticRead();
+		}
+		@Override
+		boolean validate(long stamp) {
+			return lock.validate(stamp);
+		}
+	}
+}
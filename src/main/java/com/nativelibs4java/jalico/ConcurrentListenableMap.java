@@ -0,0 +1,532 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Thread-safe ListenableMap that implements ConcurrentMap on top of a ConcurrentHashMap.<br>
+ * Reads never lock. Modifications lock one of a fixed set of stripes, chosen from the hash of the key, so that modifications of keys of different stripes proceed in parallel.<br>
+ * Events are fired while holding the stripe of the modified key : the events of a given key are always fired in the order of its modifications, but events of different keys may be fired concurrently from different threads (listeners must be thread-safe).<br>
+ * The mapping functions of compute, computeIfAbsent, computeIfPresent and merge are called while holding the stripe of the key : they should be short and must not modify other keys of the map.<br>
+ * As with DefaultListenableMap, the key set, entry set and values views are listenable. Their iterators are weakly consistent, and entries they return are immutable copies.<br>
+ * Null keys and values are not supported.
+ * @author Olivier Chafik
+ * @param <K> Type of the keys of the map
+ * @param <V> Type of the values of the map
+ */
+public class ConcurrentListenableMap<K,V> extends AbstractMap<K,V> implements ConcurrentMap<K,V>, ListenableMap<K,V> {
+	private final ConcurrentHashMap<K,V> map;
+	private final ReentrantLock[] stripes;
+	
+	private final ListenableSupport<K> keySupport = new ListenableSupport<K>();
+	private final ListenableSupport<Map.Entry<K,V>> entrySupport = new ListenableSupport<Map.Entry<K,V>>();
+	private final ListenableSupport<V> valuesSupport = new ListenableSupport<V>();
+	
+	private final KeySet keySet = new KeySet();
+	private final EntrySet entrySet = new EntrySet();
+	private final Values values = new Values();
+	
+	public ConcurrentListenableMap() {
+		this(16, 4 * Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param initialCapacity number of entries the map is initially sized for
+	 * @param concurrencyLevel expected number of concurrently modifying threads, from which the number of stripes is derived
+	 */
+	public ConcurrentListenableMap(int initialCapacity, int concurrencyLevel) {
+		if (concurrencyLevel <= 0)
+			throw new IllegalArgumentException("Invalid concurrency level : " + concurrencyLevel);
+		
+		map = new ConcurrentHashMap<K,V>(initialCapacity);
+		int stripeCount = Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) - 1) << 1;
+		stripes = new ReentrantLock[Math.max(1, stripeCount)];
+		for (int i = 0; i < stripes.length; i++)
+			stripes[i] = new ReentrantLock();
+	}
+	
+	public ConcurrentListenableMap(Map<? extends K, ? extends V> m) {
+		this(m.size(), 4 * Runtime.getRuntime().availableProcessors());
+		map.putAll(m);
+	}
+	
+	private ReentrantLock stripe(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return stripes[h & (stripes.length - 1)];
+	}
+	
+	private void propagateAdded(K key, V value) {
+		keySupport.fireElementAdded(keySet, key);
+		if (entrySupport.hasListeners())
+			entrySupport.fireElementAdded(entrySet, new UnmodifiableEntry<K,V>(key, value));
+		valuesSupport.fireElementAdded(values, value);
+	}
+	
+	private void propagateRemoved(K key, V value) {
+		keySupport.fireElementRemoved(keySet, key);
+		if (entrySupport.hasListeners())
+			entrySupport.fireElementRemoved(entrySet, new UnmodifiableEntry<K,V>(key, value));
+		valuesSupport.fireElementRemoved(values, value);
+	}
+	
+	private void propagateUpdated(K key, V oldValue, V newValue) {
+		keySupport.fireElementUpdated(keySet, key);
+		
+		boolean different = !oldValue.equals(newValue);
+		if (entrySupport.hasListeners()) {
+			Map.Entry<K, V> newEntry = new UnmodifiableEntry<K,V>(key, newValue);
+			if (different) {
+				entrySupport.fireElementRemoved(entrySet, new UnmodifiableEntry<K,V>(key, oldValue));
+				entrySupport.fireElementAdded(entrySet, newEntry);
+			} else {
+				entrySupport.fireElementUpdated(entrySet, newEntry);
+			}
+		}
+		if (different) {
+			valuesSupport.fireElementRemoved(values, oldValue);
+			valuesSupport.fireElementAdded(values, newValue);
+		} else {
+			valuesSupport.fireElementUpdated(values, newValue);
+		}
+	}
+	
+	/// Must be called while holding the stripe of the key
+	private void store(K key, V oldValue, V newValue) {
+		map.put(key, newValue);
+		if (oldValue == null)
+			propagateAdded(key, newValue);
+		else
+			propagateUpdated(key, oldValue, newValue);
+	}
+	
+	/// Must be called while holding the stripe of the key
+	private void delete(K key, V oldValue) {
+		map.remove(key);
+		propagateRemoved(key, oldValue);
+	}
+	
+	@Override
+	public int size() {
+		return map.size();
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+	
+	@Override
+	public boolean containsValue(Object value) {
+		return map.containsValue(value);
+	}
+	
+	@Override
+	public V get(Object key) {
+		return map.get(key);
+	}
+	
+	@Override
+	public V put(K key, V value) {
+		if (value == null)
+			throw new NullPointerException();
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			store(key, old, value);
+			return old;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+			put(e.getKey(), e.getValue());
+	}
+	
+	public V putIfAbsent(K key, V value) {
+		if (value == null)
+			throw new NullPointerException();
+		
+		V old = map.get(key);
+		if (old != null)
+			return old;
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			old = map.get(key);
+			if (old == null)
+				store(key, null, value);
+			return old;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			if (old != null)
+				delete((K)key, old);
+			return old;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object key, Object value) {
+		if (value == null)
+			return false;
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			if (old == null || !old.equals(value))
+				return false;
+			
+			delete((K)key, old);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public V replace(K key, V value) {
+		if (value == null)
+			throw new NullPointerException();
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			if (old != null)
+				store(key, old, value);
+			return old;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public boolean replace(K key, V oldValue, V newValue) {
+		if (oldValue == null || newValue == null)
+			throw new NullPointerException();
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			if (old == null || !old.equals(oldValue))
+				return false;
+			
+			store(key, old, newValue);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			V value = remappingFunction.apply(key, old);
+			if (value != null)
+				store(key, old, value);
+			else if (old != null)
+				delete(key, old);
+			return value;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		V old = map.get(key);
+		if (old != null)
+			return old;
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			old = map.get(key);
+			if (old != null)
+				return old;
+			
+			V value = mappingFunction.apply(key);
+			if (value != null)
+				store(key, null, value);
+			return value;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		if (!map.containsKey(key))
+			return null;
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			if (old == null)
+				return null;
+			
+			V value = remappingFunction.apply(key, old);
+			if (value != null)
+				store(key, old, value);
+			else
+				delete(key, old);
+			return value;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		if (value == null)
+			throw new NullPointerException();
+		
+		ReentrantLock lock = stripe(key);
+		lock.lock();
+		try {
+			V old = map.get(key);
+			V merged = old == null ? value : remappingFunction.apply(old, value);
+			if (merged != null)
+				store(key, old, merged);
+			else
+				delete(key, old);
+			return merged;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Remove all entries, notifying listeners with a single REMOVED event per view.<br>
+	 * All stripes are held during the operation.
+	 */
+	@Override
+	public void clear() {
+		for (ReentrantLock lock : stripes)
+			lock.lock();
+		try {
+			List<Map.Entry<K,V>> removed = new ArrayList<Map.Entry<K,V>>(map.size());
+			for (Map.Entry<K,V> e : map.entrySet())
+				removed.add(new UnmodifiableEntry<K,V>(e.getKey(), e.getValue()));
+			map.clear();
+			if (removed.isEmpty())
+				return;
+			
+			if (keySupport.hasListeners()) {
+				List<K> keys = new ArrayList<K>(removed.size());
+				for (Map.Entry<K,V> e : removed)
+					keys.add(e.getKey());
+				keySupport.fireRemoved(keySet, keys);
+			}
+			entrySupport.fireRemoved(entrySet, removed);
+			if (valuesSupport.hasListeners()) {
+				List<V> removedValues = new ArrayList<V>(removed.size());
+				for (Map.Entry<K,V> e : removed)
+					removedValues.add(e.getValue());
+				valuesSupport.fireRemoved(values, removedValues);
+			}
+		} finally {
+			for (int i = stripes.length; i-- != 0;)
+				stripes[i].unlock();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return map.toString();
+	}
+	
+	public ListenableSet<K> keySet() {
+		return keySet;
+	}
+	
+	public ListenableSet<Map.Entry<K,V>> entrySet() {
+		return entrySet;
+	}
+	
+	public ListenableCollection<V> values() {
+		return values;
+	}
+	
+	/**
+	 * Weakly consistent iterator which removals go through the map
+	 */
+	private abstract class ViewIterator<T> implements Iterator<T> {
+		private final Iterator<Map.Entry<K,V>> iterator = map.entrySet().iterator();
+		private Map.Entry<K,V> last;
+		
+		abstract T get(Map.Entry<K,V> entry);
+		
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+		public T next() {
+			last = iterator.next();
+			return get(last);
+		}
+		public void remove() {
+			if (last == null)
+				throw new IllegalStateException();
+			ConcurrentListenableMap.this.remove(last.getKey(), last.getValue());
+			last = null;
+		}
+	}
+	
+	private class KeySet extends AbstractSet<K> implements ListenableSet<K> {
+		public void addCollectionListener(CollectionListener<K> l) {
+			keySupport.addCollectionListener(l);
+		}
+		public void removeCollectionListener(CollectionListener<K> l) {
+			keySupport.removeCollectionListener(l);
+		}
+		@Override
+		public int size() {
+			return map.size();
+		}
+		@Override
+		public boolean contains(Object o) {
+			return map.containsKey(o);
+		}
+		@Override
+		public boolean remove(Object o) {
+			return ConcurrentListenableMap.this.remove(o) != null;
+		}
+		@Override
+		public void clear() {
+			ConcurrentListenableMap.this.clear();
+		}
+		@Override
+		public Iterator<K> iterator() {
+			return new ViewIterator<K>() {
+				K get(Map.Entry<K,V> entry) {
+					return entry.getKey();
+				}
+			};
+		}
+	}
+	
+	private class EntrySet extends AbstractSet<Map.Entry<K,V>> implements ListenableSet<Map.Entry<K,V>> {
+		public void addCollectionListener(CollectionListener<Map.Entry<K,V>> l) {
+			entrySupport.addCollectionListener(l);
+		}
+		public void removeCollectionListener(CollectionListener<Map.Entry<K,V>> l) {
+			entrySupport.removeCollectionListener(l);
+		}
+		@Override
+		public int size() {
+			return map.size();
+		}
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+			V value = map.get(e.getKey());
+			return value != null && value.equals(e.getValue());
+		}
+		@Override
+		public boolean remove(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+			return ConcurrentListenableMap.this.remove(e.getKey(), e.getValue());
+		}
+		@Override
+		public void clear() {
+			ConcurrentListenableMap.this.clear();
+		}
+		@Override
+		public Iterator<Map.Entry<K,V>> iterator() {
+			return new ViewIterator<Map.Entry<K,V>>() {
+				Map.Entry<K,V> get(Map.Entry<K,V> entry) {
+					return new UnmodifiableEntry<K,V>(entry.getKey(), entry.getValue());
+				}
+			};
+		}
+	}
+	
+	private class Values extends AbstractCollection<V> implements ListenableCollection<V> {
+		public void addCollectionListener(CollectionListener<V> l) {
+			valuesSupport.addCollectionListener(l);
+		}
+		public void removeCollectionListener(CollectionListener<V> l) {
+			valuesSupport.removeCollectionListener(l);
+		}
+		@Override
+		public int size() {
+			return map.size();
+		}
+		@Override
+		public boolean contains(Object o) {
+			return map.containsValue(o);
+		}
+		@Override
+		public void clear() {
+			ConcurrentListenableMap.this.clear();
+		}
+		@Override
+		public Iterator<V> iterator() {
+			return new ViewIterator<V>() {
+				V get(Map.Entry<K,V> entry) {
+					return entry.getValue();
+				}
+			};
+		}
+	}
+}
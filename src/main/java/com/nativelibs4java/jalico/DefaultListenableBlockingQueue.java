@@ -0,0 +1,160 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default implementation of the ListenableBlockingQueue interface, which wraps an existing blocking queue.<br>
+ * Blocking operations wait outside of any lock of this class, and events are handed off to listeners as with DefaultListenableQueue.<br>
+ * put and timed offer wait for capacity before reserving their ADDED event around a non-blocking offer, so that a blocked producer never holds back the events of other threads.<br>
+ * drainTo fires a REMOVED event per chunk of at most maxBatchSize drained elements.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the queue
+ */
+public class DefaultListenableBlockingQueue<T> extends DefaultListenableQueue<T> implements ListenableBlockingQueue<T> {
+	private static final long MAX_CAPACITY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	
+	protected final BlockingQueue<T> blockingQueue;
+	private final int maxBatchSize;
+	/// Producers waiting for capacity, woken up by removals
+	private final ReentrantLock capacityLock = new ReentrantLock();
+	private final Condition notFull = capacityLock.newCondition();
+	private final AtomicInteger capacityWaiters = new AtomicInteger();
+	
+	public DefaultListenableBlockingQueue(BlockingQueue<T> queue) {
+		this(queue, DEFAULT_MAX_BATCH_SIZE);
+	}
+	
+	public DefaultListenableBlockingQueue(BlockingQueue<T> queue, int maxBatchSize) {
+		super(queue, maxBatchSize);
+		this.blockingQueue = queue;
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	public void put(T e) throws InterruptedException {
+		if (!collectionSupport.hasListeners()) {
+			blockingQueue.put(e);
+			return;
+		}
+		while (!offer(e))
+			awaitCapacity(Long.MAX_VALUE);
+	}
+	
+	public boolean offer(T e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (!collectionSupport.hasListeners())
+			return blockingQueue.offer(e, timeout, unit);
+		
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!offer(e)) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				return false;
+			awaitCapacity(remaining);
+		}
+		return true;
+	}
+	
+	/**
+	 * Wait until the queue might have room for another element, or at most nanos nanoseconds.<br>
+	 * Removals made through this queue wake waiting producers up, and waits are bounded by MAX_CAPACITY_WAIT_NANOS to notice removals made by other means.
+	 */
+	private void awaitCapacity(long nanos) throws InterruptedException {
+		capacityWaiters.incrementAndGet();
+		capacityLock.lockInterruptibly();
+		try {
+			if (blockingQueue.remainingCapacity() == 0)
+				notFull.awaitNanos(Math.min(nanos, MAX_CAPACITY_WAIT_NANOS));
+		} finally {
+			capacityLock.unlock();
+			capacityWaiters.decrementAndGet();
+		}
+	}
+	
+	private void signalNotFull() {
+		if (capacityWaiters.get() == 0)
+			return;
+		
+		capacityLock.lock();
+		try {
+			notFull.signalAll();
+		} finally {
+			capacityLock.unlock();
+		}
+	}
+	
+	@Override
+	void removed(T e) {
+		super.removed(e);
+		if (e != null)
+			signalNotFull();
+	}
+	
+	public T take() throws InterruptedException {
+		T e = blockingQueue.take();
+		removed(e);
+		return e;
+	}
+	
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		T e = blockingQueue.poll(timeout, unit);
+		removed(e);
+		return e;
+	}
+	
+	public int remainingCapacity() {
+		return blockingQueue.remainingCapacity();
+	}
+	
+	public int drainTo(Collection<? super T> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+	
+	public int drainTo(Collection<? super T> c, int maxElements) {
+		if (!collectionSupport.hasListeners()) {
+			int n = blockingQueue.drainTo(c, maxElements);
+			if (n != 0)
+				signalNotFull();
+			return n;
+		}
+		
+		int total = 0;
+		while (total < maxElements) {
+			List<T> chunk = new ArrayList<T>(Math.min(maxBatchSize, maxElements - total));
+			int n = blockingQueue.drainTo(chunk, Math.min(maxBatchSize, maxElements - total));
+			if (n == 0)
+				break;
+			
+			c.addAll(chunk);
+			total += n;
+			handoff.append(this, CollectionEvent.EventType.REMOVED, chunk);
+			handoff.flush();
+			signalNotFull();
+		}
+		return total;
+	}
+}
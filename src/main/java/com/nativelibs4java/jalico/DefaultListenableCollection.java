@@ -21,7 +21,6 @@ package com.nativelibs4java.jalico;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -49,39 +48,54 @@ public class DefaultListenableCollection<T> implements ListenableCollection<T> {
 		this.collectionSupport = collectionSupport;
 	}
 	public boolean add(T o) {
-		boolean added = collection.add(o);
-		int index = collection instanceof List<?> ? size() : -1;
-		if (added) {
-			collectionSupport.fireAdded(this,Collections.singleton(o), index, index);
-		} else {
-			collectionSupport.fireUpdated(this,Collections.singleton(o), index, index);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			boolean added = collection.add(o);
+			int index = collection instanceof List<?> ? size() - 1 : -1;
+			if (added) {
+				collectionSupport.fireElementAdded(this, o, index);
+			} else {
+				collectionSupport.fireElementUpdated(this, o, index);
+			}
+			return added;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "add", 1);
 		}
-		return added;
 	}
 	public boolean addAll(Collection<? extends T> c) {
-		if (!collectionSupport.hasListeners())
-			return collection.addAll(c);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			if (!collectionSupport.hasListeners())
+				return collection.addAll(c);
 		
-		int max = c.size();
-		Collection<T> addedElements = new ArrayList<T>(max), updatedElements = new ArrayList<T>(max);
-		for (T t : c) {
-			(collection.add(t) ? addedElements : updatedElements).add(t);
-		}
-		int firstIndex = collection instanceof List<?> ? size() : -1, 
-				lastIndex = firstIndex < 0 ? -1 : firstIndex + addedElements.size() - 1; 
-		collectionSupport.fireAdded(this, addedElements, firstIndex, lastIndex);
-		collectionSupport.fireUpdated(this, updatedElements, firstIndex, lastIndex);
+			int max = c.size();
+			Collection<T> addedElements = new ArrayList<T>(max), updatedElements = new ArrayList<T>(max);
+			for (T t : c) {
+				(collection.add(t) ? addedElements : updatedElements).add(t);
+			}
+			int firstIndex = collection instanceof List<?> ? size() - addedElements.size() : -1, 
+					lastIndex = firstIndex < 0 ? -1 : firstIndex + addedElements.size() - 1; 
+			collectionSupport.fireAdded(this, addedElements, firstIndex, lastIndex);
+			collectionSupport.fireUpdated(this, updatedElements);
 
-		return !addedElements.isEmpty();
+			return !addedElements.isEmpty();
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "addAll", c.size());
+		}
 	}
 	public void clear() {
-		if (!collectionSupport.hasListeners()) {
+		Object mutation = FlightRecording.startMutation();
+		try {
+			if (!collectionSupport.hasListeners()) {
+				collection.clear();
+				return;
+			}
+			Collection<T> copy = new ArrayList<T>(collection);
 			collection.clear();
-			return;
+			collectionSupport.fireRemoved(this, copy);
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "clear", 0);
 		}
-		Collection<T> copy = new ArrayList<T>(collection);
-		collection.clear();
-		collectionSupport.fireRemoved(this, copy);
 	}
 	public boolean contains(Object o) {
 		return collection.contains(o);
@@ -121,7 +135,7 @@ public class DefaultListenableCollection<T> implements ListenableCollection<T> {
 		}
 		public void remove() {
 			iterator.remove();
-			collectionSupport.fireRemoved(listenableCollection,Collections.singleton(lastValue));
+			collectionSupport.fireElementRemoved(listenableCollection, lastValue);
 		}
 	};
 	
@@ -130,41 +144,56 @@ public class DefaultListenableCollection<T> implements ListenableCollection<T> {
 	}
 	@SuppressWarnings("unchecked")
 	public boolean remove(Object o) {
-		boolean removed = collection.remove(o);
-		if (removed) {
-			collectionSupport.fireRemoved(this,Collections.singleton((T)o));
+		Object mutation = FlightRecording.startMutation();
+		try {
+			boolean removed = collection.remove(o);
+			if (removed) {
+				collectionSupport.fireElementRemoved(this, (T)o);
+			}
+			return removed;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "remove", 1);
 		}
-		return removed;
 	}
 	@SuppressWarnings("unchecked")
 	public boolean removeAll(Collection<?> c) {
-		if (!collectionSupport.hasListeners())
-			return collection.removeAll(c);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			if (!collectionSupport.hasListeners())
+				return collection.removeAll(c);
 		
-		Collection<T> removedElements = new ArrayList<T>(c.size());
-		for (Object t : c) {
-			boolean removed = collection.remove(t);
-			if (removed) 
-				removedElements.add((T)t);
-		}
-		collectionSupport.fireRemoved(this, removedElements);
+			Collection<T> removedElements = new ArrayList<T>(c.size());
+			for (Object t : c) {
+				boolean removed = collection.remove(t);
+				if (removed) 
+					removedElements.add((T)t);
+			}
+			collectionSupport.fireRemoved(this, removedElements);
 		
-		return !removedElements.isEmpty();
+			return !removedElements.isEmpty();
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "removeAll", c.size());
+		}
 	}
 	public boolean retainAll(Collection<?> c) {
-		if (!collectionSupport.hasListeners())
-			return collection.retainAll(c);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			if (!collectionSupport.hasListeners())
+				return collection.retainAll(c);
 		
-		Collection<T> removedElements = new ArrayList<T>(c.size());
-		for (Iterator<T> it = iterator(); it.hasNext();) {
-			T e = it.next();
-			if (!c.contains(e)) {
-				it.remove();
-				removedElements.add(e);
+			Collection<T> removedElements = new ArrayList<T>(c.size());
+			for (Iterator<T> it = iterator(); it.hasNext();) {
+				T e = it.next();
+				if (!c.contains(e)) {
+					it.remove();
+					removedElements.add(e);
+				}
 			}
+			collectionSupport.fireRemoved(this, removedElements);
+			return !removedElements.isEmpty();
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "retainAll", c.size());
 		}
-		collectionSupport.fireRemoved(this, removedElements);
-		return !removedElements.isEmpty();
 	}
 	public int size() {
 		return collection.size();
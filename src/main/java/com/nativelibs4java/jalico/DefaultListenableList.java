@@ -21,7 +21,6 @@ package com.nativelibs4java.jalico;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -46,19 +45,29 @@ public class DefaultListenableList<T> extends DefaultListenableCollection<T> imp
 		return true;
 	}
 	public void add(int index, T element) {
-		list.add(index, element);
-		collectionSupport.fireAdded(this,Collections.singleton(element), index, index);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			list.add(index, element);
+			collectionSupport.fireElementAdded(this, element, index);
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "add", 1);
+		}
 	}
 	public boolean addAll(int index, Collection<? extends T> c) {
-		int initSize = list.size();
-		if (!list.addAll(index, c)) {
-			if (list.size() != initSize)
-				throw new UnsupportedOperationException("Does not support listeners-enabled proxying of addAll(int, Collection) methods that are not atomical.");
+		Object mutation = FlightRecording.startMutation();
+		try {
+			int initSize = list.size();
+			if (!list.addAll(index, c)) {
+				if (list.size() != initSize)
+					throw new UnsupportedOperationException("Does not support listeners-enabled proxying of addAll(int, Collection) methods that are not atomical.");
 			
-			return false;
+				return false;
+			}
+			collectionSupport.fireAdded(this, new ArrayList<T>(c), index, index + c.size() - 1);
+			return true;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "addAll", c.size());
 		}
-		collectionSupport.fireAdded(this, new ArrayList<T>(c), initSize, initSize + c.size() - 1);
-		return true;
 	}
 	public T get(int index) {
 		return list.get(index);
@@ -77,9 +86,14 @@ public class DefaultListenableList<T> extends DefaultListenableCollection<T> imp
 		return list.lastIndexOf(o);
 	}
 	public T set(int index, T element) {
-		T value = list.set(index, element);
-		collectionSupport.fireUpdated(this, Collections.singleton(element), index, index);
-		return value;
+		Object mutation = FlightRecording.startMutation();
+		try {
+			T value = list.set(index, element);
+			collectionSupport.fireElementUpdated(this, element, index);
+			return value;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "set", 1);
+		}
 	}
 	
 	/**
@@ -97,20 +111,30 @@ public class DefaultListenableList<T> extends DefaultListenableCollection<T> imp
 	}
 	
 	public T remove(int index) {
-		T removed = list.remove(index);
-		if (removed != null) {
-			collectionSupport.fireRemoved(this,Collections.singleton(removed), index, index);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			T removed = list.remove(index);
+			if (removed != null) {
+				collectionSupport.fireElementRemoved(this, removed, index);
+			}
+			return removed;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "remove", 1);
 		}
-		return removed;
 	}
 	public boolean remove(Object o) {
 		int i = indexOf(o);
 		return i >= 0 && remove(i) != null;
 	}
 	public void clear() {
-		Collection<T> copy = new ArrayList<T>(this);
-		collection.clear();
-		collectionSupport.fireRemoved(this, copy, 0, copy.size() - 1);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			Collection<T> copy = new ArrayList<T>(this);
+			collection.clear();
+			collectionSupport.fireRemoved(this, copy, 0, copy.size() - 1);
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "clear", 0);
+		}
 	}
 	
 }
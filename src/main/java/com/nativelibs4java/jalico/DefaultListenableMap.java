@@ -43,9 +43,14 @@ public class DefaultListenableMap<K,V> implements ListenableMap<K,V> {
 	}
 	
 	public void clear() {
-		Collection<Map.Entry<K,V>> copy = new ArrayList<Map.Entry<K,V>>(map.entrySet());
-		map.clear();
-		propagateRemoved(copy);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			Collection<Map.Entry<K,V>> copy = new ArrayList<Map.Entry<K,V>>(map.entrySet());
+			map.clear();
+			propagateRemoved(copy);
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "clear", 0);
+		}
 	}
 	@Override
 	public boolean equals(Object obj) {
@@ -63,38 +68,66 @@ public class DefaultListenableMap<K,V> implements ListenableMap<K,V> {
 	}
 	
 	public V put(K key, V value) {
-		V v = map.put(key,value);
-		if (v !=null) {
-			propagateUpdated(key, v, value);
-		} else {
-			propagateAdded(key, value);
+		Object mutation = FlightRecording.startMutation();
+		try {
+			V v = map.put(key,value);
+			if (v !=null) {
+				propagateUpdated(key, v, value);
+			} else {
+				propagateAdded(key, value);
+			}
+			return v;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "put", 1);
 		}
-		return v;
 	} 
 	public void putAll(Map<? extends K, ? extends V> t) {
-		for (Map.Entry<? extends K, ? extends V> e : t.entrySet()) {
-			put(e.getKey(),e.getValue());
+		Object mutation = FlightRecording.startMutation();
+		try {
+			for (Map.Entry<? extends K, ? extends V> e : t.entrySet()) {
+				put(e.getKey(),e.getValue());
+			}
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "putAll", t.size());
 		}
 	}
 	@SuppressWarnings("unchecked")
 	public V remove(Object key) {
-		V v = map.remove(key);
-		if (v !=null) {
-			propagateRemoved(Collections.singletonMap((K)key, (V)v).entrySet());
+		Object mutation = FlightRecording.startMutation();
+		try {
+			V v = map.remove(key);
+			if (v !=null) {
+				propagateRemoved((K)key, v);
+			}
+			return v;
+		} finally {
+			FlightRecording.finishMutation(mutation, this, "remove", 1);
 		}
-		return v;
 	}
 	
 	void propagateAdded(K key, V value) {
 		if (keySet != null)
-			keySet.collectionSupport.fireAdded(keySet, Collections.singleton(key));
+			keySet.collectionSupport.fireElementAdded(keySet, key);
 		
-		if (entrySet != null) {
-			entrySet.collectionSupport.fireAdded(entrySet, Collections.singleton((Map.Entry<K,V>)new UnmodifiableEntry<K,V>(key, value)));
+		// Only allocate an entry if someone is listening to it
+		if (entrySet != null && entrySet.collectionSupport.hasListeners()) {
+			entrySet.collectionSupport.fireElementAdded(entrySet, new UnmodifiableEntry<K,V>(key, value));
+		}
+			
+		if (values != null) {
+			valuesSupport.fireElementAdded(values, value);
+		}
+	}
+	void propagateRemoved(K key, V value) {
+		if (keySet != null)
+			keySet.collectionSupport.fireElementRemoved(keySet, key);
+		
+		if (entrySet != null && entrySet.collectionSupport.hasListeners()) {
+			entrySet.collectionSupport.fireElementRemoved(entrySet, new UnmodifiableEntry<K,V>(key, value));
 		}
 			
 		if (values != null) {
-			valuesSupport.fireAdded(values, Collections.singleton(value));
+			valuesSupport.fireElementRemoved(values, value);
 		}
 	}
 	void propagateRemoved(Collection<Map.Entry<K, V>> entries) {
@@ -112,40 +145,46 @@ public class DefaultListenableMap<K,V> implements ListenableMap<K,V> {
 	
 	void propagateUpdated(K key, V oldValue, V newValue) {
 		if (keySet != null)
-			keySet.collectionSupport.fireUpdated(keySet, Collections.singleton(key));
+			keySet.collectionSupport.fireElementUpdated(keySet, key);
 		
 		boolean different = !oldValue.equals(newValue);
 		
-		if (entrySet != null) {
-			Collection<Map.Entry<K, V>> newEntries = Collections.singleton((Map.Entry<K, V>)new UnmodifiableEntry<K,V>(key, newValue));
+		if (entrySet != null && entrySet.collectionSupport.hasListeners()) {
+			Map.Entry<K, V> newEntry = new UnmodifiableEntry<K,V>(key, newValue);
 			if (different) {
-				Collection<Map.Entry<K, V>> oldEntries = Collections.singleton((Map.Entry<K, V>)new UnmodifiableEntry<K,V>(key, oldValue));
-				entrySet.collectionSupport.fireRemoved(entrySet, oldEntries);
-				entrySet.collectionSupport.fireAdded(entrySet, newEntries);
+				entrySet.collectionSupport.fireElementRemoved(entrySet, new UnmodifiableEntry<K,V>(key, oldValue));
+				entrySet.collectionSupport.fireElementAdded(entrySet, newEntry);
 			} else {
-				entrySet.collectionSupport.fireUpdated(entrySet, newEntries);
+				entrySet.collectionSupport.fireElementUpdated(entrySet, newEntry);
 			}
 		}
 			
 		if (values != null) {
 			if (different) {
-				valuesSupport.fireRemoved(values, Collections.singleton(oldValue));
-				valuesSupport.fireAdded(values, Collections.singleton(newValue));
+				valuesSupport.fireElementRemoved(values, oldValue);
+				valuesSupport.fireElementAdded(values, newValue);
 			} else {
-				valuesSupport.fireUpdated(values, Collections.singleton(newValue));
+				valuesSupport.fireElementUpdated(values, newValue);
 			}
 		}
 	}
 	
+	/**
+	 * Create the support of a view of this map.
+	 */
+	<X> ListenableSupport<X> createSupport() {
+		return new ListenableSupport<X>();
+	}
+	
 	public ListenableSet<K> keySet() {
 		if (keySet == null) {
-			keySet = new DefaultListenableSet<K>(map.keySet()) {
+			keySet = new DefaultListenableSet<K>(map.keySet(), this.<K>createSupport()) {
 				@SuppressWarnings("unchecked")
 				@Override
 				public boolean remove(Object o) {
 					V value = map.remove(o);
 					if (value != null) {
-						propagateRemoved(Collections.singletonMap((K)o, value).entrySet());
+						propagateRemoved((K)o, value);
 						return true;
 					}
 					return false;
@@ -197,7 +236,7 @@ public class DefaultListenableMap<K,V> implements ListenableMap<K,V> {
 							// cannot use map.remove(lastValue), as the iterator would throw a concurrent modification exception :-(
 							V assoc = get(lastValue);
 							iterator.remove();
-							propagateRemoved(Collections.singletonMap(lastValue, assoc).entrySet());
+							propagateRemoved(lastValue, assoc);
 						}
 					};
 				}
@@ -216,14 +255,14 @@ public class DefaultListenableMap<K,V> implements ListenableMap<K,V> {
 	
 	public ListenableSet<Map.Entry<K,V>> entrySet() {
 		if (entrySet == null) {
-			entrySet = new DefaultListenableSet<Map.Entry<K, V>>(map.entrySet()) {
+			entrySet = new DefaultListenableSet<Map.Entry<K, V>>(map.entrySet(), this.<Map.Entry<K, V>>createSupport()) {
 				@SuppressWarnings("unchecked")
 				@Override
 				public boolean remove(Object o) {
 					Map.Entry<K, V> entry = (Map.Entry<K, V>)o;
 					V value = map.remove(entry.getKey());
 					if (value != null) {
-						propagateRemoved(Collections.singleton(entry));
+						propagateRemoved(entry.getKey(), value);
 						return true;
 					}
 					return false;
@@ -285,7 +324,7 @@ public class DefaultListenableMap<K,V> implements ListenableMap<K,V> {
 	
 	public ListenableCollection<V> values() {
 		if (values == null) {
-			valuesSupport = new ListenableSupport<V>();
+			valuesSupport = createSupport();
 			values = ListenableCollections.unmodifiableCollection(new DefaultListenableCollection<V>(map.values(), valuesSupport));
  		}
  		
@@ -0,0 +1,160 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.Queue;
+
+/**
+ * Default implementation of the ListenableQueue interface, which wraps an existing queue.<br>
+ * When the wrapped queue is thread-safe (e.g. a java.util.concurrent.ConcurrentLinkedQueue), so is this queue, and no lock is added :
+ * events are handed off to listeners in the order of the modifications through a lock-free log, by whichever modifying thread gets to deliver them.<br>
+ * Consecutive additions (or removals) are delivered as a single event, of at most maxBatchSize elements.<br>
+ * Events do not carry indices.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the queue
+ */
+public class DefaultListenableQueue<T> extends AbstractQueue<T> implements ListenableQueue<T> {
+	/// Default maximum number of elements of an event
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+	
+	protected final Queue<T> queue;
+	protected final ListenableSupport<T> collectionSupport;
+	final EventHandoff<T> handoff;
+	
+	public DefaultListenableQueue(Queue<T> queue) {
+		this(queue, DEFAULT_MAX_BATCH_SIZE);
+	}
+	
+	public DefaultListenableQueue(Queue<T> queue, int maxBatchSize) {
+		this.queue = queue;
+		this.collectionSupport = new ListenableSupport<T>();
+		this.handoff = new EventHandoff<T>(collectionSupport, maxBatchSize);
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	/**
+	 * The addition is logged before the element is offered, so that its removal can never be notified before it.
+	 */
+	public boolean offer(T e) {
+		if (!collectionSupport.hasListeners())
+			return queue.offer(e);
+		
+		EventHandoff.Record<T> record = handoff.reserve(this, CollectionEvent.EventType.ADDED, e);
+		boolean added = false;
+		try {
+			added = queue.offer(e);
+		} finally {
+			settle(record, added);
+		}
+		return added;
+	}
+	
+	void settle(EventHandoff.Record<T> record, boolean added) {
+		if (added)
+			handoff.commit(record);
+		else
+			handoff.cancel(record);
+		handoff.flush();
+	}
+	
+	void removed(T e) {
+		if (e != null && collectionSupport.hasListeners()) {
+			handoff.append(this, CollectionEvent.EventType.REMOVED, e);
+			handoff.flush();
+		}
+	}
+	
+	public T poll() {
+		T e = queue.poll();
+		removed(e);
+		return e;
+	}
+	
+	public T peek() {
+		return queue.peek();
+	}
+	
+	@Override
+	public int size() {
+		return queue.size();
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return queue.contains(o);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public boolean remove(Object o) {
+		if (!queue.remove(o))
+			return false;
+		
+		removed((T)o);
+		return true;
+	}
+	
+	@Override
+	public Object[] toArray() {
+		return queue.toArray();
+	}
+	
+	@Override
+	public <U> U[] toArray(U[] a) {
+		return queue.toArray(a);
+	}
+	
+	@Override
+	public String toString() {
+		return queue.toString();
+	}
+	
+	@Override
+	public Iterator<T> iterator() {
+		final Iterator<T> iterator = queue.iterator();
+		return new Iterator<T>() {
+			T last;
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			public T next() {
+				return last = iterator.next();
+			}
+			public void remove() {
+				iterator.remove();
+				removed(last);
+			}
+		};
+	}
+}
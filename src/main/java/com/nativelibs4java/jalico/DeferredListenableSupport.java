@@ -0,0 +1,120 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Collection;
+
+/**
+ * ListenableSupport that records the events fired while the lock of its collection is held, and delivers them to the listeners of a target support once deliver() is called (after the lock is released).<br>
+ * Events are delivered in the order they were recorded, by one thread at a time.
+ * Listener registration, batches, event journals and metrics are those of the target support.
+ * @author Olivier Chafik
+ */
+class DeferredListenableSupport<T> extends ListenableSupport<T> {
+	private final ListenableSupport<T> target;
+	/// Events are not batched, so that listeners receive the same events as if they were fired directly
+	private final EventHandoff<T> handoff;
+	
+	public DeferredListenableSupport(ListenableSupport<T> target) {
+		this.target = target;
+		this.handoff = new EventHandoff<T>(target, 1);
+	}
+	
+	/**
+	 * Wrap a support in a deferred one, unless it is already deferred.
+	 */
+	static <T> DeferredListenableSupport<T> deferred(ListenableSupport<T> support) {
+		return support instanceof DeferredListenableSupport ? (DeferredListenableSupport<T>)support : new DeferredListenableSupport<T>(support);
+	}
+	
+	/**
+	 * Deliver the recorded events, which must be called without holding the lock of the collection.
+	 */
+	void deliver() {
+		handoff.flush();
+	}
+	
+	@Override
+	public void fireEvent(ListenableCollection<T> source, Collection<T> elements, CollectionEvent.EventType type, int firstIndex, int lastIndex) {
+		if (target.hasListeners())
+			handoff.append(source, type, elements, firstIndex, lastIndex);
+	}
+	
+	@Override
+	public void fireElementEvent(ListenableCollection<T> source, T element, CollectionEvent.EventType type, int index) {
+		if (target.hasListeners())
+			handoff.append(source, type, element, index);
+	}
+	
+	@Override
+	public void addCollectionListener(CollectionListener<T> l) {
+		target.addCollectionListener(l);
+	}
+	
+	@Override
+	public long addCollectionListener(CollectionListener<T> l, long fromSequence) {
+		return target.addCollectionListener(l, fromSequence);
+	}
+	
+	@Override
+	public void removeCollectionListener(CollectionListener<T> l) {
+		target.removeCollectionListener(l);
+	}
+	
+	@Override
+	public boolean hasListeners() {
+		return target.hasListeners();
+	}
+	
+	@Override
+	public void setEventJournal(EventJournal<T> journal) {
+		target.setEventJournal(journal);
+	}
+	
+	@Override
+	public EventJournal<T> getEventJournal() {
+		return target.getEventJournal();
+	}
+	
+	@Override
+	public long getNextSequence() {
+		return target.getNextSequence();
+	}
+	
+	@Override
+	public void setMetricsEnabled(boolean enabled) {
+		target.setMetricsEnabled(enabled);
+	}
+	
+	@Override
+	public DispatchMetrics getMetrics() {
+		return target.getMetrics();
+	}
+	
+	@Override
+	public void beginBatch() {
+		target.beginBatch();
+	}
+	
+	@Override
+	public void endBatch() {
+		target.endBatch();
+	}
+}
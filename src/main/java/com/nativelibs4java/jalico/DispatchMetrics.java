@@ -0,0 +1,240 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of the events dispatched by a ListenableSupport : events fired per type, elements per event, and calls and durations per listener.<br>
+ * Metrics are opt-in (see ListenableSupport.setMetricsEnabled(boolean)) : while they are disabled, dispatch does not even read the clock.
+ * Counters are LongAdder instances, so that collections modified from many threads do not contend on them.
+ * @author Olivier Chafik
+ */
+public final class DispatchMetrics implements DispatchMetricsMXBean {
+	
+	/**
+	 * Calls and durations of the calls of a listener.
+	 */
+	public static final class ListenerMetrics {
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final Histogram nanos = new Histogram();
+		
+		void record(long nanos) {
+			calls.increment();
+			totalNanos.add(nanos);
+			this.nanos.record(nanos);
+		}
+		public long getCallCount() {
+			return calls.sum();
+		}
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+		public long getMaxNanos() {
+			return nanos.getMax();
+		}
+		/**
+		 * Distribution of the durations of the calls, in nanoseconds.
+		 */
+		public Histogram getNanos() {
+			return nanos;
+		}
+		void reset() {
+			calls.reset();
+			totalNanos.reset();
+			nanos.reset();
+		}
+		@Override
+		public String toString() {
+			return "calls = " + getCallCount() + ", total = " + getTotalNanos() + " ns, max = " + getMaxNanos() + " ns";
+		}
+	}
+	
+	private final LongAdder[] eventCounts = new LongAdder[CollectionEvent.EventType.values().length];
+	private final Histogram elementsPerEvent = new Histogram();
+	private final ConcurrentMap<CollectionListener<?>, ListenerMetrics> listenerMetrics = new ConcurrentHashMap<CollectionListener<?>, ListenerMetrics>();
+	private volatile ObjectName objectName;
+	/// Support which listeners are measured
+	private final ListenableSupport<?> support;
+	
+	DispatchMetrics(ListenableSupport<?> support) {
+		this.support = support;
+		for (int i = 0; i < eventCounts.length; i++)
+			eventCounts[i] = new LongAdder();
+	}
+	
+	/**
+	 * @return number of events of the specified type dispatched to the listeners (a single-element event counts as one event, whether or not a CollectionEvent was created)
+	 */
+	public long getEventCount(CollectionEvent.EventType type) {
+		return eventCounts[type.ordinal()].sum();
+	}
+	
+	public Histogram getElementsPerEvent() {
+		return elementsPerEvent;
+	}
+	
+	/**
+	 * @return metrics of the listener, or null if it was never called since metrics were enabled
+	 */
+	public ListenerMetrics getListenerMetrics(CollectionListener<?> listener) {
+		return listenerMetrics.get(listener);
+	}
+	
+	/**
+	 * @return unmodifiable live map of the metrics of the listeners called since metrics were enabled (removed listeners are forgotten)
+	 */
+	public Map<CollectionListener<?>, ListenerMetrics> getListenerMetrics() {
+		return Collections.unmodifiableMap(listenerMetrics);
+	}
+	
+	private ListenerMetrics metrics(CollectionListener<?> listener) {
+		ListenerMetrics metrics = listenerMetrics.get(listener);
+		if (metrics == null) {
+			ListenerMetrics created = new ListenerMetrics();
+			metrics = listenerMetrics.putIfAbsent(listener, created);
+			if (metrics == null) {
+				metrics = created;
+				// A dispatch that started before the listener was removed must not resurrect its forgotten metrics.
+				// removeCollectionListener unregisters the listener before forgetting it, so one of them sees the other.
+				if (!support.isListening(listener))
+					listenerMetrics.remove(listener, created);
+			}
+		}
+		return metrics;
+	}
+	
+	void forget(CollectionListener<?> listener) {
+		listenerMetrics.remove(listener);
+	}
+	
+	void eventDispatched(CollectionEvent.EventType type, int elementCount) {
+		eventCounts[type.ordinal()].increment();
+		elementsPerEvent.record(elementCount);
+	}
+	
+	void listenerCalled(CollectionListener<?> listener, long nanos) {
+		metrics(listener).record(nanos);
+	}
+	
+	public long getAddedEventCount() {
+		return getEventCount(CollectionEvent.EventType.ADDED);
+	}
+	public long getRemovedEventCount() {
+		return getEventCount(CollectionEvent.EventType.REMOVED);
+	}
+	public long getUpdatedEventCount() {
+		return getEventCount(CollectionEvent.EventType.UPDATED);
+	}
+	public double getMeanElementsPerEvent() {
+		return elementsPerEvent.getMean();
+	}
+	public long getMaxElementsPerEvent() {
+		return elementsPerEvent.getMax();
+	}
+	
+	private static final int CALL_COUNT = 0, TOTAL_NANOS = 1, MAX_NANOS = 2, P99_NANOS = 3;
+	
+	private Map<String, Long> listenerValues(int value) {
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		for (Map.Entry<CollectionListener<?>, ListenerMetrics> e : listenerMetrics.entrySet()) {
+			ListenerMetrics metrics = e.getValue();
+			long v;
+			switch (value) {
+			case CALL_COUNT:
+				v = metrics.getCallCount();
+				break;
+			case TOTAL_NANOS:
+				v = metrics.getTotalNanos();
+				break;
+			case MAX_NANOS:
+				v = metrics.getMaxNanos();
+				break;
+			default:
+				v = metrics.getNanos().getValueAtPercentile(99);
+				break;
+			}
+			// Different listeners may have the same string representation
+			String key = String.valueOf(e.getKey());
+			Long previous = values.put(key, v);
+			if (previous != null)
+				values.put(key, value == MAX_NANOS || value == P99_NANOS ? Math.max(previous, v) : previous + v);
+		}
+		return values;
+	}
+	public Map<String, Long> getListenerCallCounts() {
+		return listenerValues(CALL_COUNT);
+	}
+	public Map<String, Long> getListenerTotalNanos() {
+		return listenerValues(TOTAL_NANOS);
+	}
+	public Map<String, Long> getListenerMaxNanos() {
+		return listenerValues(MAX_NANOS);
+	}
+	public Map<String, Long> getListenerP99Nanos() {
+		return listenerValues(P99_NANOS);
+	}
+	
+	public void reset() {
+		for (LongAdder count : eventCounts)
+			count.reset();
+		elementsPerEvent.reset();
+		for (ListenerMetrics metrics : listenerMetrics.values())
+			metrics.reset();
+	}
+	
+	/**
+	 * Register these metrics in the platform MBean server, under the name com.nativelibs4java.jalico:type=DispatchMetrics,name=&lt;name&gt;.
+	 * @return name of the registered MBean
+	 */
+	public synchronized ObjectName registerMBean(String name) throws JMException {
+		unregisterMBean();
+		ObjectName objectName = new ObjectName("com.nativelibs4java.jalico:type=DispatchMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.objectName = objectName;
+		return objectName;
+	}
+	
+	/**
+	 * Unregister these metrics from the platform MBean server, if they were registered.
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		ObjectName objectName = this.objectName;
+		if (objectName == null)
+			return;
+		
+		this.objectName = null;
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+	
+	@Override
+	public String toString() {
+		return "added = " + getAddedEventCount() + ", removed = " + getRemovedEventCount() + ", updated = " + getUpdatedEventCount() + ", elements per event : " + elementsPerEvent;
+	}
+}
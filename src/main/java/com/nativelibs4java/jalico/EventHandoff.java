@@ -0,0 +1,166 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lock-free handoff of events from concurrent modifications to the listeners of a ListenableSupport, in the order the modifications were made.<br>
+ * Modifying threads append records to a log : a record that must be notified before the modification is even known to succeed (e.g. an addition to a bounded queue) is reserved first, then committed or cancelled.
+ * Records are delivered by whichever thread wins the right to flush the log, which stops at the first reserved record until it is settled : reservations must therefore never be held across blocking waits.<br>
+ * Consecutive single-element records of the same type and source without indices are delivered as a single event, while other records are delivered as events of their own.
+ * @author Olivier Chafik
+ */
+final class EventHandoff<T> {
+	private static final int PENDING = 0, COMMITTED = 1, CANCELLED = 2;
+	
+	static final class Record<T> {
+		final ListenableCollection<T> source;
+		final CollectionEvent.EventType type;
+		final T element;
+		final Collection<T> elements;
+		final int firstIndex, lastIndex;
+		volatile int state;
+		
+		Record(ListenableCollection<T> source, CollectionEvent.EventType type, T element, Collection<T> elements, int firstIndex, int lastIndex, int state) {
+			this.source = source;
+			this.type = type;
+			this.element = element;
+			this.elements = elements;
+			this.firstIndex = firstIndex;
+			this.lastIndex = lastIndex;
+			this.state = state;
+		}
+		
+		boolean isBatchable() {
+			return elements == null && firstIndex < 0;
+		}
+	}
+	
+	private final ListenableSupport<T> support;
+	private final int maxBatchSize;
+	private final ConcurrentLinkedQueue<Record<T>> log = new ConcurrentLinkedQueue<Record<T>>();
+	private final AtomicBoolean flushing = new AtomicBoolean();
+	
+	/**
+	 * @param support support which listeners receive the events
+	 * @param maxBatchSize maximum number of single-element records delivered as a single event
+	 */
+	EventHandoff(ListenableSupport<T> support, int maxBatchSize) {
+		this.support = support;
+		this.maxBatchSize = maxBatchSize;
+	}
+	
+	/**
+	 * Append a record that will only be delivered once committed (or skipped once cancelled).
+	 */
+	Record<T> reserve(ListenableCollection<T> source, CollectionEvent.EventType type, T element) {
+		Record<T> record = new Record<T>(source, type, element, null, -1, -1, PENDING);
+		log.add(record);
+		return record;
+	}
+	
+	void commit(Record<T> record) {
+		record.state = COMMITTED;
+	}
+	
+	void cancel(Record<T> record) {
+		record.state = CANCELLED;
+	}
+	
+	void append(ListenableCollection<T> source, CollectionEvent.EventType type, T element) {
+		append(source, type, element, -1);
+	}
+	
+	void append(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+		log.add(new Record<T>(source, type, element, null, index, index, COMMITTED));
+	}
+	
+	void append(ListenableCollection<T> source, CollectionEvent.EventType type, Collection<T> elements) {
+		append(source, type, elements, -1, -1);
+	}
+	
+	/**
+	 * Append a record delivered as an event of its own (the elements must not change until it is delivered).
+	 */
+	void append(ListenableCollection<T> source, CollectionEvent.EventType type, Collection<T> elements, int firstIndex, int lastIndex) {
+		log.add(new Record<T>(source, type, null, elements, firstIndex, lastIndex, COMMITTED));
+	}
+	
+	private boolean isDeliverable() {
+		Record<T> head = log.peek();
+		return head != null && head.state != PENDING;
+	}
+	
+	/**
+	 * Deliver the settled records at the head of the log, unless another thread is already doing so.<br>
+	 * Must be called after each append, commit or cancellation.
+	 */
+	void flush() {
+		while (isDeliverable() && flushing.compareAndSet(false, true)) {
+			try {
+				deliver();
+			} finally {
+				flushing.set(false);
+			}
+			// Records settled while we were delivering are delivered by the next iteration, as their thread might have failed to flush
+		}
+	}
+	
+	private void deliver() {
+		List<T> batch = null;
+		Record<T> first = null;
+		Record<T> record;
+		while ((record = log.peek()) != null && record.state != PENDING) {
+			log.poll();
+			if (record.state == CANCELLED)
+				continue;
+			
+			if (first != null && (!record.isBatchable() || record.source != first.source || record.type != first.type || batch.size() >= maxBatchSize)) {
+				fire(first, batch);
+				first = null;
+			}
+			if (record.elements != null) {
+				support.fireEvent(record.source, record.elements, record.type, record.firstIndex, record.lastIndex);
+			} else if (!record.isBatchable()) {
+				support.fireElementEvent(record.source, record.element, record.type, record.firstIndex);
+			} else if (first == null) {
+				first = record;
+				batch = new ArrayList<T>();
+				batch.add(record.element);
+			} else {
+				batch.add(record.element);
+			}
+		}
+		if (first != null)
+			fire(first, batch);
+	}
+	
+	private void fire(Record<T> first, List<T> batch) {
+		if (batch.size() == 1)
+			support.fireElementEvent(first.source, first.element, first.type, -1);
+		else
+			support.fireEvent(first.source, batch, first.type, -1, -1);
+	}
+}
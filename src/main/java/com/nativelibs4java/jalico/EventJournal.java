@@ -0,0 +1,51 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+/**
+ * Bounded record of the events fired by a ListenableSupport, identified by their sequence numbers.<br>
+ * A journal is fed by a single ListenableSupport (see ListenableSupport.setEventJournal), which calls its methods while holding its own lock.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the journaled events
+ * @see MemoryEventJournal
+ * @see FileEventJournal
+ */
+public interface EventJournal<T> {
+	/**
+	 * Record an event, which sequence number is the journal's next sequence number.<br>
+	 * The elements of the event may be a view or a reused buffer : they must be copied if they are retained.
+	 */
+	public void append(CollectionEvent<T> event);
+	
+	/**
+	 * @return sequence number of the oldest event still held by the journal (equal to the next sequence number if the journal is empty)
+	 */
+	public long getFirstSequence();
+	
+	/**
+	 * @return sequence number of the next event to be appended
+	 */
+	public long getNextSequence();
+	
+	/**
+	 * Notify a listener of the held events with a sequence number greater than or equal to fromSequence, in order.
+	 */
+	public void replay(long fromSequence, CollectionListener<T> listener);
+}
@@ -0,0 +1,266 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * EventJournal that appends events to segment files of a directory, so that consumers can catch up after a restart of the process.<br>
+ * Elements are written as fixed-size records by a Codec. Each event record ends with a checksum, which lets the journal discard a torn tail when it is reopened.<br>
+ * When the current segment exceeds a maximum size a new segment is started, and the oldest segments are deleted to keep at most a given number of them.<br>
+ * Replayed events have the source given to the constructor, as sources are not written to disk.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the journaled events
+ */
+public class FileEventJournal<T> implements EventJournal<T>, Closeable {
+	private static final String SEGMENT_SUFFIX = ".events";
+	/// count, sequence, type, first index, last index
+	private static final int RECORD_HEADER_SIZE = 4 + 8 + 1 + 4 + 4;
+	private static final CollectionEvent.EventType[] EVENT_TYPES = CollectionEvent.EventType.values();
+	
+	private final ListenableCollection<T> source;
+	private final File directory;
+	private final Codec<T> codec;
+	private final long maxSegmentBytes;
+	private final int maxSegments;
+	
+	/// First sequence numbers of the segments, in order
+	private final List<Long> segments = new ArrayList<Long>();
+	private FileChannel channel;
+	private long firstSequence, nextSequence;
+	
+	private ByteBuffer buffer = ByteBuffer.allocate(256);
+	/// Length of the last record read by readEvent
+	private int lastRecordLength;
+	private final CRC32 crc = new CRC32();
+	
+	/**
+	 * Open the journal of a directory, created if needed.
+	 * @param source source of the replayed events
+	 * @param directory directory of the segment files
+	 * @param codec converts elements to and from records
+	 * @param maxSegmentBytes size beyond which a new segment is started
+	 * @param maxSegments maximum number of segments kept
+	 */
+	public FileEventJournal(ListenableCollection<T> source, File directory, Codec<T> codec, long maxSegmentBytes, int maxSegments) throws IOException {
+		if (maxSegments < 1)
+			throw new IllegalArgumentException("Invalid maximum number of segments : " + maxSegments);
+		
+		this.source = source;
+		this.directory = directory;
+		this.codec = codec;
+		this.maxSegmentBytes = maxSegmentBytes;
+		this.maxSegments = maxSegments;
+		
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Failed to create directory " + directory);
+		
+		String[] names = directory.list();
+		if (names != null) {
+			for (String name : names) {
+				if (!name.endsWith(SEGMENT_SUFFIX))
+					continue;
+				try {
+					segments.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+				} catch (NumberFormatException ex) {
+					// Not a segment
+				}
+			}
+		}
+		Collections.sort(segments);
+		
+		if (segments.isEmpty())
+			return;
+		
+		firstSequence = segments.get(0);
+		// Find the end of the last segment, which may have been torn by a crash
+		long last = segments.get(segments.size() - 1);
+		nextSequence = last;
+		long end = 0;
+		DataInputStream in = open(last);
+		try {
+			for (;;) {
+				CollectionEvent<T> event = readEvent(in, false);
+				if (event == null)
+					break;
+				nextSequence = event.getSequence() + 1;
+				end += lastRecordLength;
+			}
+		} finally {
+			in.close();
+		}
+		channel = FileChannel.open(segmentFile(last).toPath(), StandardOpenOption.WRITE);
+		channel.truncate(end);
+		channel.position(end);
+	}
+	
+	private File segmentFile(long firstSequence) {
+		return new File(directory, String.format("%019d", firstSequence) + SEGMENT_SUFFIX);
+	}
+	
+	private DataInputStream open(long segment) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile(segment))));
+	}
+	
+	/**
+	 * Read the next event of a segment.
+	 * @param decode whether to decode the elements of the event (the event holds no elements otherwise)
+	 * @return the event, or null at the end of the segment or on a torn or corrupted record
+	 */
+	private CollectionEvent<T> readEvent(DataInputStream in, boolean decode) throws IOException {
+		int recordSize = codec.getRecordSize();
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		try {
+			in.readFully(header.array());
+			int count = header.getInt(0);
+			if (count < 0 || (long)count * recordSize > Integer.MAX_VALUE - RECORD_HEADER_SIZE - 4)
+				return null;
+			
+			byte[] data = new byte[count * recordSize];
+			in.readFully(data);
+			int checksum = in.readInt();
+			
+			crc.reset();
+			crc.update(header.array(), 0, RECORD_HEADER_SIZE);
+			crc.update(data, 0, data.length);
+			int typeIndex = header.get(12);
+			if (checksum != (int)crc.getValue() || typeIndex < 0 || typeIndex >= EVENT_TYPES.length)
+				return null;
+			
+			lastRecordLength = RECORD_HEADER_SIZE + data.length + 4;
+			List<T> elements = null;
+			if (decode) {
+				ByteBuffer records = ByteBuffer.wrap(data);
+				elements = new ArrayList<T>(count);
+				for (int i = 0; i < count; i++)
+					elements.add(codec.decode(records, i * recordSize));
+			}
+			return new CollectionEvent<T>(source, elements, EVENT_TYPES[typeIndex], header.getInt(13), header.getInt(17), header.getLong(4));
+		} catch (EOFException ex) {
+			return null;
+		}
+	}
+	
+	public synchronized void append(CollectionEvent<T> event) {
+		long sequence = event.getSequence();
+		if (sequence < nextSequence)
+			throw new IllegalArgumentException("Expected event " + nextSequence + " or later, got event " + sequence);
+		
+		Collection<T> elements = event.getElements();
+		int recordSize = codec.getRecordSize();
+		int size = RECORD_HEADER_SIZE + elements.size() * recordSize + 4;
+		if (buffer.capacity() < size)
+			buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+		
+		buffer.clear();
+		buffer.putInt(elements.size()).putLong(sequence).put((byte)event.getType().ordinal()).putInt(event.getFirstIndex()).putInt(event.getLastIndex());
+		for (T element : elements) {
+			codec.encode(element, buffer, buffer.position());
+			buffer.position(buffer.position() + recordSize);
+		}
+		crc.reset();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int)crc.getValue());
+		buffer.flip();
+		try {
+			if (channel == null || channel.position() >= maxSegmentBytes)
+				startSegment(sequence);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		nextSequence = sequence + 1;
+	}
+	
+	private void startSegment(long sequence) throws IOException {
+		if (channel != null)
+			channel.close();
+		
+		channel = FileChannel.open(segmentFile(sequence).toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		segments.add(sequence);
+		while (segments.size() > maxSegments) {
+			File oldest = segmentFile(segments.remove(0));
+			if (!oldest.delete())
+				throw new IOException("Failed to delete " + oldest);
+		}
+		firstSequence = segments.get(0);
+	}
+	
+	public synchronized long getFirstSequence() {
+		return firstSequence;
+	}
+	
+	public synchronized long getNextSequence() {
+		return nextSequence;
+	}
+	
+	public synchronized void replay(long fromSequence, CollectionListener<T> listener) {
+		try {
+			for (int i = 0; i < segments.size(); i++) {
+				// Skip the segments that end before fromSequence
+				if (i + 1 < segments.size() && segments.get(i + 1) <= fromSequence)
+					continue;
+				
+				DataInputStream in = open(segments.get(i));
+				try {
+					CollectionEvent<T> event;
+					while ((event = readEvent(in, true)) != null)
+						if (event.getSequence() >= fromSequence)
+							listener.collectionChanged(event);
+				} finally {
+					in.close();
+				}
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	/**
+	 * Force the appended events to disk.
+	 */
+	public synchronized void flush() throws IOException {
+		if (channel != null)
+			channel.force(false);
+	}
+	
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+}
@@ -19,111 +19,338 @@
 */
 package com.nativelibs4java.jalico;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-class FilteredListenableCollection<T> implements ListenableCollection<T> {
-	protected final ListenableCollection<T> listenableCollection;
-	protected Collection<CollectionListener<T>> listeners;
-
-	public FilteredListenableCollection(ListenableCollection<T> listenableCollection) {
-		this.listenableCollection = listenableCollection;
+/**
+ * Live view of the elements of a listenable collection that are accepted by a filter.<br>
+ * The view tracks how many times each accepted element occurs in the source, so that each event of the source is handled in O(changed elements), and notifies its own listeners of the changes of its contents only.<br>
+ * Changing the filter with setFilter(Filter) re-evaluates the source (in parallel chunks for large sources) and only notifies the resulting delta.<br>
+ * The view listens to its source until it is closed (see close()), which must be done once it is no longer needed : the source otherwise keeps it alive and updated. Elements added through the view must be accepted by the filter. 
+ * This class is not thread-safe : modifications of the source must not happen concurrently with those of the view or with setFilter.
+ * @see FilteredListenableList for list sources, which views keep indices
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the collection
+ */
+public class FilteredListenableCollection<T> extends AbstractCollection<T> implements ListenableCollection<T>, AutoCloseable {
+	/// Number of elements above which filters are evaluated in parallel chunks
+	static final int PARALLEL_THRESHOLD = 8192;
+	static final int CHUNK_SIZE = 2048;
+	
+	protected final ListenableCollection<T> source;
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	/// Listener that keeps the view up to date with its source
+	private final CollectionListener<T> sourceListener;
+	private Filter<? super T> filter;
+	/// Number of occurrences in the source of each accepted element
+	private Map<T, int[]> counts;
+	private int size;
+	
+	public FilteredListenableCollection(ListenableCollection<T> source, Filter<? super T> filter) {
+		if (filter == null)
+			throw new NullPointerException("Null filter");
 		
-	}
-
-	public void addCollectionListener(CollectionListener<T> l) {
-		if (listeners == null) {
-			listeners = new ArrayList<CollectionListener<T>>();
-			listenableCollection.addCollectionListener(new CollectionListener<T>() {
-				public void collectionChanged(CollectionEvent<T> e) {
-					if (listeners != null && !listeners.isEmpty()) {
-						Collection<T> filteredElements = e.getElements();
-						CollectionEvent<T> filteredEvent = new CollectionEvent<T>(FilteredListenableCollection.this, filteredElements, e.getType(), e.getFirstIndex(), e.getLastIndex());
-						for (CollectionListener<T> listener : listeners) {
-							listener.collectionChanged(filteredEvent);
-						}
-					}
-				}
-			});
-		}
+		this.source = source;
+		this.filter = filter;
+		List<T> values = new ArrayList<T>(source);
+		this.counts = count(values, evaluate(filter, values));
+		for (int[] count : counts.values())
+			size += count[0];
 		
-		listeners.add(l);
+		sourceListener = new SingleElementListener<T>() {
+			public void collectionChanged(CollectionEvent<T> e) {
+				sourceChanged(e.getType(), e.getElements());
+			}
+			public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+				sourceElementChanged(type, element);
+			}
+		};
+		source.addCollectionListener(sourceListener);
 	}
-
-	public void removeCollectionListener(CollectionListener<T> l) {
-		if (listeners == null)
-			return;
-		
-		listeners.remove(l);
-	}
-
-	public boolean add(T o) {
-		return listenableCollection.add(o);
+	
+	public Filter<? super T> getFilter() {
+		return filter;
 	}
-
-	public boolean addAll(Collection<? extends T> c) {
-		return listenableCollection.addAll(c);
+	
+	/**
+	 * Stop listening to the source : the view is no longer updated (nor kept alive) by it, and its listeners receive no more events.<br>
+	 * Subsequent calls have no effect.
+	 */
+	public void close() {
+		source.removeCollectionListener(sourceListener);
 	}
 	
-	public void clear() {
-		listenableCollection.clear();		
+	/**
+	 * Change the filter of this view : the source is re-evaluated (in parallel chunks if it is large, in which case the filter must be thread-safe) and listeners are notified of the removed and added elements only.
+	 */
+	public void setFilter(Filter<? super T> filter) {
+		if (filter == null)
+			throw new NullPointerException("Null filter");
+		
+		this.filter = filter;
+		List<T> values = new ArrayList<T>(source);
+		Map<T, int[]> oldCounts = counts, newCounts = count(values, evaluate(filter, values));
+		
+		counts = newCounts;
+		size = 0;
+		for (int[] count : newCounts.values())
+			size += count[0];
+		
+		if (!collectionSupport.hasListeners())
+			return;
+		
+		List<T> removed = new ArrayList<T>(), added = new ArrayList<T>();
+		difference(oldCounts, newCounts, removed);
+		difference(newCounts, oldCounts, added);
+		collectionSupport.fireRemoved(this, removed);
+		collectionSupport.fireAdded(this, added);
 	}
-
-	public boolean contains(Object o) {
-		return listenableCollection.contains(o);
+	
+	/// Add to out the occurrences of elements that are more frequent in a than in b
+	private static <T> void difference(Map<T, int[]> a, Map<T, int[]> b, List<T> out) {
+		for (Map.Entry<T, int[]> e : a.entrySet()) {
+			int[] other = b.get(e.getKey());
+			for (int i = e.getValue()[0] - (other == null ? 0 : other[0]); i > 0; i--)
+				out.add(e.getKey());
+		}
 	}
-
-	public boolean containsAll(Collection<?> c) {
-		return listenableCollection.containsAll(c);
+	
+	private static <T> Map<T, int[]> count(List<T> values, boolean[] accepted) {
+		Map<T, int[]> counts = new HashMap<T, int[]>();
+		for (int i = 0, n = values.size(); i < n; i++) {
+			if (!accepted[i])
+				continue;
+			
+			T value = values.get(i);
+			int[] count = counts.get(value);
+			if (count == null)
+				counts.put(value, new int[] { 1 });
+			else
+				count[0]++;
+		}
+		return counts;
 	}
-
-	public boolean isEmpty() {
-		return listenableCollection.isEmpty();
+	
+	/**
+	 * Evaluate a filter on values, in parallel chunks of the common ForkJoinPool if there are more than PARALLEL_THRESHOLD values.
+	 * @param values random-access list of values that is not modified during the evaluation
+	 */
+	static <T> boolean[] evaluate(Filter<? super T> filter, List<T> values) {
+		boolean[] accepted = new boolean[values.size()];
+		if (accepted.length < PARALLEL_THRESHOLD) {
+			for (int i = 0; i < accepted.length; i++)
+				accepted[i] = filter.accept(values.get(i));
+		} else {
+			ForkJoinPool.commonPool().invoke(new Evaluation<T>(filter, values, accepted, 0, accepted.length));
+		}
+		return accepted;
 	}
-	static class FilteredIterator<T> implements Iterator<T> {
-		Iterator<T> iterator;
+	
+	@SuppressWarnings("serial")
+	private static final class Evaluation<T> extends RecursiveAction {
+		private final Filter<? super T> filter;
+		private final List<T> values;
+		private final boolean[] accepted;
+		private final int from, to;
 		
-		public FilteredIterator(Iterator<T> iterator) {
-			this.iterator = iterator;
+		Evaluation(Filter<? super T> filter, List<T> values, boolean[] accepted, int from, int to) {
+			this.filter = filter;
+			this.values = values;
+			this.accepted = accepted;
+			this.from = from;
+			this.to = to;
 		}
-		public boolean hasNext() {
-			return iterator.hasNext();
+		
+		@Override
+		protected void compute() {
+			if (to - from <= CHUNK_SIZE) {
+				for (int i = from; i < to; i++)
+					accepted[i] = filter.accept(values.get(i));
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Evaluation<T>(filter, values, accepted, from, middle), new Evaluation<T>(filter, values, accepted, middle, to));
+			}
 		}
-		public T next() {
-			return iterator.next();
+	}
+	
+	private boolean increment(T element) {
+		if (!filter.accept(element))
+			return false;
+		
+		int[] count = counts.get(element);
+		if (count == null)
+			counts.put(element, new int[] { 1 });
+		else
+			count[0]++;
+		size++;
+		return true;
+	}
+	
+	private boolean decrement(Object element) {
+		int[] count = counts.get(element);
+		if (count == null)
+			return false;
+		
+		if (--count[0] == 0)
+			counts.remove(element);
+		size--;
+		return true;
+	}
+	
+	void sourceElementChanged(CollectionEvent.EventType type, T element) {
+		switch (type) {
+		case ADDED:
+			if (increment(element))
+				collectionSupport.fireElementAdded(this, element);
+			break;
+		case REMOVED:
+			if (decrement(element))
+				collectionSupport.fireElementRemoved(this, element);
+			break;
+		case UPDATED:
+			boolean was = counts.containsKey(element), is = filter.accept(element);
+			if (was && is) {
+				collectionSupport.fireElementUpdated(this, element);
+			} else if (was) {
+				decrement(element);
+				collectionSupport.fireElementRemoved(this, element);
+			} else if (is) {
+				increment(element);
+				collectionSupport.fireElementAdded(this, element);
+			}
+			break;
 		}
-		public void remove() {
-			iterator.remove();
+	}
+	
+	void sourceChanged(CollectionEvent.EventType type, Collection<T> elements) {
+		List<T> removed = new ArrayList<T>(), added = new ArrayList<T>(), updated = new ArrayList<T>();
+		for (T element : elements) {
+			switch (type) {
+			case ADDED:
+				if (increment(element))
+					added.add(element);
+				break;
+			case REMOVED:
+				if (decrement(element))
+					removed.add(element);
+				break;
+			case UPDATED:
+				boolean was = counts.containsKey(element), is = filter.accept(element);
+				if (was && is) {
+					updated.add(element);
+				} else if (was) {
+					decrement(element);
+					removed.add(element);
+				} else if (is) {
+					increment(element);
+					added.add(element);
+				}
+				break;
+			}
 		}
+		collectionSupport.fireRemoved(this, removed);
+		collectionSupport.fireAdded(this, added);
+		collectionSupport.fireUpdated(this, updated);
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
 	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return counts.containsKey(o);
+	}
+	
+	/**
+	 * Iterates over the accepted elements in the order of the source. Does not support remove() : use the remove methods of the view instead.
+	 */
+	@Override
 	public Iterator<T> iterator() {
-		return new FilteredIterator<T>(listenableCollection.iterator());
+		final Iterator<T> iterator = source.iterator();
+		return new Iterator<T>() {
+			T next;
+			boolean hasNext;
+			
+			public boolean hasNext() {
+				while (!hasNext && iterator.hasNext()) {
+					next = iterator.next();
+					hasNext = counts.containsKey(next);
+				}
+				return hasNext;
+			}
+			public T next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				
+				hasNext = false;
+				return next;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException("Cannot remove elements of a filtered view through its iterator");
+			}
+		};
 	}
-
+	
+	/**
+	 * Add an element to the source.
+	 * @throws IllegalArgumentException if the element is not accepted by the filter
+	 */
+	@Override
+	public boolean add(T o) {
+		if (!filter.accept(o))
+			throw new IllegalArgumentException("Element rejected by the filter of the view : " + o);
+		
+		return source.add(o);
+	}
+	
+	@Override
 	public boolean remove(Object o) {
-		return listenableCollection.remove(o);
+		return contains(o) && source.remove(o);
 	}
-
+	
+	@Override
+	public void clear() {
+		removeMatching(null, false);
+	}
+	
+	@Override
 	public boolean removeAll(Collection<?> c) {
-		return listenableCollection.removeAll(c);
+		return removeMatching(c, true);
 	}
-
+	
+	@Override
 	public boolean retainAll(Collection<?> c) {
-		return listenableCollection.retainAll(c);
-	}
-
-	public int size() {
-		return listenableCollection.size();
-	}
-
-	public Object[] toArray() {
-		return listenableCollection.toArray();
+		return removeMatching(c, false);
 	}
-
-	@SuppressWarnings("hiding")
-	public <T> T[] toArray(T[] a) {
-		return listenableCollection.toArray(a);
+	
+	/// Remove the accepted elements of the source that are (or are not, if !inCollection) in c, or all of them if c is null
+	private boolean removeMatching(Collection<?> c, boolean inCollection) {
+		boolean changed = false;
+		for (Iterator<T> it = source.iterator(); it.hasNext();) {
+			T element = it.next();
+			if (counts.containsKey(element) && (c == null || c.contains(element) == inCollection)) {
+				it.remove();
+				changed = true;
+			}
+		}
+		return changed;
 	}
-		
 }
@@ -0,0 +1,409 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Live view of the elements of a listenable list that are accepted by a filter, which events carry the indices of the changes in the view.<br>
+ * The view keeps the accepted elements along with their (increasing) indices in the source : an event of the source costs a filter evaluation per changed element, a binary search, and shifting the indices that follow the change (as the source list itself shifts its elements).<br>
+ * Events of the source that do not carry indices (removeAll, retainAll, iterator removals...) make the view re-evaluate the source.<br>
+ * Changing the filter with setFilter(Filter) re-evaluates the source (in parallel chunks for large sources) and only notifies the resulting delta, as ranges of removed and added elements.<br>
+ * The view listens to its source until it is closed (see close()), which must be done once it is no longer needed : the source otherwise keeps it alive and updated. Elements added or set through the view must be accepted by the filter. 
+ * This class is not thread-safe : modifications of the source must not happen concurrently with those of the view or with setFilter.
+ * @see FilteredListenableCollection
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the list
+ */
+public class FilteredListenableList<T> extends AbstractList<T> implements ListenableList<T>, RandomAccess, AutoCloseable {
+	protected final ListenableList<T> source;
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	/// Listener that keeps the view up to date with its source
+	private final CollectionListener<T> sourceListener;
+	private Filter<? super T> filter;
+	/// Indices in the source of the elements of the view, in increasing order
+	private int[] positions;
+	/// Elements of the view
+	private ArrayList<T> elements;
+	
+	public FilteredListenableList(ListenableList<T> source, Filter<? super T> filter) {
+		if (filter == null)
+			throw new NullPointerException("Null filter");
+		
+		this.source = source;
+		this.filter = filter;
+		this.positions = new int[10];
+		this.elements = new ArrayList<T>();
+		reevaluate(false, false);
+		
+		sourceListener = new SingleElementListener<T>() {
+			public void collectionChanged(CollectionEvent<T> e) {
+				if (e.getFirstIndex() < 0)
+					reevaluate(false, e.getType() == CollectionEvent.EventType.REMOVED);
+				else
+					sourceChanged(e.getType(), e.getElements(), e.getFirstIndex());
+			}
+			public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+				if (index < 0)
+					reevaluate(false, type == CollectionEvent.EventType.REMOVED);
+				else
+					sourceChanged(type, Collections.singletonList(element), index);
+			}
+		};
+		source.addCollectionListener(sourceListener);
+	}
+	
+	public Filter<? super T> getFilter() {
+		return filter;
+	}
+	
+	/**
+	 * Stop listening to the source : the view is no longer updated (nor kept alive) by it, and its listeners receive no more events.<br>
+	 * Subsequent calls have no effect.
+	 */
+	public void close() {
+		source.removeCollectionListener(sourceListener);
+	}
+	
+	/**
+	 * Change the filter of this view : the source is re-evaluated (in parallel chunks if it is large, in which case the filter must be thread-safe) and listeners are notified of the ranges of removed and added elements only.
+	 */
+	public void setFilter(Filter<? super T> filter) {
+		if (filter == null)
+			throw new NullPointerException("Null filter");
+		
+		this.filter = filter;
+		reevaluate(true, false);
+	}
+	
+	/**
+	 * Rebuild the view from its source, and notify listeners of the differences with the previous contents of the view.
+	 * @param sourceUnchanged if true, differences are computed by indices in the source. Otherwise, they are computed by comparing elements in order
+	 * @param removals if true (and !sourceUnchanged), mismatching elements are considered as removed rather than added
+	 */
+	private void reevaluate(boolean sourceUnchanged, boolean removals) {
+		List<T> values = new ArrayList<T>(source);
+		boolean[] accepted = FilteredListenableCollection.evaluate(filter, values);
+		int[] newPositions = new int[Math.max(10, accepted.length)];
+		ArrayList<T> newElements = new ArrayList<T>();
+		for (int i = 0; i < accepted.length; i++) {
+			if (accepted[i]) {
+				newPositions[newElements.size()] = i;
+				newElements.add(values.get(i));
+			}
+		}
+		List<CollectionEvent<T>> changes = null;
+		if (collectionSupport.hasListeners()) {
+			Changes diff = new Changes();
+			if (sourceUnchanged)
+				diff.compareByPositions(positions, elements, newPositions, newElements);
+			else
+				diff.compareByElements(elements, newElements, removals);
+			changes = diff.finish();
+		}
+		positions = newPositions;
+		elements = newElements;
+		modCount++;
+		
+		if (changes != null)
+			for (CollectionEvent<T> change : changes)
+				collectionSupport.fireEvent(this, change.getElements(), change.getType(), change.getFirstIndex(), change.getLastIndex());
+	}
+	
+	/**
+	 * Edit script that turns the old contents of the view into the new ones, as ranges of removed and added elements.
+	 */
+	private final class Changes {
+		private final List<CollectionEvent<T>> changes = new ArrayList<CollectionEvent<T>>();
+		private CollectionEvent.EventType type;
+		private List<T> run = new ArrayList<T>();
+		private int firstIndex, index;
+		
+		void keep() {
+			flush();
+			index++;
+		}
+		void remove(T element) {
+			if (type != CollectionEvent.EventType.REMOVED) {
+				flush();
+				type = CollectionEvent.EventType.REMOVED;
+				firstIndex = index;
+			}
+			run.add(element);
+		}
+		void add(T element) {
+			if (type != CollectionEvent.EventType.ADDED) {
+				flush();
+				type = CollectionEvent.EventType.ADDED;
+				firstIndex = index;
+			}
+			run.add(element);
+			index++;
+		}
+		private void flush() {
+			if (run.isEmpty())
+				return;
+			
+			changes.add(new CollectionEvent<T>(FilteredListenableList.this, run, type, firstIndex, firstIndex + run.size() - 1));
+			run = new ArrayList<T>();
+			type = null;
+		}
+		List<CollectionEvent<T>> finish() {
+			flush();
+			return changes;
+		}
+		
+		void compareByPositions(int[] oldPositions, List<T> oldElements, int[] newPositions, List<T> newElements) {
+			int i = 0, j = 0, oldSize = oldElements.size(), newSize = newElements.size();
+			while (i < oldSize || j < newSize) {
+				if (j == newSize || i < oldSize && oldPositions[i] < newPositions[j]) {
+					remove(oldElements.get(i++));
+				} else if (i == oldSize || newPositions[j] < oldPositions[i]) {
+					add(newElements.get(j++));
+				} else {
+					keep();
+					i++;
+					j++;
+				}
+			}
+		}
+		
+		void compareByElements(List<T> oldElements, List<T> newElements, boolean removals) {
+			int i = 0, j = 0, oldSize = oldElements.size(), newSize = newElements.size();
+			while (i < oldSize && j < newSize) {
+				T oldElement = oldElements.get(i), newElement = newElements.get(j);
+				if (oldElement == null ? newElement == null : oldElement.equals(newElement)) {
+					keep();
+					i++;
+					j++;
+				} else if (removals) {
+					remove(oldElements.get(i++));
+				} else {
+					add(newElements.get(j++));
+				}
+			}
+			while (i < oldSize)
+				remove(oldElements.get(i++));
+			while (j < newSize)
+				add(newElements.get(j++));
+		}
+	}
+	
+	/// Index in the view of the first element which index in the source is greater than or equal to sourceIndex
+	private int lowerBound(int sourceIndex) {
+		int i = Arrays.binarySearch(positions, 0, elements.size(), sourceIndex);
+		return i < 0 ? -i - 1 : i;
+	}
+	
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > positions.length)
+			positions = Arrays.copyOf(positions, Math.max(minCapacity, positions.length + (positions.length >> 1) + 1));
+	}
+	
+	void sourceChanged(CollectionEvent.EventType type, Collection<T> changed, int firstIndex) {
+		switch (type) {
+		case ADDED:
+			sourceAdded(changed, firstIndex);
+			break;
+		case REMOVED:
+			sourceRemoved(firstIndex, firstIndex + changed.size());
+			break;
+		case UPDATED:
+			int sourceIndex = firstIndex;
+			for (T element : changed)
+				sourceUpdated(element, sourceIndex++);
+			break;
+		}
+	}
+	
+	private void sourceAdded(Collection<T> added, int firstIndex) {
+		int n = added.size(), size = elements.size(), index = lowerBound(firstIndex);
+		for (int i = index; i < size; i++)
+			positions[i] += n;
+		
+		List<T> accepted = null;
+		int[] acceptedPositions = null;
+		int sourceIndex = firstIndex;
+		for (T element : added) {
+			if (filter.accept(element)) {
+				if (accepted == null) {
+					accepted = new ArrayList<T>(n);
+					acceptedPositions = new int[n];
+				}
+				acceptedPositions[accepted.size()] = sourceIndex;
+				accepted.add(element);
+			}
+			sourceIndex++;
+		}
+		if (accepted == null)
+			return;
+		
+		int m = accepted.size();
+		ensureCapacity(size + m);
+		System.arraycopy(positions, index, positions, index + m, size - index);
+		System.arraycopy(acceptedPositions, 0, positions, index, m);
+		elements.addAll(index, accepted);
+		modCount++;
+		
+		if (m == 1)
+			collectionSupport.fireElementAdded(this, accepted.get(0), index);
+		else
+			collectionSupport.fireAdded(this, accepted, index, index + m - 1);
+	}
+	
+	/// Handle the removal of the elements of the source between fromIndex (inclusive) and toIndex (exclusive)
+	private void sourceRemoved(int fromIndex, int toIndex) {
+		int n = toIndex - fromIndex, size = elements.size(), from = lowerBound(fromIndex), to = lowerBound(toIndex);
+		int m = to - from;
+		T single = null;
+		List<T> removed = null;
+		if (m != 0) {
+			List<T> range = elements.subList(from, to);
+			if (m == 1)
+				single = range.get(0);
+			else
+				removed = new ArrayList<T>(range);
+			range.clear();
+			System.arraycopy(positions, to, positions, from, size - to);
+			size -= m;
+			modCount++;
+		}
+		for (int i = from; i < size; i++)
+			positions[i] -= n;
+		
+		if (m == 1)
+			collectionSupport.fireElementRemoved(this, single, from);
+		else if (m != 0)
+			collectionSupport.fireRemoved(this, removed, from, to - 1);
+	}
+	
+	private void sourceUpdated(T element, int sourceIndex) {
+		int index = lowerBound(sourceIndex);
+		boolean was = index < elements.size() && positions[index] == sourceIndex, is = filter.accept(element);
+		if (was && is) {
+			elements.set(index, element);
+			collectionSupport.fireElementUpdated(this, element, index);
+		} else if (was) {
+			T removed = elements.remove(index);
+			int size = elements.size();
+			System.arraycopy(positions, index + 1, positions, index, size - index);
+			modCount++;
+			collectionSupport.fireElementRemoved(this, removed, index);
+		} else if (is) {
+			int size = elements.size();
+			ensureCapacity(size + 1);
+			System.arraycopy(positions, index, positions, index + 1, size - index);
+			positions[index] = sourceIndex;
+			elements.add(index, element);
+			modCount++;
+			collectionSupport.fireElementAdded(this, element, index);
+		}
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	@Override
+	public int size() {
+		return elements.size();
+	}
+	
+	@Override
+	public T get(int index) {
+		return elements.get(index);
+	}
+	
+	@Override
+	public int indexOf(Object o) {
+		return elements.indexOf(o);
+	}
+	
+	@Override
+	public int lastIndexOf(Object o) {
+		return elements.lastIndexOf(o);
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return elements.contains(o);
+	}
+	
+	private void checkAccepted(T element) {
+		if (!filter.accept(element))
+			throw new IllegalArgumentException("Element rejected by the filter of the view : " + element);
+	}
+	
+	/**
+	 * Replace an element of the source.
+	 * @throws IllegalArgumentException if the element is not accepted by the filter
+	 */
+	@Override
+	public T set(int index, T element) {
+		checkAccepted(element);
+		return source.set(sourceIndex(index), element);
+	}
+	
+	/**
+	 * Insert an element in the source, before the element of the view at the specified index (or at the end of the source if index is the size of the view).
+	 * @throws IllegalArgumentException if the element is not accepted by the filter
+	 */
+	@Override
+	public void add(int index, T element) {
+		if (index < 0 || index > elements.size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+		
+		checkAccepted(element);
+		source.add(index == elements.size() ? source.size() : positions[index], element);
+	}
+	
+	@Override
+	public T remove(int index) {
+		return source.remove(sourceIndex(index));
+	}
+	
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		for (int i = toIndex; i-- > fromIndex;)
+			remove(i);
+	}
+	
+	@Override
+	public void clear() {
+		removeRange(0, elements.size());
+	}
+	
+	private int sourceIndex(int index) {
+		if (index < 0 || index >= elements.size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.size());
+		
+		return positions[index];
+	}
+}
@@ -0,0 +1,118 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+/**
+ * Entry point of the flight recorder instrumentation of listenable collections, which only links the jdk.jfr module when it is present (without it, nothing is ever recorded).<br>
+ * Tracks whether a flight recording is running, so that the hot paths of listenable collections do not even create flight recorder events otherwise (escape analysis does not reliably remove them).<br>
+ * Events are handed out as opaque tokens, which are null when the events are not recorded.
+ * @author Olivier Chafik
+ */
+final class FlightRecording {
+	/// Whether the jdk.jfr module is present
+	private static final boolean AVAILABLE = isAvailable();
+	private static volatile boolean running;
+	
+	static {
+		if (AVAILABLE)
+			FlightRecorderTracker.install();
+	}
+	
+	private FlightRecording() {}
+	
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder", false, FlightRecording.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		} catch (LinkageError ex) {
+			return false;
+		}
+	}
+	
+	static void setRunning(boolean running) {
+		FlightRecording.running = running;
+	}
+	
+	/**
+	 * @return true if a flight recording is running (which does not mean that it enables jalico's events)
+	 */
+	static boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * @return started MutationEvent, or null if no flight recording is running
+	 */
+	static Object startMutation() {
+		return running ? MutationEvent.start() : null;
+	}
+	
+	/**
+	 * Commit a mutation returned by startMutation() if it lasted longer than the threshold of the recording.
+	 */
+	static void finishMutation(Object mutation, Object collection, String operation, int elementCount) {
+		if (mutation != null)
+			MutationEvent.finish((MutationEvent)mutation, collection, operation, elementCount);
+	}
+	
+	/**
+	 * @return true if a running flight recording enables DispatchEvent
+	 */
+	static boolean isDispatchRecorded() {
+		return running && DispatchEvent.isTypeEnabled();
+	}
+	
+	/**
+	 * @return true if a running flight recording enables ListenerCallEvent
+	 */
+	static boolean isListenerCallRecorded() {
+		return running && ListenerCallEvent.isTypeEnabled();
+	}
+	
+	/**
+	 * @return started DispatchEvent (to be called only if isDispatchRecorded())
+	 */
+	static Object beginDispatch() {
+		DispatchEvent event = new DispatchEvent();
+		event.begin();
+		return event;
+	}
+	
+	static void finishDispatch(Object dispatch, ListenableCollection<?> source, CollectionEvent.EventType type, int elementCount, int listenerCount) {
+		if (dispatch != null)
+			((DispatchEvent)dispatch).finish(source, type, elementCount, listenerCount);
+	}
+	
+	/**
+	 * @return started ListenerCallEvent (to be called only if isListenerCallRecorded())
+	 */
+	static Object beginListenerCall() {
+		ListenerCallEvent event = new ListenerCallEvent();
+		event.begin();
+		return event;
+	}
+	
+	static void finishListenerCall(Object call, CollectionListener<?> listener, ListenableCollection<?> source, CollectionEvent.EventType type, int elementCount) {
+		if (call != null)
+			((ListenerCallEvent)call).finish(listener, source, type, elementCount);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Listenable collection that forwards all its calls and the events of the collection it wraps, meant to be subclassed by decorators.
+ * @author Olivier Chafik
+ */
+class ForwardingListenableCollection<T> implements ListenableCollection<T> {
+	protected final ListenableCollection<T> listenableCollection;
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	private boolean forwardingEvents;
+
+	public ForwardingListenableCollection(ListenableCollection<T> listenableCollection) {
+		this.listenableCollection = listenableCollection;
+		
+	}
+
+	public void addCollectionListener(CollectionListener<T> l) {
+		synchronized (collectionSupport) {
+			if (!forwardingEvents) {
+				forwardingEvents = true;
+				listenableCollection.addCollectionListener(new SingleElementListener<T>() {
+					public void collectionChanged(CollectionEvent<T> e) {
+						collectionSupport.fireEvent(ForwardingListenableCollection.this, e.getElements(), e.getType(), e.getFirstIndex(), e.getLastIndex());
+					}
+					public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+						collectionSupport.fireElementEvent(ForwardingListenableCollection.this, element, type, index);
+					}
+				});
+			}
+		}
+		
+		collectionSupport.addCollectionListener(l);
+	}
+
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+
+	public boolean add(T o) {
+		return listenableCollection.add(o);
+	}
+
+	public boolean addAll(Collection<? extends T> c) {
+		return listenableCollection.addAll(c);
+	}
+	
+	public void clear() {
+		listenableCollection.clear();		
+	}
+
+	public boolean contains(Object o) {
+		return listenableCollection.contains(o);
+	}
+
+	public boolean containsAll(Collection<?> c) {
+		return listenableCollection.containsAll(c);
+	}
+
+	public boolean isEmpty() {
+		return listenableCollection.isEmpty();
+	}
+	static class ForwardingIterator<T> implements Iterator<T> {
+		Iterator<T> iterator;
+		
+		public ForwardingIterator(Iterator<T> iterator) {
+			this.iterator = iterator;
+		}
+		public boolean hasNext() {
+			return iterator.hasNext();
+		}
+		public T next() {
+			return iterator.next();
+		}
+		public void remove() {
+			iterator.remove();
+		}
+	}
+	public Iterator<T> iterator() {
+		return new ForwardingIterator<T>(listenableCollection.iterator());
+	}
+
+	public boolean remove(Object o) {
+		return listenableCollection.remove(o);
+	}
+
+	public boolean removeAll(Collection<?> c) {
+		return listenableCollection.removeAll(c);
+	}
+
+	public boolean retainAll(Collection<?> c) {
+		return listenableCollection.retainAll(c);
+	}
+
+	public int size() {
+		return listenableCollection.size();
+	}
+
+	public Object[] toArray() {
+		return listenableCollection.toArray();
+	}
+
+	@SuppressWarnings("hiding")
+	public <T> T[] toArray(T[] a) {
+		return listenableCollection.toArray(a);
+	}
+		
+}
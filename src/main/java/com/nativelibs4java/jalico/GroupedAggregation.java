@@ -0,0 +1,130 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Listener of a collection that maintains the aggregates of its elements grouped by key in a listenable map (see ListenableCollections.groupBy).<br>
+ * Each source event costs one key computation and one accumulator update per changed element, and the map is only modified (and thus only fires events) for groups which aggregate changed, once per source event.<br>
+ * Groups are removed from the map when their last element leaves them.<br>
+ * Elements are expected to keep the same key and aggregated values while they are in the source : an UPDATED event of a list source replaces the element previously at its index (the listener keeps a copy of list sources for that purpose), while an UPDATED event of other sources is assumed to be about an equivalent element.
+ * @author Olivier Chafik
+ */
+class GroupedAggregation<T, K, A> implements SingleElementListener<T> {
+	private final Adapter<? super T, K> key;
+	private final Aggregator<? super T, A> aggregator;
+	private final Map<K, Group> groups = new HashMap<K, Group>();
+	/// Copy of the elements of the source if it is a list, null otherwise
+	private final ListMirror<T> sourceElements;
+	final DefaultListenableMap<K, A> aggregates = new DefaultListenableMap<K, A>(new HashMap<K, A>());
+	
+	private final class Group {
+		final Aggregator.Accumulator<? super T, A> accumulator = aggregator.newAccumulator();
+		int size;
+	}
+	
+	GroupedAggregation(ListenableCollection<T> source, Adapter<? super T, K> key, Aggregator<? super T, A> aggregator) {
+		this.key = key;
+		this.aggregator = aggregator;
+		this.sourceElements = ListMirror.of(source);
+		
+		Map<K, Group> changed = new LinkedHashMap<K, Group>();
+		for (T element : source)
+			add(element, changed);
+		publish(changed);
+		source.addCollectionListener(this);
+	}
+	
+	private void add(T element, Map<K, Group> changed) {
+		K k = key.adapt(element);
+		Group group = groups.get(k);
+		if (group == null)
+			groups.put(k, group = new Group());
+		group.accumulator.add(element);
+		group.size++;
+		changed.put(k, group);
+	}
+	
+	private void remove(T element, Map<K, Group> changed) {
+		K k = key.adapt(element);
+		Group group = groups.get(k);
+		if (group == null)
+			return;
+		
+		group.accumulator.remove(element);
+		group.size--;
+		changed.put(k, group);
+	}
+	
+	/// Update the aggregates of the changed groups, leaving untouched those which value is unchanged
+	private void publish(Map<K, Group> changed) {
+		for (Map.Entry<K, Group> e : changed.entrySet()) {
+			K k = e.getKey();
+			Group group = e.getValue();
+			if (group.size == 0) {
+				groups.remove(k);
+				if (aggregates.containsKey(k))
+					aggregates.remove(k);
+				continue;
+			}
+			A value = group.accumulator.getValue(), previous = aggregates.get(k);
+			if (previous == null ? value != null || !aggregates.containsKey(k) : !previous.equals(value))
+				aggregates.put(k, value);
+		}
+	}
+	
+	public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+		changed(type, Collections.singletonList(element), index);
+	}
+	
+	public void collectionChanged(CollectionEvent<T> e) {
+		changed(e.getType(), e.getElements(), e.getFirstIndex());
+	}
+	
+	private void changed(CollectionEvent.EventType type, Collection<T> elements, int firstIndex) {
+		Map<K, Group> changed = new LinkedHashMap<K, Group>();
+		int index = firstIndex;
+		for (T element : elements) {
+			switch (type) {
+			case ADDED:
+				add(element, changed);
+				break;
+			case REMOVED:
+				remove(element, changed);
+				break;
+			case UPDATED:
+				T previous = element;
+				if (sourceElements != null && firstIndex >= 0)
+					previous = sourceElements.set(index++, element);
+				remove(previous, changed);
+				add(element, changed);
+				break;
+			}
+		}
+		if (sourceElements != null)
+			sourceElements.changed(type, elements, firstIndex);
+		publish(changed);
+	}
+}
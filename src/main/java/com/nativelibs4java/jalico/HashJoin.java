@@ -0,0 +1,143 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incremental hash join of two listenable maps, maintained in a listenable map from the keys of the left map to pairs of matching values (see ListenableCollections.join).<br>
+ * The join listens to the entry sets of both maps and only looks up the touched keys in them : a change of the left map costs O(1) expected, and a change of the right map costs O(1) expected per left entry that refers to the changed key, thanks to a reverse index of the left keys by right key.<br>
+ * Rows of the join are only modified (and thus only fire events) when their pair of values changes, or when an input notifies an UPDATED entry (for instance when a mutable value is put again).
+ * @author Olivier Chafik
+ * @param <K> type of the keys of the left map and of the join
+ * @param <J> type of the keys of the right map
+ * @param <A> type of the values of the left map
+ * @param <B> type of the values of the right map
+ */
+class HashJoin<K, J, A, B> {
+	private final ListenableMap<K, A> left;
+	private final ListenableMap<J, B> right;
+	/// Computes the right key of a left value, or null to join on the left keys
+	private final Adapter<? super A, J> rightKey;
+	private final JoinType type;
+	/// Right key of each left entry
+	private final Map<K, J> rightKeys = new HashMap<K, J>();
+	/// Left keys that refer to each right key
+	private final Map<J, Set<K>> leftKeys = new HashMap<J, Set<K>>();
+	final DefaultListenableMap<K, Pair<A, B>> rows = new DefaultListenableMap<K, Pair<A, B>>(new HashMap<K, Pair<A, B>>());
+	
+	HashJoin(ListenableMap<K, A> left, ListenableMap<J, B> right, Adapter<? super A, J> rightKey, JoinType type) {
+		if (type == null)
+			throw new NullPointerException("Null join type");
+		
+		this.left = left;
+		this.right = right;
+		this.rightKey = rightKey;
+		this.type = type;
+		
+		for (K key : left.keySet())
+			leftChanged(key, false);
+		
+		left.entrySet().addCollectionListener(new SingleElementListener<Map.Entry<K, A>>() {
+			public void collectionChanged(CollectionEvent<Map.Entry<K, A>> e) {
+				boolean updated = e.getType() == CollectionEvent.EventType.UPDATED;
+				for (Map.Entry<K, A> entry : e.getElements())
+					leftChanged(entry.getKey(), updated);
+			}
+			public void elementChanged(ListenableCollection<Map.Entry<K, A>> source, CollectionEvent.EventType type, Map.Entry<K, A> entry, int index) {
+				leftChanged(entry.getKey(), type == CollectionEvent.EventType.UPDATED);
+			}
+		});
+		right.entrySet().addCollectionListener(new SingleElementListener<Map.Entry<J, B>>() {
+			public void collectionChanged(CollectionEvent<Map.Entry<J, B>> e) {
+				boolean updated = e.getType() == CollectionEvent.EventType.UPDATED;
+				for (Map.Entry<J, B> entry : e.getElements())
+					rightChanged(entry.getKey(), updated);
+			}
+			public void elementChanged(ListenableCollection<Map.Entry<J, B>> source, CollectionEvent.EventType type, Map.Entry<J, B> entry, int index) {
+				rightChanged(entry.getKey(), type == CollectionEvent.EventType.UPDATED);
+			}
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	private J rightKey(K key, A value) {
+		return rightKey == null ? (J)key : rightKey.adapt(value);
+	}
+	
+	/// Reconcile the row of a left key with the current contents of both maps
+	void leftChanged(K key, boolean updated) {
+		boolean present = left.containsKey(key);
+		A value = present ? left.get(key) : null;
+		J newRightKey = present ? rightKey(key, value) : null;
+		boolean wasPresent = rightKeys.containsKey(key);
+		J oldRightKey = rightKeys.get(key);
+		
+		if (wasPresent && (!present || !equal(oldRightKey, newRightKey))) {
+			Set<K> keys = leftKeys.get(oldRightKey);
+			if (keys != null && keys.remove(key) && keys.isEmpty())
+				leftKeys.remove(oldRightKey);
+		}
+		if (present && (!wasPresent || !equal(oldRightKey, newRightKey))) {
+			Set<K> keys = leftKeys.get(newRightKey);
+			if (keys == null)
+				leftKeys.put(newRightKey, keys = new HashSet<K>());
+			keys.add(key);
+		}
+		if (present)
+			rightKeys.put(key, newRightKey);
+		else
+			rightKeys.remove(key);
+		
+		updateRow(key, present, value, newRightKey, updated);
+	}
+	
+	void rightChanged(J key, boolean updated) {
+		Set<K> keys = leftKeys.get(key);
+		if (keys == null)
+			return;
+		
+		for (K leftKey : keys)
+			updateRow(leftKey, true, left.get(leftKey), key, updated);
+	}
+	
+	private void updateRow(K key, boolean present, A value, J rightKey, boolean updated) {
+		Pair<A, B> row = null;
+		if (present) {
+			if (right.containsKey(rightKey))
+				row = new Pair<A, B>(value, right.get(rightKey));
+			else if (type == JoinType.LEFT)
+				row = new Pair<A, B>(value, null);
+		}
+		if (row == null) {
+			if (rows.containsKey(key))
+				rows.remove(key);
+		} else if (updated || !row.equals(rows.get(key))) {
+			rows.put(key, row);
+		}
+	}
+	
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
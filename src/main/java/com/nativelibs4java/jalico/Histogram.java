@@ -0,0 +1,106 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight concurrent histogram of non-negative values, with one bucket per power of two.<br>
+ * Recording a value costs a couple of LongAdder increments, and percentiles are reported with a precision of a factor of two (the upper bound of the bucket they fall in).
+ * @author Olivier Chafik
+ */
+public final class Histogram {
+	/// Bucket i counts the values which highest one bit is bit i - 1 (bucket 0 counts zeros)
+	private final LongAdder[] buckets = new LongAdder[64];
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	public Histogram() {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * Record a value (negative values are recorded as zero).
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+		sum.add(value);
+		long currentMax;
+		while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {}
+	}
+	
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets)
+			count += bucket.sum();
+		return count;
+	}
+	
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : getSum() / (double)count;
+	}
+	
+	/**
+	 * @param percentile between 0 and 100
+	 * @return upper bound of the bucket of the value below which percentile percents of the recorded values fall (capped by the maximum value), or zero if no value was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[buckets.length];
+		long count = 0;
+		for (int i = 0; i < counts.length; i++)
+			count += counts[i] = buckets[i].sum();
+		if (count == 0)
+			return 0;
+		
+		long rank = Math.max(1, (long)Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return i == 0 ? 0 : Math.min(getMax(), (1L << i) - 1);
+		}
+		return getMax();
+	}
+	
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		sum.reset();
+		max.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return "count = " + getCount() + ", mean = " + getMean() + ", p50 = " + getValueAtPercentile(50) + ", p99 = " + getValueAtPercentile(99) + ", max = " + getMax();
+	}
+}
@@ -0,0 +1,31 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+/**
+ * Kinds of joins supported by ListenableCollections.join.
+ * @author Olivier Chafik
+ */
+public enum JoinType {
+	/// Only the keys of the left map that have a matching entry in the right map are in the join
+	INNER,
+	/// All the keys of the left map are in the join, paired with null when they have no matching entry in the right map
+	LEFT
+}
@@ -0,0 +1,98 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Copy of the elements of a listenable list, kept up to date from its events by the views that need to know which element an indexed UPDATED event replaced (such events only carry the new element).<br>
+ * Elements are held in a PersistentTree, so that applying an event costs O(log n) per changed element wherever it happens in the list (events without indices still need a linear search).
+ * @author Olivier Chafik
+ */
+final class ListMirror<T> {
+	private PersistentTree.Node<T> elements;
+	
+	private ListMirror(Collection<T> source) {
+		this.elements = PersistentTree.build(source.toArray(), 0, source.size());
+	}
+	
+	/**
+	 * @return a mirror of source if it is a list, null otherwise
+	 */
+	static <T> ListMirror<T> of(ListenableCollection<T> source) {
+		return source instanceof List<?> ? new ListMirror<T>(source) : null;
+	}
+	
+	/**
+	 * Apply an UPDATED event about a single element.
+	 * @return the element previously at index
+	 */
+	T set(int index, T element) {
+		T previous = PersistentTree.get(elements, index);
+		elements = PersistentTree.set(elements, index, element);
+		return previous;
+	}
+	
+	/**
+	 * Apply an ADDED or REMOVED event (UPDATED events are applied element by element with set(int, Object)).
+	 */
+	void changed(CollectionEvent.EventType type, Collection<T> changed, int firstIndex) {
+		if (type == CollectionEvent.EventType.ADDED) {
+			int index = firstIndex >= 0 ? firstIndex : PersistentTree.size(elements);
+			for (T element : changed)
+				elements = PersistentTree.insert(elements, index++, element);
+		} else if (type == CollectionEvent.EventType.REMOVED) {
+			if (firstIndex >= 0)
+				for (int i = changed.size(); i-- != 0;)
+					elements = PersistentTree.remove(elements, firstIndex);
+			else
+				for (T element : changed)
+					remove(element);
+		}
+	}
+	
+	/**
+	 * Apply an ADDED or REMOVED event about a single element.
+	 */
+	void elementChanged(CollectionEvent.EventType type, T element, int index) {
+		if (type == CollectionEvent.EventType.ADDED) {
+			elements = PersistentTree.insert(elements, index >= 0 ? index : PersistentTree.size(elements), element);
+		} else if (type == CollectionEvent.EventType.REMOVED) {
+			if (index >= 0)
+				elements = PersistentTree.remove(elements, index);
+			else
+				remove(element);
+		}
+	}
+	
+	/// Remove the first occurrence of element, as List.remove(Object) would
+	private void remove(T element) {
+		int index = 0;
+		for (Iterator<T> it = PersistentTree.iterator(elements); it.hasNext(); index++) {
+			T e = it.next();
+			if (element == null ? e == null : element.equals(e)) {
+				elements = PersistentTree.remove(elements, index);
+				return;
+			}
+		}
+	}
+}
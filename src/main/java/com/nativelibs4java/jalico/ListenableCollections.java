@@ -19,6 +19,8 @@
 */
 package com.nativelibs4java.jalico;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -26,9 +28,16 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.RandomAccess;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedTransferQueue;
 
 /**
  * Utility methods to make the most out of listenable collections.<br>
@@ -131,6 +140,220 @@ public class ListenableCollections {
 		b.addCollectionListener(listener);
 	}
 	
+	/**
+	 * Open a batch of modifications on a listenable collection : its listeners will not be notified of any change until the batch is closed, at which point they receive a minimal set of coalesced events.<br>
+	 * Supports the listenable collections, lists and sets returned by this class (except unmodifiable ones) AdaptedCollection, OffHeapListenableList and VersionedListenableList instances.
+	 * @param <T> type of the elements of the collection
+	 * @param collection collection which events are to be batched
+	 * @return batch to close once all modifications are done (typically in a try-with-resources statement)
+	 * @throws IllegalArgumentException if the collection does not support batching
+	 */
+	public static <T> Batch batch(ListenableCollection<T> collection) {
+		return new Batch(getListenableSupport(collection));
+	}
+	
+	/**
+	 * Run modifications on a listenable collection in a batch : its listeners will only be notified of the coalesced changes once the modifications are done (even if they failed).
+	 * @param <T> type of the elements of the collection
+	 * @param collection collection which events are to be batched
+	 * @param modifications code that modifies the collection
+	 * @throws IllegalArgumentException if the collection does not support batching
+	 * @see #batch(ListenableCollection)
+	 */
+	public static <T> void batch(ListenableCollection<T> collection, Runnable modifications) {
+		Batch batch = batch(collection);
+		try {
+			modifications.run();
+		} finally {
+			batch.close();
+		}
+	}
+	
+	/**
+	 * Stamp the events of a listenable collection with sequence numbers and record them in a journal, so that listeners can later be registered with journal(collection, listener, fromSequence) to catch up with the events they missed.<br>
+	 * Supports the same collections as batch(ListenableCollection).
+	 * @param <T> type of the elements of the collection
+	 * @param collection collection which events are to be journaled
+	 * @param journal journal of the events, or null to stop journaling
+	 * @throws IllegalArgumentException if the collection does not support journaling
+	 * @see ListenableSupport#setEventJournal(EventJournal)
+	 */
+	public static <T> void journal(ListenableCollection<T> collection, EventJournal<T> journal) {
+		getListenableSupport(collection).setEventJournal(journal);
+	}
+	
+	/**
+	 * Register a listener to a journaled collection, after replaying the journaled events with a sequence number greater than or equal to fromSequence.
+	 * @return sequence number of the first event the listener receives : if greater than fromSequence, the events in between are no longer in the journal
+	 * @see ListenableSupport#addCollectionListener(CollectionListener, long)
+	 */
+	public static <T> long journal(ListenableCollection<T> collection, CollectionListener<T> listener, long fromSequence) {
+		return getListenableSupport(collection).addCollectionListener(listener, fromSequence);
+	}
+	
+	/**
+	 * Start collecting metrics about the events dispatched to the listeners of a collection : events per type, elements per event, and calls and durations per listener.<br>
+	 * Supports the same collections as batch(ListenableCollection). Collections which metrics are not enabled pay no instrumentation cost.
+	 * @return live metrics of the collection, which can also be exposed through JMX with DispatchMetrics.registerMBean(String)
+	 * @throws IllegalArgumentException if the collection does not support metrics
+	 * @see ListenableSupport#setMetricsEnabled(boolean)
+	 */
+	public static <T> DispatchMetrics enableMetrics(ListenableCollection<T> collection) {
+		ListenableSupport<T> support = getListenableSupport(collection);
+		support.setMetricsEnabled(true);
+		return support.getMetrics();
+	}
+	
+	/**
+	 * Stop collecting metrics about the events dispatched to the listeners of a collection.
+	 */
+	public static <T> void disableMetrics(ListenableCollection<T> collection) {
+		getListenableSupport(collection).setMetricsEnabled(false);
+	}
+	
+	static <T> ListenableSupport<T> getListenableSupport(ListenableCollection<T> collection) {
+		if (collection instanceof DefaultListenableCollection<?>)
+			return ((DefaultListenableCollection<T>)collection).collectionSupport;
+		
+		if (collection instanceof AdaptedCollection<?, ?>)
+			return ((AdaptedCollection<?, T>)collection).getListenableSupport();
+		
+		if (collection instanceof OffHeapListenableList<?>)
+			return ((OffHeapListenableList<T>)collection).collectionSupport;
+		
+		if (collection instanceof DefaultListenableQueue<?>)
+			return ((DefaultListenableQueue<T>)collection).collectionSupport;
+		
+		if (collection instanceof VersionedListenableList<?>)
+			return ((VersionedListenableList<T>)collection).collectionSupport;
+		
+		if (collection instanceof LockedListenableCollection<?>)
+			return ((LockedListenableCollection<T>)collection).collectionSupport;
+		
+		throw new IllegalArgumentException("Cannot access the events of instances of " + collection.getClass().getName());
+	}
+	
+	/**
+	 * Wrap a listener so that it receives events asynchronously, from a mailbox of AsynchronousCollectionListener.DEFAULT_CAPACITY events that blocks firing threads when full, drained by AsynchronousCollectionListener.getDefaultExecutor().<br>
+	 * The returned listener is the one to register to (and unregister from) listenable collections.
+	 * @see AsynchronousCollectionListener
+	 */
+	public static <T> AsynchronousCollectionListener<T> asynchronousListener(CollectionListener<T> listener) {
+		return new AsynchronousCollectionListener<T>(listener);
+	}
+	
+	/**
+	 * Wrap a listener so that it receives events asynchronously, from a bounded mailbox drained by the provided executor.<br>
+	 * The returned listener is the one to register to (and unregister from) listenable collections.
+	 * @param listener listener to call asynchronously
+	 * @param executor executor that runs the tasks delivering events to the listener
+	 * @param capacity maximum number of pending events
+	 * @param overflowPolicy what to do when an event is received while capacity pending events have not been delivered yet
+	 * @see AsynchronousCollectionListener
+	 */
+	public static <T> AsynchronousCollectionListener<T> asynchronousListener(CollectionListener<T> listener, Executor executor, int capacity, AsynchronousCollectionListener.OverflowPolicy overflowPolicy) {
+		return new AsynchronousCollectionListener<T>(listener, executor, capacity, overflowPolicy);
+	}
+	
+	/**
+	 * Get a live view of the elements of a listenable collection that are accepted by a filter, which membership is maintained incrementally as the source changes.<br>
+	 * The view must be closed once it is no longer needed, to stop listening to the source.
+	 * @see FilteredListenableCollection
+	 */
+	public static <T> FilteredListenableCollection<T> filter(ListenableCollection<T> source, Filter<? super T> filter) {
+		return new FilteredListenableCollection<T>(source, filter);
+	}
+	
+	/**
+	 * Get a live view of the elements of a listenable list that are accepted by a filter, which events carry indices in the view.<br>
+	 * The view must be closed once it is no longer needed, to stop listening to the source.
+	 * @see FilteredListenableList
+	 */
+	public static <T> FilteredListenableList<T> filter(ListenableList<T> source, Filter<? super T> filter) {
+		return new FilteredListenableList<T>(source, filter);
+	}
+	
+	/**
+	 * Get a live view of a listenable collection sorted by the natural order of its elements, with O(log n) updates and index-accurate events.
+	 * @see SortedListenableList
+	 */
+	public static <T extends Comparable<? super T>> SortedListenableList<T> sorted(ListenableCollection<T> source) {
+		return new SortedListenableList<T>(source, Comparator.<T>naturalOrder());
+	}
+	
+	/**
+	 * Get a live view of a listenable collection sorted by a comparator, with O(log n) updates and index-accurate events.<br>
+	 * Unlike asList(ListenableCollection), the view is sorted whatever the kind of the source, and does not pay O(n) per insertion.
+	 * @see SortedListenableList
+	 */
+	public static <T> SortedListenableList<T> sorted(ListenableCollection<T> source, Comparator<? super T> comparator) {
+		return new SortedListenableList<T>(source, comparator);
+	}
+	
+	/**
+	 * Group the elements of a listenable collection by key and aggregate each group, in a read-only listenable map that is updated incrementally as the source changes.<br>
+	 * Only the entries of the groups which aggregate changed are updated (and notified to the listeners of the views of the map), and groups disappear from the map with their last element.
+	 * @param <T> type of the elements of the source
+	 * @param <K> type of the keys of the groups
+	 * @param <A> type of the aggregates
+	 * @param source collection which elements are to be grouped
+	 * @param key computes the key of the group of each element (must not change while the element is in the source)
+	 * @param aggregator aggregation of each group (see Aggregators)
+	 */
+	public static <T, K, A> ListenableMap<K, A> groupBy(ListenableCollection<T> source, Adapter<? super T, K> key, Aggregator<? super T, A> aggregator) {
+		return unmodifiableMap(new GroupedAggregation<T, K, A>(source, key, aggregator).aggregates);
+	}
+	
+	/**
+	 * Join two listenable maps on their keys, in a read-only listenable map from the keys of the left map to pairs of matching values, that is updated incrementally (in O(1) expected per change of an input) as the inputs change.
+	 * @param type INNER to only keep the keys that are in both maps, LEFT to keep all the keys of the left map (paired with null values when missing from the right map)
+	 */
+	public static <K, A, B> ListenableMap<K, Pair<A, B>> join(ListenableMap<K, A> left, ListenableMap<K, B> right, JoinType type) {
+		return unmodifiableMap(new HashJoin<K, K, A, B>(left, right, null, type).rows);
+	}
+	
+	/**
+	 * Join two listenable maps on a key derived from the values of the left map (for instance, the instrument of orders), in a read-only listenable map from the keys of the left map to pairs of matching values, that is updated incrementally as the inputs change.<br>
+	 * A change of the left map costs O(1) expected, and a change of the right map costs O(1) expected per left entry that refers to it.
+	 * @param rightKey computes the key of the right map that matches a value of the left map
+	 * @param type INNER to only keep the left entries that have a match in the right map, LEFT to keep all of them (paired with null values when they have no match)
+	 */
+	public static <K, J, A, B> ListenableMap<K, Pair<A, B>> join(ListenableMap<K, A> left, ListenableMap<J, B> right, Adapter<? super A, J> rightKey, JoinType type) {
+		if (rightKey == null)
+			throw new NullPointerException("Null right key adapter");
+		
+		return unmodifiableMap(new HashJoin<K, J, A, B>(left, right, rightKey, type).rows);
+	}
+	
+	/**
+	 * Get a Flow.Publisher of the events of a listenable collection, which subscribers receive as they request them.<br>
+	 * Up to CollectionEventPublisher.DEFAULT_BUFFER_SIZE events are buffered per subscriber, beyond which pending events are conflated.
+	 * @see CollectionEventPublisher
+	 */
+	public static <T> CollectionEventPublisher<T> publisher(ListenableCollection<T> collection) {
+		return new CollectionEventPublisher<T>(collection);
+	}
+	
+	/**
+	 * Get a Flow.Publisher of the events of a listenable collection, which subscribers receive as they request them.
+	 * @param collection collection which events are to be published
+	 * @param bufferSize maximum number of events buffered per subscriber
+	 * @param overflow what to do when an event occurs while bufferSize events are pending for a subscriber
+	 * @see CollectionEventPublisher
+	 */
+	public static <T> CollectionEventPublisher<T> publisher(ListenableCollection<T> collection, int bufferSize, CollectionEventPublisher.Overflow overflow) {
+		return new CollectionEventPublisher<T>(collection, bufferSize, overflow);
+	}
+	
+	/**
+	 * Get a Flow.Subscriber that applies the collection events it receives to a listenable collection as they arrive, requesting them batchSize at a time.<br>
+	 * Subscribing it to publisher(source) keeps target in sync with source, as bind(source, target) would in one direction, but with backpressure.
+	 * @see CollectionEventSubscriber
+	 */
+	public static <T> CollectionEventSubscriber<T> subscriber(ListenableCollection<T> target, int batchSize) {
+		return new CollectionEventSubscriber<T>(target, batchSize);
+	}
+	
 	public static final <T> ListenableSet<T> unmodifiableSet(ListenableSet<T> set) {
 		return new UnmodifiableListenableSet<T>(set);
 	}
@@ -162,7 +385,70 @@ public class ListenableCollections {
 	public static final <K,V> ListenableMap<K,V> synchronizedMap(ListenableMap<K,V> map) {
 		return new SynchronizedListenableMap<K,V>(map);
 	}
-	
+
+	/**
+	 * Creates a thread-safe wrapper of a listenable collection which read methods can proceed in parallel, as they only take the read lock of a ReentrantReadWriteLock.<br>
+	 * Unlike with synchronizedCollection(ListenableCollection), listeners of the wrapper receive events after the write lock is released.
+	 * The wrapped collection must not be modified directly.
+	 */
+	public static final <T> ListenableCollection<T> readWriteLockedCollection(ListenableCollection<T> col) {
+		return new LockedListenableCollection<T>(col, CollectionLock.readWrite());
+	}
+
+	/**
+	 * @see #readWriteLockedCollection(ListenableCollection)
+	 */
+	public static final <T> ListenableList<T> readWriteLockedList(ListenableList<T> list) {
+		return new LockedListenableList<T>(list, CollectionLock.readWrite());
+	}
+
+	/**
+	 * @see #readWriteLockedCollection(ListenableCollection)
+	 */
+	public static final <T> ListenableSet<T> readWriteLockedSet(ListenableSet<T> set) {
+		return new LockedListenableSet<T>(set, CollectionLock.readWrite());
+	}
+
+	/**
+	 * Creates a thread-safe wrapper of a listenable map which read methods can proceed in parallel, and which views share its ReentrantReadWriteLock.
+	 * @see #readWriteLockedCollection(ListenableCollection)
+	 */
+	public static final <K,V> ListenableMap<K,V> readWriteLockedMap(ListenableMap<K,V> map) {
+		return new LockedListenableMap<K,V>(map, CollectionLock.readWrite());
+	}
+
+	/**
+	 * Creates a thread-safe wrapper of a listenable collection guarded by a StampedLock.<br>
+	 * size() and isEmpty() (as well as get(int) on random access lists) are first attempted as optimistic reads, which do not write any shared state and only take the read lock if a write happened concurrently : this scales best with mostly-read workloads.
+	 * Listeners of the wrapper receive events after the write lock is released, so they may read the collection even though stamped locks are not reentrant.
+	 * The wrapped collection must not be modified directly.
+	 */
+	public static final <T> ListenableCollection<T> stampedLockedCollection(ListenableCollection<T> col) {
+		return new LockedListenableCollection<T>(col, CollectionLock.stamped());
+	}
+
+	/**
+	 * @see #stampedLockedCollection(ListenableCollection)
+	 */
+	public static final <T> ListenableList<T> stampedLockedList(ListenableList<T> list) {
+		return new LockedListenableList<T>(list, CollectionLock.stamped());
+	}
+
+	/**
+	 * @see #stampedLockedCollection(ListenableCollection)
+	 */
+	public static final <T> ListenableSet<T> stampedLockedSet(ListenableSet<T> set) {
+		return new LockedListenableSet<T>(set, CollectionLock.stamped());
+	}
+
+	/**
+	 * Creates a thread-safe wrapper of a listenable map guarded by a StampedLock shared by its views.
+	 * @see #stampedLockedCollection(ListenableCollection)
+	 */
+	public static final <K,V> ListenableMap<K,V> stampedLockedMap(ListenableMap<K,V> map) {
+		return new LockedListenableMap<K,V>(map, CollectionLock.stamped());
+	}
+
 	/**
 	 * Wraps a collection in a listenable collection.<br>
 	 * The type of the listenable collection returned will depend on that of the provided collection :
@@ -227,6 +513,69 @@ public class ListenableCollections {
 		return new DefaultListenableSet<T>(setToWrap);
 	}
 	
+	/**
+	 * Creates a thread-safe listenable list which readers can snapshot in O(1) and traverse without locking, while writers keep modifying it.
+	 * @param <T> component type
+	 * @param elements initial elements of the list
+	 * @return versioned list that holds a copy of the provided elements
+	 * @see VersionedListenableList#snapshot()
+	 */
+	public static final <T> VersionedListenableList<T> versionedList(Collection<? extends T> elements) {
+		return new VersionedListenableList<T>(elements);
+	}
+	
+	/**
+	 * Creates a thread-safe listenable map with lock-free reads, which modifications of different keys can proceed in parallel (unlike those of synchronizedMap(ListenableMap)).
+	 * @see ConcurrentListenableMap
+	 */
+	public static final <K,V> ConcurrentListenableMap<K,V> concurrentMap() {
+		return new ConcurrentListenableMap<K,V>();
+	}
+	
+	/**
+	 * Wraps a queue in a listenable queue, which is as thread-safe as the wrapped queue and adds no lock to it.
+	 * @see DefaultListenableQueue
+	 */
+	public static final <T> ListenableQueue<T> listenableQueue(Queue<T> queueToWrap) {
+		if (queueToWrap instanceof BlockingQueue<?>)
+			return listenableBlockingQueue((BlockingQueue<T>)queueToWrap);
+		if (queueToWrap instanceof ListenableQueue<?>)
+			return (ListenableQueue<T>)queueToWrap;
+		return new DefaultListenableQueue<T>(queueToWrap);
+	}
+	
+	/**
+	 * Wraps a blocking queue in a listenable blocking queue, which is as thread-safe as the wrapped queue and adds no lock to it.
+	 * @see DefaultListenableBlockingQueue
+	 */
+	public static final <T> ListenableBlockingQueue<T> listenableBlockingQueue(BlockingQueue<T> queueToWrap) {
+		if (queueToWrap instanceof ListenableBlockingQueue<?>)
+			return (ListenableBlockingQueue<T>)queueToWrap;
+		return new DefaultListenableBlockingQueue<T>(queueToWrap);
+	}
+	
+	/**
+	 * Creates an unbounded lock-free listenable queue, for multiple producers and multiple consumers (backed by a ConcurrentLinkedQueue).
+	 */
+	public static final <T> ListenableQueue<T> concurrentQueue() {
+		return new DefaultListenableQueue<T>(new ConcurrentLinkedQueue<T>());
+	}
+	
+	/**
+	 * Creates an unbounded lock-free listenable queue for multiple producers and a single consumer : elements must only be polled (or removed) by one thread at a time.<br>
+	 * Offering an element costs a single atomic exchange.
+	 */
+	public static final <T> ListenableQueue<T> mpscQueue() {
+		return new DefaultListenableQueue<T>(new MpscLinkedQueue<T>());
+	}
+	
+	/**
+	 * Creates an unbounded listenable blocking queue, for multiple producers and multiple consumers (backed by a LinkedTransferQueue, which only blocks consumers of an empty queue).
+	 */
+	public static final <T> ListenableBlockingQueue<T> concurrentBlockingQueue() {
+		return new DefaultListenableBlockingQueue<T>(new LinkedTransferQueue<T>());
+	}
+	
 	public static final <K,V> ListenableMap<K,V> listenableMap(Map<K,V> x) {
 		return new DefaultListenableMap<K,V>(x);
 	}
@@ -235,26 +584,93 @@ public class ListenableCollections {
 		return new AdaptedCollection<U, V>(col, adapter);
 	}
 	
+	/**
+	 * Adapt a collection, caching up to cacheSize adapted values so that iterating again over the result or looking elements up in it does not call the adapter again.<br>
+	 * If col is listenable, cached values are invalidated as its elements are removed or updated.
+	 * @param identityKeys if true, elements of col are compared by identity rather than by equality in the cache
+	 * @see MemoizingAdapter
+	 */
+	public static <U,V> AdaptedCollection<U, V> adapt(Collection<U> col, Adapter<U, V> adapter, int cacheSize, boolean identityKeys) {
+		return new AdaptedCollection<U, V>(col, adapter, null, cacheSize, identityKeys);
+	}
+	
 	
 	public static final class MapResult<U, V> {
 		private final ListenableList<V> values;
 		private final Threads threads;
 		private final ListenableList<Pair<U,Throwable>> errors;
+		private final CompletableFuture<Void> completion;
+		
+		/**
+		 * @deprecated use MapResult(CompletableFuture, ListenableList, ListenableList)
+		 */
+		@Deprecated
 		public MapResult(Threads threads, ListenableList<V> out, ListenableList<Pair<U,Throwable>> errorsOut) {
 			this.values = ListenableCollections.unmodifiableList(out);
 			this.threads = threads;
 			this.errors = ListenableCollections.unmodifiableList(errorsOut);
+			this.completion = new CompletableFuture<Void>();
+			if (threads.getState() == Threads.State.NoRunnables) {
+				completion.complete(null);
+			} else {
+				threads.addActionListener(new ActionListener() { public void actionPerformed(ActionEvent e) {
+					completion.complete(null);
+				}});
+			}
+		}
+		public MapResult(CompletableFuture<Void> completion, ListenableList<V> out, ListenableList<Pair<U,Throwable>> errorsOut) {
+			this.values = ListenableCollections.unmodifiableList(out);
+			this.threads = null;
+			this.errors = ListenableCollections.unmodifiableList(errorsOut);
+			this.completion = completion;
 		}
 
 		public ListenableList<V> getValues() {
 			return values;
 		}
+		/**
+		 * @deprecated use getCompletion()
+		 * @return threads of the mapping, or null if it does not run in its own threads
+		 */
+		@Deprecated
 		public Threads getThreads() {
 			return threads;
 		}
 		public ListenableList<Pair<U, Throwable>> getErrors() {
 			return errors;
 		}
+		/**
+		 * Future completed once all the values and errors of the mapping were published.<br>
+		 * Cancelling it stops the mapping of the chunks that did not start yet.
+		 */
+		public CompletableFuture<Void> getCompletion() {
+			return completion;
+		}
+	}
+	
+	/**
+	 * Create a list of transformed values from a source collection in parallel, using an adapter, in chunks of 1024 elements of the common ForkJoinPool.
+	 * @see #map(Collection, Adapter, boolean, ForkJoinPool, int)
+	 */
+	public static <U, V> MapResult<U, V> map(Collection<U> input, Adapter<? super U, ? extends V> mapper, boolean preserveOrder) {
+		return map(input, mapper, preserveOrder, ForkJoinPool.commonPool(), 1024);
+	}
+	
+	/**
+	 * Create a list of transformed values from a source collection in parallel, using an adapter.<br>
+	 * The input is split in chunks of at most chunkSize elements that are mapped by the tasks of pool. Once a chunk is mapped, its values are added to MapResult.getValues() with a single ADDED event, and the input values for which the mapper threw are added to MapResult.getErrors().<br>
+	 * map returns immediately : listeners of the result lists are called from the threads of the pool, and MapResult.getCompletion() completes once all the chunks were published.
+	 * @param input input values that are to be transformed by the adapter. It must not be modified until the mapping completes.
+	 * @param mapper converter from the input type to the output type, called concurrently
+	 * @param preserveOrder if true, values are inserted in the order of the input (a chunk may then be inserted before chunks that completed earlier), otherwise each chunk is appended as soon as it completes. Errors are always appended as chunks complete.
+	 * @param pool pool in which chunks are mapped
+	 * @param chunkSize maximal number of input values mapped by a single task
+	 * @return MapResult object
+	 */
+	public static <U, V> MapResult<U, V> map(Collection<U> input, Adapter<? super U, ? extends V> mapper, boolean preserveOrder, ForkJoinPool pool, int chunkSize) {
+		ParallelMapping<U, V> mapping = new ParallelMapping<U, V>(mapper, preserveOrder, chunkSize, input.size());
+		mapping.start(input, pool);
+		return new MapResult<U, V>(mapping.completion, mapping.values, mapping.errors);
 	}
 	
 	/**
@@ -275,7 +691,9 @@ public class ListenableCollections {
 	 * @param mapper converter from the input type to the output type
 	 * @param threadsCount 0 for no multithreading, X &gt; 0 for X threads, -X for X threads per-core 
 	 * @return MapResult object
+	 * @deprecated pulls input values one at a time under a lock in raw threads, and publishes values one by one in a nondeterministic order : use map(Collection, Adapter, boolean) instead
 	 */
+	@Deprecated
 	public static <U, V> MapResult<U, V> map(Collection<U> input, final Adapter<U, V> mapper, int threadsCount) {
 		if (threadsCount < 0)
 			threadsCount = - threadsCount * Runtime.getRuntime().availableProcessors();
@@ -297,13 +715,9 @@ public class ListenableCollections {
 				
 				try {
 					V mappedValue = mapper.adapt(value);
-					synchronized (out) {
-						out.add(mappedValue);
-					}
+					out.add(mappedValue);
 				} catch (Throwable th) {
-					synchronized (errorsOut) {
-						errorsOut.add(new Pair<U, Throwable>(value, th));
-					}
+					errorsOut.add(new Pair<U, Throwable>(value, th));
 				}
 				//Thread.yield();
 			}
@@ -0,0 +1,278 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Listenable concatenation of several collections (its components), which can be added and removed at runtime.<br>
+ * The compound collection listens to its listenable components : it keeps their sizes cached (size() and isEmpty() are O(1) when all components are listenable) and re-fires their events, with indices offset by the position of the component in the concatenation.<br>
+ * Adding or removing a component fires a single ADDED or REMOVED event with all its elements.<br>
+ * Offsets of components are cached too, and only recomputed from the first component which size changed : appending to the last component of many is O(1). 
+ * Components that are not listenable are supported, but their changes are not notified and they make size() iterate over the components.
+ * This class is not thread-safe.
+ * @see CompoundCollection
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the collection
+ */
+public class ListenableCompoundCollection<T> extends AbstractCollection<T> implements ListenableCollection<T> {
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	private final List<Component> components = new ArrayList<Component>();
+	/// Sum of the sizes of the listenable components
+	private int listenedSize;
+	private int unlistenedComponents;
+	/// Offset of each component in the concatenation : those of the first validOffsets components are up to date
+	private int[] offsets = new int[10];
+	private int validOffsets;
+	
+	private final class Component implements SingleElementListener<T> {
+		final Collection<? extends T> collection;
+		final boolean listened;
+		/// Index of the component in the components list
+		int position;
+		/// Cached size, for listenable components
+		int size;
+		
+		Component(Collection<? extends T> collection) {
+			this.collection = collection;
+			this.listened = collection instanceof ListenableCollection<?>;
+		}
+		
+		int size() {
+			return listened ? size : collection.size();
+		}
+		
+		/// Update the cached size after an event, and get the offset of the component to adjust the indices of the event
+		private int sizeChanged() {
+			int previous = size;
+			size = collection.size();
+			listenedSize += size - previous;
+			if (size != previous && validOffsets > position + 1)
+				validOffsets = position + 1;
+			return offset(position);
+		}
+		
+		public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+			int offset = sizeChanged();
+			collectionSupport.fireElementEvent(ListenableCompoundCollection.this, element, type, index < 0 ? -1 : offset + index);
+		}
+		
+		public void collectionChanged(CollectionEvent<T> e) {
+			int offset = sizeChanged();
+			int first = e.getFirstIndex();
+			collectionSupport.fireEvent(ListenableCompoundCollection.this, e.getElements(), e.getType(), first < 0 ? -1 : offset + first, first < 0 ? -1 : offset + e.getLastIndex());
+		}
+	}
+	
+	public ListenableCompoundCollection() {
+	}
+	
+	public ListenableCompoundCollection(Collection<? extends Collection<? extends T>> components) {
+		for (Collection<? extends T> component : components)
+			addComponent(component);
+	}
+	
+	/**
+	 * Offset of the component at the specified position, computed from the last valid offset.
+	 */
+	private int offset(int position) {
+		if (unlistenedComponents != 0)
+			validOffsets = 0;
+		
+		if (position >= offsets.length)
+			offsets = Arrays.copyOf(offsets, Math.max(position + 1, offsets.length * 2));
+		
+		if (validOffsets == 0) {
+			offsets[0] = 0;
+			validOffsets = 1;
+		}
+		for (int i = validOffsets; i <= position; i++)
+			offsets[i] = offsets[i - 1] + components.get(i - 1).size();
+		if (validOffsets < position + 1)
+			validOffsets = position + 1;
+		return offsets[position];
+	}
+	
+	/**
+	 * Append a component, notifying listeners of the addition of all its elements at once.
+	 */
+	public void addComponent(Collection<? extends T> collection) {
+		addComponent(components.size(), collection);
+	}
+	
+	/**
+	 * Insert a component at the specified position in the list of components, notifying listeners of the addition of all its elements at once.
+	 */
+	@SuppressWarnings("unchecked")
+	public void addComponent(int position, Collection<? extends T> collection) {
+		if (position < 0 || position > components.size())
+			throw new IndexOutOfBoundsException("Position: " + position + ", Components: " + components.size());
+		
+		Component component = new Component(collection);
+		components.add(position, component);
+		for (int i = position; i < components.size(); i++)
+			components.get(i).position = i;
+		validOffsets = Math.min(validOffsets, position + 1);
+		
+		if (component.listened) {
+			component.size = collection.size();
+			listenedSize += component.size;
+			((ListenableCollection<T>)collection).addCollectionListener(component);
+		} else {
+			unlistenedComponents++;
+		}
+		if (collectionSupport.hasListeners()) {
+			int offset = offset(position);
+			List<T> elements = new ArrayList<T>(collection);
+			collectionSupport.fireAdded(this, elements, offset, offset + elements.size() - 1);
+		}
+	}
+	
+	/**
+	 * Remove a component (compared by identity), notifying listeners of the removal of all its elements at once. The component itself is left unchanged.
+	 * @return true if the collection was a component
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean removeComponent(Collection<? extends T> collection) {
+		for (int position = 0, n = components.size(); position < n; position++) {
+			Component component = components.get(position);
+			if (component.collection != collection)
+				continue;
+			
+			int offset = collectionSupport.hasListeners() ? offset(position) : 0;
+			components.remove(position);
+			for (int i = position; i < components.size(); i++)
+				components.get(i).position = i;
+			validOffsets = Math.min(validOffsets, position + 1);
+			
+			if (component.listened) {
+				((ListenableCollection<T>)collection).removeCollectionListener(component);
+				listenedSize -= component.size;
+			} else {
+				unlistenedComponents--;
+			}
+			if (collectionSupport.hasListeners()) {
+				List<T> elements = new ArrayList<T>(collection);
+				collectionSupport.fireRemoved(this, elements, offset, offset + elements.size() - 1);
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Unmodifiable list of the components, in order.
+	 */
+	public List<Collection<? extends T>> getComponents() {
+		List<Collection<? extends T>> list = new ArrayList<Collection<? extends T>>(components.size());
+		for (Component component : components)
+			list.add(component.collection);
+		return Collections.unmodifiableList(list);
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	@Override
+	public int size() {
+		if (unlistenedComponents == 0)
+			return listenedSize;
+		
+		int size = listenedSize;
+		for (Component component : components)
+			if (!component.listened)
+				size += component.collection.size();
+		return size;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		for (Component component : components)
+			if (component.collection.contains(o))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Remove the first occurrence of an element, from the first component that contains it.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		for (Component component : components)
+			if (component.collection.remove(o))
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Clear all the components.
+	 */
+	@Override
+	public void clear() {
+		for (Component component : components)
+			component.collection.clear();
+	}
+	
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			int position = -1;
+			Iterator<? extends T> current = Collections.<T>emptyList().iterator(), last;
+			
+			public boolean hasNext() {
+				while (!current.hasNext()) {
+					if (++position >= components.size())
+						return false;
+					current = components.get(position).collection.iterator();
+				}
+				return true;
+			}
+			public T next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				last = current;
+				return current.next();
+			}
+			public void remove() {
+				if (last == null)
+					throw new IllegalStateException();
+				last.remove();
+				last = null;
+			}
+		};
+	}
+}
@@ -0,0 +1,359 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Listenable list of int values, backed by an int array.<br>
+ * Values are neither boxed in storage nor in notifications : IntListListener instances receive slices of int arrays.<br>
+ * Use asList() to pass this list to code that expects a ListenableList&lt;Integer&gt;.<br>
+ * This class is not thread-safe, except for the registration of listeners.
+ * @author Olivier Chafik
+ */
+public class ListenableIntList implements RandomAccess {
+	private static final IntListListener[] NO_LISTENERS = new IntListListener[0];
+	
+	private int[] values;
+	private int size;
+	
+	private volatile IntListListener[] listeners = NO_LISTENERS;
+	private static final int MAX_RETAINED_BUFFER_LENGTH = 1024;
+	/// Buffer that holds removed values while they are being notified
+	private int[] removedBuffer = new int[1];
+	private boolean removedBufferInUse;
+	private ListenableList<Integer> list;
+	
+	public ListenableIntList() {
+		this(10);
+	}
+	
+	public ListenableIntList(int initialCapacity) {
+		values = new int[initialCapacity];
+	}
+	
+	public ListenableIntList(int[] values) {
+		this.values = values.clone();
+		this.size = values.length;
+	}
+	
+	public synchronized void addIntListListener(IntListListener l) {
+		IntListListener[] current = listeners;
+		IntListListener[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = l;
+		listeners = updated;
+	}
+	
+	public synchronized void removeIntListListener(IntListListener l) {
+		IntListListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].equals(l)) {
+				IntListListener[] updated = new IntListListener[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				listeners = updated;
+				return;
+			}
+		}
+	}
+	
+	public boolean hasListeners() {
+		return listeners.length != 0;
+	}
+	
+	private void fire(CollectionEvent.EventType type, int[] array, int offset, int length, int firstIndex) {
+		IntListListener[] listeners = this.listeners;
+		for (int i = 0, n = listeners.length; i < n; i++)
+			listeners[i].intsChanged(this, type, array, offset, length, firstIndex);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+	
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > values.length)
+			values = Arrays.copyOf(values, Math.max(minCapacity, values.length + (values.length >> 1) + 1));
+	}
+	
+	public int get(int index) {
+		checkIndex(index);
+		return values[index];
+	}
+	
+	/**
+	 * Replace the value at the specified index, notifying listeners with an UPDATED event.
+	 * @return the value previously at the specified index
+	 */
+	public int set(int index, int value) {
+		checkIndex(index);
+		int previous = values[index];
+		values[index] = value;
+		if (listeners.length != 0)
+			fire(CollectionEvent.EventType.UPDATED, values, index, 1, index);
+		return previous;
+	}
+	
+	public void add(int value) {
+		ensureCapacity(size + 1);
+		values[size] = value;
+		int index = size++;
+		if (listeners.length != 0)
+			fire(CollectionEvent.EventType.ADDED, values, index, 1, index);
+	}
+	
+	public void add(int index, int value) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		
+		ensureCapacity(size + 1);
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = value;
+		size++;
+		if (listeners.length != 0)
+			fire(CollectionEvent.EventType.ADDED, values, index, 1, index);
+	}
+	
+	/**
+	 * Append values to the list, notifying listeners with a single ADDED event.
+	 */
+	public void addAll(int[] source, int offset, int length) {
+		if (length == 0)
+			return;
+		
+		ensureCapacity(size + length);
+		System.arraycopy(source, offset, values, size, length);
+		int index = size;
+		size += length;
+		if (listeners.length != 0)
+			fire(CollectionEvent.EventType.ADDED, values, index, length, index);
+	}
+	
+	public void addAll(int... source) {
+		addAll(source, 0, source.length);
+	}
+	
+	/**
+	 * Remove the value at the specified index, notifying listeners with a REMOVED event.
+	 * @return the removed value
+	 */
+	public int removeAt(int index) {
+		checkIndex(index);
+		int value = values[index];
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		if (listeners.length != 0) {
+			int[] removed = borrowRemovedBuffer(1);
+			removed[0] = value;
+			fireRemoved(removed, 1, index);
+		}
+		return value;
+	}
+	
+	/**
+	 * Remove the first occurrence of a value.
+	 * @return true if the value was found and removed
+	 */
+	public boolean removeValue(int value) {
+		int i = indexOf(value);
+		if (i < 0)
+			return false;
+		
+		removeAt(i);
+		return true;
+	}
+	
+	/**
+	 * Remove the values with indices between fromIndex (inclusive) and toIndex (exclusive), notifying listeners with a single REMOVED event.
+	 */
+	public void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "[, Size: " + size);
+		
+		int length = toIndex - fromIndex;
+		if (length == 0)
+			return;
+		
+		int[] removed = null;
+		if (listeners.length != 0) {
+			removed = borrowRemovedBuffer(length);
+			System.arraycopy(values, fromIndex, removed, 0, length);
+		}
+		System.arraycopy(values, toIndex, values, fromIndex, size - toIndex);
+		size -= length;
+		if (removed != null)
+			fireRemoved(removed, length, fromIndex);
+	}
+	
+	public void clear() {
+		removeRange(0, size);
+	}
+	
+	/// Get a buffer able to hold length removed values, to be released by fireRemoved
+	private int[] borrowRemovedBuffer(int length) {
+		// The buffer may already be in use if a listener modifies the list
+		if (removedBufferInUse || removedBuffer.length < length)
+			return new int[length];
+		
+		removedBufferInUse = true;
+		return removedBuffer;
+	}
+	
+	private void fireRemoved(int[] buffer, int length, int firstIndex) {
+		try {
+			fire(CollectionEvent.EventType.REMOVED, buffer, 0, length, firstIndex);
+		} finally {
+			if (buffer == removedBuffer)
+				removedBufferInUse = false;
+			else if (!removedBufferInUse && buffer.length <= MAX_RETAINED_BUFFER_LENGTH)
+				removedBuffer = buffer;
+		}
+	}
+	
+	public int indexOf(int value) {
+		for (int i = 0; i < size; i++)
+			if (values[i] == value)
+				return i;
+		return -1;
+	}
+	
+	public int lastIndexOf(int value) {
+		for (int i = size; i-- != 0;)
+			if (values[i] == value)
+				return i;
+		return -1;
+	}
+	
+	public boolean contains(int value) {
+		return indexOf(value) >= 0;
+	}
+	
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i != 0)
+				b.append(", ");
+			b.append(values[i]);
+		}
+		return b.append(']').toString();
+	}
+	
+	/**
+	 * Get a live ListenableList&lt;Integer&gt; view of this list.<br>
+	 * Values are boxed on access, and events are converted to CollectionEvent instances for the listeners of the view.
+	 */
+	public ListenableList<Integer> asList() {
+		if (list == null)
+			list = new IntListAdapter();
+		return list;
+	}
+	
+	private class IntListAdapter extends AbstractList<Integer> implements ListenableList<Integer>, RandomAccess {
+		private final ListenableSupport<Integer> collectionSupport = new ListenableSupport<Integer>();
+		private boolean forwardingEvents;
+		
+		public synchronized void addCollectionListener(CollectionListener<Integer> l) {
+			if (!forwardingEvents) {
+				forwardingEvents = true;
+				addIntListListener(new IntListListener() {
+					public void intsChanged(ListenableIntList source, CollectionEvent.EventType type, int[] values, int offset, int length, int firstIndex) {
+						if (!collectionSupport.hasListeners())
+							return;
+						
+						if (length == 1) {
+							collectionSupport.fireElementEvent(IntListAdapter.this, values[offset], type, firstIndex);
+						} else {
+							Integer[] boxed = new Integer[length];
+							for (int i = 0; i < length; i++)
+								boxed[i] = values[offset + i];
+							collectionSupport.fireEvent(IntListAdapter.this, Arrays.asList(boxed), type, firstIndex, firstIndex + length - 1);
+						}
+					}
+				});
+			}
+			collectionSupport.addCollectionListener(l);
+		}
+		
+		public void removeCollectionListener(CollectionListener<Integer> l) {
+			collectionSupport.removeCollectionListener(l);
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public Integer get(int index) {
+			return ListenableIntList.this.get(index);
+		}
+		
+		@Override
+		public Integer set(int index, Integer element) {
+			return ListenableIntList.this.set(index, element);
+		}
+		
+		@Override
+		public void add(int index, Integer element) {
+			ListenableIntList.this.add(index, element);
+		}
+		
+		@Override
+		public Integer remove(int index) {
+			return removeAt(index);
+		}
+		
+		@Override
+		protected void removeRange(int fromIndex, int toIndex) {
+			ListenableIntList.this.removeRange(fromIndex, toIndex);
+		}
+		
+		@Override
+		public int indexOf(Object o) {
+			return o instanceof Integer ? ListenableIntList.this.indexOf((Integer)o) : -1;
+		}
+		
+		@Override
+		public int lastIndexOf(Object o) {
+			return o instanceof Integer ? ListenableIntList.this.lastIndexOf((Integer)o) : -1;
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
+}
@@ -0,0 +1,632 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Listenable map from long keys to double values, backed by an open-addressing hash table (linear probing).<br>
+ * Neither keys nor values are boxed in storage or in notifications : LongDoubleMapListener instances receive slices of primitive arrays.<br>
+ * Lookups of absent keys return the map's "no entry" value (NaN by default).<br>
+ * Use asMap() to pass this map to code that expects a ListenableMap&lt;Long, Double&gt;.<br>
+ * This class is not thread-safe, except for the registration of listeners.
+ * @author Olivier Chafik
+ */
+public class ListenableLongDoubleMap {
+	private static final LongDoubleMapListener[] NO_LISTENERS = new LongDoubleMapListener[0];
+	private static final float LOAD_FACTOR = 0.75f;
+	
+	/// Hash table keys, where 0 denotes a free slot (the key 0 itself is tracked by containsZeroKey)
+	private long[] keys;
+	private double[] values;
+	private int mask;
+	private int threshold;
+	private boolean containsZeroKey;
+	private double zeroKeyValue;
+	private int size;
+	private final double noEntryValue;
+	
+	private volatile LongDoubleMapListener[] listeners = NO_LISTENERS;
+	/// Buffers that hold the affected entry while it is being notified
+	private final long[] keyBuffer = new long[1];
+	private final double[] valueBuffer = new double[1], previousValueBuffer = new double[1];
+	private boolean buffersInUse;
+	private ListenableMap<Long, Double> map;
+	
+	public ListenableLongDoubleMap() {
+		this(16, Double.NaN);
+	}
+	
+	/**
+	 * @param expectedSize number of entries the map can hold without being resized
+	 * @param noEntryValue value returned by get, put and remove when a key has no associated value
+	 */
+	public ListenableLongDoubleMap(int expectedSize, double noEntryValue) {
+		this.noEntryValue = noEntryValue;
+		int capacity = Integer.highestOneBit(Math.max(2, (int)Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Too many entries : " + expectedSize);
+		allocate(capacity);
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new double[capacity];
+		mask = capacity - 1;
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+	
+	public double getNoEntryValue() {
+		return noEntryValue;
+	}
+	
+	public synchronized void addLongDoubleMapListener(LongDoubleMapListener l) {
+		LongDoubleMapListener[] current = listeners;
+		LongDoubleMapListener[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = l;
+		listeners = updated;
+	}
+	
+	public synchronized void removeLongDoubleMapListener(LongDoubleMapListener l) {
+		LongDoubleMapListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].equals(l)) {
+				LongDoubleMapListener[] updated = new LongDoubleMapListener[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				listeners = updated;
+				return;
+			}
+		}
+	}
+	
+	public boolean hasListeners() {
+		return listeners.length != 0;
+	}
+	
+	private void fire(CollectionEvent.EventType type, long[] keys, double[] values, double[] previousValues, int offset, int length) {
+		if (length == 0)
+			return;
+		
+		LongDoubleMapListener[] listeners = this.listeners;
+		for (int i = 0, n = listeners.length; i < n; i++)
+			listeners[i].entriesChanged(this, type, keys, values, previousValues, offset, length);
+	}
+	
+	private void fireSingle(CollectionEvent.EventType type, long key, double value, double previousValue) {
+		if (listeners.length == 0)
+			return;
+		
+		// The buffers may already be in use if a listener modifies the map
+		boolean reuse = !buffersInUse;
+		long[] keys = reuse ? keyBuffer : new long[1];
+		double[] values = reuse ? valueBuffer : new double[1];
+		double[] previousValues = type != CollectionEvent.EventType.UPDATED ? null : reuse ? previousValueBuffer : new double[1];
+		keys[0] = key;
+		values[0] = value;
+		if (previousValues != null)
+			previousValues[0] = previousValue;
+		
+		buffersInUse = true;
+		try {
+			fire(type, keys, values, previousValues, 0, 1);
+		} finally {
+			if (reuse)
+				buffersInUse = false;
+		}
+	}
+	
+	static int mix(long key) {
+		return ListenableLongSet.mix(key);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/// Slot of the key, or -1 if absent (the zero key has no slot)
+	private int find(long key) {
+		long[] keys = this.keys;
+		for (int i = mix(key) & mask;; i = (i + 1) & mask) {
+			long k = keys[i];
+			if (k == 0)
+				return -1;
+			if (k == key)
+				return i;
+		}
+	}
+	
+	public boolean containsKey(long key) {
+		return key == 0 ? containsZeroKey : find(key) >= 0;
+	}
+	
+	public boolean containsValue(double value) {
+		if (containsZeroKey && Double.compare(zeroKeyValue, value) == 0)
+			return true;
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != 0 && Double.compare(values[i], value) == 0)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * @return the value associated with the key, or the "no entry" value if there is none
+	 */
+	public double get(long key) {
+		if (key == 0)
+			return containsZeroKey ? zeroKeyValue : noEntryValue;
+		
+		int i = find(key);
+		return i < 0 ? noEntryValue : values[i];
+	}
+	
+	/**
+	 * Associate a value with a key, notifying listeners with an ADDED event (or an UPDATED event if the key already had a value).
+	 * @return the value previously associated with the key, or the "no entry" value if there was none
+	 */
+	public double put(long key, double value) {
+		double previous;
+		if (key == 0) {
+			if (containsZeroKey) {
+				previous = zeroKeyValue;
+				zeroKeyValue = value;
+				fireSingle(CollectionEvent.EventType.UPDATED, key, value, previous);
+				return previous;
+			}
+			containsZeroKey = true;
+			zeroKeyValue = value;
+		} else {
+			int i = mix(key) & mask;
+			for (long k; (k = keys[i]) != 0; i = (i + 1) & mask) {
+				if (k == key) {
+					previous = values[i];
+					values[i] = value;
+					fireSingle(CollectionEvent.EventType.UPDATED, key, value, previous);
+					return previous;
+				}
+			}
+			keys[i] = key;
+			values[i] = value;
+			if (size + 1 > threshold)
+				rehash(keys.length << 1);
+		}
+		size++;
+		fireSingle(CollectionEvent.EventType.ADDED, key, value, noEntryValue);
+		return noEntryValue;
+	}
+	
+	/**
+	 * Remove the value associated with a key, notifying listeners with a REMOVED event.
+	 * @return the removed value, or the "no entry" value if there was none
+	 */
+	public double remove(long key) {
+		double previous;
+		if (key == 0) {
+			if (!containsZeroKey)
+				return noEntryValue;
+			containsZeroKey = false;
+			previous = zeroKeyValue;
+		} else {
+			int i = find(key);
+			if (i < 0)
+				return noEntryValue;
+			previous = values[i];
+			shiftKeys(i);
+		}
+		size--;
+		fireSingle(CollectionEvent.EventType.REMOVED, key, previous, noEntryValue);
+		return previous;
+	}
+	
+	/// Backward-shift deletion : move subsequent colliding entries to fill the freed slot
+	private void shiftKeys(int pos) {
+		for (;;) {
+			int last = pos;
+			long current;
+			for (pos = (pos + 1) & mask;; pos = (pos + 1) & mask) {
+				if ((current = keys[pos]) == 0) {
+					keys[last] = 0;
+					return;
+				}
+				int slot = mix(current) & mask;
+				if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos)
+					break;
+			}
+			keys[last] = current;
+			values[last] = values[pos];
+		}
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			long key = oldKeys[j];
+			if (key == 0)
+				continue;
+			int i = mix(key) & mask;
+			while (keys[i] != 0)
+				i = (i + 1) & mask;
+			keys[i] = key;
+			values[i] = oldValues[j];
+		}
+	}
+	
+	/**
+	 * Remove all entries, notifying listeners with a single REMOVED event.
+	 */
+	public void clear() {
+		if (size == 0)
+			return;
+		
+		long[] removedKeys = null;
+		double[] removedValues = null;
+		if (listeners.length != 0) {
+			removedKeys = keys();
+			removedValues = values();
+		}
+		Arrays.fill(keys, 0);
+		containsZeroKey = false;
+		int length = size;
+		size = 0;
+		if (removedKeys != null)
+			fire(CollectionEvent.EventType.REMOVED, removedKeys, removedValues, null, 0, length);
+	}
+	
+	/**
+	 * @return the keys of the map, in the same order as values()
+	 */
+	public long[] keys() {
+		long[] array = new long[size];
+		int j = 0;
+		if (containsZeroKey)
+			array[j++] = 0;
+		for (long key : keys)
+			if (key != 0)
+				array[j++] = key;
+		return array;
+	}
+	
+	/**
+	 * @return the values of the map, in the same order as keys()
+	 */
+	public double[] values() {
+		double[] array = new double[size];
+		int j = 0;
+		if (containsZeroKey)
+			array[j++] = zeroKeyValue;
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] != 0)
+				array[j++] = values[i];
+		return array;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder("{");
+		long[] keys = keys();
+		double[] values = values();
+		for (int i = 0; i < keys.length; i++) {
+			if (i != 0)
+				b.append(", ");
+			b.append(keys[i]).append('=').append(values[i]);
+		}
+		return b.append('}').toString();
+	}
+	
+	/**
+	 * Get a live ListenableMap&lt;Long, Double&gt; view of this map.<br>
+	 * Keys and values are boxed on access, and events are converted to CollectionEvent instances for the listeners of the key set, entry set and values views.<br>
+	 * As absent keys are reported with the "no entry" value by the primitive API, get and remove return null for absent keys in the view.
+	 */
+	public ListenableMap<Long, Double> asMap() {
+		if (map == null)
+			map = new LongDoubleMapAdapter();
+		return map;
+	}
+	
+	private class LongDoubleMapAdapter extends AbstractMap<Long, Double> implements ListenableMap<Long, Double> {
+		private final ListenableSupport<Long> keySupport = new ListenableSupport<Long>();
+		private final ListenableSupport<Map.Entry<Long, Double>> entrySupport = new ListenableSupport<Map.Entry<Long, Double>>();
+		private final ListenableSupport<Double> valueSupport = new ListenableSupport<Double>();
+		private boolean forwardingEvents;
+		
+		private final KeySet keySet = new KeySet();
+		private final EntrySet entrySet = new EntrySet();
+		private final Values values = new Values();
+		
+		/// Register the primitive listener that feeds the three views, once one of them is listened to
+		synchronized void forwardEvents() {
+			if (forwardingEvents)
+				return;
+			
+			forwardingEvents = true;
+			addLongDoubleMapListener(new LongDoubleMapListener() {
+				public void entriesChanged(ListenableLongDoubleMap source, CollectionEvent.EventType type, long[] keys, double[] values, double[] previousValues, int offset, int length) {
+					if (length == 1) {
+						if (keySupport.hasListeners())
+							keySupport.fireElementEvent(keySet, keys[offset], type, -1);
+						if (type == CollectionEvent.EventType.UPDATED && Double.compare(values[offset], previousValues[offset]) != 0) {
+							// Like DefaultListenableMap, a changed value is a removal of the former entry (and value) followed by an addition
+							if (entrySupport.hasListeners()) {
+								entrySupport.fireElementRemoved(entrySet, new UnmodifiableEntry<Long, Double>(keys[offset], previousValues[offset]));
+								entrySupport.fireElementAdded(entrySet, new UnmodifiableEntry<Long, Double>(keys[offset], values[offset]));
+							}
+							if (valueSupport.hasListeners()) {
+								valueSupport.fireElementRemoved(LongDoubleMapAdapter.this.values, previousValues[offset]);
+								valueSupport.fireElementAdded(LongDoubleMapAdapter.this.values, values[offset]);
+							}
+							return;
+						}
+						if (entrySupport.hasListeners())
+							entrySupport.fireElementEvent(entrySet, new UnmodifiableEntry<Long, Double>(keys[offset], values[offset]), type, -1);
+						if (valueSupport.hasListeners())
+							valueSupport.fireElementEvent(LongDoubleMapAdapter.this.values, values[offset], type, -1);
+						return;
+					}
+					if (keySupport.hasListeners()) {
+						List<Long> list = new ArrayList<Long>(length);
+						for (int i = 0; i < length; i++)
+							list.add(keys[offset + i]);
+						keySupport.fireEvent(keySet, list, type, -1, -1);
+					}
+					if (type == CollectionEvent.EventType.UPDATED) {
+						fireValuesUpdated(keys, values, previousValues, offset, length);
+						return;
+					}
+					if (entrySupport.hasListeners()) {
+						List<Map.Entry<Long, Double>> list = new ArrayList<Map.Entry<Long, Double>>(length);
+						for (int i = 0; i < length; i++)
+							list.add(new UnmodifiableEntry<Long, Double>(keys[offset + i], values[offset + i]));
+						entrySupport.fireEvent(entrySet, list, type, -1, -1);
+					}
+					if (valueSupport.hasListeners()) {
+						List<Double> list = new ArrayList<Double>(length);
+						for (int i = 0; i < length; i++)
+							list.add(values[offset + i]);
+						valueSupport.fireEvent(LongDoubleMapAdapter.this.values, list, type, -1, -1);
+					}
+				}
+			});
+		}
+		
+		/// Fire updated entries on the entry set and values views : entries which value changed are removed then added again, the others are UPDATED
+		private void fireValuesUpdated(long[] keys, double[] values, double[] previousValues, int offset, int length) {
+			List<Map.Entry<Long, Double>> removedEntries = new ArrayList<Map.Entry<Long, Double>>(), addedEntries = new ArrayList<Map.Entry<Long, Double>>(), updatedEntries = new ArrayList<Map.Entry<Long, Double>>();
+			List<Double> removedValues = new ArrayList<Double>(), addedValues = new ArrayList<Double>(), updatedValues = new ArrayList<Double>();
+			for (int i = offset, end = offset + length; i < end; i++) {
+				if (Double.compare(values[i], previousValues[i]) == 0) {
+					updatedEntries.add(new UnmodifiableEntry<Long, Double>(keys[i], values[i]));
+					updatedValues.add(values[i]);
+				} else {
+					removedEntries.add(new UnmodifiableEntry<Long, Double>(keys[i], previousValues[i]));
+					addedEntries.add(new UnmodifiableEntry<Long, Double>(keys[i], values[i]));
+					removedValues.add(previousValues[i]);
+					addedValues.add(values[i]);
+				}
+			}
+			if (entrySupport.hasListeners()) {
+				entrySupport.fireEvent(entrySet, removedEntries, CollectionEvent.EventType.REMOVED, -1, -1);
+				entrySupport.fireEvent(entrySet, addedEntries, CollectionEvent.EventType.ADDED, -1, -1);
+				entrySupport.fireEvent(entrySet, updatedEntries, CollectionEvent.EventType.UPDATED, -1, -1);
+			}
+			if (valueSupport.hasListeners()) {
+				valueSupport.fireEvent(this.values, removedValues, CollectionEvent.EventType.REMOVED, -1, -1);
+				valueSupport.fireEvent(this.values, addedValues, CollectionEvent.EventType.ADDED, -1, -1);
+				valueSupport.fireEvent(this.values, updatedValues, CollectionEvent.EventType.UPDATED, -1, -1);
+			}
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof Long && ListenableLongDoubleMap.this.containsKey((Long)key);
+		}
+		
+		@Override
+		public boolean containsValue(Object value) {
+			return value instanceof Double && ListenableLongDoubleMap.this.containsValue((Double)value);
+		}
+		
+		@Override
+		public Double get(Object key) {
+			return containsKey(key) ? ListenableLongDoubleMap.this.get((Long)key) : null;
+		}
+		
+		@Override
+		public Double put(Long key, Double value) {
+			boolean present = ListenableLongDoubleMap.this.containsKey(key);
+			double previous = ListenableLongDoubleMap.this.put(key, value);
+			return present ? previous : null;
+		}
+		
+		@Override
+		public Double remove(Object key) {
+			return containsKey(key) ? ListenableLongDoubleMap.this.remove((Long)key) : null;
+		}
+		
+		@Override
+		public void clear() {
+			ListenableLongDoubleMap.this.clear();
+		}
+		
+		@Override
+		public ListenableSet<Long> keySet() {
+			return keySet;
+		}
+		
+		@Override
+		public ListenableSet<Map.Entry<Long, Double>> entrySet() {
+			return entrySet;
+		}
+		
+		@Override
+		public ListenableCollection<Double> values() {
+			return values;
+		}
+		
+		/**
+		 * Iterates over a snapshot of the map, so that removal through the iterator is supported.
+		 */
+		abstract class SnapshotIterator<T> implements Iterator<T> {
+			final long[] keys = keys();
+			final double[] values = ListenableLongDoubleMap.this.values();
+			int next;
+			
+			abstract T get(int i);
+			
+			public boolean hasNext() {
+				return next < keys.length;
+			}
+			public T next() {
+				if (next >= keys.length)
+					throw new NoSuchElementException();
+				return get(next++);
+			}
+			public void remove() {
+				if (next == 0)
+					throw new IllegalStateException();
+				ListenableLongDoubleMap.this.remove(keys[next - 1]);
+			}
+		}
+		
+		class KeySet extends AbstractSet<Long> implements ListenableSet<Long> {
+			public void addCollectionListener(CollectionListener<Long> l) {
+				forwardEvents();
+				keySupport.addCollectionListener(l);
+			}
+			public void removeCollectionListener(CollectionListener<Long> l) {
+				keySupport.removeCollectionListener(l);
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+			@Override
+			public boolean remove(Object o) {
+				return LongDoubleMapAdapter.this.remove(o) != null;
+			}
+			@Override
+			public void clear() {
+				ListenableLongDoubleMap.this.clear();
+			}
+			@Override
+			public Iterator<Long> iterator() {
+				return new SnapshotIterator<Long>() {
+					Long get(int i) {
+						return keys[i];
+					}
+				};
+			}
+		}
+		
+		class EntrySet extends AbstractSet<Map.Entry<Long, Double>> implements ListenableSet<Map.Entry<Long, Double>> {
+			public void addCollectionListener(CollectionListener<Map.Entry<Long, Double>> l) {
+				forwardEvents();
+				entrySupport.addCollectionListener(l);
+			}
+			public void removeCollectionListener(CollectionListener<Map.Entry<Long, Double>> l) {
+				entrySupport.removeCollectionListener(l);
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public boolean contains(Object o) {
+				if (!(o instanceof Map.Entry))
+					return false;
+				Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+				Double value = get(e.getKey());
+				return value != null && value.equals(e.getValue());
+			}
+			@Override
+			public boolean remove(Object o) {
+				if (!contains(o))
+					return false;
+				ListenableLongDoubleMap.this.remove((Long)((Map.Entry<?, ?>)o).getKey());
+				return true;
+			}
+			@Override
+			public void clear() {
+				ListenableLongDoubleMap.this.clear();
+			}
+			@Override
+			public Iterator<Map.Entry<Long, Double>> iterator() {
+				return new SnapshotIterator<Map.Entry<Long, Double>>() {
+					Map.Entry<Long, Double> get(int i) {
+						return new UnmodifiableEntry<Long, Double>(keys[i], values[i]);
+					}
+				};
+			}
+		}
+		
+		class Values extends AbstractCollection<Double> implements ListenableCollection<Double> {
+			public void addCollectionListener(CollectionListener<Double> l) {
+				forwardEvents();
+				valueSupport.addCollectionListener(l);
+			}
+			public void removeCollectionListener(CollectionListener<Double> l) {
+				valueSupport.removeCollectionListener(l);
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public boolean contains(Object o) {
+				return containsValue(o);
+			}
+			@Override
+			public void clear() {
+				ListenableLongDoubleMap.this.clear();
+			}
+			@Override
+			public Iterator<Double> iterator() {
+				return new SnapshotIterator<Double>() {
+					Double get(int i) {
+						return values[i];
+					}
+				};
+			}
+		}
+	}
+}
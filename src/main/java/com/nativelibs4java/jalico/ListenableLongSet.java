@@ -0,0 +1,470 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Listenable set of long values, backed by an open-addressing hash table (linear probing).<br>
+ * Values are neither boxed in storage nor in notifications : LongSetListener instances receive slices of long arrays.<br>
+ * As with DefaultListenableSet, adding a value that is already in the set notifies listeners with an UPDATED event.<br>
+ * Use asSet() to pass this set to code that expects a ListenableSet&lt;Long&gt;.<br>
+ * This class is not thread-safe, except for the registration of listeners.
+ * @author Olivier Chafik
+ */
+public class ListenableLongSet {
+	private static final LongSetListener[] NO_LISTENERS = new LongSetListener[0];
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final int MAX_RETAINED_BUFFER_LENGTH = 1024;
+	
+	/// Hash table, where 0 denotes a free slot (the value 0 itself is tracked by containsZero)
+	private long[] table;
+	private int mask;
+	private int threshold;
+	private boolean containsZero;
+	private int size;
+	
+	private volatile LongSetListener[] listeners = NO_LISTENERS;
+	/// Buffer that holds affected values while they are being notified
+	private long[] eventBuffer = new long[1];
+	private boolean eventBufferInUse;
+	private ListenableSet<Long> set;
+	
+	public ListenableLongSet() {
+		this(16);
+	}
+	
+	public ListenableLongSet(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+	
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(2, (int)Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Too many elements : " + expectedSize);
+		return capacity;
+	}
+	
+	private void allocate(int capacity) {
+		table = new long[capacity];
+		mask = capacity - 1;
+		threshold = (int)(capacity * LOAD_FACTOR);
+	}
+	
+	static int mix(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+	
+	public synchronized void addLongSetListener(LongSetListener l) {
+		LongSetListener[] current = listeners;
+		LongSetListener[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = l;
+		listeners = updated;
+	}
+	
+	public synchronized void removeLongSetListener(LongSetListener l) {
+		LongSetListener[] current = listeners;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].equals(l)) {
+				LongSetListener[] updated = new LongSetListener[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				listeners = updated;
+				return;
+			}
+		}
+	}
+	
+	public boolean hasListeners() {
+		return listeners.length != 0;
+	}
+	
+	/// Get a buffer able to hold length values, to be released by releaseEventBuffer
+	private long[] borrowEventBuffer(int length) {
+		// The buffer may already be in use if a listener modifies the set
+		if (eventBufferInUse || eventBuffer.length < length)
+			return new long[length];
+		
+		eventBufferInUse = true;
+		return eventBuffer;
+	}
+	
+	private void fire(CollectionEvent.EventType type, long[] buffer, int offset, int length) {
+		if (length == 0)
+			return;
+		
+		LongSetListener[] listeners = this.listeners;
+		for (int i = 0, n = listeners.length; i < n; i++)
+			listeners[i].longsChanged(this, type, buffer, offset, length);
+	}
+	
+	private void releaseEventBuffer(long[] buffer) {
+		if (buffer == eventBuffer)
+			eventBufferInUse = false;
+		else if (!eventBufferInUse && buffer.length <= MAX_RETAINED_BUFFER_LENGTH)
+			eventBuffer = buffer;
+	}
+	
+	private void fireSingle(CollectionEvent.EventType type, long value) {
+		if (listeners.length == 0)
+			return;
+		
+		long[] buffer = borrowEventBuffer(1);
+		buffer[0] = value;
+		try {
+			fire(type, buffer, 0, 1);
+		} finally {
+			releaseEventBuffer(buffer);
+		}
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean contains(long value) {
+		if (value == 0)
+			return containsZero;
+		
+		long[] table = this.table;
+		for (int i = mix(value) & mask;; i = (i + 1) & mask) {
+			long v = table[i];
+			if (v == 0)
+				return false;
+			if (v == value)
+				return true;
+		}
+	}
+	
+	/// Insert without notification, returns false if the value was already present
+	private boolean insert(long value) {
+		if (value == 0) {
+			if (containsZero)
+				return false;
+			containsZero = true;
+		} else {
+			int i = mix(value) & mask;
+			for (long v; (v = table[i]) != 0; i = (i + 1) & mask) {
+				if (v == value)
+					return false;
+			}
+			table[i] = value;
+			if (size + 1 > threshold)
+				rehash(table.length << 1);
+		}
+		size++;
+		return true;
+	}
+	
+	/// Remove without notification, returns false if the value was not present
+	private boolean delete(long value) {
+		if (value == 0) {
+			if (!containsZero)
+				return false;
+			containsZero = false;
+		} else {
+			int i = mix(value) & mask;
+			for (long v; (v = table[i]) != value; i = (i + 1) & mask) {
+				if (v == 0)
+					return false;
+			}
+			shiftKeys(i);
+		}
+		size--;
+		return true;
+	}
+	
+	/// Backward-shift deletion : move subsequent colliding values to fill the freed slot
+	private void shiftKeys(int pos) {
+		for (;;) {
+			int last = pos;
+			long current;
+			for (pos = (pos + 1) & mask;; pos = (pos + 1) & mask) {
+				if ((current = table[pos]) == 0) {
+					table[last] = 0;
+					return;
+				}
+				int slot = mix(current) & mask;
+				if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos)
+					break;
+			}
+			table[last] = current;
+		}
+	}
+	
+	private void rehash(int capacity) {
+		long[] old = table;
+		allocate(capacity);
+		for (long value : old) {
+			if (value == 0)
+				continue;
+			int i = mix(value) & mask;
+			while (table[i] != 0)
+				i = (i + 1) & mask;
+			table[i] = value;
+		}
+	}
+	
+	/**
+	 * Add a value to the set, notifying listeners with an ADDED event (or an UPDATED event if the value was already present).
+	 * @return true if the value was not already present
+	 */
+	public boolean add(long value) {
+		boolean added = insert(value);
+		fireSingle(added ? CollectionEvent.EventType.ADDED : CollectionEvent.EventType.UPDATED, value);
+		return added;
+	}
+	
+	/**
+	 * Add values to the set, notifying listeners with at most one ADDED event and one UPDATED event.
+	 * @return true if the set changed
+	 */
+	public boolean addAll(long[] values, int offset, int length) {
+		if (listeners.length == 0) {
+			boolean changed = false;
+			for (int i = 0; i < length; i++)
+				changed = insert(values[offset + i]) || changed;
+			return changed;
+		}
+		// Added values are stored from the start of the buffer, updated ones from its end
+		long[] buffer = borrowEventBuffer(length);
+		int added = 0, updated = length;
+		for (int i = 0; i < length; i++) {
+			long value = values[offset + i];
+			if (insert(value))
+				buffer[added++] = value;
+			else
+				buffer[--updated] = value;
+		}
+		try {
+			fire(CollectionEvent.EventType.ADDED, buffer, 0, added);
+			fire(CollectionEvent.EventType.UPDATED, buffer, updated, length - updated);
+		} finally {
+			releaseEventBuffer(buffer);
+		}
+		return added != 0;
+	}
+	
+	public boolean addAll(long... values) {
+		return addAll(values, 0, values.length);
+	}
+	
+	/**
+	 * Remove a value from the set, notifying listeners with a REMOVED event.
+	 * @return true if the value was present
+	 */
+	public boolean remove(long value) {
+		if (!delete(value))
+			return false;
+		
+		fireSingle(CollectionEvent.EventType.REMOVED, value);
+		return true;
+	}
+	
+	/**
+	 * Remove values from the set, notifying listeners with at most one REMOVED event.
+	 * @return true if the set changed
+	 */
+	public boolean removeAll(long[] values, int offset, int length) {
+		if (listeners.length == 0) {
+			boolean changed = false;
+			for (int i = 0; i < length; i++)
+				changed = delete(values[offset + i]) || changed;
+			return changed;
+		}
+		long[] buffer = borrowEventBuffer(length);
+		int removed = 0;
+		for (int i = 0; i < length; i++) {
+			long value = values[offset + i];
+			if (delete(value))
+				buffer[removed++] = value;
+		}
+		try {
+			fire(CollectionEvent.EventType.REMOVED, buffer, 0, removed);
+		} finally {
+			releaseEventBuffer(buffer);
+		}
+		return removed != 0;
+	}
+	
+	public boolean removeAll(long... values) {
+		return removeAll(values, 0, values.length);
+	}
+	
+	/**
+	 * Remove all values, notifying listeners with a single REMOVED event.
+	 */
+	public void clear() {
+		if (size == 0)
+			return;
+		
+		long[] removed = listeners.length == 0 ? null : toArray();
+		Arrays.fill(table, 0);
+		containsZero = false;
+		size = 0;
+		if (removed != null)
+			fire(CollectionEvent.EventType.REMOVED, removed, 0, removed.length);
+	}
+	
+	public long[] toArray() {
+		long[] array = new long[size];
+		int i = 0;
+		if (containsZero)
+			array[i++] = 0;
+		for (long value : table)
+			if (value != 0)
+				array[i++] = value;
+		return array;
+	}
+	
+	/**
+	 * Iterate over the values of the set (the iterator does not support removal).
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+			boolean zeroPending = containsZero;
+			int next = nextSlot(0);
+			
+			int nextSlot(int from) {
+				while (from < table.length && table[from] == 0)
+					from++;
+				return from;
+			}
+			public boolean hasNext() {
+				return zeroPending || next < table.length;
+			}
+			public long nextLong() {
+				if (zeroPending) {
+					zeroPending = false;
+					return 0;
+				}
+				if (next >= table.length)
+					throw new NoSuchElementException();
+				long value = table[next];
+				next = nextSlot(next + 1);
+				return value;
+			}
+		};
+	}
+	
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+	
+	/**
+	 * Get a live ListenableSet&lt;Long&gt; view of this set.<br>
+	 * Values are boxed on access, and events are converted to CollectionEvent instances for the listeners of the view.
+	 */
+	public ListenableSet<Long> asSet() {
+		if (set == null)
+			set = new LongSetAdapter();
+		return set;
+	}
+	
+	private class LongSetAdapter extends AbstractSet<Long> implements ListenableSet<Long> {
+		private final ListenableSupport<Long> collectionSupport = new ListenableSupport<Long>();
+		private boolean forwardingEvents;
+		
+		public synchronized void addCollectionListener(CollectionListener<Long> l) {
+			if (!forwardingEvents) {
+				forwardingEvents = true;
+				addLongSetListener(new LongSetListener() {
+					public void longsChanged(ListenableLongSet source, CollectionEvent.EventType type, long[] values, int offset, int length) {
+						if (!collectionSupport.hasListeners())
+							return;
+						
+						if (length == 1) {
+							collectionSupport.fireElementEvent(LongSetAdapter.this, values[offset], type, -1);
+						} else {
+							Long[] boxed = new Long[length];
+							for (int i = 0; i < length; i++)
+								boxed[i] = values[offset + i];
+							collectionSupport.fireEvent(LongSetAdapter.this, Arrays.asList(boxed), type, -1, -1);
+						}
+					}
+				});
+			}
+			collectionSupport.addCollectionListener(l);
+		}
+		
+		public void removeCollectionListener(CollectionListener<Long> l) {
+			collectionSupport.removeCollectionListener(l);
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Long && ListenableLongSet.this.contains((Long)o);
+		}
+		
+		@Override
+		public boolean add(Long value) {
+			return ListenableLongSet.this.add(value);
+		}
+		
+		@Override
+		public boolean remove(Object o) {
+			return o instanceof Long && ListenableLongSet.this.remove((Long)o);
+		}
+		
+		@Override
+		public void clear() {
+			ListenableLongSet.this.clear();
+		}
+		
+		/**
+		 * Iterates over a snapshot of the set, so that removal through the iterator is supported.
+		 */
+		@Override
+		public Iterator<Long> iterator() {
+			final long[] values = ListenableLongSet.this.toArray();
+			return new Iterator<Long>() {
+				int next;
+				public boolean hasNext() {
+					return next < values.length;
+				}
+				public Long next() {
+					if (next >= values.length)
+						throw new NoSuchElementException();
+					return values[next++];
+				}
+				public void remove() {
+					if (next == 0)
+						throw new IllegalStateException();
+					ListenableLongSet.this.remove(values[next - 1]);
+				}
+			};
+		}
+	}
+}
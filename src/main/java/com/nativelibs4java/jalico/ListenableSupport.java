@@ -20,42 +20,329 @@
 package com.nativelibs4java.jalico;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
- * Helper class that keeps track of registered CollectionListener instances and eases up the firing of CollectionEvent.
+ * Helper class that keeps track of registered CollectionListener instances and eases up the firing of CollectionEvent.<br>
+ * Listeners are kept in an immutable array that is atomically replaced upon each registration or unregistration, so that events can be fired from any thread without locking, while listeners are being added or removed from other threads.<br>
+ * An event is delivered to the listeners that were registered when it started being fired.<br>
+ * Events can also be held back while a batch is open (see beginBatch() and endBatch()), in which case they are coalesced and fired all at once when the outermost batch ends.<br>
+ * Once an EventJournal is set, fired events are stamped with consecutive sequence numbers and appended to the journal, so that listeners can catch up with missed events (see addCollectionListener(CollectionListener, long)).<br>
+ * Dispatch can be instrumented with setMetricsEnabled(boolean), to find out which collections are hot and which listeners are slow (see DispatchMetrics).
+ * It is also instrumented while a flight recording enables the com.nativelibs4java.jalico.Dispatch event (see DispatchEvent and ListenerCallEvent).
  * @author Olivier Chafik
  * @param <T> type of the collections
  */
 public class ListenableSupport<T> {
-	protected Collection<CollectionListener<T>> listeners;
+	@SuppressWarnings("rawtypes")
+	private static final CollectionListener[] NO_LISTENERS = new CollectionListener[0];
+	
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<ListenableSupport, CollectionListener[]> listenersUpdater = 
+		AtomicReferenceFieldUpdater.newUpdater(ListenableSupport.class, CollectionListener[].class, "listeners");
+	
+	/// Snapshot of the registered listeners, never modified in place
+	@SuppressWarnings("unchecked")
+	private volatile CollectionListener<T>[] listeners = NO_LISTENERS;
+	
+	/// Events recorded since the outermost beginBatch(), or null if no batch is open (guarded by this)
+	private List<CollectionEvent<T>> batchedEvents;
+	private int batchDepth;
+	private volatile boolean batching;
+	
+	/// Journal of stamped events, or null if events are not sequenced (guarded by this)
+	private EventJournal<T> journal;
+	private long nextSequence;
+	private volatile boolean journaling;
+	
+	/// Metrics of the dispatched events, or null if they are disabled
+	private volatile DispatchMetrics metrics;
 	
 	public void addCollectionListener(CollectionListener<T> l) {
-		if (listeners == null)
-			listeners = new ArrayList<CollectionListener<T>>(1);
-		
-		listeners.add(l);
+		for (;;) {
+			CollectionListener<T>[] current = listeners;
+			CollectionListener<T>[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = l;
+			if (listenersUpdater.compareAndSet(this, current, updated))
+				return;
+		}
 	}
 	
+	@SuppressWarnings("unchecked")
 	public void removeCollectionListener(CollectionListener<T> l) {
-		if (listeners == null)
+		for (;;) {
+			CollectionListener<T>[] current = listeners;
+			int i = indexOf(current, l);
+			if (i < 0)
+				return;
+			
+			CollectionListener<T>[] updated;
+			if (current.length == 1) {
+				updated = NO_LISTENERS;
+			} else {
+				updated = Arrays.copyOf(current, current.length - 1);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+			}
+			if (listenersUpdater.compareAndSet(this, current, updated)) {
+				DispatchMetrics metrics = this.metrics;
+				if (metrics != null)
+					metrics.forget(l);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Start (or stop) collecting metrics about the dispatched events.<br>
+	 * Disabling metrics discards those collected so far, and enabling them when they already are does nothing.
+	 */
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		if (enabled == (metrics != null))
 			return;
-		
-		listeners.remove(l);
+		metrics = enabled ? new DispatchMetrics(this) : null;
+	}
+	
+	/**
+	 * @return metrics of the dispatched events, or null if they are disabled
+	 */
+	public DispatchMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @return true if the listener is currently registered
+	 */
+	boolean isListening(CollectionListener<?> l) {
+		return indexOf(listeners, l) >= 0;
+	}
+	
+	private static int indexOf(Object[] array, Object o) {
+		for (int i = 0, n = array.length; i < n; i++) {
+			Object e = array[i];
+			if (o == null ? e == null : o.equals(e))
+				return i;
+		}
+		return -1;
 	}
 
+	/**
+	 * Whether fired events are of interest to anyone : registered listeners or an event journal.
+	 */
 	public boolean hasListeners() {
-		return listeners != null && !listeners.isEmpty();
+		return listeners.length != 0 || journaling;
+	}
+	
+	/**
+	 * Start (or stop, if journal is null) stamping fired events with sequence numbers and appending them to a journal.<br>
+	 * Sequence numbers continue from the journal's next sequence number.
+	 */
+	public synchronized void setEventJournal(EventJournal<T> journal) {
+		this.journal = journal;
+		if (journal != null)
+			nextSequence = journal.getNextSequence();
+		journaling = journal != null;
+	}
+	
+	public synchronized EventJournal<T> getEventJournal() {
+		return journal;
+	}
+	
+	/**
+	 * @return sequence number of the next event to be fired (meaningful once an event journal is set)
+	 */
+	public synchronized long getNextSequence() {
+		return nextSequence;
+	}
+	
+	/**
+	 * Register a listener after replaying to it the journaled events with a sequence number greater than or equal to fromSequence.<br>
+	 * Replay and registration are atomic with respect to the stamping of events, so that the listener receives each subsequent event exactly once and in order.<br>
+	 * Events that are no longer in the journal cannot be replayed : listeners can detect such gaps by comparing the returned sequence number with fromSequence, or the sequence numbers of consecutive events.
+	 * @return sequence number of the first event the listener receives (replayed or live)
+	 */
+	public long addCollectionListener(CollectionListener<T> l, long fromSequence) {
+		synchronized (this) {
+			long first = nextSequence;
+			if (journal != null && fromSequence < nextSequence) {
+				first = Math.max(fromSequence, journal.getFirstSequence());
+				journal.replay(first, l);
+			}
+			addCollectionListener(l);
+			return first;
+		}
+	}
+	
+	/**
+	 * Start holding back fired events until the matching call to endBatch().<br>
+	 * Batches can be nested, events are only fired when the outermost batch ends.<br>
+	 * Events fired from any thread while a batch is open are held back.
+	 */
+	public synchronized void beginBatch() {
+		if (batchDepth++ == 0) {
+			batchedEvents = new ArrayList<CollectionEvent<T>>();
+			batching = true;
+		}
+	}
+	
+	/**
+	 * End a batch started with beginBatch().<br>
+	 * If this ends the outermost batch, the events recorded since it began are coalesced (see CollectionEventCoalescer) and fired.
+	 * @throws IllegalStateException if no batch is open
+	 */
+	public void endBatch() {
+		List<CollectionEvent<T>> events;
+		synchronized (this) {
+			if (batchDepth == 0)
+				throw new IllegalStateException("No batch in progress");
+			
+			if (--batchDepth > 0)
+				return;
+			
+			events = batchedEvents;
+			batchedEvents = null;
+			batching = false;
+		}
+		CollectionListener<T>[] listeners = this.listeners;
+		for (CollectionEvent<T> event : CollectionEventCoalescer.coalesce(events)) {
+			if (journaling)
+				publish(event);
+			else
+				dispatch(listeners, event);
+		}
+	}
+	
+	private boolean record(ListenableCollection<T> source, Collection<T> elements, CollectionEvent.EventType type, int firstIndex, int lastIndex) {
+		synchronized (this) {
+			if (batchedEvents == null)
+				return false;
+			
+			// Elements collections are often views or reused buffers : copy them as they will be read later
+			batchedEvents.add(new CollectionEvent<T>(source, new ArrayList<T>(elements), type, firstIndex, lastIndex));
+			return true;
+		}
 	}
 	
 	public void fireEvent(ListenableCollection<T> source, Collection<T> elements, CollectionEvent.EventType type, int firstIndex, int lastIndex) {
-		if (listeners == null || listeners.isEmpty() || elements.isEmpty()) 
+		CollectionListener<T>[] listeners = this.listeners;
+		if (listeners.length == 0 && !journaling || elements.isEmpty()) 
+			return;
+		
+		if (batching && record(source, elements, type, firstIndex, lastIndex))
+			return;
+		
+		if (journaling)
+			publish(new CollectionEvent<T>(source, elements, type, firstIndex, lastIndex));
+		else
+			dispatch(listeners, new CollectionEvent<T>(source,elements,type, firstIndex, lastIndex));
+	}
+	
+	/**
+	 * Stamp an event, append it to the journal and dispatch it to the listeners registered at that time.
+	 */
+	private void publish(CollectionEvent<T> event) {
+		CollectionListener<T>[] listeners;
+		CollectionEvent<T> stamped;
+		synchronized (this) {
+			if (journal == null) {
+				listeners = this.listeners;
+				stamped = event;
+			} else {
+				stamped = new CollectionEvent<T>(event.getSource(), event.getElements(), event.getType(), event.getFirstIndex(), event.getLastIndex(), nextSequence);
+				journal.append(stamped);
+				nextSequence++;
+				// Listeners registered from now on get this event through replay
+				listeners = this.listeners;
+			}
+		}
+		dispatch(listeners, stamped);
+	}
+	
+	/**
+	 * Fire an event about a single element.<br>
+	 * Listeners that implement SingleElementListener are notified without any allocation, a CollectionEvent is only created (once) if other listeners are registered.<br>
+	 * When events are journaled, all listeners receive the stamped CollectionEvent instead.
+	 */
+	@SuppressWarnings("unchecked")
+	public void fireElementEvent(ListenableCollection<T> source, T element, CollectionEvent.EventType type, int index) {
+		CollectionListener<T>[] listeners = this.listeners;
+		if (listeners.length == 0 && !journaling) 
+			return;
+		
+		if (batching && record(source, Collections.singleton(element), type, index, index))
+			return;
+		
+		if (journaling) {
+			publish(new CollectionEvent<T>(source, Collections.singleton(element), type, index, index));
+			return;
+		}
+		
+		DispatchMetrics metrics = this.metrics;
+		boolean recorded = FlightRecording.isDispatchRecorded();
+		if (metrics != null || recorded) {
+			instrumentedDispatch(metrics, recorded, listeners, source, null, element, type, index);
+			return;
+		}
+		
+		CollectionEvent<T> event = null;
+		for (int i = 0, n = listeners.length; i < n; i++) {
+			CollectionListener<T> listener = listeners[i];
+			if (listener instanceof SingleElementListener<?>) {
+				((SingleElementListener<T>)listener).elementChanged(source, type, element, index);
+			} else {
+				if (event == null)
+					event = new CollectionEvent<T>(source, Collections.singleton(element), type, index, index);
+				listener.collectionChanged(event);
+			}
+		}
+	}
+	
+	private void dispatch(CollectionListener<T>[] listeners, CollectionEvent<T> event) {
+		DispatchMetrics metrics = this.metrics;
+		boolean recorded = FlightRecording.isDispatchRecorded();
+		if (metrics != null || recorded) {
+			instrumentedDispatch(metrics, recorded, listeners, event.getSource(), event, null, event.getType(), -1);
 			return;
+		}
+		for (int i = 0, n = listeners.length; i < n; i++) {
+			listeners[i].collectionChanged(event);
+		}
+	}
+	
+	/**
+	 * Dispatch loop that feeds the metrics (if enabled) and emits flight recorder events (if recorded, as they are only created then), for an event or for a single element (in which case event is null until a listener needs it).
+	 */
+	@SuppressWarnings("unchecked")
+	private void instrumentedDispatch(DispatchMetrics metrics, boolean recorded, CollectionListener<T>[] listeners, ListenableCollection<T> source, CollectionEvent<T> event, T element, CollectionEvent.EventType type, int index) {
+		boolean singleElement = event == null;
+		int elementCount = singleElement ? 1 : event.getElements().size();
+		if (metrics != null)
+			metrics.eventDispatched(type, elementCount);
 		
-		CollectionEvent<T> event = new CollectionEvent<T>(source,elements,type, firstIndex, lastIndex);
-		for (CollectionListener<T> listener : listeners) {
-			listener.collectionChanged(event);
+		Object dispatchEvent = recorded ? FlightRecording.beginDispatch() : null;
+		boolean callsRecorded = recorded && FlightRecording.isListenerCallRecorded();
+		for (int i = 0, n = listeners.length; i < n; i++) {
+			CollectionListener<T> listener = listeners[i];
+			Object callEvent = callsRecorded ? FlightRecording.beginListenerCall() : null;
+			long start = metrics == null ? 0 : System.nanoTime();
+			try {
+				if (singleElement && listener instanceof SingleElementListener<?>) {
+					((SingleElementListener<T>)listener).elementChanged(source, type, element, index);
+				} else {
+					if (event == null)
+						event = new CollectionEvent<T>(source, Collections.singleton(element), type, index, index);
+					listener.collectionChanged(event);
+				}
+			} finally {
+				if (metrics != null)
+					metrics.listenerCalled(listener, System.nanoTime() - start);
+				FlightRecording.finishListenerCall(callEvent, listener, source, type, elementCount);
+			}
 		}
+		FlightRecording.finishDispatch(dispatchEvent, source, type, elementCount, listeners.length);
 	}
 	
 	public void fireAdded(ListenableCollection<T> source, Collection<T> elements) {
@@ -78,4 +365,25 @@ public class ListenableSupport<T> {
 	public void fireUpdated(ListenableCollection<T> source, Collection<T> elements, int firstIndex, int lastIndex) {
 		fireEvent(source, elements, CollectionEvent.EventType.UPDATED, firstIndex, lastIndex);
 	}
+	
+	public void fireElementAdded(ListenableCollection<T> source, T element) {
+		fireElementEvent(source, element, CollectionEvent.EventType.ADDED, -1);
+	}
+	public void fireElementAdded(ListenableCollection<T> source, T element, int index) {
+		fireElementEvent(source, element, CollectionEvent.EventType.ADDED, index);
+	}
+	
+	public void fireElementRemoved(ListenableCollection<T> source, T element) {
+		fireElementEvent(source, element, CollectionEvent.EventType.REMOVED, -1);
+	}
+	public void fireElementRemoved(ListenableCollection<T> source, T element, int index) {
+		fireElementEvent(source, element, CollectionEvent.EventType.REMOVED, index);
+	}
+	
+	public void fireElementUpdated(ListenableCollection<T> source, T element) {
+		fireElementEvent(source, element, CollectionEvent.EventType.UPDATED, -1);
+	}
+	public void fireElementUpdated(ListenableCollection<T> source, T element, int index) {
+		fireElementEvent(source, element, CollectionEvent.EventType.UPDATED, index);
+	}
 }
@@ -0,0 +1,76 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event emitted when a single listener takes longer than the threshold of the recording to handle a collection event.
+ * @author Olivier Chafik
+ */
+@Name("com.nativelibs4java.jalico.ListenerCall")
+@Label("Collection Listener Call")
+@Description("Call of a listener of a listenable collection")
+@Category({ "Jalico" })
+@Threshold("1 ms")
+@StackTrace(false)
+final class ListenerCallEvent extends Event {
+	@Label("Listener Class")
+	Class<?> listenerClass;
+	
+	@Label("Source Class")
+	Class<?> sourceClass;
+	
+	@Label("Source Identity")
+	@Description("Identity hash code of the listenable collection")
+	int sourceIdentity;
+	
+	@Label("Event Type")
+	String eventType;
+	
+	@Label("Elements")
+	int elementCount;
+	
+	/// Type of the event, which tells whether recordings enable it without creating events
+	private static final EventType TYPE = EventType.getEventType(ListenerCallEvent.class);
+	
+	static boolean isTypeEnabled() {
+		return TYPE.isEnabled();
+	}
+	
+	void finish(CollectionListener<?> listener, ListenableCollection<?> source, CollectionEvent.EventType type, int elementCount) {
+		end();
+		if (shouldCommit()) {
+			this.listenerClass = listener.getClass();
+			this.sourceClass = source == null ? null : source.getClass();
+			this.sourceIdentity = System.identityHashCode(source);
+			this.eventType = type.name();
+			this.elementCount = elementCount;
+			commit();
+		}
+	}
+}
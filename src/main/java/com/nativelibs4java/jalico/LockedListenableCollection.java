@@ -0,0 +1,289 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Thread-safe wrapper of a listenable collection that takes a CollectionLock in shared mode for read methods and in exclusive mode for write methods.<br>
+ * The events of the wrapped collection are forwarded to the listeners of this wrapper once the write lock is released, so that listeners may read the collection (which would otherwise deadlock with non-reentrant stamped locks) and do not block readers.
+ * As a consequence, listeners might see changes more recent than the event they receive, but events are always delivered in the order of the modifications.<br>
+ * The wrapped collection must not be modified directly.
+ * @author Olivier Chafik
+ */
+class LockedListenableCollection<T> implements ListenableCollection<T> {
+	protected final ListenableCollection<T> collection;
+	protected final CollectionLock lock;
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	/// Events are not batched, so that listeners receive the same events as those of the wrapped collection
+	private final EventHandoff<T> handoff = new EventHandoff<T>(collectionSupport, 1);
+	private boolean forwardingEvents;
+	
+	public LockedListenableCollection(ListenableCollection<T> collection, CollectionLock lock) {
+		this.collection = collection;
+		this.lock = lock;
+	}
+	
+	private final CollectionListener<T> forwarder = new SingleElementListener<T>() {
+		public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+			handoff.append(LockedListenableCollection.this, type, element, index);
+			deliverUnlessWriting();
+		}
+		public void collectionChanged(CollectionEvent<T> e) {
+			// Events may hold live views of the wrapped collection, which will have changed by the time they are delivered
+			handoff.append(LockedListenableCollection.this, e.getType(), new ArrayList<T>(e.getElements()), e.getFirstIndex(), e.getLastIndex());
+			deliverUnlessWriting();
+		}
+	};
+	
+	private void deliverUnlessWriting() {
+		if (!lock.isWriteLockedByCurrentThread())
+			deliver();
+	}
+	
+	/**
+	 * Deliver the events forwarded from the wrapped collection, which must be done after each release of the write lock.
+	 */
+	void deliver() {
+		flush();
+	}
+	
+	final void flush() {
+		handoff.flush();
+	}
+	
+	protected void unlockWrite(long stamp) {
+		lock.unlockWrite(stamp);
+		deliver();
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		long stamp = lock.writeLock();
+		try {
+			if (!forwardingEvents) {
+				forwardingEvents = true;
+				collection.addCollectionListener(forwarder);
+			}
+			collectionSupport.addCollectionListener(l);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			int size = collection.size();
+			if (lock.validate(stamp))
+				return size;
+		}
+		stamp = lock.readLock();
+		try {
+			return collection.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean isEmpty() {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			boolean empty = collection.isEmpty();
+			if (lock.validate(stamp))
+				return empty;
+		}
+		stamp = lock.readLock();
+		try {
+			return collection.isEmpty();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean contains(Object o) {
+		long stamp = lock.readLock();
+		try {
+			return collection.contains(o);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean containsAll(Collection<?> c) {
+		long stamp = lock.readLock();
+		try {
+			return collection.containsAll(c);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public Object[] toArray() {
+		long stamp = lock.readLock();
+		try {
+			return collection.toArray();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public <U> U[] toArray(U[] a) {
+		long stamp = lock.readLock();
+		try {
+			return collection.toArray(a);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean add(T o) {
+		long stamp = lock.writeLock();
+		try {
+			return collection.add(o);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean addAll(Collection<? extends T> c) {
+		long stamp = lock.writeLock();
+		try {
+			return collection.addAll(c);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean remove(Object o) {
+		long stamp = lock.writeLock();
+		try {
+			return collection.remove(o);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean removeAll(Collection<?> c) {
+		long stamp = lock.writeLock();
+		try {
+			return collection.removeAll(c);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean retainAll(Collection<?> c) {
+		long stamp = lock.writeLock();
+		try {
+			return collection.retainAll(c);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			collection.clear();
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	/**
+	 * Returns an iterator that takes the lock for each of its calls : like those of synchronized wrappers, it is not protected against concurrent modifications made between its calls.
+	 */
+	public Iterator<T> iterator() {
+		long stamp = lock.readLock();
+		try {
+			return new LockedIterator<Iterator<T>>(collection.iterator());
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	class LockedIterator<I extends Iterator<T>> implements Iterator<T> {
+		protected final I iterator;
+		
+		LockedIterator(I iterator) {
+			this.iterator = iterator;
+		}
+		public boolean hasNext() {
+			long stamp = lock.readLock();
+			try {
+				return iterator.hasNext();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		public T next() {
+			long stamp = lock.readLock();
+			try {
+				return iterator.next();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		public void remove() {
+			long stamp = lock.writeLock();
+			try {
+				iterator.remove();
+			} finally {
+				unlockWrite(stamp);
+			}
+		}
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		long stamp = lock.readLock();
+		try {
+			return collection.equals(obj);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public int hashCode() {
+		long stamp = lock.readLock();
+		try {
+			return collection.hashCode();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		long stamp = lock.readLock();
+		try {
+			return collection.toString();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+}
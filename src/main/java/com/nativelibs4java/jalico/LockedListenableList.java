@@ -0,0 +1,204 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+
+class LockedListenableList<T> extends LockedListenableCollection<T> implements ListenableList<T> {
+	protected final ListenableList<T> list;
+	/// Only random access lists are read optimistically by get(int), as the other ones might take long to give up
+	private final boolean randomAccess;
+	
+	public LockedListenableList(ListenableList<T> list, CollectionLock lock) {
+		super(list, lock);
+		this.list = list;
+		this.randomAccess = list instanceof RandomAccess;
+	}
+	
+	public T get(int index) {
+		if (randomAccess) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0) {
+				try {
+					T element = list.get(index);
+					if (lock.validate(stamp))
+						return element;
+				} catch (RuntimeException ex) {
+					// Inconsistent reads may throw : only report the exception if it is not due to a concurrent write
+					if (lock.validate(stamp))
+						throw ex;
+				}
+			}
+		}
+		long stamp = lock.readLock();
+		try {
+			return list.get(index);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public int indexOf(Object o) {
+		long stamp = lock.readLock();
+		try {
+			return list.indexOf(o);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public int lastIndexOf(Object o) {
+		long stamp = lock.readLock();
+		try {
+			return list.lastIndexOf(o);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public T set(int index, T element) {
+		long stamp = lock.writeLock();
+		try {
+			return list.set(index, element);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public void add(int index, T element) {
+		long stamp = lock.writeLock();
+		try {
+			list.add(index, element);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean addAll(int index, Collection<? extends T> c) {
+		long stamp = lock.writeLock();
+		try {
+			return list.addAll(index, c);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public T remove(int index) {
+		long stamp = lock.writeLock();
+		try {
+			return list.remove(index);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public ListIterator<T> listIterator() {
+		return listIterator(0);
+	}
+	
+	public ListIterator<T> listIterator(int index) {
+		long stamp = lock.readLock();
+		try {
+			return new LockedListIterator(list.listIterator(index));
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	class LockedListIterator extends LockedIterator<ListIterator<T>> implements ListIterator<T> {
+		LockedListIterator(ListIterator<T> iterator) {
+			super(iterator);
+		}
+		public boolean hasPrevious() {
+			long stamp = lock.readLock();
+			try {
+				return iterator.hasPrevious();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		public T previous() {
+			long stamp = lock.readLock();
+			try {
+				return iterator.previous();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		public int nextIndex() {
+			long stamp = lock.readLock();
+			try {
+				return iterator.nextIndex();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		public int previousIndex() {
+			long stamp = lock.readLock();
+			try {
+				return iterator.previousIndex();
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		public void set(T e) {
+			long stamp = lock.writeLock();
+			try {
+				iterator.set(e);
+			} finally {
+				unlockWrite(stamp);
+			}
+		}
+		public void add(T e) {
+			long stamp = lock.writeLock();
+			try {
+				iterator.add(e);
+			} finally {
+				unlockWrite(stamp);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a view of a range of this list that shares its lock.<br>
+	 * As for java.util.List.subList, the behaviour of the view is undefined if the list is structurally modified other than through the view.
+	 */
+	public List<T> subList(int fromIndex, int toIndex) {
+		List<T> subList;
+		long stamp = lock.readLock();
+		try {
+			subList = list.subList(fromIndex, toIndex);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		ListenableList<T> listenableSubList = subList instanceof ListenableList ? (ListenableList<T>)subList : ListenableCollections.listenableList(subList);
+		return new LockedListenableList<T>(listenableSubList, lock) {
+			@Override
+			void deliver() {
+				super.deliver();
+				// Changes of the view may have been forwarded to the listeners of this list
+				LockedListenableList.this.deliver();
+			}
+		};
+	}
+}
@@ -0,0 +1,240 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Map;
+
+/**
+ * Thread-safe wrapper of a listenable map which views share its CollectionLock (see LockedListenableCollection).
+ * @author Olivier Chafik
+ */
+class LockedListenableMap<K,V> implements ListenableMap<K,V> {
+	protected final ListenableMap<K,V> map;
+	protected final CollectionLock lock;
+	private final LockedListenableSet<K> keySet;
+	private final LockedListenableSet<Map.Entry<K,V>> entrySet;
+	private final LockedListenableCollection<V> values;
+	
+	public LockedListenableMap(ListenableMap<K,V> map, CollectionLock lock) {
+		this.map = map;
+		this.lock = lock;
+		// Any change made through a view may be forwarded to the listeners of the other views
+		keySet = new LockedListenableSet<K>(map.keySet(), lock) {
+			@Override
+			void deliver() {
+				LockedListenableMap.this.deliver();
+			}
+		};
+		entrySet = new LockedListenableSet<Map.Entry<K,V>>(map.entrySet(), lock) {
+			@Override
+			void deliver() {
+				LockedListenableMap.this.deliver();
+			}
+		};
+		values = new LockedListenableCollection<V>(map.values(), lock) {
+			@Override
+			void deliver() {
+				LockedListenableMap.this.deliver();
+			}
+		};
+	}
+	
+	void deliver() {
+		keySet.flush();
+		entrySet.flush();
+		values.flush();
+	}
+	
+	protected void unlockWrite(long stamp) {
+		lock.unlockWrite(stamp);
+		deliver();
+	}
+	
+	public ListenableSet<K> keySet() {
+		return keySet;
+	}
+	
+	public ListenableSet<Map.Entry<K,V>> entrySet() {
+		return entrySet;
+	}
+	
+	public ListenableCollection<V> values() {
+		return values;
+	}
+	
+	public int size() {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			int size = map.size();
+			if (lock.validate(stamp))
+				return size;
+		}
+		stamp = lock.readLock();
+		try {
+			return map.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean isEmpty() {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			boolean empty = map.isEmpty();
+			if (lock.validate(stamp))
+				return empty;
+		}
+		stamp = lock.readLock();
+		try {
+			return map.isEmpty();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean containsKey(Object key) {
+		long stamp = lock.readLock();
+		try {
+			return map.containsKey(key);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public boolean containsValue(Object value) {
+		long stamp = lock.readLock();
+		try {
+			return map.containsValue(value);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public V get(Object key) {
+		long stamp = lock.readLock();
+		try {
+			return map.get(key);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	public V put(K key, V value) {
+		long stamp = lock.writeLock();
+		try {
+			return map.put(key, value);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public void putAll(Map<? extends K, ? extends V> t) {
+		long stamp = lock.writeLock();
+		try {
+			map.putAll(t);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public V remove(Object key) {
+		long stamp = lock.writeLock();
+		try {
+			return map.remove(key);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			map.clear();
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public V putIfAbsent(K key, V value) {
+		long stamp = lock.writeLock();
+		try {
+			return map.putIfAbsent(key, value);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean remove(Object key, Object value) {
+		long stamp = lock.writeLock();
+		try {
+			return map.remove(key, value);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public boolean replace(K key, V oldValue, V newValue) {
+		long stamp = lock.writeLock();
+		try {
+			return map.replace(key, oldValue, newValue);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	public V replace(K key, V value) {
+		long stamp = lock.writeLock();
+		try {
+			return map.replace(key, value);
+		} finally {
+			unlockWrite(stamp);
+		}
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		long stamp = lock.readLock();
+		try {
+			return map.equals(obj);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public int hashCode() {
+		long stamp = lock.readLock();
+		try {
+			return map.hashCode();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		long stamp = lock.readLock();
+		try {
+			return map.toString();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.EventListener;
+
+/**
+ * Post-modification listener of ListenableLongDoubleMap instances, notified without boxing nor event allocation.
+ * @author Olivier Chafik
+ */
+public interface LongDoubleMapListener extends EventListener {
+	/**
+	 * Called after entries were added to, removed from or updated in a map.<br>
+	 * The arrays may be reused buffers : they must not be modified, and are only valid during the call.
+	 * @param source map that was modified
+	 * @param type type of modification
+	 * @param keys array that holds the keys of the affected entries
+	 * @param values array that holds the values of the affected entries (new values for ADDED and UPDATED entries, former values for REMOVED entries)
+	 * @param previousValues for UPDATED entries, array that holds the values that were replaced, null otherwise
+	 * @param offset offset of the first affected entry in keys, values and previousValues
+	 * @param length number of affected entries
+	 */
+	public void entriesChanged(ListenableLongDoubleMap source, CollectionEvent.EventType type, long[] keys, double[] values, double[] previousValues, int offset, int length);
+}
@@ -0,0 +1,39 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.EventListener;
+
+/**
+ * Post-modification listener of ListenableLongSet instances, notified without boxing nor event allocation.
+ * @author Olivier Chafik
+ */
+public interface LongSetListener extends EventListener {
+	/**
+	 * Called after values were added to, removed from or updated in a set (a value is updated when it is added while already present).<br>
+	 * The values array may be a reused buffer : it must not be modified, and is only valid during the call.
+	 * @param source set that was modified
+	 * @param type type of modification
+	 * @param values array that holds the affected values
+	 * @param offset offset of the first affected value in values
+	 * @param length number of affected values
+	 */
+	public void longsChanged(ListenableLongSet source, CollectionEvent.EventType type, long[] values, int offset, int length);
+}
@@ -0,0 +1,600 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Hash map stored in a memory-mapped file, with a write-ahead journal of the changes made since the last checkpoint.<br>
+ * The table uses open addressing with tombstones, so that each modification only touches one slot.<br>
+ * Keys are hashed and compared through their encoded bytes, which keeps the layout of the file independent of Object.hashCode().<br>
+ * On opening, journal records newer than the checkpoint of the table are replayed (they are idempotent), and a torn journal tail is detected through record checksums and discarded.<br>
+ * This class is not thread-safe.
+ * @author Olivier Chafik
+ * @see PersistentListenableMap
+ */
+final class MappedHashMap<K,V> extends AbstractMap<K,V> implements Closeable {
+	private static final int MAGIC = 0x4a4c434d; // "JLCM"
+	private static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 64;
+	private static final int MAGIC_OFFSET = 0, VERSION_OFFSET = 4, KEY_SIZE_OFFSET = 8, VALUE_SIZE_OFFSET = 12, 
+		CAPACITY_OFFSET = 16, SIZE_OFFSET = 20, TOMBSTONES_OFFSET = 24, DIRTY_OFFSET = 28, CHECKPOINT_OFFSET = 32;
+	
+	private static final byte FREE_SLOT = 0, USED_SLOT = 1, REMOVED_SLOT = 2;
+	private static final byte PUT_RECORD = 1, REMOVE_RECORD = 2, CLEAR_RECORD = 3;
+	
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final int MAX_REGION_BYTES = 1 << 30;
+	
+	private final Path path, journalPath;
+	private final Codec<K> keyCodec;
+	private final Codec<V> valueCodec;
+	private final int keySize, valueSize, slotSize, regionShift, regionMask;
+	private final boolean syncJournal;
+	
+	private Table table;
+	private int size, tombstones;
+	private boolean dirty;
+	private int modCount;
+	
+	private FileChannel journal;
+	private long journalPosition;
+	/// Sequence number of the last change
+	private long sequence;
+	
+	private final byte[] keyBytes, valueBytes;
+	private final ByteBuffer keyBuffer, valueBuffer, record;
+	private final CRC32 crc = new CRC32();
+	
+	/**
+	 * Mapped table file
+	 */
+	private final class Table {
+		final FileChannel channel;
+		final MappedByteBuffer header;
+		final MappedByteBuffer[] regions;
+		final int capacity, mask;
+		
+		Table(FileChannel channel, int capacity) throws IOException {
+			this.channel = channel;
+			this.capacity = capacity;
+			this.mask = capacity - 1;
+			// Mapping past the end of the file grows it with zeroes, i.e. free slots
+			header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			int slotsPerRegion = regionMask + 1;
+			regions = new MappedByteBuffer[(capacity + slotsPerRegion - 1) / slotsPerRegion];
+			for (int i = 0; i < regions.length; i++) {
+				int slots = Math.min(slotsPerRegion, capacity - i * slotsPerRegion);
+				regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long)i * slotsPerRegion * slotSize, (long)slots * slotSize);
+			}
+		}
+		ByteBuffer region(int slot) {
+			return regions[slot >>> regionShift];
+		}
+		int offset(int slot) {
+			return (slot & regionMask) * slotSize;
+		}
+		byte state(int slot) {
+			return region(slot).get(offset(slot));
+		}
+		void setState(int slot, byte state) {
+			region(slot).put(offset(slot), state);
+		}
+		void read(int slot, int offset, byte[] bytes) {
+			ByteBuffer region = region(slot);
+			region.position(offset(slot) + offset);
+			region.get(bytes);
+		}
+		void write(int slot, int offset, byte[] bytes) {
+			ByteBuffer region = region(slot);
+			region.position(offset(slot) + offset);
+			region.put(bytes);
+		}
+		boolean keyEquals(int slot, byte[] key) {
+			ByteBuffer region = region(slot);
+			int offset = offset(slot) + 1;
+			for (int i = 0; i < key.length; i++)
+				if (region.get(offset + i) != key[i])
+					return false;
+			return true;
+		}
+		/**
+		 * @return slot that holds the key, or -(slot where it can be inserted) - 1
+		 */
+		int find(byte[] key, int hash) {
+			int insertionSlot = -1;
+			for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+				byte state = state(slot);
+				if (state == FREE_SLOT)
+					return -(insertionSlot < 0 ? slot : insertionSlot) - 1;
+				if (state == REMOVED_SLOT) {
+					if (insertionSlot < 0)
+						insertionSlot = slot;
+				} else if (keyEquals(slot, key))
+					return slot;
+			}
+		}
+		void forceSlots() {
+			for (MappedByteBuffer region : regions)
+				region.force();
+		}
+		void force() {
+			forceSlots();
+			header.force();
+		}
+	}
+	
+	MappedHashMap(Path path, Codec<K> keyCodec, Codec<V> valueCodec, int expectedSize, boolean syncJournal) throws IOException {
+		this.path = path;
+		this.journalPath = path.resolveSibling(path.getFileName() + ".journal");
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+		this.keySize = keyCodec.getRecordSize();
+		this.valueSize = valueCodec.getRecordSize();
+		this.slotSize = 1 + keySize + valueSize;
+		this.syncJournal = syncJournal;
+		if (keySize <= 0 || valueSize <= 0 || slotSize > MAX_REGION_BYTES)
+			throw new IllegalArgumentException("Invalid record sizes : " + keySize + ", " + valueSize);
+		
+		int slotsPerRegion = Integer.highestOneBit(MAX_REGION_BYTES / slotSize);
+		this.regionShift = Integer.numberOfTrailingZeros(slotsPerRegion);
+		this.regionMask = slotsPerRegion - 1;
+		
+		keyBytes = new byte[keySize];
+		valueBytes = new byte[valueSize];
+		keyBuffer = ByteBuffer.wrap(keyBytes);
+		valueBuffer = ByteBuffer.wrap(valueBytes);
+		record = ByteBuffer.allocate(8 + 1 + keySize + valueSize + 4);
+		
+		if (!Files.exists(path))
+			createTable(capacityFor(expectedSize));
+		
+		openTable();
+		journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		recover();
+	}
+	
+	private static int capacityFor(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(2, (int)Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+		if (capacity <= 0 || capacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("Too many entries : " + expectedSize);
+		return capacity;
+	}
+	
+	private static int hash(byte[] bytes) {
+		int h = 1;
+		for (byte b : bytes)
+			h = 31 * h + b;
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * Build a table in a temporary file and atomically move it to the table path, so that a crash never leaves a partial table behind.
+	 * @param source table whose entries are copied, or null
+	 */
+	private void createTable(int capacity) throws IOException {
+		createTable(capacity, null);
+	}
+	
+	private void createTable(int capacity, Table source) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			Table target = new Table(channel, capacity);
+			int count = 0;
+			if (source != null) {
+				byte[] slotBytes = new byte[slotSize - 1];
+				for (int slot = 0; slot < source.capacity; slot++) {
+					if (source.state(slot) != USED_SLOT)
+						continue;
+					source.read(slot, 1, slotBytes);
+					source.read(slot, 1, keyBytes);
+					int targetSlot = -target.find(keyBytes, hash(keyBytes)) - 1;
+					target.write(targetSlot, 1, slotBytes);
+					target.setState(targetSlot, USED_SLOT);
+					count++;
+				}
+			}
+			ByteBuffer header = target.header;
+			header.putInt(VERSION_OFFSET, VERSION);
+			header.putInt(KEY_SIZE_OFFSET, keySize);
+			header.putInt(VALUE_SIZE_OFFSET, valueSize);
+			header.putInt(CAPACITY_OFFSET, capacity);
+			header.putInt(SIZE_OFFSET, count);
+			header.putInt(TOMBSTONES_OFFSET, 0);
+			header.put(DIRTY_OFFSET, (byte)0);
+			header.putLong(CHECKPOINT_OFFSET, sequence);
+			header.putInt(MAGIC_OFFSET, MAGIC);
+			target.force();
+		} finally {
+			channel.close();
+		}
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	private void openTable() throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException("Not a table file : " + path);
+			
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+				throw new IOException("Not a table file : " + path);
+			if (header.getInt(KEY_SIZE_OFFSET) != keySize || header.getInt(VALUE_SIZE_OFFSET) != valueSize)
+				throw new IOException("Record sizes of " + path + " do not match the codecs : " + header.getInt(KEY_SIZE_OFFSET) + ", " + header.getInt(VALUE_SIZE_OFFSET));
+			
+			table = new Table(channel, header.getInt(CAPACITY_OFFSET));
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		size = table.header.getInt(SIZE_OFFSET);
+		tombstones = table.header.getInt(TOMBSTONES_OFFSET);
+		dirty = table.header.get(DIRTY_OFFSET) != 0;
+		sequence = table.header.getLong(CHECKPOINT_OFFSET);
+	}
+	
+	/**
+	 * Replay the journal records that are not reflected in the table yet, and truncate the journal after the last valid record.
+	 */
+	private void recover() throws IOException {
+		long checkpoint = sequence, position = 0, length = journal.size();
+		int recordSize = record.capacity();
+		while (position + recordSize <= length) {
+			record.clear();
+			while (record.hasRemaining())
+				if (journal.read(record, position + record.position()) < 0)
+					break;
+			
+			crc.reset();
+			crc.update(record.array(), 0, recordSize - 4);
+			if (record.getInt(recordSize - 4) != (int)crc.getValue())
+				break;
+			
+			record.position(0);
+			long recordSequence = record.getLong();
+			byte type = record.get();
+			record.get(keyBytes);
+			record.get(valueBytes);
+			position += recordSize;
+			if (recordSequence <= checkpoint)
+				continue;
+			
+			sequence = recordSequence;
+			markDirty();
+			switch (type) {
+			case PUT_RECORD:
+				storeValue(hash(keyBytes));
+				break;
+			case REMOVE_RECORD:
+				int slot = table.find(keyBytes, hash(keyBytes));
+				if (slot >= 0)
+					removeSlot(slot);
+				break;
+			case CLEAR_RECORD:
+				clearSlots();
+				break;
+			default:
+				throw new IOException("Corrupted journal record " + recordSequence + " in " + journalPath);
+			}
+		}
+		journal.truncate(position);
+		journalPosition = position;
+		
+		// The size and tombstone counters are not trustworthy if a modification was interrupted
+		if (dirty) {
+			size = tombstones = 0;
+			for (int slot = 0; slot < table.capacity; slot++) {
+				byte state = table.state(slot);
+				if (state == USED_SLOT)
+					size++;
+				else if (state == REMOVED_SLOT)
+					tombstones++;
+			}
+			writeCounters();
+		}
+	}
+	
+	private void markDirty() {
+		if (!dirty) {
+			dirty = true;
+			table.header.put(DIRTY_OFFSET, (byte)1);
+		}
+	}
+	
+	private void writeCounters() {
+		table.header.putInt(SIZE_OFFSET, size);
+		table.header.putInt(TOMBSTONES_OFFSET, tombstones);
+	}
+	
+	/**
+	 * Append a record of the current key and value bytes to the journal, before the table is modified.
+	 */
+	private void appendRecord(byte type) {
+		markDirty();
+		record.clear();
+		record.putLong(sequence + 1).put(type).put(keyBytes).put(valueBytes);
+		crc.reset();
+		crc.update(record.array(), 0, record.position());
+		record.putInt((int)crc.getValue());
+		record.flip();
+		try {
+			while (record.hasRemaining())
+				journalPosition += journal.write(record, journalPosition);
+			if (syncJournal)
+				journal.force(false);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		sequence++;
+	}
+	
+	/// Store the value bytes for the key bytes, which must fit in the table
+	private void storeValue(int hash) {
+		int slot = table.find(keyBytes, hash);
+		if (slot >= 0) {
+			table.write(slot, 1 + keySize, valueBytes);
+			return;
+		}
+		slot = -slot - 1;
+		if (table.state(slot) == REMOVED_SLOT)
+			tombstones--;
+		table.write(slot, 1, keyBytes);
+		table.write(slot, 1 + keySize, valueBytes);
+		// Publish the slot once its content is written
+		table.setState(slot, USED_SLOT);
+		size++;
+		writeCounters();
+	}
+	
+	private void removeSlot(int slot) {
+		table.setState(slot, REMOVED_SLOT);
+		size--;
+		tombstones++;
+		writeCounters();
+	}
+	
+	private void clearSlots() {
+		for (int slot = 0; slot < table.capacity; slot++)
+			table.setState(slot, FREE_SLOT);
+		size = tombstones = 0;
+		writeCounters();
+	}
+	
+	private void encodeKey(K key) {
+		if (key == null)
+			throw new NullPointerException("Null keys are not supported");
+		keyCodec.encode(key, keyBuffer, 0);
+	}
+	
+	/// Encode a key given as an Object, returning false if it cannot be a key of this map
+	@SuppressWarnings("unchecked")
+	private boolean encodeKeyObject(Object key) {
+		if (key == null)
+			return false;
+		try {
+			encodeKey((K)key);
+			return true;
+		} catch (ClassCastException ex) {
+			return false;
+		}
+	}
+	
+	private K decodeKey(int slot) {
+		return keyCodec.decode(table.region(slot), table.offset(slot) + 1);
+	}
+	
+	private V decodeValue(int slot) {
+		return valueCodec.decode(table.region(slot), table.offset(slot) + 1 + keySize);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return encodeKeyObject(key) && table.find(keyBytes, hash(keyBytes)) >= 0;
+	}
+	
+	@Override
+	public V get(Object key) {
+		if (!encodeKeyObject(key))
+			return null;
+		
+		int slot = table.find(keyBytes, hash(keyBytes));
+		return slot < 0 ? null : decodeValue(slot);
+	}
+	
+	@Override
+	public V put(K key, V value) {
+		if (value == null)
+			throw new NullPointerException("Null values are not supported");
+		
+		encodeKey(key);
+		valueCodec.encode(value, valueBuffer, 0);
+		int hash = hash(keyBytes);
+		int slot = table.find(keyBytes, hash);
+		V previous = null;
+		if (slot >= 0) {
+			previous = decodeValue(slot);
+		} else if (size + tombstones + 1 > table.capacity * LOAD_FACTOR) {
+			// Purge tombstones, or grow if they are not numerous enough
+			int capacity = size + 1 > table.capacity * LOAD_FACTOR / 2 ? table.capacity << 1 : table.capacity;
+			if (capacity > MAX_CAPACITY)
+				throw new IllegalStateException("Too many entries : " + size);
+			rehash(capacity);
+			encodeKey(key);
+			valueCodec.encode(value, valueBuffer, 0);
+		}
+		appendRecord(PUT_RECORD);
+		storeValue(hash);
+		modCount++;
+		return previous;
+	}
+	
+	@Override
+	public V remove(Object key) {
+		if (!encodeKeyObject(key))
+			return null;
+		
+		int slot = table.find(keyBytes, hash(keyBytes));
+		if (slot < 0)
+			return null;
+		
+		V previous = decodeValue(slot);
+		removeEntry(slot);
+		return previous;
+	}
+	
+	/// Remove the entry of a slot, whose key bytes are in keyBytes
+	private void removeEntry(int slot) {
+		Arrays.fill(valueBytes, (byte)0);
+		appendRecord(REMOVE_RECORD);
+		removeSlot(slot);
+		modCount++;
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(keyBytes, (byte)0);
+		Arrays.fill(valueBytes, (byte)0);
+		appendRecord(CLEAR_RECORD);
+		clearSlots();
+		modCount++;
+	}
+	
+	/**
+	 * Write the table to a new file (which also checkpoints it) and replace the current table file with it.
+	 */
+	private void rehash(int capacity) {
+		try {
+			Table old = table;
+			createTable(capacity, old);
+			old.channel.close();
+			openTable();
+			journal.truncate(0);
+			journalPosition = 0;
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	/**
+	 * Force the table to disk and discard the journal, whose changes are all reflected in the table.
+	 */
+	public void checkpoint() throws IOException {
+		// Recovery trusts the slots up to the checkpoint sequence of the header : they must reach the disk before the header declares them checkpointed
+		table.forceSlots();
+		table.header.putLong(CHECKPOINT_OFFSET, sequence);
+		table.header.put(DIRTY_OFFSET, (byte)0);
+		table.header.force();
+		dirty = false;
+		journal.truncate(0);
+		journal.force(true);
+		journalPosition = 0;
+	}
+	
+	public void close() throws IOException {
+		if (journal == null)
+			return;
+		
+		try {
+			checkpoint();
+		} finally {
+			table.channel.close();
+			journal.close();
+			journal = null;
+		}
+	}
+	
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public void clear() {
+				MappedHashMap.this.clear();
+			}
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new Iterator<Map.Entry<K, V>>() {
+					int next = nextUsedSlot(0), last = -1;
+					int expectedModCount = modCount;
+					
+					int nextUsedSlot(int slot) {
+						while (slot < table.capacity && table.state(slot) != USED_SLOT)
+							slot++;
+						return slot;
+					}
+					public boolean hasNext() {
+						return next < table.capacity;
+					}
+					public Map.Entry<K, V> next() {
+						if (modCount != expectedModCount)
+							throw new ConcurrentModificationException();
+						if (next >= table.capacity)
+							throw new NoSuchElementException();
+						last = next;
+						next = nextUsedSlot(next + 1);
+						return new UnmodifiableEntry<K, V>(decodeKey(last), decodeValue(last));
+					}
+					public void remove() {
+						if (last < 0)
+							throw new IllegalStateException();
+						if (modCount != expectedModCount)
+							throw new ConcurrentModificationException();
+						// Removal leaves a tombstone : no other slot moves
+						table.read(last, 1, keyBytes);
+						removeEntry(last);
+						last = -1;
+						expectedModCount = modCount;
+					}
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,135 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Adapter that caches the values returned by another adapter, for adapters that are expensive to call (parsers, for instance).<br>
+ * The cache is bounded : once it holds maximumSize values, the least recently used ones are evicted. Source values are either compared by equality or by identity (for mutable values, or values which equals method is itself expensive).<br>
+ * AdaptedCollection instances created with a cache invalidate the entries of the elements of their (listenable) wrapped collection that are removed or updated.<br>
+ * This class is thread-safe, but the adapted values of concurrent cache misses on the same value may be computed more than once. Values are adapted without holding the lock of the cache, and are not cached if an invalidation happened meanwhile (as the value may have been computed from a stale source value).
+ * @see AdaptedCollection#AdaptedCollection(java.util.Collection, Adapter, Adapter, int, boolean)
+ * @author Olivier Chafik
+ * @param <U> type of the values to adapt
+ * @param <V> type of the adapted values
+ */
+public class MemoizingAdapter<U, V> implements Adapter<U, V> {
+	protected final Adapter<U, V> adapter;
+	protected final int maximumSize;
+	protected final boolean identityKeys;
+	/// Adapted values by source value (or IdentityKey), in least-recently used order
+	private final LinkedHashMap<Object, V> cache;
+	private long hitCount, missCount;
+	/// Number of invalidations so far, to detect those that happen while a missing value is adapted
+	private long invalidations;
+	
+	public MemoizingAdapter(Adapter<U, V> adapter, final int maximumSize, boolean identityKeys) {
+		if (adapter == null)
+			throw new NullPointerException("Null adapter");
+		if (maximumSize <= 0)
+			throw new IllegalArgumentException("Maximum size must be positive : " + maximumSize);
+		
+		this.adapter = adapter;
+		this.maximumSize = maximumSize;
+		this.identityKeys = identityKeys;
+		this.cache = new LinkedHashMap<Object, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, V> eldest) {
+				return size() > maximumSize;
+			}
+		};
+	}
+	
+	private static final class IdentityKey {
+		final Object value;
+		IdentityKey(Object value) {
+			this.value = value;
+		}
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(value);
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey && ((IdentityKey)obj).value == value;
+		}
+	}
+	
+	private Object key(Object value) {
+		return identityKeys ? new IdentityKey(value) : value;
+	}
+	
+	public V adapt(U value) {
+		Object key = key(value);
+		long version;
+		synchronized (this) {
+			V adapted = cache.get(key);
+			if (adapted != null || cache.containsKey(key)) {
+				hitCount++;
+				return adapted;
+			}
+			missCount++;
+			version = invalidations;
+		}
+		// Do not hold the lock while adapting : the adapter may be slow
+		V adapted = adapter.adapt(value);
+		synchronized (this) {
+			if (invalidations == version)
+				cache.put(key, adapted);
+		}
+		return adapted;
+	}
+	
+	/**
+	 * Forget the adapted value of a source value.
+	 */
+	public synchronized void invalidate(Object value) {
+		invalidations++;
+		cache.remove(key(value));
+	}
+	
+	public synchronized void invalidateAll() {
+		invalidations++;
+		cache.clear();
+	}
+	
+	/**
+	 * @return number of cached values
+	 */
+	public synchronized int size() {
+		return cache.size();
+	}
+	
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	
+	public Adapter<U, V> getAdapter() {
+		return adapter;
+	}
+}
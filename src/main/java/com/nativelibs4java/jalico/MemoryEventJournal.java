@@ -0,0 +1,75 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+
+/**
+ * EventJournal that keeps the most recent events in a ring buffer.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the journaled events
+ */
+public class MemoryEventJournal<T> implements EventJournal<T> {
+	private final CollectionEvent<T>[] events;
+	private long firstSequence, nextSequence;
+	
+	/**
+	 * @param capacity maximum number of events held by the journal
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryEventJournal(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Invalid capacity : " + capacity);
+		events = (CollectionEvent<T>[])new CollectionEvent<?>[capacity];
+	}
+	
+	public synchronized void append(CollectionEvent<T> event) {
+		long sequence = event.getSequence();
+		if (sequence != nextSequence)
+			throw new IllegalArgumentException("Expected event " + nextSequence + ", got event " + sequence);
+		
+		events[(int)(sequence % events.length)] = new CollectionEvent<T>(event.getSource(), new ArrayList<T>(event.getElements()), event.getType(), event.getFirstIndex(), event.getLastIndex(), sequence);
+		nextSequence = sequence + 1;
+		if (nextSequence - firstSequence > events.length)
+			firstSequence = nextSequence - events.length;
+	}
+	
+	public synchronized long getFirstSequence() {
+		return firstSequence;
+	}
+	
+	public synchronized long getNextSequence() {
+		return nextSequence;
+	}
+	
+	public void replay(long fromSequence, CollectionListener<T> listener) {
+		for (long sequence = fromSequence;; sequence++) {
+			CollectionEvent<T> event;
+			synchronized (this) {
+				if (sequence < firstSequence)
+					sequence = firstSequence;
+				if (sequence >= nextSequence)
+					return;
+				event = events[(int)(sequence % events.length)];
+			}
+			listener.collectionChanged(event);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free unbounded multiple-producer single-consumer queue (intrusive linked list with an exchanged tail, after Dmitry Vyukov).<br>
+ * offer() may be called from any thread and never blocks nor retries. poll(), peek() and removal must only be called from a single consumer thread at a time.<br>
+ * An element whose offer() has not completed yet may be temporarily invisible to the consumer, even if elements offered after it are already linked.
+ * @author Olivier Chafik
+ */
+final class MpscLinkedQueue<T> extends AbstractQueue<T> {
+	private static final class Node<T> {
+		volatile T value;
+		volatile Node<T> next;
+		
+		Node(T value) {
+			this.value = value;
+		}
+	}
+	
+	/// Last node, exchanged by producers
+	private final AtomicReference<Node<T>> tail;
+	/// Stub node which successor holds the first element, only moved by the consumer
+	private volatile Node<T> head;
+	
+	MpscLinkedQueue() {
+		Node<T> stub = new Node<T>(null);
+		head = stub;
+		tail = new AtomicReference<Node<T>>(stub);
+	}
+	
+	public boolean offer(T e) {
+		if (e == null)
+			throw new NullPointerException();
+		
+		Node<T> node = new Node<T>(e);
+		tail.getAndSet(node).next = node;
+		return true;
+	}
+	
+	public T poll() {
+		Node<T> next = head.next;
+		if (next == null)
+			return null;
+		
+		T value = next.value;
+		next.value = null;
+		head = next;
+		return value;
+	}
+	
+	public T peek() {
+		Node<T> next = head.next;
+		return next == null ? null : next.value;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return head.next == null;
+	}
+	
+	/**
+	 * Count the linked elements in O(n).
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for (Node<T> node = head.next; node != null && size < Integer.MAX_VALUE; node = node.next)
+			size++;
+		return size;
+	}
+	
+	/**
+	 * Weakly consistent iterator, which does not support removal.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			Node<T> next = head.next;
+			T nextValue = advance();
+			
+			/// Move to the next node that holds a value, skipping nodes consumed since we reached them
+			T advance() {
+				for (; next != null; next = next.next) {
+					T value = next.value;
+					if (value != null)
+						return value;
+				}
+				return null;
+			}
+			public boolean hasNext() {
+				return nextValue != null;
+			}
+			public T next() {
+				T value = nextValue;
+				if (value == null)
+					throw new NoSuchElementException();
+				next = next.next;
+				nextValue = advance();
+				return value;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,76 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event emitted when a modification of a DefaultListenableCollection or DefaultListenableMap (including the dispatch of its events) takes longer than the threshold of the recording.<br>
+ * Stack traces are recorded, so that hot call sites show up in Mission Control.
+ * @author Olivier Chafik
+ */
+@Name("com.nativelibs4java.jalico.Mutation")
+@Label("Listenable Collection Mutation")
+@Description("Modification of a listenable collection or map, including the dispatch of its events")
+@Category({ "Jalico" })
+@Threshold("1 ms")
+final class MutationEvent extends Event {
+	@Label("Operation")
+	String operation;
+	
+	@Label("Collection Class")
+	Class<?> collectionClass;
+	
+	@Label("Collection Identity")
+	@Description("Identity hash code of the listenable collection or map")
+	int collectionIdentity;
+	
+	@Label("Elements")
+	@Description("Number of elements passed to the operation")
+	int elementCount;
+	
+	/**
+	 * @return started event (see FlightRecording.startMutation())
+	 */
+	static MutationEvent start() {
+		MutationEvent event = new MutationEvent();
+		event.begin();
+		return event;
+	}
+	
+	/**
+	 * Commit an event returned by start() if it lasted longer than the threshold of the recording.
+	 */
+	static void finish(MutationEvent event, Object collection, String operation, int elementCount) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.collectionClass = collection.getClass();
+			event.collectionIdentity = System.identityHashCode(collection);
+			event.elementCount = elementCount;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,375 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * ListenableList implementation that stores its elements outside of the Java heap, as fixed-size records written by a Codec in ByteBuffer segments.<br>
+ * Elements are decoded on each access, so that the heap usage of the list does not depend on its size.<br>
+ * Multiple-element events do not hold decoded elements but lazy views of the affected range of records :
+ * <ul>
+ * <li>ADDED and UPDATED events view the current records at the indices of the event</li>
+ * <li>REMOVED events of clear() view the former segments of the list, which are simply handed over to the event</li>
+ * <li>other REMOVED events view a copy of the removed records, made in direct buffers sized after the removed range (rather than in segments of the allocator) and only when there are listeners</li>
+ * </ul>
+ * These views are only guaranteed to reflect the modification during the notification of listeners.<br>
+ * This class is not thread-safe.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the list
+ */
+public class OffHeapListenableList<T> extends AbstractList<T> implements ListenableList<T>, RandomAccess {
+	/**
+	 * Source of the buffers that hold the records of an OffHeapListenableList.
+	 */
+	public interface SegmentAllocator {
+		public ByteBuffer allocate(int capacity);
+	}
+	
+	/// Allocates direct buffers
+	public static final SegmentAllocator DIRECT_SEGMENTS = new SegmentAllocator() {
+		public ByteBuffer allocate(int capacity) {
+			return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+		}
+	};
+	
+	/**
+	 * Allocates buffers mapped from temporary files of a directory, so that the operating system may page records out.
+	 * @param directory directory where the temporary files are created
+	 */
+	public static SegmentAllocator mappedSegments(final File directory) {
+		return new SegmentAllocator() {
+			public ByteBuffer allocate(int capacity) {
+				try {
+					File file = File.createTempFile("jalico", ".segment", directory);
+					RandomAccessFile raf = new RandomAccessFile(file, "rw");
+					try {
+						return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity).order(ByteOrder.nativeOrder());
+					} finally {
+						raf.close();
+						// The mapping outlives the file on systems that allow it
+						if (!file.delete())
+							file.deleteOnExit();
+					}
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+		};
+	}
+	
+	private static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+	private static final int MAX_SCRATCH_BYTES = 1 << 16;
+	
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	
+	private final Codec<T> codec;
+	private final SegmentAllocator allocator;
+	private final int recordSize, segmentShift, segmentMask;
+	
+	private List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+	private int size;
+	/// Heap buffer used to move records around
+	private byte[] scratch;
+	
+	public OffHeapListenableList(Codec<T> codec) {
+		this(codec, DIRECT_SEGMENTS, Math.max(1, DEFAULT_SEGMENT_BYTES / codec.getRecordSize()));
+	}
+	
+	/**
+	 * @param codec converts elements to and from records
+	 * @param allocator source of the segments of the list
+	 * @param recordsPerSegment number of records held by each segment (rounded up to a power of two)
+	 */
+	public OffHeapListenableList(Codec<T> codec, SegmentAllocator allocator, int recordsPerSegment) {
+		this.codec = codec;
+		this.allocator = allocator;
+		this.recordSize = codec.getRecordSize();
+		if (recordSize <= 0)
+			throw new IllegalArgumentException("Invalid record size : " + recordSize);
+		
+		int records = recordsPerSegment <= 1 ? 1 : Integer.highestOneBit(recordsPerSegment - 1) << 1;
+		if (records <= 0 || (long)records * recordSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Segments of " + recordsPerSegment + " records of " + recordSize + " bytes are too large");
+		
+		this.segmentShift = Integer.numberOfTrailingZeros(records);
+		this.segmentMask = records - 1;
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	public Codec<T> getCodec() {
+		return codec;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+	
+	private void checkPositionIndex(int index) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+	
+	private void ensureCapacity(long minCapacity) {
+		allocateSegments(segments, minCapacity);
+	}
+	
+	private void allocateSegments(List<ByteBuffer> segments, long minCapacity) {
+		if (minCapacity > Integer.MAX_VALUE)
+			throw new IllegalStateException("Too many elements : " + minCapacity);
+		
+		int segmentBytes = (segmentMask + 1) * recordSize;
+		while (((long)segments.size() << segmentShift) < minCapacity)
+			segments.add(allocator.allocate(segmentBytes));
+	}
+	
+	/// Direct buffers laid out as segments that hold count records, the last one being only as large as needed
+	private List<ByteBuffer> detachedSegments(int count) {
+		ByteOrder order = segments.get(0).order();
+		List<ByteBuffer> detached = new ArrayList<ByteBuffer>();
+		for (int remaining = count; remaining > 0; remaining -= segmentMask + 1)
+			detached.add(ByteBuffer.allocateDirect(Math.min(remaining, segmentMask + 1) * recordSize).order(order));
+		return detached;
+	}
+	
+	/// Let go of the segments that are not needed anymore, keeping one spare segment
+	private void trimSegments() {
+		int needed = (int)(((long)size + segmentMask) >> segmentShift) + 1;
+		for (int i = segments.size(); i-- > needed;)
+			segments.remove(i);
+	}
+	
+	private T decode(List<ByteBuffer> segments, int index) {
+		return codec.decode(segments.get(index >>> segmentShift), (index & segmentMask) * recordSize);
+	}
+	
+	private void encode(T value, int index) {
+		codec.encode(value, segments.get(index >>> segmentShift), (index & segmentMask) * recordSize);
+	}
+	
+	/**
+	 * Copy records between segment lists (or within a single one), chunk by chunk through the scratch buffer.
+	 */
+	private void copyRecords(List<ByteBuffer> source, int sourceIndex, List<ByteBuffer> destination, int destinationIndex, int count) {
+		if (count == 0)
+			return;
+		
+		if (scratch == null)
+			scratch = new byte[Math.max(recordSize, MAX_SCRATCH_BYTES / recordSize * recordSize)];
+		
+		int maxChunk = scratch.length / recordSize;
+		// Copy backwards when moving records to the right within the same segments, so that no record is overwritten before being copied
+		boolean backwards = source == destination && destinationIndex > sourceIndex;
+		int done = 0;
+		while (done < count) {
+			int remaining = count - done;
+			int chunk;
+			int s, d;
+			if (backwards) {
+				int sEnd = sourceIndex + remaining, dEnd = destinationIndex + remaining;
+				chunk = Math.min(maxChunk, Math.min(remaining, Math.min(((sEnd - 1) & segmentMask) + 1, ((dEnd - 1) & segmentMask) + 1)));
+				s = sEnd - chunk;
+				d = dEnd - chunk;
+			} else {
+				s = sourceIndex + done;
+				d = destinationIndex + done;
+				chunk = Math.min(maxChunk, Math.min(remaining, Math.min(segmentMask + 1 - (s & segmentMask), segmentMask + 1 - (d & segmentMask))));
+			}
+			int bytes = chunk * recordSize;
+			ByteBuffer from = source.get(s >>> segmentShift);
+			from.position((s & segmentMask) * recordSize);
+			from.get(scratch, 0, bytes);
+			ByteBuffer to = destination.get(d >>> segmentShift);
+			to.position((d & segmentMask) * recordSize);
+			to.put(scratch, 0, bytes);
+			done += chunk;
+		}
+	}
+	
+	/**
+	 * Lazy list of records from a segment list
+	 */
+	private class RecordRange extends AbstractList<T> implements RandomAccess {
+		private final List<ByteBuffer> segments;
+		private final int offset, size;
+		
+		RecordRange(List<ByteBuffer> segments, int offset, int size) {
+			this.segments = segments;
+			this.offset = offset;
+			this.size = size;
+		}
+		@Override
+		public int size() {
+			return size;
+		}
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return decode(segments, offset + index);
+		}
+	}
+	
+	@Override
+	public T get(int index) {
+		checkIndex(index);
+		return decode(segments, index);
+	}
+	
+	@Override
+	public T set(int index, T element) {
+		checkIndex(index);
+		T previous = decode(segments, index);
+		encode(element, index);
+		collectionSupport.fireElementUpdated(this, element, index);
+		return previous;
+	}
+	
+	@Override
+	public boolean add(T element) {
+		ensureCapacity(size + 1L);
+		int index = size;
+		encode(element, index);
+		size++;
+		modCount++;
+		collectionSupport.fireElementAdded(this, element, index);
+		return true;
+	}
+	
+	@Override
+	public void add(int index, T element) {
+		checkPositionIndex(index);
+		ensureCapacity(size + 1L);
+		copyRecords(segments, index, segments, index + 1, size - index);
+		encode(element, index);
+		size++;
+		modCount++;
+		collectionSupport.fireElementAdded(this, element, index);
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends T> c) {
+		return addAll(size, c);
+	}
+	
+	/**
+	 * Insert elements, notifying listeners with a single ADDED event that views the inserted records.
+	 */
+	@Override
+	public boolean addAll(int index, Collection<? extends T> c) {
+		checkPositionIndex(index);
+		int count = c.size();
+		if (count == 0)
+			return false;
+		
+		ensureCapacity((long)size + count);
+		copyRecords(segments, index, segments, index + count, size - index);
+		int i = index;
+		for (T element : c)
+			encode(element, i++);
+		size += count;
+		modCount++;
+		if (collectionSupport.hasListeners())
+			collectionSupport.fireAdded(this, new RecordRange(segments, index, count), index, index + count - 1);
+		return true;
+	}
+	
+	@Override
+	public T remove(int index) {
+		checkIndex(index);
+		T removed = decode(segments, index);
+		copyRecords(segments, index + 1, segments, index, size - index - 1);
+		size--;
+		modCount++;
+		trimSegments();
+		collectionSupport.fireElementRemoved(this, removed, index);
+		return removed;
+	}
+	
+	/**
+	 * Remove a range of elements, notifying listeners with a single REMOVED event that views a copy of the removed records.
+	 */
+	@Override
+	protected void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "[, Size: " + size);
+		
+		int count = toIndex - fromIndex;
+		if (count == 0)
+			return;
+		
+		if (count == size) {
+			clear();
+			return;
+		}
+		List<T> removed = null;
+		if (collectionSupport.hasListeners()) {
+			List<ByteBuffer> detached = detachedSegments(count);
+			copyRecords(segments, fromIndex, detached, 0, count);
+			removed = new RecordRange(detached, 0, count);
+		}
+		copyRecords(segments, toIndex, segments, fromIndex, size - toIndex);
+		size -= count;
+		modCount++;
+		trimSegments();
+		if (removed != null)
+			collectionSupport.fireRemoved(this, removed, fromIndex, toIndex - 1);
+	}
+	
+	/**
+	 * Remove all elements, notifying listeners with a single REMOVED event that views the former segments of the list.
+	 */
+	@Override
+	public void clear() {
+		if (size == 0)
+			return;
+		
+		List<ByteBuffer> removed = segments;
+		int count = size;
+		segments = new ArrayList<ByteBuffer>();
+		size = 0;
+		modCount++;
+		collectionSupport.fireRemoved(this, new RecordRange(removed, 0, count), 0, count - 1);
+	}
+}
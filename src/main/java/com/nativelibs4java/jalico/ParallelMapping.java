@@ -0,0 +1,142 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Parallel mapping of a collection in a ForkJoinPool (see ListenableCollections.map(Collection, Adapter, boolean)).<br>
+ * The spliterator of the input is split until chunks hold at most chunkSize elements, each chunk is mapped without any synchronization and its values are then published with a single batched ADDED event.<br>
+ * When the order is preserved, each chunk knows its offset in the input and its values are inserted after those of the chunks that precede it and were already published, so that the values end up in the order of the input.<br>
+ * The number of values published before each offset is then kept in a Fenwick tree indexed by offset (one int per input element), so that each chunk finds its insertion index in O(log n).
+ * @author Olivier Chafik
+ */
+class ParallelMapping<U, V> {
+	private final Adapter<? super U, ? extends V> mapper;
+	private final boolean preserveOrder;
+	private final int chunkSize;
+	final ListenableList<V> values;
+	final ListenableList<Pair<U, Throwable>> errors;
+	final CompletableFuture<Void> completion = new CompletableFuture<Void>();
+	/// Fenwick tree of the number of values published by the chunk at each offset of the input (when the order is preserved)
+	private int[] publishedCounts;
+	
+	ParallelMapping(Adapter<? super U, ? extends V> mapper, boolean preserveOrder, int chunkSize, int expectedSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Invalid chunk size : " + chunkSize);
+		
+		this.mapper = mapper;
+		this.preserveOrder = preserveOrder;
+		this.chunkSize = chunkSize;
+		this.values = ListenableCollections.synchronizedList(ListenableCollections.listenableList(new ArrayList<V>(expectedSize)));
+		this.errors = ListenableCollections.synchronizedList(ListenableCollections.listenableList(new ArrayList<Pair<U, Throwable>>()));
+	}
+	
+	void start(Collection<U> input, ForkJoinPool pool) {
+		Spliterator<U> spliterator = input.spliterator();
+		if (preserveOrder && !spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
+			// Offsets of the chunks can only be computed from spliterators which splits have exact sizes
+			spliterator = new ArrayList<U>(input).spliterator();
+		}
+		if (preserveOrder)
+			publishedCounts = new int[(int)spliterator.getExactSizeIfKnown() + 1];
+		final Chunk root = new Chunk(spliterator, 0);
+		pool.execute(new Runnable() { public void run() {
+			try {
+				root.invoke();
+				completion.complete(null);
+			} catch (Throwable th) {
+				completion.completeExceptionally(th);
+			}
+		}});
+	}
+	
+	private synchronized void publish(long offset, List<V> chunkValues, List<Pair<U, Throwable>> chunkErrors) {
+		if (!chunkValues.isEmpty()) {
+			if (preserveOrder) {
+				values.addAll(publishedBefore((int)offset), chunkValues);
+				published((int)offset, chunkValues.size());
+			} else {
+				values.addAll(chunkValues);
+			}
+		}
+		if (!chunkErrors.isEmpty())
+			errors.addAll(chunkErrors);
+	}
+	
+	/// Number of values published by the chunks which offset is less than offset
+	private int publishedBefore(int offset) {
+		int count = 0;
+		for (int i = offset; i > 0; i -= i & -i)
+			count += publishedCounts[i];
+		return count;
+	}
+	
+	private void published(int offset, int count) {
+		for (int i = offset + 1; i < publishedCounts.length; i += i & -i)
+			publishedCounts[i] += count;
+	}
+	
+	@SuppressWarnings("serial")
+	private final class Chunk extends RecursiveAction implements Consumer<U> {
+		private final Spliterator<U> spliterator;
+		private final long offset;
+		private List<V> chunkValues;
+		private List<Pair<U, Throwable>> chunkErrors;
+		
+		Chunk(Spliterator<U> spliterator, long offset) {
+			this.spliterator = spliterator;
+			this.offset = offset;
+		}
+		
+		@Override
+		protected void compute() {
+			// Skip the remaining chunks once the completion was cancelled
+			if (completion.isDone())
+				return;
+			
+			Spliterator<U> prefix;
+			if (spliterator.estimateSize() > chunkSize && (prefix = spliterator.trySplit()) != null) {
+				long prefixSize = prefix.getExactSizeIfKnown();
+				invokeAll(new Chunk(prefix, offset), new Chunk(spliterator, offset + Math.max(prefixSize, 0)));
+				return;
+			}
+			chunkValues = new ArrayList<V>((int)Math.min(spliterator.estimateSize(), chunkSize));
+			chunkErrors = new ArrayList<Pair<U, Throwable>>(0);
+			spliterator.forEachRemaining(this);
+			publish(offset, chunkValues, chunkErrors);
+		}
+		
+		public void accept(U value) {
+			try {
+				chunkValues.add(mapper.adapt(value));
+			} catch (Throwable th) {
+				chunkErrors.add(new Pair<U, Throwable>(value, th));
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * ListenableMap which entries are stored in a memory-mapped file, so that it can be reopened instantly and hold more data than the heap.<br>
+ * Every change is appended to a checksummed journal (file name + ".journal") before it is applied to the mapped table and propagated to listeners.<br>
+ * When the map is reopened, the table file is remapped and only the journal records written since the last checkpoint are replayed.
+ * A checkpoint happens on close(), on explicit calls to checkpoint() and whenever the table is resized.<br>
+ * Keys and values are converted to fixed-size records by codecs ; null keys and values are not supported.<br>
+ * Changes survive process crashes. 
+ * To also survive operating system crashes, open the map with syncJournal set to true (each change is then forced to disk) and call checkpoint() regularly.<br>
+ * This class is not thread-safe.
+ * @author Olivier Chafik
+ * @param <K> Type of the keys of the map
+ * @param <V> Type of the values of the map
+ */
+public class PersistentListenableMap<K,V> extends DefaultListenableMap<K,V> implements Closeable {
+	
+	public PersistentListenableMap(File file, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+		this(file, keyCodec, valueCodec, 16, false);
+	}
+	
+	/**
+	 * @param file table file, created if it does not exist
+	 * @param keyCodec converts keys to and from records
+	 * @param valueCodec converts values to and from records
+	 * @param expectedSize number of entries the table is initially sized for, when it is created
+	 * @param syncJournal whether each journal record is forced to disk before the corresponding change is applied
+	 */
+	public PersistentListenableMap(File file, Codec<K> keyCodec, Codec<V> valueCodec, int expectedSize, boolean syncJournal) throws IOException {
+		super(new MappedHashMap<K,V>(file.toPath(), keyCodec, valueCodec, expectedSize, syncJournal));
+	}
+	
+	MappedHashMap<K,V> getStorage() {
+		return (MappedHashMap<K,V>)map;
+	}
+	
+	private boolean hasListeners() {
+		return keySet != null && keySet.collectionSupport.hasListeners() ||
+			entrySet != null && entrySet.collectionSupport.hasListeners() ||
+			valuesSupport != null && valuesSupport.hasListeners();
+	}
+	
+	/**
+	 * Only copies the entries to the heap (to notify listeners of their removal) if anyone listens to the map.
+	 */
+	@Override
+	public void clear() {
+		if (hasListeners())
+			super.clear();
+		else
+			map.clear();
+	}
+	
+	/**
+	 * Force the table to disk, so that it does not depend on the journal anymore, and truncate the journal.
+	 */
+	public void checkpoint() throws IOException {
+		getStorage().checkpoint();
+	}
+	
+	/**
+	 * Checkpoint the map and release its files.
+	 */
+	public void close() throws IOException {
+		getStorage().close();
+	}
+}
@@ -0,0 +1,200 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Persistent (immutable) AVL tree of elements indexed by position, each node knowing the size of its subtree.<br>
+ * Modifications copy the path from the root to the modified node and share everything else with the previous version, so that any version can be kept in O(1) and modifying costs O(log n) time and memory.<br>
+ * Trees which elements are kept sorted double as order-statistics trees (see lowerBound and upperBound).<br>
+ * A null node is an empty tree.
+ * @author Olivier Chafik
+ */
+final class PersistentTree {
+	private PersistentTree() {}
+	
+	static final class Node<T> {
+		final T value;
+		final Node<T> left, right;
+		final int height, size;
+		
+		Node(T value, Node<T> left, Node<T> right) {
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+	
+	static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+	
+	static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+	
+	/// New node with the given children, rotated if they are unbalanced by at most two levels
+	private static <T> Node<T> balance(T value, Node<T> left, Node<T> right) {
+		int hl = height(left), hr = height(right);
+		if (hl > hr + 1) {
+			if (height(left.left) >= height(left.right))
+				return new Node<T>(left.value, left.left, new Node<T>(value, left.right, right));
+			Node<T> lr = left.right;
+			return new Node<T>(lr.value, new Node<T>(left.value, left.left, lr.left), new Node<T>(value, lr.right, right));
+		}
+		if (hr > hl + 1) {
+			if (height(right.right) >= height(right.left))
+				return new Node<T>(right.value, new Node<T>(value, left, right.left), right.right);
+			Node<T> rl = right.left;
+			return new Node<T>(rl.value, new Node<T>(value, left, rl.left), new Node<T>(right.value, rl.right, right.right));
+		}
+		return new Node<T>(value, left, right);
+	}
+	
+	static <T> T get(Node<T> node, int index) {
+		for (;;) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index == leftSize) {
+				return node.value;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+	
+	static <T> Node<T> set(Node<T> node, int index, T value) {
+		int leftSize = size(node.left);
+		if (index < leftSize)
+			return new Node<T>(node.value, set(node.left, index, value), node.right);
+		if (index == leftSize)
+			return new Node<T>(value, node.left, node.right);
+		return new Node<T>(node.value, node.left, set(node.right, index - leftSize - 1, value));
+	}
+	
+	static <T> Node<T> insert(Node<T> node, int index, T value) {
+		if (node == null)
+			return new Node<T>(value, null, null);
+		
+		int leftSize = size(node.left);
+		if (index <= leftSize)
+			return balance(node.value, insert(node.left, index, value), node.right);
+		return balance(node.value, node.left, insert(node.right, index - leftSize - 1, value));
+	}
+	
+	static <T> Node<T> remove(Node<T> node, int index) {
+		int leftSize = size(node.left);
+		if (index < leftSize)
+			return balance(node.value, remove(node.left, index), node.right);
+		if (index > leftSize)
+			return balance(node.value, node.left, remove(node.right, index - leftSize - 1));
+		
+		if (node.left == null)
+			return node.right;
+		if (node.right == null)
+			return node.left;
+		
+		// Replace the removed value by its successor
+		return balance(get(node.right, 0), node.left, remove(node.right, 0));
+	}
+	
+	/**
+	 * Index of the first element that is not less than value, in a tree which elements are sorted according to comparator.
+	 */
+	static <T> int lowerBound(Node<T> node, T value, Comparator<? super T> comparator) {
+		int index = 0;
+		while (node != null) {
+			if (comparator.compare(node.value, value) < 0) {
+				index += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Index of the first element that is greater than value, in a tree which elements are sorted according to comparator.
+	 */
+	static <T> int upperBound(Node<T> node, T value, Comparator<? super T> comparator) {
+		int index = 0;
+		while (node != null) {
+			if (comparator.compare(node.value, value) <= 0) {
+				index += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Build a balanced tree in O(n).
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> Node<T> build(Object[] values, int from, int to) {
+		if (from >= to)
+			return null;
+		
+		int middle = (from + to) >>> 1;
+		return new Node<T>((T)values[middle], PersistentTree.<T>build(values, from, middle), PersistentTree.<T>build(values, middle + 1, to));
+	}
+	
+	/**
+	 * In-order iterator, O(1) amortized per element.
+	 */
+	static <T> Iterator<T> iterator(final Node<T> root) {
+		return new Iterator<T>() {
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			final Node<T>[] stack = new Node[height(root)];
+			int depth;
+			{
+				pushLeft(root);
+			}
+			void pushLeft(Node<T> node) {
+				for (; node != null; node = node.left)
+					stack[depth++] = node;
+			}
+			public boolean hasNext() {
+				return depth != 0;
+			}
+			public T next() {
+				if (depth == 0)
+					throw new NoSuchElementException();
+				Node<T> node = stack[--depth];
+				stack[depth] = null;
+				pushLeft(node.right);
+				return node.value;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
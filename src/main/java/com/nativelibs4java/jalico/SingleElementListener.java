@@ -0,0 +1,38 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+/**
+ * Collection listener that can be notified of single-element modifications without any allocation.<br>
+ * When a modification affects a single element, ListenableSupport calls elementChanged instead of building a CollectionEvent (and the singleton collection it would contain).<br>
+ * Modifications that affect several elements are still notified through collectionChanged.
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the collections that are listened to by the listener.
+ */
+public interface SingleElementListener<T> extends CollectionListener<T> {
+	/**
+	 * Called after a single element was added to, removed from or updated in the source collection.
+	 * @param source listenable collection where the modification happened
+	 * @param type type of modification
+	 * @param element element affected by the modification
+	 * @param index index of the element in the source, or -1 if not applicable
+	 */
+	public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index);
+}
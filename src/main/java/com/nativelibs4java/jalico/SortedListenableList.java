@@ -0,0 +1,288 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Live sorted view of a listenable collection, backed by an order-statistics tree (a PersistentTree which elements are kept sorted).<br>
+ * Inserting, removing and finding the index of an element cost O(log n) (plus the number of elements that compare equal to it), as does get(int), and the events of the view carry the indices of the changes, so that list models need not rescan it.<br>
+ * Elements that compare equal are kept in the order they were added. Elements which sort key changes must be removed and re-added to the source (or notified with an UPDATED event) to be moved.<br>
+ * The view listens to its source as long as it is reachable from it. When the source is a list, the view also keeps a copy of its elements, to know which element an indexed UPDATED event replaced.<br>
+ * Iterators work on a snapshot of the view, in O(1) per element. 
+ * This class is not thread-safe : modifications of the source must not happen concurrently with those of the view.
+ * @author Olivier Chafik
+ * @param <T> type of the elements of the list
+ */
+public class SortedListenableList<T> extends AbstractList<T> implements ListenableList<T> {
+	protected final ListenableCollection<T> source;
+	protected final Comparator<? super T> comparator;
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	private PersistentTree.Node<T> root;
+	/// Copy of the elements of the source if it is a list, null otherwise
+	private final ListMirror<T> sourceElements;
+	
+	@SuppressWarnings("unchecked")
+	public SortedListenableList(ListenableCollection<T> source, Comparator<? super T> comparator) {
+		if (comparator == null)
+			throw new NullPointerException("Null comparator");
+		
+		this.source = source;
+		this.comparator = comparator;
+		this.sourceElements = ListMirror.of(source);
+		
+		Object[] array = source.toArray();
+		Arrays.sort(array, (Comparator<Object>)comparator);
+		this.root = PersistentTree.<T>build(array, 0, array.length);
+		
+		source.addCollectionListener(new SingleElementListener<T>() {
+			public void collectionChanged(CollectionEvent<T> e) {
+				collectionSupport.beginBatch();
+				try {
+					sourceChanged(e.getType(), e.getElements(), e.getFirstIndex());
+				} finally {
+					collectionSupport.endBatch();
+				}
+			}
+			public void elementChanged(ListenableCollection<T> source, CollectionEvent.EventType type, T element, int index) {
+				sourceElementChanged(type, element, index);
+			}
+		});
+	}
+	
+	public Comparator<? super T> getComparator() {
+		return comparator;
+	}
+	
+	void sourceChanged(CollectionEvent.EventType type, Collection<T> elements, int firstIndex) {
+		int sourceIndex = firstIndex;
+		for (T element : elements) {
+			switch (type) {
+			case ADDED:
+				insert(element);
+				break;
+			case REMOVED:
+				delete(element);
+				break;
+			case UPDATED:
+				T previous = element;
+				if (sourceElements != null && firstIndex >= 0)
+					previous = sourceElements.set(sourceIndex++, element);
+				update(previous, element);
+				break;
+			}
+		}
+		if (sourceElements != null)
+			sourceElements.changed(type, elements, firstIndex);
+	}
+	
+	void sourceElementChanged(CollectionEvent.EventType type, T element, int sourceIndex) {
+		switch (type) {
+		case ADDED:
+			if (sourceElements != null)
+				sourceElements.elementChanged(type, element, sourceIndex);
+			insert(element);
+			break;
+		case REMOVED:
+			if (sourceElements != null)
+				sourceElements.elementChanged(type, element, sourceIndex);
+			delete(element);
+			break;
+		case UPDATED:
+			T previous = element;
+			if (sourceElements != null && sourceIndex >= 0)
+				previous = sourceElements.set(sourceIndex, element);
+			update(previous, element);
+			break;
+		}
+	}
+	
+	/// Replace previous by element (which may be the same instance, with a different sort key), moving it if needed
+	private void update(T previous, T element) {
+		// When the source updated the element in place, its sort key may have changed since it was inserted
+		int from = find(previous, previous == element);
+		if (from < 0) {
+			insert(element);
+			return;
+		}
+		PersistentTree.Node<T> removed = PersistentTree.remove(root, from);
+		int to = PersistentTree.upperBound(removed, element, comparator);
+		root = PersistentTree.insert(removed, to, element);
+		modCount++;
+		if (from == to) {
+			collectionSupport.fireElementUpdated(this, element, to);
+		} else {
+			collectionSupport.fireElementRemoved(this, previous, from);
+			collectionSupport.fireElementAdded(this, element, to);
+		}
+	}
+	
+	private void insert(T element) {
+		int index = PersistentTree.upperBound(root, element, comparator);
+		root = PersistentTree.insert(root, index, element);
+		modCount++;
+		collectionSupport.fireElementAdded(this, element, index);
+	}
+	
+	private void delete(Object element) {
+		// Elements which sort key changed before they were removed from the source are only found by a linear scan
+		int index = find(element, true);
+		if (index < 0)
+			return;
+		
+		T removed = PersistentTree.get(root, index);
+		root = PersistentTree.remove(root, index);
+		modCount++;
+		collectionSupport.fireElementRemoved(this, removed, index);
+	}
+	
+	/**
+	 * Index of an element equal to o, found in O(log n) among the elements that compare equal to it.
+	 * @param rekeyed if true and the element is not among those, it is searched by a linear scan (its sort key may have changed since it was inserted)
+	 * @return index of the element, or -1 if it is not in the view
+	 */
+	@SuppressWarnings("unchecked")
+	private int find(Object o, boolean rekeyed) {
+		int size = PersistentTree.size(root);
+		try {
+			T value = (T)o;
+			for (int i = PersistentTree.lowerBound(root, value, comparator); i < size; i++) {
+				T element = PersistentTree.get(root, i);
+				if (comparator.compare(element, value) != 0)
+					break;
+				if (element == null ? o == null : element.equals(o))
+					return i;
+			}
+		} catch (ClassCastException ex) {
+			return -1;
+		}
+		if (!rekeyed)
+			return -1;
+		
+		int i = 0;
+		for (Iterator<T> it = PersistentTree.iterator(root); it.hasNext(); i++) {
+			T element = it.next();
+			if (element == null ? o == null : element.equals(o))
+				return i;
+		}
+		return -1;
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	@Override
+	public int size() {
+		return PersistentTree.size(root);
+	}
+	
+	@Override
+	public T get(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		
+		return PersistentTree.get(root, index);
+	}
+	
+	@Override
+	public int indexOf(Object o) {
+		return find(o, false);
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return find(o, false) >= 0;
+	}
+	
+	@Override
+	public Iterator<T> iterator() {
+		final Iterator<T> iterator = PersistentTree.iterator(root);
+		return new Iterator<T>() {
+			T last;
+			boolean canRemove;
+			
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			public T next() {
+				last = iterator.next();
+				canRemove = true;
+				return last;
+			}
+			public void remove() {
+				if (!canRemove)
+					throw new IllegalStateException();
+				
+				canRemove = false;
+				source.remove(last);
+			}
+		};
+	}
+	
+	/**
+	 * Add an element to the source : it appears in the view at its sorted position.
+	 */
+	@Override
+	public boolean add(T element) {
+		return source.add(element);
+	}
+	
+	/**
+	 * Not supported : elements are positioned according to the comparator of the view.
+	 */
+	@Override
+	public void add(int index, T element) {
+		throw new UnsupportedOperationException("Cannot insert elements at a given index in a sorted view");
+	}
+	
+	/**
+	 * Not supported : elements are positioned according to the comparator of the view.
+	 */
+	@Override
+	public T set(int index, T element) {
+		throw new UnsupportedOperationException("Cannot replace elements at a given index in a sorted view");
+	}
+	
+	@Override
+	public T remove(int index) {
+		T element = get(index);
+		source.remove(element);
+		return element;
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		return source.remove(o);
+	}
+	
+	@Override
+	public void clear() {
+		source.clear();
+	}
+}
@@ -22,37 +22,72 @@ package com.nativelibs4java.jalico;
 import java.util.Collection;
 import java.util.Iterator;
 
+/**
+ * Listenable collection which methods are synchronized on a mutex.<br>
+ * Events are recorded while the mutex is held and delivered once it is released (see DeferredListenableSupport), so that slow listeners do not block other threads and listeners that lock other collections do not deadlock.
+ * Listeners might thus see changes more recent than the event they receive, but events are delivered in the order of the modifications.<br>
+ * Events of modifications made by a thread that already holds the mutex in a synchronized block of its own are delivered at the end of each modification, while the mutex is still held by that block.
+ */
 class SynchronizedListenableCollection<T> extends DefaultListenableCollection<T> {
 	protected Object mutex;
-	
+	/// Depth of the calls of modification methods of this collection that hold the mutex (only accessed by the thread that holds it)
+	int holds;
 	
 	public SynchronizedListenableCollection(Collection<T> collection, ListenableSupport<T> collectionSupport) {
-		super(collection, collectionSupport);
+		super(collection, DeferredListenableSupport.deferred(collectionSupport));
 		this.mutex = this;
 	}
 	public SynchronizedListenableCollection(Collection<T> collection) {
-		super(collection);
-		this.mutex = this;
+		this(collection, new ListenableSupport<T>());
 	}
 	public SynchronizedListenableCollection(Collection<T> collection, ListenableSupport<T> collectionSupport, Object mutex) {
-		super(collection, collectionSupport);
+		super(collection, DeferredListenableSupport.deferred(collectionSupport));
 		this.mutex = mutex;
 	}
 	public SynchronizedListenableCollection(Collection<T> collection, Object mutex) {
-		super(collection);
-		this.mutex = mutex;
+		this(collection, new ListenableSupport<T>(), mutex);
+	}
+	
+	/**
+	 * Deliver the events recorded while the mutex was held, unless the current thread is still within another modification method of this collection (e.g. when retainAll removes elements through an iterator), which will deliver them when it returns.
+	 */
+	void deliver() {
+		if (!isNestedCall())
+			((DeferredListenableSupport<T>)collectionSupport).deliver();
+	}
+	
+	boolean isNestedCall() {
+		return Thread.holdsLock(mutex) && holds != 0;
 	}
 	
 	@Override
 	public boolean add(T o) {
-		synchronized (mutex) {
-			return super.add(o);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					return super.add(o);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 	@Override
 	public boolean addAll(Collection<? extends T> c) {
-		synchronized (mutex) {
-			return super.addAll(c);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					return super.addAll(c);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 	@Override
@@ -63,8 +98,17 @@ class SynchronizedListenableCollection<T> extends DefaultListenableCollection<T>
 	}
 	@Override
 	public void clear() {
-		synchronized (mutex) {
-			super.clear();
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					super.clear();
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 	@Override
@@ -120,8 +164,17 @@ class SynchronizedListenableCollection<T> extends DefaultListenableCollection<T>
 			}
 		}
 		public void remove() {
-			synchronized (mutex) {
-				it.remove();
+			try {
+				synchronized (mutex) {
+					holds++;
+					try {
+						it.remove();
+					} finally {
+						holds--;
+					}
+				}
+			} finally {
+				deliver();
 			}
 		}
 	};
@@ -134,14 +187,32 @@ class SynchronizedListenableCollection<T> extends DefaultListenableCollection<T>
 	}
 	@Override
 	public boolean remove(Object o) {
-		synchronized (mutex) {
-			return super.remove(o);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					return super.remove(o);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 	@Override
 	public boolean removeAll(Collection<?> c) {
-		synchronized (mutex) {
-			return super.removeAll(c);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					return super.removeAll(c);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 	@Override
@@ -152,8 +223,17 @@ class SynchronizedListenableCollection<T> extends DefaultListenableCollection<T>
 	}
 	@Override
 	public boolean retainAll(Collection<?> c) {
-		synchronized (mutex) {
-			return super.retainAll(c);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					return super.retainAll(c);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 	@Override
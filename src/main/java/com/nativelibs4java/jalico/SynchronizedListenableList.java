@@ -1,9 +1,14 @@
 package com.nativelibs4java.jalico;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.ListIterator;
 
+/**
+ * Listenable list which methods are synchronized on a mutex.<br>
+ * Its indexed modifications fire events with the indices of the changes, recorded and delivered like those of the other modifications (see SynchronizedListenableCollection).
+ */
 class SynchronizedListenableList<T> extends SynchronizedListenableCollection<T> implements ListenableList<T> {
 	List<T> list;
 	
@@ -12,15 +17,63 @@ class SynchronizedListenableList<T> extends SynchronizedListenableCollection<T>
 		this.list = list;
 	}
 	
+	/// Sublist which shares the events and the mutex of its parent
+	SynchronizedListenableList(List<T> list, ListenableSupport<T> collectionSupport, Object mutex) {
+		super(list, collectionSupport, mutex);
+		this.list = list;
+	}
+	
 	public void add(int index, T element) {
-		synchronized (mutex) {
-			list.add(index, element);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					list.add(index, element);
+					collectionSupport.fireElementAdded(this, element, index);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 
 	public boolean addAll(int index, Collection<? extends T> c) {
-		synchronized (mutex) {
-			return list.addAll(index, c);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					Collection<T> added = new ArrayList<T>(c);
+					if (!list.addAll(index, added))
+						return false;
+					
+					collectionSupport.fireAdded(this, added, index, index + added.size() - 1);
+					return true;
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
+		}
+	}
+
+	@Override
+	public void clear() {
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					Collection<T> removed = new ArrayList<T>(list);
+					list.clear();
+					collectionSupport.fireRemoved(this, removed, 0, removed.size() - 1);
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 
@@ -61,23 +114,48 @@ class SynchronizedListenableList<T> extends SynchronizedListenableCollection<T>
 	}
 
 	public T remove(int index) {
-		synchronized (mutex) {
-			return list.remove(index);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					T removed = list.remove(index);
+					collectionSupport.fireElementRemoved(this, removed, index);
+					return removed;
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 
 	public T set(int index, T element) {
-		synchronized (mutex) {
-			return list.set(index, element);
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					T previous = list.set(index, element);
+					collectionSupport.fireElementUpdated(this, element, index);
+					return previous;
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
 
+	/**
+	 * The sublist is synchronized on the mutex of this list, and its modifications fire events (with indices relative to the sublist) to the listeners of this list, as with DefaultListenableList.subList.
+	 */
 	public List<T> subList(int fromIndex, int toIndex) {
 //		if (true)
 //			throw new UnsupportedOperationException();
 		
 		synchronized (mutex) {
-			return list.subList(fromIndex, toIndex);
+			return new SynchronizedListenableList<T>(list.subList(fromIndex, toIndex), collectionSupport, mutex);
 		}
 	}
 
@@ -19,19 +19,93 @@
 */
 package com.nativelibs4java.jalico;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Listenable map which methods (and those of its views) are synchronized on a mutex.<br>
+ * As with SynchronizedListenableCollection, the events of the views are delivered once the mutex is released.
+ */
 class SynchronizedListenableMap<K,V> extends DefaultListenableMap<K,V> {
 	Object mutex;
+	/// Depth of the calls of modification methods of this map that hold the mutex (only accessed by the thread that holds it)
+	int holds;
+	private final List<DeferredListenableSupport<?>> viewSupports = new CopyOnWriteArrayList<DeferredListenableSupport<?>>();
  	
 	public SynchronizedListenableMap(Map<K, V> map) {
 		super(map);
 		mutex = this;
 	}
+	
+	@Override
+	<X> ListenableSupport<X> createSupport() {
+		DeferredListenableSupport<X> support = new DeferredListenableSupport<X>(new ListenableSupport<X>());
+		viewSupports.add(support);
+		return support;
+	}
+	
+	/**
+	 * Deliver the events recorded by the views while the mutex was held, unless the current thread is still within another modification method of this map, which will deliver them when it returns.
+	 */
+	void deliver() {
+		if (Thread.holdsLock(mutex) && holds != 0)
+			return;
+		for (DeferredListenableSupport<?> support : viewSupports)
+			support.deliver();
+	}
+	
+	/**
+	 * Wrap a view of this map so that it shares its mutex and its listeners are those of the view.
+	 */
+	private <X> ListenableSet<X> synchronizedView(final ListenableSet<X> view) {
+		return new SynchronizedListenableSet<X>(view, mutex) {
+			@Override
+			public void addCollectionListener(CollectionListener<X> l) {
+				view.addCollectionListener(l);
+			}
+			@Override
+			public void removeCollectionListener(CollectionListener<X> l) {
+				view.removeCollectionListener(l);
+			}
+			@Override
+			void deliver() {
+				if (!isNestedCall())
+					SynchronizedListenableMap.this.deliver();
+			}
+		};
+	}
+	private <X> ListenableCollection<X> synchronizedView(final ListenableCollection<X> view) {
+		return new SynchronizedListenableCollection<X>(view, mutex) {
+			@Override
+			public void addCollectionListener(CollectionListener<X> l) {
+				view.addCollectionListener(l);
+			}
+			@Override
+			public void removeCollectionListener(CollectionListener<X> l) {
+				view.removeCollectionListener(l);
+			}
+			@Override
+			void deliver() {
+				if (!isNestedCall())
+					SynchronizedListenableMap.this.deliver();
+			}
+		};
+	}
+	
 	@Override
 	public void clear() {
-		synchronized (mutex) {
-			super.clear();
+		try {
+			synchronized (mutex) {
+				holds++;
+				try {
+					super.clear();
+				} finally {
+					holds--;
+				}
+			}
+		} finally {
+			deliver();
 		}
 	}
  	@Override
@@ -56,7 +130,7 @@ class SynchronizedListenableMap<K,V> extends DefaultListenableMap<K,V> {
  	@Override
  	public ListenableSet<Entry<K, V>> entrySet() {
  		synchronized (mutex) {
- 			return new SynchronizedListenableSet<Entry<K,V>>(super.entrySet(), mutex);
+ 			return synchronizedView(super.entrySet());
  		}
  	}
  	@Override
@@ -87,25 +161,52 @@ class SynchronizedListenableMap<K,V> extends DefaultListenableMap<K,V> {
  	@Override
  	public ListenableSet<K> keySet() {
  		synchronized (mutex) {
- 			return new SynchronizedListenableSet<K>(super.keySet());
+ 			return synchronizedView(super.keySet());
  		}
  	}
  	@Override
  	public V put(K key, V value) {
- 		synchronized (mutex) {
- 			return super.put(key, value);
+ 		try {
+ 			synchronized (mutex) {
+ 				holds++;
+ 				try {
+ 					return super.put(key, value);
+ 				} finally {
+ 					holds--;
+ 				}
+ 			}
+ 		} finally {
+ 			deliver();
  		}
  	}
  	@Override
  	public void putAll(Map<? extends K, ? extends V> t) {
- 		synchronized (mutex) {
- 			super.putAll(t);
+ 		try {
+ 			synchronized (mutex) {
+ 				holds++;
+ 				try {
+ 					super.putAll(t);
+ 				} finally {
+ 					holds--;
+ 				}
+ 			}
+ 		} finally {
+ 			deliver();
  		}
  	}
  	@Override
  	public V remove(Object key) {
- 		synchronized (mutex) {
- 			return super.remove(key);
+ 		try {
+ 			synchronized (mutex) {
+ 				holds++;
+ 				try {
+ 					return super.remove(key);
+ 				} finally {
+ 					holds--;
+ 				}
+ 			}
+ 		} finally {
+ 			deliver();
  		}
  	}
  	@Override
@@ -123,7 +224,7 @@ class SynchronizedListenableMap<K,V> extends DefaultListenableMap<K,V> {
  	@Override
  	public ListenableCollection<V> values() {
  		synchronized (mutex) {
- 			return new SynchronizedListenableCollection<V>(super.values());
+ 			return synchronizedView(super.values());
  		}
  	}
  	
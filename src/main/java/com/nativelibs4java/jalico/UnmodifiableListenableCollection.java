@@ -22,7 +22,7 @@ package com.nativelibs4java.jalico;
 import java.util.Collection;
 import java.util.Iterator;
 
-class UnmodifiableListenableCollection<T> extends FilteredListenableCollection<T> {
+class UnmodifiableListenableCollection<T> extends ForwardingListenableCollection<T> {
 	public UnmodifiableListenableCollection(ListenableCollection<T> listenableCollection) {
 		super(listenableCollection);
 	}
@@ -43,7 +43,7 @@ class UnmodifiableListenableCollection<T> extends FilteredListenableCollection<T
 
 	@Override
 	public Iterator<T> iterator() {
-		return new FilteredIterator<T>(listenableCollection.iterator()) {
+		return new ForwardingIterator<T>(listenableCollection.iterator()) {
 			@Override
 			public void remove() {
 				throw new UnsupportedOperationException("Unmodifiable listenable collection !");
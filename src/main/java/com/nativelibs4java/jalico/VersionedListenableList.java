@@ -0,0 +1,267 @@
+/*
+   Copyright 2008 Olivier Chafik
+
+   Licensed under the Apache License, Version 2.0 (the License);
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an AS IS BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+   This file comes from the Jalico project (Java Listenable Collections)
+
+       http://jalico.googlecode.com/.
+*/
+package com.nativelibs4java.jalico;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe ListenableList that keeps its elements in a persistent tree, so that readers can take O(1) immutable snapshots (see snapshot()) and traverse them without any lock while writers keep modifying the list.<br>
+ * Snapshots share all unmodified nodes with the list : the memory they retain is proportional to the modifications made since they were taken.<br>
+ * Modifications are serialized on the list's monitor and notify listeners while holding it. Reads never lock : get() and size() read the latest version, and iterators traverse the version that was current when they were created (they never throw ConcurrentModificationException).<br>
+ * Indexed access, insertion and removal cost O(log n).
+ * @author Olivier Chafik
+ * @param <T> Type of the elements of the list
+ */
+public class VersionedListenableList<T> extends AbstractList<T> implements ListenableList<T>, RandomAccess {
+	/**
+	 * Immutable version of a VersionedListenableList.
+	 */
+	public static final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+		private final PersistentTree.Node<T> root;
+		private final long version;
+		
+		Snapshot(PersistentTree.Node<T> root, long version) {
+			this.root = root;
+			this.version = version;
+		}
+		
+		/**
+		 * @return number of modifications of the list when the snapshot was taken
+		 */
+		public long getVersion() {
+			return version;
+		}
+		@Override
+		public int size() {
+			return PersistentTree.size(root);
+		}
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			return PersistentTree.get(root, index);
+		}
+		@Override
+		public Iterator<T> iterator() {
+			return PersistentTree.iterator(root);
+		}
+	}
+	
+	protected final ListenableSupport<T> collectionSupport = new ListenableSupport<T>();
+	
+	/// Current version, replaced (never modified) by writers
+	private volatile Snapshot<T> current = new Snapshot<T>(null, 0);
+	
+	public VersionedListenableList() {
+	}
+	
+	public VersionedListenableList(Collection<? extends T> elements) {
+		Object[] array = elements.toArray();
+		current = new Snapshot<T>(PersistentTree.<T>build(array, 0, array.length), 0);
+	}
+	
+	public void addCollectionListener(CollectionListener<T> l) {
+		collectionSupport.addCollectionListener(l);
+	}
+	
+	public void removeCollectionListener(CollectionListener<T> l) {
+		collectionSupport.removeCollectionListener(l);
+	}
+	
+	/**
+	 * Get the current version of the list in O(1), without locking.
+	 * @return immutable list of the elements of the current version
+	 */
+	public Snapshot<T> snapshot() {
+		return current;
+	}
+	
+	/// Must be called while holding this
+	private void publish(PersistentTree.Node<T> root) {
+		current = new Snapshot<T>(root, current.version + 1);
+		modCount++;
+	}
+	
+	@Override
+	public int size() {
+		return current.size();
+	}
+	
+	@Override
+	public T get(int index) {
+		return current.get(index);
+	}
+	
+	/**
+	 * Iterate over the version that is current when this method is called.<br>
+	 * The remove() method of the iterator removes the last returned element from the list, as long as the list was only modified through the iterator since it was created (otherwise it throws ConcurrentModificationException).
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		final Snapshot<T> snapshot = current;
+		final Iterator<T> iterator = snapshot.iterator();
+		return new Iterator<T>() {
+			/// Index in the list of the next element
+			int nextIndex;
+			int lastIndex = -1;
+			long expectedVersion = snapshot.version;
+			
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			public T next() {
+				T next = iterator.next();
+				lastIndex = nextIndex++;
+				return next;
+			}
+			public void remove() {
+				if (lastIndex < 0)
+					throw new IllegalStateException();
+				
+				synchronized (VersionedListenableList.this) {
+					if (current.version != expectedVersion)
+						throw new ConcurrentModificationException();
+					
+					VersionedListenableList.this.remove(lastIndex);
+					expectedVersion = current.version;
+				}
+				nextIndex = lastIndex;
+				lastIndex = -1;
+			}
+		};
+	}
+	
+	/**
+	 * Remove the elements of c from the list while holding its monitor, so that other writers cannot interleave with the removals.
+	 */
+	@Override
+	public synchronized boolean removeAll(Collection<?> c) {
+		return super.removeAll(c);
+	}
+	
+	@Override
+	public synchronized boolean retainAll(Collection<?> c) {
+		return super.retainAll(c);
+	}
+	
+	@Override
+	public synchronized boolean removeIf(Predicate<? super T> filter) {
+		return super.removeIf(filter);
+	}
+	
+	private static void checkPositionIndex(int index, int size) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+	
+	@Override
+	public synchronized T set(int index, T element) {
+		T previous = get(index);
+		publish(PersistentTree.set(current.root, index, element));
+		collectionSupport.fireElementUpdated(this, element, index);
+		return previous;
+	}
+	
+	@Override
+	public synchronized boolean add(T element) {
+		add(size(), element);
+		return true;
+	}
+	
+	@Override
+	public synchronized void add(int index, T element) {
+		checkPositionIndex(index, size());
+		publish(PersistentTree.insert(current.root, index, element));
+		collectionSupport.fireElementAdded(this, element, index);
+	}
+	
+	@Override
+	public synchronized boolean addAll(Collection<? extends T> c) {
+		return addAll(size(), c);
+	}
+	
+	@Override
+	public synchronized boolean addAll(int index, Collection<? extends T> c) {
+		checkPositionIndex(index, size());
+		Collection<T> added = new ArrayList<T>(c);
+		if (added.isEmpty())
+			return false;
+		
+		PersistentTree.Node<T> root = current.root;
+		int i = index;
+		for (T element : added)
+			root = PersistentTree.insert(root, i++, element);
+		publish(root);
+		collectionSupport.fireAdded(this, added, index, i - 1);
+		return true;
+	}
+	
+	@Override
+	public synchronized T remove(int index) {
+		T removed = get(index);
+		publish(PersistentTree.remove(current.root, index));
+		collectionSupport.fireElementRemoved(this, removed, index);
+		return removed;
+	}
+	
+	@Override
+	public synchronized boolean remove(Object o) {
+		int i = indexOf(o);
+		if (i < 0)
+			return false;
+		
+		remove(i);
+		return true;
+	}
+	
+	@Override
+	protected synchronized void removeRange(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "[, Size: " + size());
+		if (fromIndex == toIndex)
+			return;
+		
+		Snapshot<T> before = current;
+		PersistentTree.Node<T> root = before.root;
+		for (int i = fromIndex; i < toIndex; i++)
+			root = PersistentTree.remove(root, fromIndex);
+		publish(root);
+		collectionSupport.fireRemoved(this, before.subList(fromIndex, toIndex), fromIndex, toIndex - 1);
+	}
+	
+	/**
+	 * Remove all elements in O(1) : listeners are notified with the former version of the list.
+	 */
+	@Override
+	public synchronized void clear() {
+		Snapshot<T> before = current;
+		if (before.isEmpty())
+			return;
+		
+		publish(null);
+		collectionSupport.fireRemoved(this, before, 0, before.size() - 1);
+	}
+}
@@ -0,0 +1,218 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class AsynchronousCollectionListenerTest {
+    private ExecutorService executor;
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final List<CollectionEvent<Integer>> received = new ArrayList<CollectionEvent<Integer>>();
+
+    /** Records events, but waits for the released latch before handling the first one. */
+    private final CollectionListener<Integer> slowListener = new CollectionListener<Integer>() {
+        public void collectionChanged(CollectionEvent<Integer> e) {
+            try {
+                released.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            synchronized (received) {
+                received.add(e);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void awaitDelivery(AsynchronousCollectionListener<Integer> listener) throws InterruptedException {
+        released.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, listener.getPendingEventCount());
+    }
+
+    @Test
+    public void block_deliversAllEventsInOrderWithoutBlockingWriterUntilFull() throws InterruptedException {
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        AsynchronousCollectionListener<Integer> listener = ListenableCollections.asynchronousListener(slowListener, executor, 100, AsynchronousCollectionListener.OverflowPolicy.BLOCK);
+        list.addCollectionListener(listener);
+
+        for (int i = 0; i < 50; i++)
+            list.add(i);
+
+        awaitDelivery(listener);
+        assertEquals(50, received.size());
+        for (int i = 0; i < 50; i++)
+            assertEquals(Arrays.asList(i), new ArrayList<Integer>(received.get(i).getElements()));
+    }
+
+    @Test
+    public void drop_discardsEventsReceivedWhileFull() throws InterruptedException {
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        AsynchronousCollectionListener<Integer> listener = ListenableCollections.asynchronousListener(slowListener, executor, 2, AsynchronousCollectionListener.OverflowPolicy.DROP);
+        list.addCollectionListener(listener);
+
+        for (int i = 0; i < 10; i++)
+            list.add(i);
+
+        awaitDelivery(listener);
+        // At most one event was being delivered and two were pending
+        assertTrue(listener.getDroppedEventCount() >= 7);
+        assertEquals(10, received.size() + listener.getDroppedEventCount());
+    }
+
+    @Test
+    public void conflate_keepsNetEffect() throws InterruptedException {
+        ListenableSet<Integer> set = ListenableCollections.listenableSet(new HashSet<Integer>());
+        AsynchronousCollectionListener<Integer> listener = ListenableCollections.asynchronousListener(slowListener, executor, 4, AsynchronousCollectionListener.OverflowPolicy.CONFLATE);
+        set.addCollectionListener(listener);
+
+        for (int i = 0; i < 100; i++)
+            set.add(i);
+        for (int i = 0; i < 100; i += 2)
+            set.remove(i);
+
+        awaitDelivery(listener);
+        assertEquals(0, listener.getDroppedEventCount());
+        assertTrue(received.size() <= 5);
+
+        // Replay the received events onto a plain set
+        HashSet<Integer> replayed = new HashSet<Integer>();
+        for (CollectionEvent<Integer> e : received) {
+            if (e.getType() == CollectionEvent.EventType.ADDED)
+                replayed.addAll(e.getElements());
+            else if (e.getType() == CollectionEvent.EventType.REMOVED)
+                replayed.removeAll(e.getElements());
+        }
+        assertEquals(set, replayed);
+    }
+
+    @Test(timeout = 10000)
+    public void block_recoversFromListenerErrorWithFullMailbox() throws Exception {
+        executor.shutdownNow();
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() { public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() { public void uncaughtException(Thread t, Throwable ex) {}});
+            return thread;
+        }});
+        final AtomicBoolean failNext = new AtomicBoolean(true);
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        AsynchronousCollectionListener<Integer> listener = ListenableCollections.asynchronousListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                if (failNext.getAndSet(false)) {
+                    slowListener.collectionChanged(e);
+                    throw new Error("Listener failure");
+                }
+                slowListener.collectionChanged(e);
+            }
+        }, executor, 1, AsynchronousCollectionListener.OverflowPolicy.BLOCK);
+        list.addCollectionListener(listener);
+
+        list.add(0);
+        while (listener.getPendingEventCount() != 0)
+            Thread.sleep(1);
+        list.add(1);
+        released.countDown();
+        // Wait for the failed drain to finish
+        executor.submit(new Runnable() { public void run() {}}).get();
+
+        // The mailbox is full and no drain is scheduled : this must not block forever
+        list.add(2);
+
+        awaitDelivery(listener);
+        assertEquals(3, received.size());
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(received.get(1).getElements()));
+        assertEquals(Arrays.asList(2), new ArrayList<Integer>(received.get(2).getElements()));
+    }
+
+    @Test(timeout = 10000)
+    public void block_recoversFromRejectedDrainerWithFullMailbox() throws Exception {
+        final AtomicBoolean rejectNext = new AtomicBoolean(true);
+        Executor rejecting = new Executor() { public void execute(Runnable command) {
+            if (rejectNext.getAndSet(false))
+                throw new RejectedExecutionException();
+            executor.execute(command);
+        }};
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        AsynchronousCollectionListener<Integer> listener = ListenableCollections.asynchronousListener(slowListener, rejecting, 1, AsynchronousCollectionListener.OverflowPolicy.BLOCK);
+        list.addCollectionListener(listener);
+        released.countDown();
+
+        try {
+            list.add(0);
+            fail("Expected the drainer to be rejected");
+        } catch (RejectedExecutionException ex) {
+            // The event stays in the mailbox
+        }
+        assertEquals(1, listener.getPendingEventCount());
+
+        // The mailbox is full and no drain is scheduled : this must not block forever
+        list.add(1);
+
+        awaitDelivery(listener);
+        assertEquals(2, received.size());
+        assertEquals(Arrays.asList(0), new ArrayList<Integer>(received.get(0).getElements()));
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(received.get(1).getElements()));
+    }
+
+    @Test(timeout = 10000)
+    public void block_reschedulesDrainerWithoutHoldingTheLock() throws Exception {
+        final AtomicBoolean rejectNext = new AtomicBoolean(true), lockHeld = new AtomicBoolean();
+        final AsynchronousCollectionListener<?>[] self = new AsynchronousCollectionListener<?>[1];
+        Executor checking = new Executor() { public void execute(Runnable command) {
+            if (rejectNext.getAndSet(false))
+                throw new RejectedExecutionException();
+            // Another thread can only take the lock of the listener if the scheduling thread does not hold it
+            Thread probe = new Thread() { public void run() {
+                self[0].getPendingEventCount();
+            }};
+            probe.start();
+            try {
+                probe.join(1000);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            if (probe.isAlive())
+                lockHeld.set(true);
+            executor.execute(command);
+        }};
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        AsynchronousCollectionListener<Integer> listener = ListenableCollections.asynchronousListener(slowListener, checking, 1, AsynchronousCollectionListener.OverflowPolicy.BLOCK);
+        self[0] = listener;
+        list.addCollectionListener(listener);
+        released.countDown();
+
+        try {
+            list.add(0);
+            fail("Expected the drainer to be rejected");
+        } catch (RejectedExecutionException ex) {
+            // The event stays in the mailbox
+        }
+        // The mailbox is full and no drain is scheduled : the drainer is rescheduled from the wait loop
+        list.add(1);
+
+        awaitDelivery(listener);
+        assertFalse(lockHeld.get());
+        assertEquals(2, received.size());
+    }
+}
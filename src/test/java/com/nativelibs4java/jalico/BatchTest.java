@@ -0,0 +1,106 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class BatchTest {
+    private List<CollectionEvent<Integer>> received;
+    private CollectionListener<Integer> recorder;
+
+    @Before
+    public void setUp() {
+        received = new ArrayList<CollectionEvent<Integer>>();
+        recorder = new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        };
+    }
+
+    private void assertEvent(int i, CollectionEvent.EventType type, List<Integer> elements, int firstIndex, int lastIndex) {
+        CollectionEvent<Integer> e = received.get(i);
+        assertEquals(type, e.getType());
+        assertEquals(elements, new ArrayList<Integer>(e.getElements()));
+        assertEquals(firstIndex, e.getFirstIndex());
+        assertEquals(lastIndex, e.getLastIndex());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void listAppends_mergeIntoOneAddedRange() {
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(0)));
+        list.addCollectionListener(recorder);
+
+        try (Batch batch = ListenableCollections.batch(list)) {
+            for (int i = 1; i <= 5; i++)
+                list.add(i);
+            assertTrue(received.isEmpty());
+        }
+        assertEquals(1, received.size());
+        assertEvent(0, CollectionEvent.EventType.ADDED, Arrays.asList(1, 2, 3, 4, 5), 1, 5);
+
+        // Closing a batch again has no effect
+        Batch batch = ListenableCollections.batch(list);
+        list.add(6);
+        batch.close();
+        batch.close();
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    public void addThenRemove_cancelsOut() {
+        final ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(0)));
+        list.addCollectionListener(recorder);
+
+        ListenableCollections.batch(list, new Runnable() { public void run() {
+            list.add(1);
+            list.add(2);
+            list.remove(1);
+            list.set(1, 20);
+        }});
+        assertEquals(1, received.size());
+        assertEvent(0, CollectionEvent.EventType.ADDED, Arrays.asList(20), 1, 1);
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void successiveRemovals_mergeIntoOneRemovedRange() {
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(0, 1, 2, 3, 4)));
+        list.addCollectionListener(recorder);
+
+        try (Batch batch = ListenableCollections.batch(list)) {
+            list.remove(1);
+            list.remove(1);
+            list.remove(1);
+        }
+        assertEquals(1, received.size());
+        assertEvent(0, CollectionEvent.EventType.REMOVED, Arrays.asList(1, 2, 3), 1, 3);
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void setChanges_reducedToNetEffect() {
+        ListenableSet<Integer> set = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(1, 2)));
+        set.addCollectionListener(recorder);
+
+        try (Batch outer = ListenableCollections.batch(set)) {
+            set.add(3);
+            set.remove(3);
+            try (Batch inner = ListenableCollections.batch(set)) {
+                set.remove(1);
+                set.add(4);
+            }
+            set.remove(2);
+            set.add(2);
+            assertTrue(received.isEmpty());
+        }
+        assertEquals(3, received.size());
+        assertEvent(0, CollectionEvent.EventType.REMOVED, Arrays.asList(1), -1, -1);
+        assertEvent(1, CollectionEvent.EventType.ADDED, Arrays.asList(4), -1, -1);
+        assertEvent(2, CollectionEvent.EventType.UPDATED, Arrays.asList(2), -1, -1);
+    }
+}
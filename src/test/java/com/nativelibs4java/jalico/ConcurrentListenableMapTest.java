@@ -0,0 +1,85 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ConcurrentListenableMapTest {
+    @Test
+    public void concurrentMerges_fireEventsInKeyOrder() throws InterruptedException {
+        final ConcurrentListenableMap<Integer, Integer> map = ListenableCollections.concurrentMap();
+        final Map<Integer, List<Integer>> addedValues = new ConcurrentHashMap<Integer, List<Integer>>();
+        map.entrySet().addCollectionListener(new CollectionListener<Map.Entry<Integer, Integer>>() {
+            public void collectionChanged(CollectionEvent<Map.Entry<Integer, Integer>> e) {
+                if (e.getType() != CollectionEvent.EventType.ADDED)
+                    return;
+                for (Map.Entry<Integer, Integer> entry : e.getElements()) {
+                    List<Integer> values = addedValues.get(entry.getKey());
+                    if (values == null) {
+                        addedValues.put(entry.getKey(), values = new ArrayList<Integer>());
+                    }
+                    // Events of a key are fired while holding its stripe
+                    values.add(entry.getValue());
+                }
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 1000; i++)
+                        map.merge(i % 8, 1, new BiFunction<Integer, Integer, Integer>() {
+                            public Integer apply(Integer a, Integer b) {
+                                return a + b;
+                            }
+                        });
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (int key = 0; key < 8; key++) {
+            assertEquals(Integer.valueOf(500), map.get(key));
+            List<Integer> values = addedValues.get(key);
+            assertEquals(500, values.size());
+            for (int i = 0; i < values.size(); i++)
+                assertEquals(Integer.valueOf(i + 1), values.get(i));
+        }
+    }
+
+    @Test
+    public void conditionalOperations_onlyNotifyActualChanges() {
+        ConcurrentListenableMap<String, Integer> map = new ConcurrentListenableMap<String, Integer>();
+        final List<String> events = new ArrayList<String>();
+        map.keySet().addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                events.add(e.getType() + " " + e.getElements());
+            }
+        });
+        assertNull(map.putIfAbsent("a", 1));
+        assertEquals(Integer.valueOf(1), map.putIfAbsent("a", 2));
+        assertFalse(map.replace("a", 2, 3));
+        assertTrue(map.replace("a", 1, 3));
+        assertFalse(map.remove("a", 1));
+        assertNull(map.computeIfPresent("a", new BiFunction<String, Integer, Integer>() {
+            public Integer apply(String k, Integer v) {
+                return null;
+            }
+        }));
+        map.put("b", 1);
+        map.keySet().iterator().next();
+        map.clear();
+
+        assertEquals(Arrays.asList("ADDED [a]", "UPDATED [a]", "REMOVED [a]", "ADDED [b]", "REMOVED [b]"), events);
+        assertTrue(map.isEmpty());
+    }
+}
@@ -0,0 +1,114 @@
+package com.nativelibs4java.jalico;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DispatchMetricsTest {
+    private ListenableList<Integer> list;
+
+    @Before
+    public void setUp() {
+        list = ListenableCollections.listenableList(new ArrayList<Integer>());
+    }
+
+    private static CollectionListener<Integer> sleeper(final long millis) {
+        return new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            @Override
+            public String toString() {
+                return "sleeper(" + millis + ")";
+            }
+        };
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertNull(ListenableCollections.getListenableSupport(list).getMetrics());
+    }
+
+    @Test
+    public void countsEventsElementsAndListenerCalls() {
+        CollectionListener<Integer> fast = sleeper(0), slow = sleeper(5);
+        list.addCollectionListener(fast);
+        list.addCollectionListener(slow);
+        DispatchMetrics metrics = ListenableCollections.enableMetrics(list);
+
+        list.add(1);
+        list.addAll(Arrays.asList(2, 3, 4));
+        list.remove(0);
+
+        assertEquals(2, metrics.getEventCount(CollectionEvent.EventType.ADDED));
+        assertEquals(1, metrics.getEventCount(CollectionEvent.EventType.REMOVED));
+        assertEquals(3, metrics.getElementsPerEvent().getCount());
+        assertEquals(3, metrics.getElementsPerEvent().getMax());
+        assertEquals(3, metrics.getListenerMetrics(fast).getCallCount());
+        assertEquals(3, metrics.getListenerMetrics(slow).getCallCount());
+        assertTrue(metrics.getListenerMetrics(slow).getMaxNanos() >= 5000000);
+        assertTrue(metrics.getListenerMetrics(slow).getTotalNanos() > metrics.getListenerMetrics(fast).getTotalNanos());
+
+        list.removeCollectionListener(slow);
+        assertNull(metrics.getListenerMetrics(slow));
+
+        ListenableCollections.disableMetrics(list);
+        assertNull(ListenableCollections.getListenableSupport(list).getMetrics());
+    }
+
+    @Test
+    public void listenersRemovedDuringDispatch_areForgotten() {
+        CollectionListener<Integer> removing = new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                list.removeCollectionListener(this);
+            }
+        };
+        list.addCollectionListener(removing);
+        DispatchMetrics metrics = ListenableCollections.enableMetrics(list);
+
+        list.add(1);
+        assertNull(metrics.getListenerMetrics(removing));
+        assertTrue(metrics.getListenerMetrics().isEmpty());
+    }
+
+    @Test
+    public void exposedAsMXBean() throws Exception {
+        list.addCollectionListener(sleeper(0));
+        DispatchMetrics metrics = ListenableCollections.enableMetrics(list);
+        ObjectName name = metrics.registerMBean("test list");
+        try {
+            list.add(1);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "AddedEventCount"));
+            TabularData calls = (TabularData)server.getAttribute(name, "ListenerCallCounts");
+            assertEquals(1L, calls.get(new Object[] { "sleeper(0)" }).get("value"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(63, histogram.getValueAtPercentile(50));
+        assertEquals(100, histogram.getValueAtPercentile(99));
+        histogram.reset();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,97 @@
+package com.nativelibs4java.jalico;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class EventJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<CollectionEvent<Integer>> received;
+    private CollectionListener<Integer> recorder;
+
+    @Before
+    public void setUp() {
+        received = new ArrayList<CollectionEvent<Integer>>();
+        recorder = new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        };
+    }
+
+    private List<Long> receivedSequences() {
+        List<Long> sequences = new ArrayList<Long>();
+        for (CollectionEvent<Integer> e : received)
+            sequences.add(e.getSequence());
+        return sequences;
+    }
+
+    @Test
+    public void lateListener_replaysThenReceivesLiveEvents() {
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        ListenableCollections.journal(list, new MemoryEventJournal<Integer>(10));
+        list.add(1);
+        list.add(2);
+        list.remove(0);
+
+        assertEquals(1, ListenableCollections.journal(list, recorder, 1));
+        list.add(3);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), receivedSequences());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(1).getType());
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(received.get(1).getElements()));
+    }
+
+    @Test
+    public void evictedEvents_areReportedAsGap() {
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        ListenableCollections.journal(list, new MemoryEventJournal<Integer>(2));
+        for (int i = 0; i < 5; i++)
+            list.add(i);
+
+        assertEquals(3, ListenableCollections.journal(list, recorder, 0));
+        assertEquals(Arrays.asList(3L, 4L), receivedSequences());
+    }
+
+    @Test
+    public void fileJournal_survivesReopeningAndTornTail() throws IOException {
+        File directory = folder.newFolder("journal");
+        ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        FileEventJournal<Integer> journal = new FileEventJournal<Integer>(list, directory, PersistentListenableMapTest.INT_CODEC, 64, 10);
+        ListenableCollections.journal(list, journal);
+        list.addAll(Arrays.asList(1, 2, 3));
+        for (int i = 4; i < 10; i++)
+            list.add(i);
+        journal.close();
+
+        // Simulate a crash in the middle of an append
+        File[] segments = directory.listFiles();
+        Arrays.sort(segments);
+        assertTrue(segments.length > 1);
+        FileOutputStream out = new FileOutputStream(segments[segments.length - 1], true);
+        out.write(new byte[] { 0, 0, 0, 1, 0, 0 });
+        out.close();
+
+        ListenableList<Integer> restored = ListenableCollections.listenableList(new ArrayList<Integer>());
+        journal = new FileEventJournal<Integer>(restored, directory, PersistentListenableMapTest.INT_CODEC, 64, 10);
+        assertEquals(7, journal.getNextSequence());
+        ListenableCollections.journal(restored, journal);
+        restored.add(10);
+        assertEquals(0, ListenableCollections.journal(restored, recorder, 0));
+        journal.close();
+
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L), receivedSequences());
+        assertEquals(Arrays.asList(1, 2, 3), received.get(0).getElements());
+        assertEquals(0, received.get(0).getFirstIndex());
+        assertEquals(2, received.get(0).getLastIndex());
+        assertSame(restored, received.get(7).getSource());
+    }
+}
@@ -0,0 +1,200 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FilteredViewTest {
+    private static final Filter<Integer> EVEN = new Filter<Integer>() {
+        public boolean accept(Integer value) {
+            return value % 2 == 0;
+        }
+    };
+    private static final Filter<Integer> MULTIPLE_OF_3 = new Filter<Integer>() {
+        public boolean accept(Integer value) {
+            return value % 3 == 0;
+        }
+    };
+
+    /// Applies index-aware events to a plain list, to check that they describe the changes of the view
+    private static CollectionListener<Integer> mirror(final List<Integer> mirror) {
+        return new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                int first = e.getFirstIndex();
+                switch (e.getType()) {
+                case ADDED:
+                    mirror.addAll(first, e.getElements());
+                    break;
+                case REMOVED:
+                    assertEquals(new ArrayList<Integer>(e.getElements()), mirror.subList(first, e.getLastIndex() + 1));
+                    mirror.subList(first, e.getLastIndex() + 1).clear();
+                    break;
+                case UPDATED:
+                    for (Integer element : e.getElements())
+                        mirror.set(first++, element);
+                    break;
+                }
+            }
+        };
+    }
+
+    @Test
+    public void listView_tracksSourceWithIndices() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4)));
+        FilteredListenableList<Integer> view = ListenableCollections.filter(source, EVEN);
+        List<Integer> mirror = new ArrayList<Integer>(view);
+        view.addCollectionListener(mirror(mirror));
+        assertEquals(Arrays.asList(2, 4), mirror);
+
+        source.add(0, 0);
+        source.addAll(2, Arrays.asList(6, 7, 8));
+        source.set(1, 10);
+        source.set(2, 5);
+        source.remove(3);
+        source.removeAll(Arrays.asList(8, 4));
+        source.add(12);
+
+        List<Integer> expected = new ArrayList<Integer>();
+        for (Integer i : new ArrayList<Integer>(source))
+            if (i % 2 == 0)
+                expected.add(i);
+        assertEquals(expected, new ArrayList<Integer>(view));
+        assertEquals(expected, mirror);
+    }
+
+    @Test
+    public void listView_randomModifications() {
+        Random random = new Random(1);
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>());
+        FilteredListenableList<Integer> view = ListenableCollections.filter(source, EVEN);
+        List<Integer> mirror = new ArrayList<Integer>();
+        view.addCollectionListener(mirror(mirror));
+        for (int i = 0; i < 2000; i++) {
+            int size = source.size();
+            switch (size == 0 ? 0 : random.nextInt(5)) {
+            case 0:
+            case 1:
+                source.add(random.nextInt(size + 1), random.nextInt(100));
+                break;
+            case 2:
+                source.remove(random.nextInt(size));
+                break;
+            case 3:
+                source.set(random.nextInt(size), random.nextInt(100));
+                break;
+            case 4:
+                if (!view.isEmpty())
+                    view.remove(random.nextInt(view.size()));
+                break;
+            }
+        }
+        assertEquals(new ArrayList<Integer>(view), mirror);
+    }
+
+    @Test
+    public void setFilter_notifiesDeltaOnly() {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 3 * FilteredListenableCollection.PARALLEL_THRESHOLD; i++)
+            values.add(i);
+        ListenableList<Integer> source = ListenableCollections.listenableList(values);
+        FilteredListenableList<Integer> view = ListenableCollections.filter(source, EVEN);
+        final List<Integer> mirror = new ArrayList<Integer>(view);
+        final int[] changed = new int[1];
+        view.addCollectionListener(mirror(mirror));
+        view.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                changed[0] += e.getElements().size();
+            }
+        });
+
+        view.setFilter(MULTIPLE_OF_3);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < values.size(); i += 3)
+            expected.add(i);
+        assertEquals(expected, new ArrayList<Integer>(view));
+        assertEquals(expected, mirror);
+        // Multiples of 6 are kept
+        int n = values.size();
+        int kept = (n + 5) / 6, even = (n + 1) / 2, multiplesOf3 = (n + 2) / 3;
+        assertEquals(even - kept + multiplesOf3 - kept, changed[0]);
+    }
+
+    @Test
+    public void listView_rejectsElementsOutsideFilter() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+        FilteredListenableList<Integer> view = ListenableCollections.filter(source, EVEN);
+        view.add(4);
+        view.add(0, 0);
+        assertEquals(Arrays.asList(1, 0, 2, 3, 4), new ArrayList<Integer>(source));
+        try {
+            view.add(5);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        view.clear();
+        assertEquals(Arrays.asList(1, 3), new ArrayList<Integer>(source));
+    }
+
+    @Test
+    public void collectionView_tracksSetSource() {
+        ListenableSet<Integer> source = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(1, 2, 3, 4)));
+        FilteredListenableCollection<Integer> view = ListenableCollections.filter(source, EVEN);
+        final List<String> events = new ArrayList<String>();
+        view.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                events.add(e.getType() + " " + new HashSet<Integer>(e.getElements()));
+            }
+        });
+        assertEquals(new HashSet<Integer>(Arrays.asList(2, 4)), new HashSet<Integer>(view));
+
+        source.add(5);
+        source.add(6);
+        source.remove(2);
+        source.removeAll(Arrays.asList(3, 4));
+        assertEquals(Arrays.asList("ADDED [6]", "REMOVED [2]", "REMOVED [4]"), events);
+        assertEquals(1, view.size());
+        assertTrue(view.contains(6));
+        assertFalse(view.contains(5));
+
+        events.clear();
+        view.setFilter(MULTIPLE_OF_3);
+        assertEquals(Arrays.asList(), events);
+        source.add(9);
+        view.setFilter(EVEN);
+        assertEquals(Arrays.asList("ADDED [9]", "REMOVED [9]"), events);
+
+        view.clear();
+        assertEquals(new HashSet<Integer>(Arrays.asList(1, 5, 9)), new HashSet<Integer>(source));
+        assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void closedViews_stopListeningToTheirSource() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4)));
+        FilteredListenableList<Integer> listView = ListenableCollections.filter(source, EVEN);
+        FilteredListenableCollection<Integer> collectionView = ListenableCollections.filter((ListenableCollection<Integer>)source, EVEN);
+        final List<CollectionEvent<Integer>> received = new ArrayList<CollectionEvent<Integer>>();
+        CollectionListener<Integer> recorder = new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        };
+        listView.addCollectionListener(recorder);
+        collectionView.addCollectionListener(recorder);
+        source.add(6);
+        assertEquals(2, received.size());
+
+        listView.close();
+        collectionView.close();
+        collectionView.close();
+        source.add(8);
+        source.remove(Integer.valueOf(2));
+        assertEquals(2, received.size());
+        assertEquals(Arrays.asList(2, 4, 6), new ArrayList<Integer>(listView));
+        assertEquals(3, collectionView.size());
+    }
+}
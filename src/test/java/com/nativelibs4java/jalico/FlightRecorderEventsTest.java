@@ -0,0 +1,58 @@
+package com.nativelibs4java.jalico;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class FlightRecorderEventsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mutationsDispatchesAndListenerCallsAreRecorded() throws Exception {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] { "Dispatch", "ListenerCall", "Mutation" })
+                recording.enable("com.nativelibs4java.jalico." + name).withThreshold(Duration.ZERO);
+            recording.start();
+
+            ListenableList<Integer> list = ListenableCollections.listenableList(new ArrayList<Integer>());
+            list.addCollectionListener(new CollectionListener<Integer>() {
+                public void collectionChanged(CollectionEvent<Integer> e) {}
+            });
+            list.add(1);
+            Map<String, Integer> map = ListenableCollections.listenableMap(new HashMap<String, Integer>());
+            map.put("a", 1);
+
+            recording.stop();
+            File file = folder.newFile("jalico.jfr");
+            recording.dump(file.toPath());
+            events = RecordingFile.readAllEvents(file.toPath());
+        }
+        Set<String> seen = new HashSet<String>();
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            seen.add(name + (event.hasField("operation") ? " " + event.getString("operation") : ""));
+            if (name.endsWith("Dispatch")) {
+                assertEquals("ADDED", event.getString("eventType"));
+                assertEquals(1, event.getInt("elementCount"));
+                assertEquals(1, event.getInt("listenerCount"));
+            }
+        }
+        assertTrue(seen.toString(), seen.contains("com.nativelibs4java.jalico.Dispatch"));
+        assertTrue(seen.toString(), seen.contains("com.nativelibs4java.jalico.ListenerCall"));
+        assertTrue(seen.toString(), seen.contains("com.nativelibs4java.jalico.Mutation add"));
+        assertTrue(seen.toString(), seen.contains("com.nativelibs4java.jalico.Mutation put"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Flow;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FlowBridgeTest {
+    private static class RecordingSubscriber implements Flow.Subscriber<CollectionEvent<Integer>> {
+        final List<CollectionEvent<Integer>> received = new ArrayList<CollectionEvent<Integer>>();
+        Flow.Subscription subscription;
+        Throwable error;
+
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+        public void onNext(CollectionEvent<Integer> item) {
+            received.add(item);
+        }
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+        public void onComplete() {
+        }
+    }
+
+    private ListenableList<Integer> list;
+    private RecordingSubscriber subscriber;
+
+    @Before
+    public void setUp() {
+        list = ListenableCollections.listenableList(new ArrayList<Integer>());
+        subscriber = new RecordingSubscriber();
+    }
+
+    @Test
+    public void eventsAreDeliveredOnDemand() {
+        ListenableCollections.publisher(list).subscribe(subscriber);
+        list.add(1);
+        list.add(2);
+        assertTrue(subscriber.received.isEmpty());
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.received.size());
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(subscriber.received.get(0).getElements()));
+
+        subscriber.subscription.request(5);
+        assertEquals(2, subscriber.received.size());
+        list.add(3);
+        assertEquals(3, subscriber.received.size());
+        assertEquals(2, subscriber.received.get(2).getFirstIndex());
+    }
+
+    @Test
+    public void cancel_unregistersListener() {
+        ListenableCollections.publisher(list).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        list.add(1);
+        subscriber.subscription.cancel();
+        list.add(2);
+        assertEquals(1, subscriber.received.size());
+    }
+
+    @Test
+    public void errorOverflow_failsSubscription() {
+        ListenableCollections.publisher(list, 2, CollectionEventPublisher.Overflow.ERROR).subscribe(subscriber);
+        list.add(1);
+        list.add(2);
+        assertNull(subscriber.error);
+        list.add(3);
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertTrue(subscriber.received.isEmpty());
+    }
+
+    @Test
+    public void dropOldestOverflow_keepsLatestEvents() {
+        ListenableCollections.publisher(list, 2, CollectionEventPublisher.Overflow.DROP_OLDEST).subscribe(subscriber);
+        for (int i = 0; i < 5; i++)
+            list.add(i);
+        subscriber.subscription.request(10);
+        assertEquals(2, subscriber.received.size());
+        assertEquals(Arrays.asList(3), new ArrayList<Integer>(subscriber.received.get(0).getElements()));
+        assertEquals(Arrays.asList(4), new ArrayList<Integer>(subscriber.received.get(1).getElements()));
+    }
+
+    @Test
+    public void conflateOverflow_deliversNetEffect() {
+        ListenableCollections.publisher(list, 2, CollectionEventPublisher.Overflow.CONFLATE).subscribe(subscriber);
+        for (int i = 0; i < 5; i++)
+            list.add(i);
+        subscriber.subscription.request(10);
+        assertEquals(1, subscriber.received.size());
+        CollectionEvent<Integer> e = subscriber.received.get(0);
+        assertEquals(CollectionEvent.EventType.ADDED, e.getType());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), new ArrayList<Integer>(e.getElements()));
+        assertEquals(0, e.getFirstIndex());
+        assertEquals(4, e.getLastIndex());
+    }
+
+    @Test
+    public void nonPositiveRequest_signalsError() {
+        ListenableCollections.publisher(list).subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void subscriber_appliesEventsPromptly() {
+        ListenableList<Integer> target = ListenableCollections.listenableList(new ArrayList<Integer>());
+        final List<CollectionEvent<Integer>> targetEvents = new ArrayList<CollectionEvent<Integer>>();
+        target.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                targetEvents.add(e);
+            }
+        });
+        CollectionEventSubscriber<Integer> applier = ListenableCollections.subscriber(target, 64);
+        ListenableCollections.publisher(list).subscribe(applier);
+
+        // Far fewer events than the batch size must not be held back
+        list.add(1);
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(target));
+        list.addAll(Arrays.asList(2, 3));
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<Integer>(target));
+        assertEquals(2, targetEvents.size());
+
+        list.add(0, 0);
+        list.set(1, 10);
+        list.remove(3);
+        list.remove(Integer.valueOf(0));
+        assertEquals(new ArrayList<Integer>(list), new ArrayList<Integer>(target));
+    }
+
+    @Test
+    public void subscriber_requestsMoreOnceDemandIsExhausted() {
+        ListenableList<Integer> target = ListenableCollections.listenableList(new ArrayList<Integer>());
+        ListenableCollections.publisher(list, 1, CollectionEventPublisher.Overflow.ERROR).subscribe(ListenableCollections.subscriber(target, 3));
+
+        // With a one-event buffer, the publisher errors out unless the subscriber keeps requesting
+        for (int i = 0; i < 10; i++)
+            list.add(i);
+        assertEquals(new ArrayList<Integer>(list), new ArrayList<Integer>(target));
+    }
+
+    @Test
+    public void subscriber_appliesSetUpdates() {
+        ListenableSet<Integer> source = ListenableCollections.listenableSet(new HashSet<Integer>());
+        ListenableSet<Integer> target = ListenableCollections.listenableSet(new HashSet<Integer>());
+        CollectionEventSubscriber<Integer> applier = ListenableCollections.subscriber(target, 1);
+        ListenableCollections.publisher(source).subscribe(applier);
+
+        source.add(1);
+        source.add(2);
+        source.add(2);
+        source.remove(1);
+        assertEquals(source, target);
+    }
+}
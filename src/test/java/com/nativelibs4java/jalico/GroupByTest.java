@@ -0,0 +1,100 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class GroupByTest {
+    private static final Adapter<Integer, Integer> LAST_DIGIT = new Adapter<Integer, Integer>() {
+        public Integer adapt(Integer value) {
+            return value % 10;
+        }
+    };
+    private static final Adapter<Integer, Integer> IDENTITY = new Adapter<Integer, Integer>() {
+        public Integer adapt(Integer value) {
+            return value;
+        }
+    };
+
+    private List<String> events;
+
+    private <K, V> ListenableMap<K, V> recorded(ListenableMap<K, V> map) {
+        map.entrySet().addCollectionListener(new CollectionListener<Map.Entry<K, V>>() {
+            public void collectionChanged(CollectionEvent<Map.Entry<K, V>> e) {
+                for (Map.Entry<K, V> entry : e.getElements())
+                    events.add(e.getType() + " " + entry.getKey() + "=" + entry.getValue());
+            }
+        });
+        return map;
+    }
+
+    @Before
+    public void setUp() {
+        events = new ArrayList<String>();
+    }
+
+    @Test
+    public void count_onlyChangedGroupsFire() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 11, 2)));
+        ListenableMap<Integer, Integer> counts = recorded(ListenableCollections.groupBy(source, LAST_DIGIT, Aggregators.<Integer>count()));
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        expected.put(1, 2);
+        expected.put(2, 1);
+        assertEquals(expected, new HashMap<Integer, Integer>(counts));
+
+        source.add(21);
+        // Entry sets notify value changes as the replacement of an entry
+        assertEquals(Arrays.asList("REMOVED 1=2", "ADDED 1=3"), events);
+
+        events.clear();
+        source.remove(Integer.valueOf(2));
+        assertEquals(Arrays.asList("REMOVED 2=1"), events);
+        assertFalse(counts.containsKey(2));
+
+        events.clear();
+        // Moving an element within the same group does not change its count
+        source.set(0, 31);
+        assertTrue(events.isEmpty());
+        source.set(0, 5);
+        assertEquals(Arrays.asList("REMOVED 1=3", "ADDED 1=2", "ADDED 5=1"), events);
+    }
+
+    @Test
+    public void sumAndAverage() {
+        ListenableSet<Integer> source = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(1, 11, 2, 12, 22)));
+        ListenableMap<Integer, Long> sums = ListenableCollections.groupBy(source, LAST_DIGIT, Aggregators.<Integer>longSum(IDENTITY));
+        ListenableMap<Integer, Double> averages = ListenableCollections.groupBy(source, LAST_DIGIT, Aggregators.<Integer>average(IDENTITY));
+        assertEquals(Long.valueOf(12), sums.get(1));
+        assertEquals(Long.valueOf(36), sums.get(2));
+        assertEquals(12.0, averages.get(2), 0);
+
+        source.removeAll(Arrays.asList(2, 11));
+        source.add(3);
+        assertEquals(Long.valueOf(1), sums.get(1));
+        assertEquals(Long.valueOf(34), sums.get(2));
+        assertEquals(17.0, averages.get(2), 0);
+        assertEquals(3.0, averages.get(3), 0);
+    }
+
+    @Test
+    public void minAndMax_surviveRemovalOfExtremum() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(5, 15, 25, 25)));
+        ListenableMap<Integer, Integer> mins = ListenableCollections.groupBy(source, LAST_DIGIT, Aggregators.<Integer, Integer>min(IDENTITY));
+        ListenableMap<Integer, Integer> maxs = recorded(ListenableCollections.groupBy(source, LAST_DIGIT, Aggregators.<Integer, Integer>max(IDENTITY)));
+
+        source.remove(Integer.valueOf(5));
+        assertEquals(Integer.valueOf(15), mins.get(5));
+        source.remove(Integer.valueOf(25));
+        // Another 25 remains : the maximum did not change
+        assertEquals(Integer.valueOf(25), maxs.get(5));
+        assertTrue(events.isEmpty());
+        source.remove(Integer.valueOf(25));
+        assertEquals(Integer.valueOf(15), maxs.get(5));
+        assertEquals(Arrays.asList("REMOVED 5=25", "ADDED 5=15"), events);
+    }
+}
@@ -0,0 +1,109 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class JoinTest {
+    private ListenableMap<Integer, String> orders;
+    private ListenableMap<String, Double> prices;
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        orders = ListenableCollections.listenableMap(new HashMap<Integer, String>());
+        prices = ListenableCollections.listenableMap(new HashMap<String, Double>());
+        events = new ArrayList<String>();
+    }
+
+    private <K, A, B> ListenableMap<K, Pair<A, B>> recorded(ListenableMap<K, Pair<A, B>> join) {
+        join.keySet().addCollectionListener(new CollectionListener<K>() {
+            public void collectionChanged(CollectionEvent<K> e) {
+                for (K key : e.getElements())
+                    events.add(e.getType() + " " + key);
+            }
+        });
+        return join;
+    }
+
+    private static final Adapter<String, String> INSTRUMENT = new Adapter<String, String>() {
+        public String adapt(String order) {
+            return order.split(":")[0];
+        }
+    };
+
+    @Test
+    public void innerJoinOnDerivedKey() {
+        orders.put(1, "AAPL:10");
+        orders.put(2, "MSFT:5");
+        prices.put("AAPL", 150.0);
+        ListenableMap<Integer, Pair<String, Double>> join = recorded(ListenableCollections.join(orders, prices, INSTRUMENT, JoinType.INNER));
+        assertEquals(1, join.size());
+        assertEquals(new Pair<String, Double>("AAPL:10", 150.0), join.get(1));
+
+        prices.put("MSFT", 300.0);
+        assertEquals(Arrays.asList("ADDED 2"), events);
+        assertEquals(new Pair<String, Double>("MSFT:5", 300.0), join.get(2));
+
+        orders.put(3, "AAPL:1");
+        prices.put("AAPL", 151.0);
+        assertEquals(new Pair<String, Double>("AAPL:10", 151.0), join.get(1));
+        assertEquals(new Pair<String, Double>("AAPL:1", 151.0), join.get(3));
+
+        events.clear();
+        // Moving an order to another instrument
+        orders.put(3, "MSFT:1");
+        prices.remove("AAPL");
+        assertEquals(new Pair<String, Double>("MSFT:1", 300.0), join.get(3));
+        assertFalse(join.containsKey(1));
+        assertEquals(Arrays.asList("UPDATED 3", "REMOVED 1"), events);
+
+        events.clear();
+        // Unrelated prices do not touch the join
+        prices.put("GOOG", 100.0);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void leftJoinOnSameKeys() {
+        ListenableMap<Integer, String> names = ListenableCollections.listenableMap(new HashMap<Integer, String>());
+        ListenableMap<Integer, Integer> ages = ListenableCollections.listenableMap(new HashMap<Integer, Integer>());
+        names.put(1, "a");
+        names.put(2, "b");
+        ages.put(1, 30);
+        ages.put(3, 40);
+        ListenableMap<Integer, Pair<String, Integer>> join = ListenableCollections.join(names, ages, JoinType.LEFT);
+
+        Map<Integer, Pair<String, Integer>> expected = new HashMap<Integer, Pair<String, Integer>>();
+        expected.put(1, new Pair<String, Integer>("a", 30));
+        expected.put(2, new Pair<String, Integer>("b", null));
+        assertEquals(expected, new HashMap<Integer, Pair<String, Integer>>(join));
+
+        ages.put(2, 20);
+        names.put(3, "c");
+        ages.remove(1);
+        names.remove(2);
+        expected.clear();
+        expected.put(1, new Pair<String, Integer>("a", null));
+        expected.put(3, new Pair<String, Integer>("c", 40));
+        assertEquals(expected, new HashMap<Integer, Pair<String, Integer>>(join));
+    }
+
+    @Test
+    public void updatedInputEntries_areForwarded() {
+        ListenableMap<Integer, List<String>> left = ListenableCollections.listenableMap(new HashMap<Integer, List<String>>());
+        ListenableMap<Integer, String> right = ListenableCollections.listenableMap(new HashMap<Integer, String>());
+        List<String> mutable = new ArrayList<String>();
+        left.put(1, mutable);
+        right.put(1, "x");
+        ListenableMap<Integer, Pair<List<String>, String>> join = recorded(ListenableCollections.join(left, right, JoinType.INNER));
+
+        mutable.add("changed");
+        left.put(1, mutable);
+        assertEquals(Arrays.asList("UPDATED 1"), events);
+    }
+}
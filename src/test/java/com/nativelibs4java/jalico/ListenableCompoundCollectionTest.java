@@ -0,0 +1,113 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ListenableCompoundCollectionTest {
+    private List<Integer> mirror;
+    private List<String> events;
+
+    private CollectionListener<Integer> recorder() {
+        return new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                events.add(e.getType() + " " + new ArrayList<Integer>(e.getElements()) + " " + e.getFirstIndex());
+                int first = e.getFirstIndex();
+                switch (e.getType()) {
+                case ADDED:
+                    mirror.addAll(first, e.getElements());
+                    break;
+                case REMOVED:
+                    assertEquals(new ArrayList<Integer>(e.getElements()), mirror.subList(first, e.getLastIndex() + 1));
+                    mirror.subList(first, e.getLastIndex() + 1).clear();
+                    break;
+                case UPDATED:
+                    for (Integer element : e.getElements())
+                        mirror.set(first++, element);
+                    break;
+                }
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        mirror = new ArrayList<Integer>();
+        events = new ArrayList<String>();
+    }
+
+    @Test
+    public void componentEvents_areOffset() {
+        ListenableList<Integer> a = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2)));
+        ListenableList<Integer> b = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(3)));
+        ListenableCompoundCollection<Integer> compound = new ListenableCompoundCollection<Integer>();
+        compound.addCollectionListener(recorder());
+        compound.addComponent(a);
+        compound.addComponent(b);
+        assertEquals(Arrays.asList("ADDED [1, 2] 0", "ADDED [3] 2"), events);
+        assertEquals(3, compound.size());
+
+        b.add(0, 30);
+        a.add(10);
+        b.set(1, 4);
+        assertEquals(Arrays.asList(1, 2, 10, 30, 4), mirror);
+        assertEquals(new ArrayList<Integer>(compound), mirror);
+        assertEquals(5, compound.size());
+
+        compound.removeComponent(a);
+        assertEquals("REMOVED [1, 2, 10] 0", events.get(events.size() - 1));
+        a.add(5);
+        assertEquals(Arrays.asList(30, 4), mirror);
+        assertEquals(2, compound.size());
+    }
+
+    @Test
+    public void randomModificationsOfManyComponents() {
+        Random random = new Random(3);
+        List<ListenableList<Integer>> partitions = new ArrayList<ListenableList<Integer>>();
+        ListenableCompoundCollection<Integer> compound = new ListenableCompoundCollection<Integer>();
+        compound.addCollectionListener(recorder());
+        for (int i = 0; i < 1000; i++) {
+            int op = partitions.isEmpty() ? 0 : random.nextInt(6);
+            if (op == 0) {
+                ListenableList<Integer> partition = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(random.nextInt(100))));
+                int position = random.nextInt(partitions.size() + 1);
+                partitions.add(position, partition);
+                compound.addComponent(position, partition);
+            } else if (op == 1) {
+                compound.removeComponent(partitions.remove(random.nextInt(partitions.size())));
+            } else {
+                ListenableList<Integer> partition = partitions.get(random.nextInt(partitions.size()));
+                if (op == 2 && !partition.isEmpty())
+                    partition.remove(random.nextInt(partition.size()));
+                else
+                    partition.add(random.nextInt(partition.size() + 1), random.nextInt(100));
+            }
+            assertEquals(mirror.size(), compound.size());
+        }
+        assertEquals(new ArrayList<Integer>(compound), mirror);
+    }
+
+    @Test
+    public void unlistenedComponents_andIteratorRemoval() {
+        ListenableSet<Integer> listened = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(1)));
+        List<Integer> plain = new ArrayList<Integer>(Arrays.asList(2, 3));
+        ListenableCompoundCollection<Integer> compound = new ListenableCompoundCollection<Integer>(Arrays.asList(listened, plain));
+        assertEquals(3, compound.size());
+        plain.add(4);
+        assertEquals(4, compound.size());
+        assertTrue(compound.contains(4));
+
+        for (Iterator<Integer> it = compound.iterator(); it.hasNext();)
+            if (it.next() % 2 == 1)
+                it.remove();
+        assertEquals(Arrays.asList(2, 4), new ArrayList<Integer>(compound));
+        assertTrue(listened.isEmpty());
+        assertEquals(2, compound.size());
+    }
+}
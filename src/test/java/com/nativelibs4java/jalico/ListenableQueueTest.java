@@ -0,0 +1,156 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ListenableQueueTest {
+    private void checkProducersAndConsumers(final ListenableQueue<Integer> queue, int consumers) throws InterruptedException {
+        final int producers = 4, perProducer = 5000, total = producers * perProducer;
+        final Set<Integer> added = new HashSet<Integer>();
+        final AtomicInteger removedCount = new AtomicInteger(), errors = new AtomicInteger();
+        queue.addCollectionListener(new CollectionListener<Integer>() {
+            // Events are delivered by one thread at a time
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                for (Integer i : e.getElements()) {
+                    if (e.getType() == CollectionEvent.EventType.ADDED) {
+                        added.add(i);
+                    } else if (!added.remove(i)) {
+                        errors.incrementAndGet();
+                    } else {
+                        removedCount.incrementAndGet();
+                    }
+                }
+            }
+        });
+        final AtomicInteger consumed = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(producers + consumers);
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            new Thread() {
+                public void run() {
+                    for (int i = 0; i < perProducer; i++)
+                        queue.offer(base + i);
+                    done.countDown();
+                }
+            }.start();
+        }
+        for (int c = 0; c < consumers; c++) {
+            new Thread() {
+                public void run() {
+                    while (consumed.get() < total) {
+                        if (queue.poll() != null)
+                            consumed.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(0, errors.get());
+        assertEquals(total, removedCount.get());
+        assertTrue(added.isEmpty());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void concurrentQueue_notifiesEachAdditionBeforeItsRemoval() throws InterruptedException {
+        checkProducersAndConsumers(ListenableCollections.<Integer>concurrentQueue(), 3);
+    }
+
+    @Test
+    public void mpscQueue_notifiesEachAdditionBeforeItsRemoval() throws InterruptedException {
+        checkProducersAndConsumers(ListenableCollections.<Integer>mpscQueue(), 1);
+    }
+
+    @Test
+    public void boundedQueue_failedOffersAreNotNotified_andDrainFiresPerChunk() {
+        ListenableBlockingQueue<Integer> queue = new DefaultListenableBlockingQueue<Integer>(new ArrayBlockingQueue<Integer>(5), 2);
+        final List<CollectionEvent<Integer>> received = new ArrayList<CollectionEvent<Integer>>();
+        queue.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        });
+        for (int i = 0; i < 6; i++)
+            assertEquals(i < 5, queue.offer(i));
+
+        List<Integer> drained = new ArrayList<Integer>();
+        assertEquals(5, queue.drainTo(drained));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), drained);
+
+        // One event per addition (offers are delivered as they settle), then one per drained chunk
+        int addedCount = 0;
+        List<List<Integer>> chunks = new ArrayList<List<Integer>>();
+        for (CollectionEvent<Integer> e : received) {
+            if (e.getType() == CollectionEvent.EventType.ADDED)
+                addedCount += e.getElements().size();
+            else
+                chunks.add(new ArrayList<Integer>(e.getElements()));
+        }
+        assertEquals(5, addedCount);
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4)), chunks);
+    }
+
+    @Test(timeout = 10000)
+    @SuppressWarnings("serial")
+    public void blockedPut_doesNotHoldBackOtherEvents() throws InterruptedException {
+        final AtomicBoolean full = new AtomicBoolean();
+        // Queue that stays full while the flag is set, whatever is removed from it
+        ArrayBlockingQueue<Integer> backing = new ArrayBlockingQueue<Integer>(10) {
+            public boolean offer(Integer e) {
+                return !full.get() && super.offer(e);
+            }
+            public void put(Integer e) throws InterruptedException {
+                while (full.get())
+                    Thread.sleep(1);
+                super.put(e);
+            }
+            public int remainingCapacity() {
+                return full.get() ? 0 : super.remainingCapacity();
+            }
+        };
+        final ListenableBlockingQueue<Integer> queue = new DefaultListenableBlockingQueue<Integer>(backing);
+        final List<CollectionEvent<Integer>> received = Collections.synchronizedList(new ArrayList<CollectionEvent<Integer>>());
+        queue.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        });
+        queue.offer(0);
+        full.set(true);
+
+        Thread producer = new Thread() {
+            public void run() {
+                try {
+                    queue.put(1);
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING && producer.getState() != Thread.State.TIMED_WAITING)
+            Thread.sleep(1);
+
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertEquals(2, received.size());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(1).getType());
+
+        full.set(false);
+        producer.join();
+        assertEquals(3, received.size());
+        assertEquals(CollectionEvent.EventType.ADDED, received.get(2).getType());
+        assertEquals(Arrays.asList(1), new ArrayList<Integer>(received.get(2).getElements()));
+        assertEquals(Integer.valueOf(1), queue.peek());
+    }
+}
@@ -0,0 +1,83 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ListenableSupportTest {
+    private ListenableSupport<Integer> support;
+    private ListenableList<Integer> source;
+    private List<CollectionEvent<Integer>> received;
+
+    @Before
+    public void setUp() {
+        support = new ListenableSupport<Integer>();
+        source = ListenableCollections.listenableList(new ArrayList<Integer>());
+        received = new ArrayList<CollectionEvent<Integer>>();
+    }
+
+    private CollectionListener<Integer> recorder() {
+        return new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        };
+    }
+
+    @Test
+    public void removeCollectionListener_stopsDelivery() {
+        CollectionListener<Integer> listener = recorder();
+        support.addCollectionListener(listener);
+        assertTrue(support.hasListeners());
+
+        support.fireAdded(source, Collections.singleton(1));
+        support.removeCollectionListener(listener);
+        support.fireAdded(source, Collections.singleton(2));
+
+        assertFalse(support.hasListeners());
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void registrationDuringDispatch_appliesToNextEvent() {
+        final CollectionListener<Integer> late = recorder();
+        support.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                support.removeCollectionListener(this);
+                support.addCollectionListener(late);
+            }
+        });
+
+        support.fireAdded(source, Collections.singleton(1));
+        assertTrue(received.isEmpty());
+
+        support.fireAdded(source, Collections.singleton(2));
+        assertEquals(1, received.size());
+        assertEquals(Collections.singleton(2), received.get(0).getElements());
+    }
+
+    @Test
+    public void fireElementEvent_callsSingleElementListenersDirectly() {
+        final List<Integer> elements = new ArrayList<Integer>();
+        support.addCollectionListener(new SingleElementListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                fail("Expected elementChanged to be called");
+            }
+            public void elementChanged(ListenableCollection<Integer> source, CollectionEvent.EventType type, Integer element, int index) {
+                assertEquals(CollectionEvent.EventType.ADDED, type);
+                assertEquals(3, index);
+                elements.add(element);
+            }
+        });
+        support.addCollectionListener(recorder());
+
+        support.fireElementAdded(source, 10, 3);
+
+        assertEquals(Collections.singletonList(10), elements);
+        assertEquals(1, received.size());
+        assertEquals(Collections.singleton(10), received.get(0).getElements());
+        assertEquals(3, received.get(0).getFirstIndex());
+    }
+}
@@ -0,0 +1,95 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class LockedListenableCollectionTest {
+
+    @Test
+    public void stampedList_listenersMayReadTheList() {
+        final ListenableList<Integer> list = ListenableCollections.stampedLockedList(ListenableCollections.listenableList(new ArrayList<Integer>()));
+        final List<Integer> sizes = new ArrayList<Integer>();
+        final List<Integer> indices = new ArrayList<Integer>();
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                assertSame(list, e.getSource());
+                // Would deadlock if the event was delivered while the (non-reentrant) write lock is held
+                sizes.add(list.size());
+                indices.add(e.getFirstIndex());
+                list.contains(e.getFirstIndex());
+            }
+        });
+        list.add(10);
+        list.add(0, 5);
+        list.set(1, 11);
+        list.remove(0);
+
+        assertEquals(Arrays.asList(1, 2, 2, 1), sizes);
+        assertEquals(Arrays.asList(0, 0, 1, 0), indices);
+        assertEquals(Integer.valueOf(11), list.get(0));
+    }
+
+    @Test
+    public void readWriteMap_viewsShareTheLockAndForwardEvents() {
+        ListenableMap<String, Integer> map = ListenableCollections.readWriteLockedMap(ListenableCollections.listenableMap(new HashMap<String, Integer>()));
+        final List<CollectionEvent.EventType> keyEvents = new ArrayList<CollectionEvent.EventType>();
+        final List<Integer> values = new ArrayList<Integer>();
+        map.keySet().addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                keyEvents.add(e.getType());
+            }
+        });
+        map.values().addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                values.addAll(e.getElements());
+            }
+        });
+        assertSame(map.keySet(), map.keySet());
+
+        map.put("a", 1);
+        map.putIfAbsent("a", 2);
+        map.keySet().remove("a");
+
+        assertEquals(Arrays.asList(CollectionEvent.EventType.ADDED, CollectionEvent.EventType.REMOVED), keyEvents);
+        assertEquals(Arrays.asList(1, 1), values);
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void stampedList_concurrentWritersDeliverEveryEvent() throws InterruptedException {
+        final ListenableList<Integer> list = ListenableCollections.stampedLockedList(ListenableCollections.listenableList(new ArrayList<Integer>()));
+        final AtomicInteger added = new AtomicInteger();
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                added.addAndGet(e.getElements().size());
+            }
+        });
+        final int threads = 4, count = 10000;
+        final CountDownLatch done = new CountDownLatch(threads * 2);
+        for (int t = 0; t < threads; t++) {
+            new Thread() { public void run() {
+                for (int i = 0; i < count; i++)
+                    list.add(i);
+                done.countDown();
+            }}.start();
+            new Thread() { public void run() {
+                for (int i = 0; i < count; i++) {
+                    int size = list.size();
+                    if (size > 0)
+                        list.get(size - 1);
+                }
+                done.countDown();
+            }}.start();
+        }
+        done.await();
+
+        assertEquals(threads * count, list.size());
+        assertEquals(threads * count, added.get());
+    }
+}
@@ -0,0 +1,97 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class MemoizingAdapterTest {
+    private int calls;
+    private final Adapter<StringBuilder, String> adapter = new Adapter<StringBuilder, String>() {
+        public String adapt(StringBuilder value) {
+            calls++;
+            return value.toString().toUpperCase();
+        }
+    };
+
+    @Test
+    public void repeatedIteration_hitsCache() {
+        ListenableList<StringBuilder> source = ListenableCollections.listenableList(new ArrayList<StringBuilder>());
+        for (int i = 0; i < 10; i++)
+            source.add(new StringBuilder("s" + i));
+        AdaptedCollection<StringBuilder, String> adapted = ListenableCollections.adapt(source, adapter, 100, true);
+
+        assertEquals(10, new ArrayList<String>(adapted).size());
+        assertEquals(10, calls);
+        assertTrue(adapted.contains("S3"));
+        new ArrayList<String>(adapted);
+        assertEquals(10, calls);
+        assertEquals(10, adapted.getAdapterCache().size());
+    }
+
+    @Test
+    public void removedAndUpdatedElements_areInvalidated() {
+        StringBuilder a = new StringBuilder("a"), b = new StringBuilder("b");
+        ListenableList<StringBuilder> source = ListenableCollections.listenableList(new ArrayList<StringBuilder>(Arrays.asList(a, b)));
+        AdaptedCollection<StringBuilder, String> adapted = ListenableCollections.adapt(source, adapter, 100, true);
+        final List<String> removed = new ArrayList<String>();
+        adapted.addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                if (e.getType() == CollectionEvent.EventType.REMOVED)
+                    removed.addAll(e.getElements());
+            }
+        });
+        assertEquals(Arrays.asList("A", "B"), new ArrayList<String>(adapted));
+
+        source.remove(0);
+        assertEquals(Arrays.asList("A"), removed);
+        assertEquals(1, adapted.getAdapterCache().size());
+
+        b.append("2");
+        assertEquals(Arrays.asList("B"), new ArrayList<String>(adapted));
+        source.set(0, b);
+        assertEquals(Arrays.asList("B2"), new ArrayList<String>(adapted));
+    }
+
+    @Test
+    public void leastRecentlyUsedValues_areEvicted() {
+        MemoizingAdapter<StringBuilder, String> cache = new MemoizingAdapter<StringBuilder, String>(adapter, 2, false);
+        StringBuilder a = new StringBuilder("a"), b = new StringBuilder("b"), c = new StringBuilder("c");
+        cache.adapt(a);
+        cache.adapt(b);
+        cache.adapt(a);
+        cache.adapt(c);
+        assertEquals(3, calls);
+        cache.adapt(a);
+        assertEquals(3, calls);
+        cache.adapt(b);
+        assertEquals(4, calls);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void invalidationDuringMiss_isNotLost() {
+        final StringBuilder a = new StringBuilder("a");
+        final List<MemoizingAdapter<StringBuilder, String>> self = new ArrayList<MemoizingAdapter<StringBuilder, String>>(1);
+        MemoizingAdapter<StringBuilder, String> cache = new MemoizingAdapter<StringBuilder, String>(new Adapter<StringBuilder, String>() {
+            public String adapt(StringBuilder value) {
+                String adapted = adapter.adapt(value);
+                if (calls == 1) {
+                    // Another thread modifies the value and invalidates it while it is being adapted
+                    value.append("!");
+                    self.get(0).invalidate(value);
+                }
+                return adapted;
+            }
+        }, 10, true);
+        self.add(cache);
+
+        assertEquals("A", cache.adapt(a));
+        assertEquals(0, cache.size());
+        assertEquals("A!", cache.adapt(a));
+        assertEquals("A!", cache.adapt(a));
+        assertEquals(2, calls);
+    }
+}
@@ -0,0 +1,150 @@
+package com.nativelibs4java.jalico;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class OffHeapListenableListTest {
+    static final Codec<Long> LONG_CODEC = new Codec<Long>() {
+        public int getRecordSize() {
+            return 8;
+        }
+        public void encode(Long value, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, value);
+        }
+        public Long decode(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    private List<CollectionEvent<Long>> received;
+    private OffHeapListenableList<Long> list;
+
+    @Before
+    public void setUp() {
+        received = new ArrayList<CollectionEvent<Long>>();
+        // Tiny segments so that moves cross segment boundaries
+        list = new OffHeapListenableList<Long>(LONG_CODEC, OffHeapListenableList.DIRECT_SEGMENTS, 4);
+        list.addCollectionListener(new CollectionListener<Long>() {
+            public void collectionChanged(CollectionEvent<Long> e) {
+                // Views are only valid during the notification
+                received.add(new CollectionEvent<Long>(e.getSource(), new ArrayList<Long>(e.getElements()), e.getType(), e.getFirstIndex(), e.getLastIndex()));
+            }
+        });
+    }
+
+    @Test
+    public void randomEdits_matchArrayList() {
+        List<Long> expected = new ArrayList<Long>();
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            int op = random.nextInt(4);
+            long value = random.nextLong();
+            if (op == 0 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, value);
+                list.add(index, value);
+            } else if (op == 1) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.set(index, value), list.set(index, value));
+            } else {
+                int from = random.nextInt(expected.size() + 1), to = from + random.nextInt(expected.size() - from + 1);
+                expected.subList(from, to).clear();
+                list.subList(from, to).clear();
+            }
+        }
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void rangeEvents_viewAffectedRecords() {
+        list.addAll(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L));
+        list.subList(2, 6).clear();
+        list.addAll(1, Arrays.asList(10L, 11L));
+        list.clear();
+
+        assertEquals(4, received.size());
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L), received.get(0).getElements());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(1).getType());
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L), received.get(1).getElements());
+        assertEquals(2, received.get(1).getFirstIndex());
+        assertEquals(5, received.get(1).getLastIndex());
+        assertEquals(Arrays.asList(10L, 11L), received.get(2).getElements());
+        assertEquals(1, received.get(2).getFirstIndex());
+        assertEquals(Arrays.asList(0L, 10L, 11L, 1L, 6L), received.get(3).getElements());
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void removeRange_doesNotAllocateSegments() {
+        final int[] allocations = new int[1];
+        OffHeapListenableList<Long> counted = new OffHeapListenableList<Long>(LONG_CODEC, new OffHeapListenableList.SegmentAllocator() {
+            public ByteBuffer allocate(int capacity) {
+                allocations[0]++;
+                return ByteBuffer.allocate(capacity);
+            }
+        }, 4);
+        final List<Long> removed = new ArrayList<Long>();
+        counted.addCollectionListener(new CollectionListener<Long>() {
+            public void collectionChanged(CollectionEvent<Long> e) {
+                if (e.getType() == CollectionEvent.EventType.REMOVED)
+                    removed.addAll(e.getElements());
+            }
+        });
+        for (long i = 0; i < 16; i++)
+            counted.add(i);
+        int allocated = allocations[0];
+
+        counted.subList(3, 11).clear();
+        assertEquals(allocated, allocations[0]);
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), removed);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 11L, 12L, 13L, 14L, 15L), new ArrayList<Long>(counted));
+    }
+
+    @Test
+    public void removeRange_viewsRemovedRecordsLazily() {
+        final int[] decoded = new int[1];
+        Codec<Long> countingCodec = new Codec<Long>() {
+            public int getRecordSize() {
+                return 8;
+            }
+            public void encode(Long value, ByteBuffer buffer, int offset) {
+                buffer.putLong(offset, value);
+            }
+            public Long decode(ByteBuffer buffer, int offset) {
+                decoded[0]++;
+                return buffer.getLong(offset);
+            }
+        };
+        // Big-endian heap segments, unlike the direct buffers the removed records are copied to
+        OffHeapListenableList<Long> counted = new OffHeapListenableList<Long>(countingCodec, new OffHeapListenableList.SegmentAllocator() {
+            public ByteBuffer allocate(int capacity) {
+                return ByteBuffer.allocate(capacity);
+            }
+        }, 4);
+        final List<Collection<Long>> removed = new ArrayList<Collection<Long>>();
+        counted.addCollectionListener(new CollectionListener<Long>() {
+            public void collectionChanged(CollectionEvent<Long> e) {
+                if (e.getType() == CollectionEvent.EventType.REMOVED)
+                    removed.add(e.getElements());
+            }
+        });
+        for (long i = 0; i < 16; i++)
+            counted.add(i);
+
+        decoded[0] = 0;
+        counted.subList(2, 13).clear();
+        assertEquals(0, decoded[0]);
+        // The removed records were copied : they outlive further modifications
+        counted.addAll(1, Arrays.asList(20L, 21L, 22L, 23L, 24L, 25L));
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L), new ArrayList<Long>(removed.get(0)));
+    }
+}
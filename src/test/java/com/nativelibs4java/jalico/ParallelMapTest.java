@@ -0,0 +1,103 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ParallelMapTest {
+    private static final Adapter<Integer, Integer> SQUARE = new Adapter<Integer, Integer>() {
+        public Integer adapt(Integer value) {
+            if (value % 1000 == 999)
+                throw new IllegalArgumentException("Rejected " + value);
+            return value * value;
+        }
+    };
+
+    private static List<Integer> range(int n) {
+        List<Integer> list = new ArrayList<Integer>(n);
+        for (int i = 0; i < n; i++)
+            list.add(i);
+        return list;
+    }
+
+    @Test
+    public void preserveOrder_publishesOneEventPerChunk() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Hold the mapping back until the listener is registered
+            final CountDownLatch started = new CountDownLatch(1);
+            Adapter<Integer, Integer> gatedSquare = new Adapter<Integer, Integer>() {
+                public Integer adapt(Integer value) {
+                    try {
+                        started.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                    return SQUARE.adapt(value);
+                }
+            };
+            final List<Integer> eventSizes = Collections.synchronizedList(new ArrayList<Integer>());
+            final List<Integer> mirror = Collections.synchronizedList(new ArrayList<Integer>());
+            ListenableCollections.MapResult<Integer, Integer> result = ListenableCollections.map(range(10000), gatedSquare, true, pool, 100);
+            result.getValues().addCollectionListener(new CollectionListener<Integer>() {
+                public void collectionChanged(CollectionEvent<Integer> e) {
+                    assertEquals(CollectionEvent.EventType.ADDED, e.getType());
+                    assertEquals(e.getElements().size(), e.getLastIndex() - e.getFirstIndex() + 1);
+                    eventSizes.add(e.getElements().size());
+                    mirror.addAll(e.getFirstIndex(), e.getElements());
+                }
+            });
+            started.countDown();
+            result.getCompletion().get(10, TimeUnit.SECONDS);
+
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < 10000; i++)
+                if (i % 1000 != 999)
+                    expected.add(i * i);
+            assertEquals(expected, new ArrayList<Integer>(result.getValues()));
+            assertEquals(expected, mirror);
+            assertEquals(10, result.getErrors().size());
+            for (Pair<Integer, Throwable> error : result.getErrors())
+                assertTrue(error.getSecond() instanceof IllegalArgumentException);
+            // Chunks hold at most 100 elements, each of them published with a single event
+            assertTrue(eventSizes.size() >= 100);
+            int total = 0;
+            for (int size : eventSizes) {
+                assertTrue(size > 0 && size <= 100);
+                total += size;
+            }
+            assertEquals(expected.size(), total);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void unorderedMapping_ofSet() throws Exception {
+        Set<Integer> input = new HashSet<Integer>(range(5000));
+        ListenableCollections.MapResult<Integer, Integer> result = ListenableCollections.map(input, SQUARE, false);
+        result.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Set<Integer> expected = new HashSet<Integer>();
+        for (int i : input)
+            if (i % 1000 != 999)
+                expected.add(i * i);
+        assertEquals(expected.size(), result.getValues().size());
+        assertEquals(expected, new HashSet<Integer>(result.getValues()));
+        assertEquals(5, result.getErrors().size());
+    }
+
+    @Test
+    public void emptyInput_completes() throws Exception {
+        ListenableCollections.MapResult<Integer, Integer> result = ListenableCollections.map(new ArrayList<Integer>(), SQUARE, true);
+        result.getCompletion().get(10, TimeUnit.SECONDS);
+        assertTrue(result.getValues().isEmpty());
+    }
+}
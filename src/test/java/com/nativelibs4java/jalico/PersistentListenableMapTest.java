@@ -0,0 +1,120 @@
+package com.nativelibs4java.jalico;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class PersistentListenableMapTest {
+    static final Codec<Integer> INT_CODEC = new Codec<Integer>() {
+        public int getRecordSize() {
+            return 4;
+        }
+        public void encode(Integer value, ByteBuffer buffer, int offset) {
+            buffer.putInt(offset, value);
+        }
+        public Integer decode(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "map.table");
+    }
+
+    private PersistentListenableMap<Integer, Integer> open() throws IOException {
+        return new PersistentListenableMap<Integer, Integer>(file, INT_CODEC, INT_CODEC, 4, false);
+    }
+
+    @Test
+    public void entries_surviveCloseAndGrowth() throws IOException {
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        PersistentListenableMap<Integer, Integer> map = open();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i % 300, i);
+            expected.put(i % 300, i);
+            if (i % 7 == 0) {
+                map.remove(i / 7);
+                expected.remove(i / 7);
+            }
+        }
+        assertEquals(expected, map);
+        map.close();
+
+        map = open();
+        assertEquals(expected, map);
+        map.close();
+    }
+
+    @Test
+    public void journal_isReplayedAfterCrash() throws IOException {
+        PersistentListenableMap<Integer, Integer> map = open();
+        map.put(1, 10);
+        map.checkpoint();
+        map.put(2, 20);
+        map.put(1, 11);
+        map.remove(2);
+        map.put(3, 30);
+        // Not closed : simulates a crash, the journal holds the last four changes
+
+        PersistentListenableMap<Integer, Integer> recovered = open();
+        assertEquals(2, recovered.size());
+        assertEquals(Integer.valueOf(11), recovered.get(1));
+        assertNull(recovered.get(2));
+        assertEquals(Integer.valueOf(30), recovered.get(3));
+        recovered.close();
+    }
+
+    @Test
+    public void tornJournalTail_isDiscarded() throws IOException {
+        PersistentListenableMap<Integer, Integer> map = open();
+        map.put(1, 10);
+        FileOutputStream out = new FileOutputStream(new File(file.getPath() + ".journal"), true);
+        out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21 });
+        out.close();
+
+        PersistentListenableMap<Integer, Integer> recovered = open();
+        assertEquals(1, recovered.size());
+        recovered.put(2, 20);
+        recovered.close();
+
+        recovered = open();
+        assertEquals(Integer.valueOf(10), recovered.get(1));
+        assertEquals(Integer.valueOf(20), recovered.get(2));
+        recovered.close();
+    }
+
+    @Test
+    public void changes_arePropagatedToListeners() throws IOException {
+        PersistentListenableMap<Integer, Integer> map = open();
+        final List<CollectionEvent.EventType> types = new ArrayList<CollectionEvent.EventType>();
+        map.keySet().addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                types.add(e.getType());
+            }
+        });
+        map.put(1, 10);
+        map.put(1, 11);
+        map.keySet().remove(1);
+        map.put(2, 20);
+        map.clear();
+        map.close();
+
+        assertEquals(5, types.size());
+        assertEquals(CollectionEvent.EventType.REMOVED, types.get(4));
+        assertTrue(open().isEmpty());
+    }
+}
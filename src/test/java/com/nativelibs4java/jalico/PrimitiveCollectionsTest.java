@@ -0,0 +1,172 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PrimitiveCollectionsTest {
+    private List<CollectionEvent<Object>> received;
+
+    @Before
+    public void setUp() {
+        received = new ArrayList<CollectionEvent<Object>>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CollectionListener<T> recorder() {
+        return new CollectionListener<T>() {
+            public void collectionChanged(CollectionEvent<T> e) {
+                received.add((CollectionEvent<Object>)(CollectionEvent<?>)e);
+            }
+        };
+    }
+
+    @Test
+    public void intList_notifiesRangesWithoutBoxing() {
+        ListenableIntList list = new ListenableIntList();
+        final List<String> calls = new ArrayList<String>();
+        list.addIntListListener(new IntListListener() {
+            public void intsChanged(ListenableIntList source, CollectionEvent.EventType type, int[] values, int offset, int length, int firstIndex) {
+                calls.add(type + " " + Arrays.toString(Arrays.copyOfRange(values, offset, offset + length)) + " @" + firstIndex);
+            }
+        });
+        list.addAll(1, 2, 3, 4);
+        list.set(0, 10);
+        list.removeRange(1, 3);
+        list.add(1, 5);
+
+        assertEquals("[10, 5, 4]", list.toString());
+        assertEquals(Arrays.asList(
+            "ADDED [1, 2, 3, 4] @0",
+            "UPDATED [10] @0",
+            "REMOVED [2, 3] @1",
+            "ADDED [5] @1"), calls);
+    }
+
+    @Test
+    public void intListView_forwardsBoxedEvents() {
+        ListenableIntList list = new ListenableIntList(new int[] { 1, 2 });
+        ListenableList<Integer> view = list.asList();
+        view.addCollectionListener(this.<Integer>recorder());
+
+        view.add(3);
+        list.removeAt(0);
+
+        assertEquals(Arrays.asList(2, 3), view);
+        assertEquals(2, received.size());
+        assertEquals(CollectionEvent.EventType.ADDED, received.get(0).getType());
+        assertEquals(2, received.get(0).getFirstIndex());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(1).getType());
+        assertEquals(Arrays.asList((Object)1), new ArrayList<Object>(received.get(1).getElements()));
+    }
+
+    @Test
+    public void longSet_matchesHashSet() {
+        ListenableLongSet set = new ListenableLongSet(4);
+        Set<Long> expected = new HashSet<Long>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextInt(500) - 250;
+            if (random.nextBoolean())
+                assertEquals(expected.add(value), set.add(value));
+            else
+                assertEquals(expected.remove(value), set.remove(value));
+        }
+        assertEquals(expected, set.asSet());
+        assertEquals(expected.size(), set.size());
+        for (long value = -260; value < 260; value++)
+            assertEquals(expected.contains(value), set.contains(value));
+    }
+
+    @Test
+    public void longSet_bulkOperationsNotifyOnce() {
+        ListenableLongSet set = new ListenableLongSet();
+        set.add(1);
+        set.asSet().addCollectionListener(this.<Long>recorder());
+
+        set.addAll(1, 2, 3);
+        set.removeAll(2, 3, 4);
+
+        assertEquals(3, received.size());
+        assertEquals(CollectionEvent.EventType.ADDED, received.get(0).getType());
+        assertEquals(new HashSet<Object>(Arrays.asList(2L, 3L)), new HashSet<Object>(received.get(0).getElements()));
+        assertEquals(CollectionEvent.EventType.UPDATED, received.get(1).getType());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(2).getType());
+        assertEquals(2, received.get(2).getElements().size());
+    }
+
+    @Test
+    public void longDoubleMap_reportsPreviousValues() {
+        ListenableLongDoubleMap map = new ListenableLongDoubleMap();
+        final List<String> calls = new ArrayList<String>();
+        map.addLongDoubleMapListener(new LongDoubleMapListener() {
+            public void entriesChanged(ListenableLongDoubleMap source, CollectionEvent.EventType type, long[] keys, double[] values, double[] previousValues, int offset, int length) {
+                calls.add(type + " " + keys[offset] + "=" + values[offset] + (previousValues == null ? "" : " was " + previousValues[offset]));
+            }
+        });
+        assertTrue(Double.isNaN(map.put(0, 1.5)));
+        assertEquals(1.5, map.put(0, 2.5), 0);
+        map.put(7, 3);
+        assertEquals(3, map.remove(7), 0);
+        assertTrue(Double.isNaN(map.get(7)));
+
+        assertEquals(Arrays.asList(
+            "ADDED 0=1.5",
+            "UPDATED 0=2.5 was 1.5",
+            "ADDED 7=3.0",
+            "REMOVED 7=3.0"), calls);
+    }
+
+    @Test
+    public void longDoubleMapView_feedsKeyAndValueListeners() {
+        ListenableLongDoubleMap map = new ListenableLongDoubleMap();
+        ListenableMap<Long, Double> view = map.asMap();
+        view.keySet().addCollectionListener(this.<Long>recorder());
+        view.values().addCollectionListener(this.<Double>recorder());
+
+        assertNull(view.put(1L, 2.0));
+        assertEquals(Double.valueOf(2.0), view.get(1L));
+        assertNull(view.get(2L));
+        view.keySet().remove(1L);
+
+        assertTrue(view.isEmpty());
+        assertEquals(4, received.size());
+        assertEquals(Arrays.asList((Object)1L), new ArrayList<Object>(received.get(0).getElements()));
+        assertEquals(Arrays.asList((Object)2.0), new ArrayList<Object>(received.get(1).getElements()));
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(3).getType());
+    }
+
+    @Test
+    public void longDoubleMapView_changedValuesAreRemovedThenAdded() {
+        ListenableLongDoubleMap map = new ListenableLongDoubleMap();
+        map.put(1L, 2.0);
+        ListenableMap<Long, Double> view = map.asMap();
+        view.keySet().addCollectionListener(this.<Long>recorder());
+        view.entrySet().addCollectionListener(this.<Map.Entry<Long, Double>>recorder());
+        view.values().addCollectionListener(this.<Double>recorder());
+
+        map.put(1L, 3.0);
+        assertEquals(5, received.size());
+        assertEquals(CollectionEvent.EventType.UPDATED, received.get(0).getType());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(1).getType());
+        assertEquals(Arrays.asList((Object)new UnmodifiableEntry<Long, Double>(1L, 2.0)), new ArrayList<Object>(received.get(1).getElements()));
+        assertEquals(CollectionEvent.EventType.ADDED, received.get(2).getType());
+        assertEquals(Arrays.asList((Object)new UnmodifiableEntry<Long, Double>(1L, 3.0)), new ArrayList<Object>(received.get(2).getElements()));
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(3).getType());
+        assertEquals(Arrays.asList((Object)2.0), new ArrayList<Object>(received.get(3).getElements()));
+        assertEquals(CollectionEvent.EventType.ADDED, received.get(4).getType());
+        assertEquals(Arrays.asList((Object)3.0), new ArrayList<Object>(received.get(4).getElements()));
+
+        received.clear();
+        map.put(1L, 3.0);
+        assertEquals(3, received.size());
+        for (CollectionEvent<?> e : received)
+            assertEquals(CollectionEvent.EventType.UPDATED, e.getType());
+    }
+}
@@ -0,0 +1,156 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ReverseIndexTest {
+    private int calls;
+    private final Adapter<Integer, String> adapter = new Adapter<Integer, String>() {
+        public String adapt(Integer value) {
+            calls++;
+            return "#" + value;
+        }
+    };
+
+    @Test
+    public void containsAndRemove_doNotAdaptElements() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4)));
+        AdaptedCollection<Integer, String> adapted = new AdaptedCollection<Integer, String>(source, adapter);
+        adapted.setIndexed(true);
+        assertTrue(adapted.isIndexed());
+        final List<CollectionEvent<String>> received = new ArrayList<CollectionEvent<String>>();
+        adapted.addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                received.add(e);
+            }
+        });
+
+        calls = 0;
+        assertTrue(adapted.contains("#3"));
+        assertFalse(adapted.contains("#5"));
+        assertFalse(adapted.remove("#5"));
+        assertEquals(0, calls);
+
+        assertTrue(adapted.remove("#3"));
+        assertEquals(Arrays.asList(1, 2, 4), new ArrayList<Integer>(source));
+        assertEquals(1, received.size());
+        assertEquals(CollectionEvent.EventType.REMOVED, received.get(0).getType());
+        assertEquals(Arrays.asList("#3"), new ArrayList<String>(received.get(0).getElements()));
+        assertEquals(2, received.get(0).getFirstIndex());
+        assertFalse(adapted.contains("#3"));
+    }
+
+    @Test
+    public void sourceChanges_updateIndex() {
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2, 2)));
+        AdaptedCollection<Integer, String> adapted = new AdaptedCollection<Integer, String>(source, adapter);
+        adapted.setIndexed(true);
+
+        source.add(5);
+        source.set(0, 7);
+        source.remove(Integer.valueOf(2));
+        assertTrue(adapted.contains("#5"));
+        assertTrue(adapted.contains("#7"));
+        assertFalse(adapted.contains("#1"));
+        assertTrue(adapted.contains("#2"));
+
+        assertTrue(adapted.remove("#2"));
+        assertFalse(adapted.contains("#2"));
+        assertEquals(Arrays.asList(7, 5), new ArrayList<Integer>(source));
+    }
+
+    @Test
+    public void setSource_removesWithoutIndex() {
+        ListenableSet<Integer> source = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(1, 2)));
+        AdaptedCollection<Integer, String> adapted = new AdaptedCollection<Integer, String>(source, adapter);
+        adapted.setIndexed(true);
+        final List<CollectionEvent<String>> received = new ArrayList<CollectionEvent<String>>();
+        adapted.addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                received.add(e);
+            }
+        });
+
+        assertTrue(adapted.remove("#1"));
+        assertEquals(new HashSet<Integer>(Arrays.asList(2)), source);
+        assertEquals(1, received.size());
+        assertEquals(-1, received.get(0).getFirstIndex());
+
+        adapted.setIndexed(false);
+        assertFalse(adapted.isIndexed());
+        assertTrue(adapted.contains("#2"));
+    }
+
+    @Test
+    public void removalsAndUpdates_useIndexedValues() {
+        Adapter<int[], String> holderAdapter = new Adapter<int[], String>() {
+            public String adapt(int[] holder) {
+                calls++;
+                return "#" + holder[0];
+            }
+        };
+        int[] a = { 1 }, b = { 2 };
+        ListenableSet<int[]> source = ListenableCollections.listenableSet(new HashSet<int[]>(Arrays.asList(a, b)));
+        AdaptedCollection<int[], String> adapted = new AdaptedCollection<int[], String>(source, holderAdapter, null, 16, true);
+        adapted.setIndexed(true);
+
+        calls = 0;
+        source.remove(b);
+        assertEquals(0, calls);
+        assertFalse(adapted.contains("#2"));
+
+        // Re-keyed in place and notified as an update : the cache is invalidated, and the index must drop the old value
+        a[0] = 9;
+        source.add(a);
+        assertEquals(1, calls);
+        assertTrue(adapted.contains("#9"));
+        assertFalse(adapted.contains("#1"));
+    }
+
+    @Test
+    public void listRemovals_takeTheIndexFromTheEvent() {
+        // Lookups of elements made from outside of the list's own remove(Object)
+        final int[] lookups = new int[1];
+        ListenableList<Integer> source = new DefaultListenableList<Integer>(new ArrayList<Integer>(Arrays.asList(1, 2, 3, 4))) {
+            boolean removing;
+            @Override
+            public int indexOf(Object o) {
+                if (!removing)
+                    lookups[0]++;
+                return super.indexOf(o);
+            }
+            @Override
+            public boolean remove(Object o) {
+                removing = true;
+                try {
+                    return super.remove(o);
+                } finally {
+                    removing = false;
+                }
+            }
+        };
+        AdaptedCollection<Integer, String> adapted = new AdaptedCollection<Integer, String>(source, adapter);
+        adapted.setIndexed(true);
+        final List<CollectionEvent<String>> received = new ArrayList<CollectionEvent<String>>();
+        adapted.addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                received.add(e);
+            }
+        });
+
+        assertTrue(adapted.remove("#3"));
+        assertEquals(0, lookups[0]);
+        assertEquals(1, received.size());
+        assertEquals(2, received.get(0).getFirstIndex());
+        assertEquals(Arrays.asList(1, 2, 4), new ArrayList<Integer>(source));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nonListenableSource_cannotBeIndexed() {
+        new AdaptedCollection<Integer, String>(new ArrayList<Integer>(), adapter).setIndexed(true);
+    }
+}
@@ -0,0 +1,159 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SortedViewTest {
+    /// Applies index-aware events to a plain list, to check that they describe the changes of the view
+    private static CollectionListener<Integer> mirror(final List<Integer> mirror) {
+        return new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                int first = e.getFirstIndex();
+                assertTrue(first >= 0);
+                switch (e.getType()) {
+                case ADDED:
+                    mirror.addAll(first, e.getElements());
+                    break;
+                case REMOVED:
+                    assertEquals(new ArrayList<Integer>(e.getElements()), mirror.subList(first, e.getLastIndex() + 1));
+                    mirror.subList(first, e.getLastIndex() + 1).clear();
+                    break;
+                case UPDATED:
+                    for (Integer element : e.getElements())
+                        mirror.set(first++, element);
+                    break;
+                }
+            }
+        };
+    }
+
+    private static List<Integer> sortedCopy(ListenableCollection<Integer> source) {
+        List<Integer> sorted = new ArrayList<Integer>(source);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Test
+    public void setSource_staysSorted() {
+        ListenableSet<Integer> source = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(5, 1, 3)));
+        SortedListenableList<Integer> view = ListenableCollections.sorted(source);
+        List<Integer> mirror = new ArrayList<Integer>(view);
+        view.addCollectionListener(mirror(mirror));
+        assertEquals(Arrays.asList(1, 3, 5), mirror);
+
+        source.add(4);
+        source.add(0);
+        source.addAll(Arrays.asList(2, 6, 3));
+        source.remove(5);
+        source.removeAll(Arrays.asList(0, 6));
+        assertEquals(Arrays.asList(1, 2, 3, 4), new ArrayList<Integer>(view));
+        assertEquals(Arrays.asList(1, 2, 3, 4), mirror);
+        assertEquals(2, view.indexOf(3));
+        assertEquals(-1, view.indexOf(5));
+
+        view.remove(0);
+        view.add(10);
+        assertEquals(Arrays.asList(2, 3, 4, 10), mirror);
+        assertEquals(sortedCopy(source), mirror);
+    }
+
+    @Test
+    public void listSource_randomModifications() {
+        Random random = new Random(2);
+        ListenableList<Integer> source = ListenableCollections.listenableList(new ArrayList<Integer>());
+        SortedListenableList<Integer> view = ListenableCollections.sorted(source, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return a / 10 - b / 10;
+            }
+        });
+        List<Integer> mirror = new ArrayList<Integer>();
+        view.addCollectionListener(mirror(mirror));
+        for (int i = 0; i < 2000; i++) {
+            int size = source.size();
+            switch (size == 0 ? 0 : random.nextInt(5)) {
+            case 0:
+            case 1:
+                source.add(random.nextInt(size + 1), random.nextInt(100));
+                break;
+            case 2:
+                source.remove(random.nextInt(size));
+                break;
+            case 3:
+                source.set(random.nextInt(size), random.nextInt(100));
+                break;
+            case 4:
+                source.addAll(random.nextInt(size + 1), Arrays.asList(random.nextInt(100), random.nextInt(100)));
+                break;
+            }
+        }
+        assertEquals(new ArrayList<Integer>(view), mirror);
+        List<Integer> expected = sortedCopy(source), actual = new ArrayList<Integer>(view);
+        assertEquals(source.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i) / 10, actual.get(i) / 10);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void iterator_isSnapshot() {
+        ListenableSet<Integer> source = ListenableCollections.listenableSet(new HashSet<Integer>(Arrays.asList(3, 1, 2)));
+        SortedListenableList<Integer> view = ListenableCollections.sorted(source);
+        List<Integer> seen = new ArrayList<Integer>();
+        for (Integer i : view) {
+            seen.add(i);
+            source.add(i + 10);
+        }
+        assertEquals(Arrays.asList(1, 2, 3), seen);
+        assertEquals(Arrays.asList(1, 2, 3, 11, 12, 13), new ArrayList<Integer>(view));
+    }
+
+    /// Element which counts how many times it is compared to others
+    static class CountedKey implements Comparable<CountedKey> {
+        static int comparisons;
+        final int value;
+        CountedKey(int value) {
+            this.value = value;
+        }
+        public int compareTo(CountedKey o) {
+            comparisons++;
+            return Integer.compare(value, o.value);
+        }
+        @Override
+        public boolean equals(Object o) {
+            comparisons++;
+            return o instanceof CountedKey && ((CountedKey)o).value == value;
+        }
+        @Override
+        public int hashCode() {
+            return value;
+        }
+    }
+
+    @Test
+    public void absentElementLookup_isLogarithmic() {
+        ListenableList<CountedKey> source = ListenableCollections.listenableList(new ArrayList<CountedKey>());
+        SortedListenableList<CountedKey> view = ListenableCollections.sorted(source);
+        for (int i = 0; i < 1024; i++)
+            source.add(new CountedKey(2 * i));
+
+        CountedKey.comparisons = 0;
+        assertFalse(view.contains(new CountedKey(1001)));
+        assertEquals(-1, view.indexOf(new CountedKey(-1)));
+        assertEquals(500, view.indexOf(new CountedKey(1000)));
+        assertTrue(CountedKey.comparisons < 3 * 2 * 12);
+
+        // Updates at indices of the source still move the replaced elements
+        source.set(0, new CountedKey(5000));
+        assertEquals(-1, view.indexOf(new CountedKey(0)));
+        assertEquals(1023, view.indexOf(new CountedKey(5000)));
+        assertEquals(1024, view.size());
+    }
+}
@@ -0,0 +1,145 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SynchronizedListenableCollectionTest {
+
+    @Test
+    public void eventsAreDeliveredOutsideTheMutex() {
+        final ListenableSet<Integer> set = ListenableCollections.synchronizedSet(ListenableCollections.listenableSet(new HashSet<Integer>()));
+        final List<String> events = new ArrayList<String>();
+        set.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                assertFalse(Thread.holdsLock(set));
+                if (!e.getElements().isEmpty())
+                    events.add(e.getType() + " " + new ArrayList<Integer>(e.getElements()));
+            }
+        });
+        set.add(1);
+        set.addAll(Arrays.asList(1, 2));
+        set.remove(2);
+        set.clear();
+
+        assertEquals(Arrays.asList("ADDED [1]", "ADDED [2]", "UPDATED [1]", "REMOVED [2]", "REMOVED [1]"), events);
+    }
+
+    @Test
+    public void crossCollectionListenersDoNotDeadlock() throws InterruptedException {
+        final ListenableCollection<Integer> a = ListenableCollections.synchronizedCollection(ListenableCollections.listenableCollection(new ArrayList<Integer>()));
+        final ListenableCollection<Integer> b = ListenableCollections.synchronizedCollection(ListenableCollections.listenableCollection(new ArrayList<Integer>()));
+        // Each listener copies additions to the other collection : with events fired under the mutex, concurrent additions would deadlock
+        a.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                if (e.getType() == CollectionEvent.EventType.ADDED && e.getElements().iterator().next() > 0)
+                    b.add(-1);
+            }
+        });
+        b.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                if (e.getType() == CollectionEvent.EventType.ADDED && e.getElements().iterator().next() > 0)
+                    a.add(-1);
+            }
+        });
+        final int count = 10000;
+        final CountDownLatch done = new CountDownLatch(2);
+        for (final ListenableCollection<Integer> col : Arrays.asList(a, b)) {
+            new Thread() { public void run() {
+                for (int i = 1; i <= count; i++)
+                    col.add(i);
+                done.countDown();
+            }}.start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(2 * count, a.size());
+        assertEquals(2 * count, b.size());
+    }
+
+    @Test
+    public void mapViewsReceiveEventsOfTheMap() {
+        ListenableMap<String, Integer> map = ListenableCollections.synchronizedMap(ListenableCollections.listenableMap(new HashMap<String, Integer>()));
+        final List<String> keys = new ArrayList<String>();
+        map.keySet().addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                keys.addAll(e.getElements());
+            }
+        });
+        map.put("a", 1);
+        map.put("b", 2);
+        map.keySet().remove("a");
+
+        assertEquals(Arrays.asList("a", "b", "a"), keys);
+    }
+
+    @Test
+    public void clientSideLocking_deliversEventsOfEachModification() {
+        final ListenableList<Integer> list = ListenableCollections.synchronizedList(ListenableCollections.listenableList(new ArrayList<Integer>()));
+        final List<String> events = new ArrayList<String>();
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                events.add(e.getType() + " " + new ArrayList<Integer>(e.getElements()));
+            }
+        });
+        synchronized (list) {
+            list.add(1);
+            assertEquals(Arrays.asList("ADDED [1]"), events);
+            list.addAll(Arrays.asList(2, 3));
+            assertEquals(2, events.size());
+        }
+        // Removals made through an iterator by retainAll are delivered once it returns, outside of the mutex
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                assertFalse(Thread.holdsLock(list));
+            }
+        });
+        list.retainAll(Arrays.asList(2));
+        assertEquals(Arrays.asList(2), new ArrayList<Integer>(list));
+        assertTrue(events.size() > 2);
+        for (String event : events.subList(2, events.size()))
+            assertTrue(event.startsWith("REMOVED"));
+    }
+
+    @Test
+    public void clientSideLocking_deliversMapViewEvents() {
+        ListenableMap<String, Integer> map = ListenableCollections.synchronizedMap(ListenableCollections.listenableMap(new HashMap<String, Integer>()));
+        final List<String> keys = new ArrayList<String>();
+        map.keySet().addCollectionListener(new CollectionListener<String>() {
+            public void collectionChanged(CollectionEvent<String> e) {
+                keys.addAll(e.getElements());
+            }
+        });
+        synchronized (map) {
+            map.put("a", 1);
+            assertEquals(Arrays.asList("a"), keys);
+            map.keySet().remove("a");
+            assertEquals(Arrays.asList("a", "a"), keys);
+        }
+    }
+
+    @Test
+    public void indexedModifications_areDeliveredOutsideTheMutex() {
+        final ListenableList<Integer> list = ListenableCollections.synchronizedList(ListenableCollections.listenableList(new ArrayList<Integer>(Arrays.asList(1, 2))));
+        final List<String> events = new ArrayList<String>();
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                assertFalse(Thread.holdsLock(list));
+                events.add(e.getType() + " " + new ArrayList<Integer>(e.getElements()) + " " + e.getFirstIndex() + "-" + e.getLastIndex());
+            }
+        });
+        list.add(1, 5);
+        list.addAll(0, Arrays.asList(3, 4));
+        list.set(4, 6);
+        list.remove(0);
+        list.subList(1, 3).clear();
+
+        assertEquals(Arrays.asList(4, 6), new ArrayList<Integer>(list));
+        assertEquals(Arrays.asList("ADDED [5] 1-1", "ADDED [3, 4] 0-1", "UPDATED [6] 4-4", "REMOVED [3] 0-0", "REMOVED [1, 5] 0-1"), events);
+    }
+}
@@ -0,0 +1,139 @@
+package com.nativelibs4java.jalico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class VersionedListenableListTest {
+    @Test
+    public void randomEdits_matchArrayList() {
+        List<Integer> expected = new ArrayList<Integer>();
+        VersionedListenableList<Integer> list = ListenableCollections.versionedList(expected);
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(3);
+            if (op == 0 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                list.add(index, i);
+            } else if (op == 1) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.set(index, i), list.set(index, i));
+            }
+        }
+        assertEquals(expected, list);
+        assertEquals(expected, new ArrayList<Integer>(list.snapshot()));
+    }
+
+    @Test
+    public void snapshots_areNotAffectedByLaterModifications() {
+        VersionedListenableList<Integer> list = ListenableCollections.versionedList(Arrays.asList(1, 2, 3));
+        VersionedListenableList.Snapshot<Integer> before = list.snapshot();
+        list.add(4);
+        list.remove(0);
+        list.clear();
+
+        assertEquals(Arrays.asList(1, 2, 3), before);
+        assertEquals(0, before.getVersion());
+        assertEquals(3, list.snapshot().getVersion());
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void readers_iterateWhileWritersModify() throws InterruptedException {
+        final VersionedListenableList<Integer> list = new VersionedListenableList<Integer>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread() {
+            public void run() {
+                for (int i = 0; running.get(); i++) {
+                    list.add(i);
+                    if (list.size() > 1000)
+                        list.remove(0);
+                }
+            }
+        };
+        writer.start();
+        try {
+            for (int pass = 0; pass < 200; pass++) {
+                VersionedListenableList.Snapshot<Integer> snapshot = list.snapshot();
+                int count = 0, previous = -1;
+                for (int value : snapshot) {
+                    // Elements are appended in increasing order and removed from the head
+                    assertTrue(value > previous);
+                    previous = value;
+                    count++;
+                }
+                assertEquals(snapshot.size(), count);
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void clear_notifiesFormerVersion() {
+        VersionedListenableList<Integer> list = ListenableCollections.versionedList(Arrays.asList(1, 2, 3));
+        final List<CollectionEvent<Integer>> received = new ArrayList<CollectionEvent<Integer>>();
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        });
+        list.subList(0, 2).clear();
+        list.clear();
+
+        assertEquals(2, received.size());
+        assertEquals(Arrays.asList(1, 2), new ArrayList<Integer>(received.get(0).getElements()));
+        assertEquals(Arrays.asList(3), new ArrayList<Integer>(received.get(1).getElements()));
+        assertEquals(0, received.get(1).getLastIndex());
+    }
+
+    @Test
+    public void bulkRemovals_removeThroughIterator() {
+        VersionedListenableList<Integer> list = ListenableCollections.versionedList(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7));
+        final List<CollectionEvent<Integer>> received = new ArrayList<CollectionEvent<Integer>>();
+        list.addCollectionListener(new CollectionListener<Integer>() {
+            public void collectionChanged(CollectionEvent<Integer> e) {
+                received.add(e);
+            }
+        });
+        VersionedListenableList.Snapshot<Integer> before = list.snapshot();
+
+        assertTrue(list.removeAll(Arrays.asList(1, 4)));
+        assertEquals(Arrays.asList(0, 2, 3, 5, 6, 7), new ArrayList<Integer>(list));
+        assertEquals(2, received.size());
+        assertEquals(1, received.get(0).getFirstIndex());
+        assertEquals(3, received.get(1).getFirstIndex());
+
+        assertTrue(list.retainAll(Arrays.asList(0, 3, 6, 7)));
+        assertEquals(Arrays.asList(0, 3, 6, 7), new ArrayList<Integer>(list));
+
+        assertTrue(list.removeIf(new Predicate<Integer>() {
+            public boolean test(Integer value) {
+                return value > 5;
+            }
+        }));
+        assertEquals(Arrays.asList(0, 3), new ArrayList<Integer>(list));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), new ArrayList<Integer>(before));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void iteratorRemove_afterOtherModification_throws() {
+        VersionedListenableList<Integer> list = ListenableCollections.versionedList(Arrays.asList(0, 1, 2));
+        Iterator<Integer> it = list.iterator();
+        it.next();
+        list.add(3);
+        it.remove();
+    }
+}